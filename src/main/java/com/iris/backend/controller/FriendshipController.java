@@ -6,6 +6,7 @@ import com.iris.backend.model.GooglePlace;
 import com.iris.backend.model.User;
 import com.iris.backend.repository.CustomPlaceRepository;
 import com.iris.backend.repository.GooglePlaceRepository;
+import com.iris.backend.service.FriendSuggestionService;
 import com.iris.backend.service.FriendshipService;
 import jakarta.validation.Valid;
 import org.locationtech.jts.geom.Point;
@@ -24,6 +25,7 @@ import java.util.UUID;
 public class FriendshipController {
 
     private final FriendshipService friendshipService;
+    private final FriendSuggestionService friendSuggestionService;
     private final GooglePlaceRepository googlePlaceRepository;
     private final CustomPlaceRepository customPlaceRepository;
     private final GeometryFactory geometryFactory;
@@ -31,11 +33,13 @@ public class FriendshipController {
 
     public FriendshipController(
             FriendshipService friendshipService,
+            FriendSuggestionService friendSuggestionService,
             GooglePlaceRepository googlePlaceRepository,
             CustomPlaceRepository customPlaceRepository,
             GeometryFactory geometryFactory
     ) {
         this.friendshipService = friendshipService;
+        this.friendSuggestionService = friendSuggestionService;
         this.googlePlaceRepository = googlePlaceRepository;
         this.customPlaceRepository = customPlaceRepository;
         this.geometryFactory = geometryFactory;
@@ -118,6 +122,21 @@ public class FriendshipController {
         return ResponseEntity.ok(nearbyFriends);
     }
 
+    /**
+     * "People you may know": friends of friends, ranked by mutual friends and shared places.
+     *
+     * @param currentUser The authenticated user.
+     * @param limit       Maximum number of suggestions.
+     * @return The suggestions, best first.
+     */
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<FriendSuggestionDTO>> getFriendSuggestions(
+            @AuthenticationPrincipal User currentUser,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        return ResponseEntity.ok(friendSuggestionService.getSuggestions(currentUser, limit));
+    }
+
     @PostMapping("/request")
     public ResponseEntity<String> sendFriendRequest(
             @AuthenticationPrincipal User requester,
@@ -1,21 +1,32 @@
 package com.iris.backend.controller;
 
+import com.iris.backend.dto.PhotoBatchResponseDTO;
+import com.iris.backend.dto.PhotoBatchUploadResultDTO;
 import com.iris.backend.dto.PhotoResponseDTO;
 
-import java.io.IOException;
 import java.util.List;
 import com.iris.backend.dto.PhotoUploadRequestDTO;
+import com.iris.backend.dto.PhotoUploadReservationRequestDTO;
 import com.iris.backend.dto.PhotoUploadResponse;
+import com.iris.backend.dto.PhotoUploadSessionDTO;
+import com.iris.backend.dto.PhotoUploadSessionRequestDTO;
+import com.iris.backend.dto.PhotoUploadTicketDTO;
+import com.iris.backend.dto.feed.FriendsFeedPageDTO;
 import com.iris.backend.model.User;
 import com.iris.backend.repository.UserRepository;
 import com.iris.backend.service.PhotoLikeService;
 import com.iris.backend.service.PhotoService;
+import com.iris.backend.service.PhotoUploadReservationService;
+import com.iris.backend.service.PhotoUploadSessionService;
+import jakarta.validation.Valid;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.UUID;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 
@@ -26,6 +37,8 @@ public class PhotoController {
 
     private final PhotoService photoService;
     private final PhotoLikeService photoLikeService;
+    private final PhotoUploadReservationService photoUploadReservationService;
+    private final PhotoUploadSessionService photoUploadSessionService;
     private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
 
@@ -35,12 +48,19 @@ public class PhotoController {
      * such as uploading photos, retrieving discoverable photos, getting user feeds, and deleting photos.
      *
      * @param photoService the service used for managing photo-related operations
+     * @param photoUploadReservationService the service for direct-to-storage uploads
+     * @param photoUploadSessionService the service for resumable chunked uploads
      * @param userRepository the repository used for user-related data management
      * @param objectMapper the object mapper used for JSON serialization and deserialization
      */
-    public PhotoController(PhotoService photoService, PhotoLikeService photoLikeService, UserRepository userRepository, ObjectMapper objectMapper) {
+    public PhotoController(PhotoService photoService, PhotoLikeService photoLikeService,
+                           PhotoUploadReservationService photoUploadReservationService,
+                           PhotoUploadSessionService photoUploadSessionService,
+                           UserRepository userRepository, ObjectMapper objectMapper) {
         this.photoService = photoService;
         this.photoLikeService = photoLikeService;
+        this.photoUploadReservationService = photoUploadReservationService;
+        this.photoUploadSessionService = photoUploadSessionService;
         this.userRepository = userRepository;
         this.objectMapper = objectMapper;
     }
@@ -50,18 +70,23 @@ public class PhotoController {
      * The metadata JSON is parsed to extract location coordinates, visibility,
      * and place information while the user information is extracted from the
      * authentication token.
+     * Clients that retry uploads send an {@code Idempotency-Key}; a retry with the same key
+     * returns the photo created by the first request instead of creating a second one.
      *
      * @param uploader the authenticated user uploading the photo
+     * @param idempotencyKey optional key identifying this upload across retries
      * @param file the photo file being uploaded
      * @param metadataJson the JSON string containing metadata about the photo,
      *                     such as latitude, longitude, visibility, and place ID
      * @return a {@link ResponseEntity} containing a {@link PhotoUploadResponse}
-     *         with the newly created photo's unique ID
+     *         with the newly created photo's unique ID; 400 if the metadata or the key is invalid,
+     *         409 if a concurrent request with the same key failed
      * @throws JsonProcessingException if the metadata JSON string cannot be parsed
      */
     @PostMapping(consumes = {"multipart/form-data"})
     public ResponseEntity<PhotoUploadResponse> uploadPhoto(
             @AuthenticationPrincipal User uploader,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestPart("file") MultipartFile file,
             @RequestPart("metadata") String metadataJson
     ) throws Exception {
@@ -69,20 +94,152 @@ public class PhotoController {
         // Dieses DTO hat die Felder googlePlaceId und customPlaceId
         PhotoUploadRequestDTO metadata = objectMapper.readValue(metadataJson, PhotoUploadRequestDTO.class);
 
-        // KORREKTUR: Wir übergeben jetzt die richtigen Parameter an den Service
-        UUID newPhotoId = photoService.createPhoto(
-                file,
-                metadata.latitude(),
-                metadata.longitude(),
-                metadata.visibility(),
-                metadata.googlePlaceId(), // Korrekter Parameter
-                metadata.customPlaceId(),  // Korrekter Parameter
-                uploader,
-                metadata.friendIds(),
-                metadata.challengeId()
-        );
-
-        return ResponseEntity.status(HttpStatus.CREATED).body(new PhotoUploadResponse(newPhotoId));
+        try {
+            // KORREKTUR: Wir übergeben jetzt die richtigen Parameter an den Service
+            UUID newPhotoId = photoService.createPhoto(
+                    file,
+                    metadata.latitude(),
+                    metadata.longitude(),
+                    metadata.visibility(),
+                    metadata.googlePlaceId(), // Korrekter Parameter
+                    metadata.customPlaceId(),  // Korrekter Parameter
+                    uploader,
+                    metadata.friendIds(),
+                    metadata.challengeId(),
+                    idempotencyKey
+            );
+            return ResponseEntity.status(HttpStatus.CREATED).body(new PhotoUploadResponse(newPhotoId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Phase one of a direct upload: reserves an object in the photos bucket and returns a signed
+     * PUT URL for it, so the file does not pass through the backend.
+     *
+     * @return 201 with the upload ticket, or 400 if the content type is not an image type
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<PhotoUploadTicketDTO> reserveUpload(
+            @AuthenticationPrincipal User uploader,
+            @RequestBody @Valid PhotoUploadReservationRequestDTO request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(photoUploadReservationService.reserve(uploader, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Phase two of a direct upload: checks the uploaded object and creates the photo with the given metadata.
+     *
+     * @return 201 with the new photo's ID,
+     *         400 if no valid file was uploaded,
+     *         404 if the upload token is unknown,
+     *         409 if the reservation has expired or was already finalized
+     */
+    @PostMapping("/uploads/{uploadToken}/finalize")
+    public ResponseEntity<PhotoUploadResponse> finalizeUpload(
+            @AuthenticationPrincipal User uploader,
+            @PathVariable UUID uploadToken,
+            @RequestBody @Valid PhotoUploadRequestDTO metadata) {
+        try {
+            UUID newPhotoId = photoUploadReservationService.finalizeUpload(uploadToken, metadata, uploader);
+            return ResponseEntity.status(HttpStatus.CREATED).body(new PhotoUploadResponse(newPhotoId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Starts a resumable upload. The client then PUTs the file in chunks of {@code chunkSize} bytes
+     * and finalizes the session with the photo's metadata.
+     *
+     * @return 201 with the session, or 400 if the content type is not an image type or the file is too large
+     */
+    @PostMapping("/upload-sessions")
+    public ResponseEntity<PhotoUploadSessionDTO> createUploadSession(
+            @AuthenticationPrincipal User uploader,
+            @RequestBody @Valid PhotoUploadSessionRequestDTO request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(photoUploadSessionService.createSession(uploader, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * The state of a resumable upload; after a reconnect the client continues at {@code receivedBytes}.
+     *
+     * @return 200 with the session, or 404 if the session is unknown
+     */
+    @GetMapping("/upload-sessions/{sessionId}")
+    public ResponseEntity<PhotoUploadSessionDTO> getUploadSession(
+            @AuthenticationPrincipal User uploader,
+            @PathVariable UUID sessionId) {
+        try {
+            return ResponseEntity.ok(photoUploadSessionService.getSession(sessionId, uploader));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Uploads the chunk of a resumable upload that starts at {@code offset}; the request body is the raw chunk.
+     *
+     * @return 200 with the new session state,
+     *         400 if the chunk does not have the expected size,
+     *         404 if the session is unknown,
+     *         409 with the current session state if {@code offset} is not the expected offset or the session has expired
+     */
+    @PutMapping(value = "/upload-sessions/{sessionId}", consumes = "application/octet-stream")
+    public ResponseEntity<PhotoUploadSessionDTO> uploadChunk(
+            @AuthenticationPrincipal User uploader,
+            @PathVariable UUID sessionId,
+            @RequestParam long offset,
+            InputStream chunk) throws IOException {
+        try {
+            return ResponseEntity.ok(photoUploadSessionService.appendChunk(sessionId, offset, chunk, uploader));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            // Der Client erfährt den richtigen Offset und macht dort weiter
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(photoUploadSessionService.getSession(sessionId, uploader));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Completes a resumable upload and creates the photo with the given metadata.
+     *
+     * @return 201 with the new photo's ID,
+     *         400 if chunks are missing,
+     *         404 if the session is unknown,
+     *         409 if the session has expired or was already finalized
+     */
+    @PostMapping("/upload-sessions/{sessionId}/finalize")
+    public ResponseEntity<PhotoUploadResponse> finalizeUploadSession(
+            @AuthenticationPrincipal User uploader,
+            @PathVariable UUID sessionId,
+            @RequestBody @Valid PhotoUploadRequestDTO metadata) throws IOException {
+        try {
+            UUID newPhotoId = photoUploadSessionService.finalizeUpload(sessionId, metadata, uploader);
+            return ResponseEntity.status(HttpStatus.CREATED).body(new PhotoUploadResponse(newPhotoId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
     }
 
     /**
@@ -90,16 +247,43 @@ public class PhotoController {
      * Stellt sicher, dass der anfragende Benutzer berechtigt ist, jedes Foto zu sehen.
      * Fotos, für die keine Berechtigung besteht oder die nicht gefunden wurden,
      * werden einfach aus der finalen Liste weggelassen.
+     * Mit {@code debug=true} kommt stattdessen ein {@link PhotoBatchResponseDTO} zurück,
+     * das zusätzlich pro abgelehnter ID den Grund enthält.
      */
     @PostMapping("/batch")
-    public ResponseEntity<List<PhotoResponseDTO>> getPhotosByIds(
+    public ResponseEntity<?> getPhotosByIds(
             @RequestBody List<UUID> photoIds,
+            @RequestParam(defaultValue = "false") boolean debug,
             @AuthenticationPrincipal User currentUser) {
 
+        if (debug) {
+            return ResponseEntity.ok(photoService.getPhotoBatch(photoIds, currentUser));
+        }
         List<PhotoResponseDTO> photos = photoService.getPhotoDTOsByIds(photoIds, currentUser);
         return ResponseEntity.ok(photos);
     }
 
+    /**
+     * Liefert eine Seite des Freunde-Feeds (neueste zuerst, Keyset-Pagination).
+     * Für die nächste Seite wird der {@code nextCursor} der Antwort als {@code cursor} mitgeschickt.
+     *
+     * @param cursor      the cursor of the previous page; omitted for the first page
+     * @param limit       the page size (max. 50)
+     * @param currentUser the authenticated user
+     * @return 200 with the page, or 400 if the cursor is malformed
+     */
+    @GetMapping("/feed/friends")
+    public ResponseEntity<FriendsFeedPageDTO> getFriendsFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @AuthenticationPrincipal User currentUser) {
+        try {
+            return ResponseEntity.ok(photoService.getFriendsFeed(currentUser.getId(), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Deletes a photo identified by its unique ID. The deletion is performed
      * only if the authenticated user is authorized to delete the photo.
@@ -148,8 +332,14 @@ public class PhotoController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Uploads several photos at once. Every file succeeds or fails on its own.
+     *
+     * @return 201 if all photos were created, 207 (Multi-Status) if some failed, each with one result per
+     *         file in request order; 400 if the metadata is malformed or does not match the files
+     */
     @PostMapping("/batch-upload")
-    public ResponseEntity<List<PhotoUploadResponse>> uploadPhotos(
+    public ResponseEntity<List<PhotoBatchUploadResultDTO>> uploadPhotos(
             @RequestParam("files") MultipartFile[] files,
             @RequestParam("metadata") String metadataJson,
             @AuthenticationPrincipal User currentUser) {
@@ -163,13 +353,12 @@ public class PhotoController {
                 return ResponseEntity.badRequest().build();
             }
 
-            List<PhotoUploadResponse> responses = photoService.uploadPhotos(files, requests, currentUser);
-            return ResponseEntity.status(HttpStatus.CREATED).body(responses);
+            List<PhotoBatchUploadResultDTO> results = photoService.uploadPhotos(files, requests, currentUser);
+            boolean allCreated = results.stream().allMatch(result -> result.photoId() != null);
+            return ResponseEntity.status(allCreated ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(results);
 
-        } catch (JsonProcessingException e) {
+        } catch (JsonProcessingException | IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 }
\ No newline at end of file
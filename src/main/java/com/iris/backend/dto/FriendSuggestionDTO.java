@@ -0,0 +1,18 @@
+package com.iris.backend.dto;
+
+import java.util.UUID;
+
+/**
+ * A "people you may know" suggestion.
+ *
+ * Fields:
+ * - id, username, profileImageUrl: like {@link UserDTO}.
+ * - mutualFriends: number of accepted friends both users have in common.
+ * - sharedPlaces: number of places both users recently uploaded photos at.
+ */
+public record FriendSuggestionDTO(UUID id,
+                                  String username,
+                                  String profileImageUrl,
+                                  int mutualFriends,
+                                  int sharedPlaces
+) {}
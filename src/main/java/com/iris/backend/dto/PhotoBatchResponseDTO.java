@@ -0,0 +1,12 @@
+package com.iris.backend.dto;
+
+import java.util.List;
+
+/**
+ * Antwort von POST /api/v1/photos/batch?debug=true.
+ * Enthält die sichtbaren Fotos (in Anfrage-Reihenfolge) und pro abgelehnter ID den Grund.
+ */
+public record PhotoBatchResponseDTO(
+        List<PhotoResponseDTO> photos,
+        List<PhotoDenialDTO> denied
+) {}
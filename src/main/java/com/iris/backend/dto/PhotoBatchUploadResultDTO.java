@@ -0,0 +1,14 @@
+package com.iris.backend.dto;
+
+import java.util.UUID;
+
+/**
+ * Result of one file of a batch upload; exactly one of {@code photoId} and {@code error} is set.
+ *
+ * @param index the position of the file in the request
+ */
+public record PhotoBatchUploadResultDTO(
+        int index,
+        UUID photoId,
+        String error
+) {}
\ No newline at end of file
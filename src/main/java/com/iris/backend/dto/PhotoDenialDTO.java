@@ -0,0 +1,13 @@
+package com.iris.backend.dto;
+
+import com.iris.backend.model.enums.PhotoAccessDenialReason;
+
+import java.util.UUID;
+
+/**
+ * Eine angefragte Foto-ID, die nicht ausgeliefert wurde, inkl. Grund (nur im Debug-Modus).
+ */
+public record PhotoDenialDTO(
+        UUID photoId,
+        PhotoAccessDenialReason reason
+) {}
@@ -16,11 +16,17 @@ import java.util.UUID;
  * Fields:
  * - photoId: A UUID identifying the photo uniquely.
  * - storageUrl: The URL where the photo is stored and can be accessed.
+ * - thumbnailUrl / displayUrl: Smaller versions for grids and full-screen lists; the original
+ *   until the derivatives of a new photo have been created.
+ * - blurhash: Placeholder to show while loading; null until the derivatives exist.
  * - uploaderUsername: The username of the user who uploaded the photo.
  */
 public record PhotoResponseDTO(
         UUID photoId,
         String storageUrl,
+        String thumbnailUrl,
+        String displayUrl,
+        String blurhash,
         OffsetDateTime timestamp,
 
         // --- NEUE STRUKTUR ---
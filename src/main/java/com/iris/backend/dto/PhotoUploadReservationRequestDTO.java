@@ -0,0 +1,8 @@
+package com.iris.backend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record PhotoUploadReservationRequestDTO(
+        @NotBlank String fileName,
+        @NotBlank String contentType // Muss beim Upload als Content-Type mitgeschickt werden
+) {}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.iris.backend.dto;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * State of a resumable upload. The next chunk starts at {@code receivedBytes} and has {@code chunkSize}
+ * bytes, or the rest of the file if that is less. The session expires at {@code expiresAt} unless
+ * another chunk arrives before.
+ */
+public record PhotoUploadSessionDTO(
+        UUID sessionId,
+        long totalBytes,
+        int chunkSize,
+        long receivedBytes,
+        OffsetDateTime expiresAt
+) {}
@@ -0,0 +1,10 @@
+package com.iris.backend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+
+public record PhotoUploadSessionRequestDTO(
+        @NotBlank String fileName,
+        @NotBlank String contentType,
+        @Positive long totalBytes // Größe der ganzen Datei in Bytes
+) {}
@@ -0,0 +1,17 @@
+package com.iris.backend.dto;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Phase one of a direct upload: the client PUTs the file to {@code uploadUrl} with exactly the given
+ * headers and then finalizes the upload with {@code uploadToken}.
+ */
+public record PhotoUploadTicketDTO(
+        UUID uploadToken,
+        String uploadUrl,
+        Map<String, String> uploadHeaders,
+        OffsetDateTime uploadUrlExpiresAt,
+        OffsetDateTime finalizeBefore
+) {}
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.iris.backend.dto.feed;
+
+import com.iris.backend.dto.PhotoResponseDTO;
+
+import java.util.List;
+
+/**
+ * Eine Seite des Freunde-Feeds (neueste zuerst).
+ * {@code nextCursor} wird beim nächsten Aufruf als {@code cursor} mitgeschickt;
+ * {@code null} bedeutet, dass es keine weiteren Fotos gibt.
+ */
+public record FriendsFeedPageDTO(
+        List<PhotoResponseDTO> photos,
+        String nextCursor
+) {}
@@ -18,6 +18,8 @@ public record GalleryFeedItemDTO(
         double longitude,
         // --- Aggregierte Foto-Infos (aus der Query) ---
         String coverImageUrl,
+        String coverThumbnailUrl, // Kleine Fassung für Raster; das Cover selbst, solange es keine gibt
+        String coverBlurhash,     // Platzhalter beim Laden; null, wenn (noch) keiner existiert
         long photoCount,
         OffsetDateTime newestPhotoTimestamp,
 
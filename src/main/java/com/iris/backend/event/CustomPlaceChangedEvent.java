@@ -0,0 +1,12 @@
+package com.iris.backend.event;
+
+import com.iris.backend.model.CustomPlace;
+
+/**
+ * Published by {@code CustomPlaceService} after a Custom Place was created or updated. Listeners that
+ * keep derived in-memory state should use {@code @TransactionalEventListener} so a rolled-back change
+ * never reaches them.
+ *
+ * @param place the saved place
+ */
+public record CustomPlaceChangedEvent(CustomPlace place) {}
@@ -0,0 +1,9 @@
+package com.iris.backend.event;
+
+import java.util.UUID;
+
+/**
+ * Published by {@code FriendshipService} after a friendship between two users was requested,
+ * accepted, rejected or removed.
+ */
+public record FriendshipChangedEvent(UUID userOneId, UUID userTwoId) {}
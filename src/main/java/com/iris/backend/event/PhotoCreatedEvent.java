@@ -0,0 +1,17 @@
+package com.iris.backend.event;
+
+import com.iris.backend.model.Photo;
+
+/**
+ * Published by {@code PhotoService} after a photo was saved. Listeners that keep derived
+ * in-memory state should use {@code @TransactionalEventListener} so they only see committed photos.
+ *
+ * @param photo the saved photo; its place association (if any) is initialized
+ * @param duplicate whether the photo shares the file of an earlier photo with the same content
+ */
+public record PhotoCreatedEvent(Photo photo, boolean duplicate) {
+
+    public PhotoCreatedEvent(Photo photo) {
+        this(photo, false);
+    }
+}
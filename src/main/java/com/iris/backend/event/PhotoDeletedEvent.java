@@ -0,0 +1,8 @@
+package com.iris.backend.event;
+
+import java.util.UUID;
+
+/**
+ * Published by {@code PhotoService} after a photo was deleted, and by {@code PhotoExpirySweeper} for expired photos.
+ */
+public record PhotoDeletedEvent(UUID photoId) {}
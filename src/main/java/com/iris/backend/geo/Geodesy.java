@@ -0,0 +1,68 @@
+package com.iris.backend.geo;
+
+/**
+ * Distance on the WGS84 ellipsoid.
+ *
+ * PostGIS measures {@code geography} distances (e.g. in {@code ST_DWithin}) on the spheroid by default.
+ * In-memory code that has to give the same answers uses {@link #distanceMeters}, which implements
+ * Vincenty's inverse formula (sub-millimetre agreement for all but nearly antipodal points).
+ */
+public final class Geodesy {
+
+    private static final double A = 6_378_137d;
+    private static final double F = 1 / 298.257223563;
+    private static final double B = A * (1 - F);
+    private static final double MEAN_RADIUS = 6_371_008.8d;
+
+    private Geodesy() {
+    }
+
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        if (lat1 == lat2 && lon1 == lon2) {
+            return 0d;
+        }
+        double l = Math.toRadians(lon2 - lon1);
+        double u1 = Math.atan((1 - F) * Math.tan(Math.toRadians(lat1)));
+        double u2 = Math.atan((1 - F) * Math.tan(Math.toRadians(lat2)));
+        double sinU1 = Math.sin(u1), cosU1 = Math.cos(u1);
+        double sinU2 = Math.sin(u2), cosU2 = Math.cos(u2);
+
+        double lambda = l;
+        for (int i = 0; i < 200; i++) {
+            double sinLambda = Math.sin(lambda), cosLambda = Math.cos(lambda);
+            double sinSigma = Math.sqrt((cosU2 * sinLambda) * (cosU2 * sinLambda)
+                    + (cosU1 * sinU2 - sinU1 * cosU2 * cosLambda) * (cosU1 * sinU2 - sinU1 * cosU2 * cosLambda));
+            if (sinSigma == 0) {
+                return 0d;
+            }
+            double cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+            double sigma = Math.atan2(sinSigma, cosSigma);
+            double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+            double cosSqAlpha = 1 - sinAlpha * sinAlpha;
+            double cos2SigmaM = cosSqAlpha != 0 ? cosSigma - 2 * sinU1 * sinU2 / cosSqAlpha : 0;
+            double c = F / 16 * cosSqAlpha * (4 + F * (4 - 3 * cosSqAlpha));
+            double lambdaPrev = lambda;
+            lambda = l + (1 - c) * F * sinAlpha
+                    * (sigma + c * sinSigma * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+
+            if (Math.abs(lambda - lambdaPrev) < 1e-12) {
+                double uSq = cosSqAlpha * (A * A - B * B) / (B * B);
+                double bigA = 1 + uSq / 16384 * (4096 + uSq * (-768 + uSq * (320 - 175 * uSq)));
+                double bigB = uSq / 1024 * (256 + uSq * (-128 + uSq * (74 - 47 * uSq)));
+                double deltaSigma = bigB * sinSigma * (cos2SigmaM + bigB / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+                        - bigB / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+                return B * bigA * (sigma - deltaSigma);
+            }
+        }
+        // Keine Konvergenz (fast antipodale Punkte): Kugel-Näherung reicht dort
+        return haversineMeters(lat1, lon1, lat2, lon2);
+    }
+
+    static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * MEAN_RADIUS * Math.asin(Math.min(1d, Math.sqrt(h)));
+    }
+}
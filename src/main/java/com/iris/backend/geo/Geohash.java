@@ -0,0 +1,196 @@
+package com.iris.backend.geo;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Minimal geohash implementation (base32, standard bit interleaving starting with longitude).
+ *
+ * Besides {@link #encode} it can enumerate all cells of a given precision that intersect the
+ * bounding box of a circle, which is what the in-memory spatial indexes need for radius lookups,
+ * and decode a cell into its bounds and its eight neighbours.
+ */
+public final class Geohash {
+
+    private static final String BASE32_INDEX = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final char[] BASE32 = BASE32_INDEX.toCharArray();
+
+    // Kleinste Länge eines Breitengrads bzw. eines Längengrads am Äquator (WGS84) -> konservative Bounding-Box
+    private static final double MIN_METERS_PER_DEGREE_LAT = 110_574d;
+    private static final double METERS_PER_DEGREE_LON_AT_EQUATOR = 111_319.49d;
+
+    /**
+     * Bounding box of a cell in degrees.
+     */
+    public record Bounds(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        public double centerLatitude() {
+            return (minLatitude + maxLatitude) / 2;
+        }
+
+        public double centerLongitude() {
+            return (minLongitude + maxLongitude) / 2;
+        }
+    }
+
+    private Geohash() {
+    }
+
+    /**
+     * Encodes a coordinate.
+     *
+     * @param latitude  latitude in degrees
+     * @param longitude longitude in degrees
+     * @param precision number of characters (1..12)
+     * @return the geohash of the cell containing the coordinate
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        checkPrecision(precision);
+        long latCells = 1L << latBits(precision);
+        long lonCells = 1L << lonBits(precision);
+        return cell(clamp(latIndex(latitude, latCells), latCells), clamp(lonIndex(longitude, lonCells), lonCells), precision);
+    }
+
+    /**
+     * Returns all cells of the given precision that intersect the bounding box of the circle
+     * around the coordinate. The box is computed conservatively, so every point within
+     * {@code radiusMeters} lies in one of the returned cells.
+     */
+    public static Set<String> cellsCovering(double latitude, double longitude, double radiusMeters, int precision) {
+        checkPrecision(precision);
+        long latCells = 1L << latBits(precision);
+        long lonCells = 1L << lonBits(precision);
+
+        double deltaLat = radiusMeters / MIN_METERS_PER_DEGREE_LAT;
+        double minLat = Math.max(-90d, latitude - deltaLat);
+        double maxLat = Math.min(90d, latitude + deltaLat);
+
+        // Längengrade werden zum Pol hin kürzer: mit der polnächsten Breite der Box rechnen
+        double extremeLat = Math.min(89.999999d, Math.max(Math.abs(minLat), Math.abs(maxLat)));
+        double deltaLon = radiusMeters / (METERS_PER_DEGREE_LON_AT_EQUATOR * Math.cos(Math.toRadians(extremeLat)));
+
+        long fromLat = clamp(latIndex(minLat, latCells), latCells);
+        long toLat = clamp(latIndex(maxLat, latCells), latCells);
+        long fromLon = lonIndex(longitude - deltaLon, lonCells);
+        long toLon = lonIndex(longitude + deltaLon, lonCells);
+        if (toLon - fromLon + 1 >= lonCells) {
+            fromLon = 0;
+            toLon = lonCells - 1;
+        }
+
+        Set<String> cells = new HashSet<>();
+        for (long latIdx = fromLat; latIdx <= toLat; latIdx++) {
+            for (long lonIdx = fromLon; lonIdx <= toLon; lonIdx++) {
+                // Über die Datumsgrenze hinweg wieder auf der anderen Seite anfangen
+                cells.add(cell(latIdx, Math.floorMod(lonIdx, lonCells), precision));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Decodes a cell into its bounding box.
+     *
+     * @throws IllegalArgumentException if the string is not a valid geohash
+     */
+    public static Bounds bounds(String cell) {
+        long[] indices = indices(cell);
+        double latSize = 180d / (1L << latBits(cell.length()));
+        double lonSize = 360d / (1L << lonBits(cell.length()));
+        double minLat = indices[0] * latSize - 90d;
+        double minLon = indices[1] * lonSize - 180d;
+        return new Bounds(minLat, minLon, minLat + latSize, minLon + lonSize);
+    }
+
+    /**
+     * Returns the (up to) eight cells of the same precision around a cell. Across the date line
+     * the neighbours wrap around; at the poles there is nothing above/below.
+     *
+     * @throws IllegalArgumentException if the string is not a valid geohash
+     */
+    public static Set<String> neighbors(String cell) {
+        long[] indices = indices(cell);
+        int precision = cell.length();
+        long latCells = 1L << latBits(precision);
+        long lonCells = 1L << lonBits(precision);
+
+        Set<String> neighbors = new HashSet<>();
+        for (long dLat = -1; dLat <= 1; dLat++) {
+            long latIdx = indices[0] + dLat;
+            if (latIdx < 0 || latIdx >= latCells) {
+                continue;
+            }
+            for (long dLon = -1; dLon <= 1; dLon++) {
+                neighbors.add(cell(latIdx, Math.floorMod(indices[1] + dLon, lonCells), precision));
+            }
+        }
+        neighbors.remove(cell);
+        return neighbors;
+    }
+
+    // Umkehrung von cell(): liefert {latIndex, lonIndex}
+    private static long[] indices(String cell) {
+        if (cell == null) {
+            throw new IllegalArgumentException("Geohash must not be null");
+        }
+        checkPrecision(cell.length());
+        long latIndex = 0;
+        long lonIndex = 0;
+        for (int c = 0; c < cell.length(); c++) {
+            int value = BASE32_INDEX.indexOf(cell.charAt(c));
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid geohash: " + cell);
+            }
+            for (int b = 4; b >= 0; b--) {
+                long bit = (value >>> b) & 1;
+                if ((c * 5 + (4 - b)) % 2 == 0) {
+                    lonIndex = (lonIndex << 1) | bit;
+                } else {
+                    latIndex = (latIndex << 1) | bit;
+                }
+            }
+        }
+        return new long[]{latIndex, lonIndex};
+    }
+
+    private static long latIndex(double latitude, long cells) {
+        return (long) Math.floor((latitude + 90d) / 180d * cells);
+    }
+
+    private static long lonIndex(double longitude, long cells) {
+        return (long) Math.floor((longitude + 180d) / 360d * cells);
+    }
+
+    private static long clamp(long index, long cells) {
+        return Math.max(0, Math.min(cells - 1, index));
+    }
+
+    private static int lonBits(int precision) {
+        return (precision * 5 + 1) / 2;
+    }
+
+    private static int latBits(int precision) {
+        return precision * 5 / 2;
+    }
+
+    private static String cell(long latIndex, long lonIndex, int precision) {
+        int lonPos = lonBits(precision) - 1;
+        int latPos = latBits(precision) - 1;
+        char[] chars = new char[precision];
+        for (int c = 0; c < precision; c++) {
+            int value = 0;
+            for (int b = 0; b < 5; b++) {
+                // Gerade Bits kommen aus der Länge, ungerade aus der Breite
+                long bit = ((c * 5 + b) % 2 == 0) ? (lonIndex >>> lonPos--) & 1 : (latIndex >>> latPos--) & 1;
+                value = (value << 1) | (int) bit;
+            }
+            chars[c] = BASE32[value];
+        }
+        return new String(chars);
+    }
+
+    private static void checkPrecision(int precision) {
+        if (precision < 1 || precision > 12) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and 12: " + precision);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.iris.backend.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Minimal BlurHash encoder (see blurha.sh), compatible with the reference decoders on the clients.
+ *
+ * A hash is a short base83 string with the average colour and a few cosine components of the
+ * image; clients decode it into a blurred placeholder while the real image is loading. The cost is
+ * proportional to pixels times components, so callers should pass an already downscaled image
+ * (a few dozen pixels per edge are plenty).
+ */
+public final class Blurhash {
+
+    private static final char[] BASE83 =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~".toCharArray();
+
+    private Blurhash() {
+    }
+
+    /**
+     * Encodes an image.
+     *
+     * @param componentsX number of horizontal components (1-9)
+     * @param componentsY number of vertical components (1-9)
+     * @return the hash, {@code 4 + 2 * componentsX * componentsY} characters long
+     */
+    public static String encode(BufferedImage image, int componentsX, int componentsY) {
+        if (componentsX < 1 || componentsX > 9 || componentsY < 1 || componentsY > 9) {
+            throw new IllegalArgumentException("Blurhash components must be between 1 and 9");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rgb = image.getRGB(0, 0, width, height, null, 0, width);
+
+        // Pixel einmal linearisieren statt pro Komponente
+        double[] red = new double[rgb.length];
+        double[] green = new double[rgb.length];
+        double[] blue = new double[rgb.length];
+        for (int i = 0; i < rgb.length; i++) {
+            red[i] = sRgbToLinear((rgb[i] >> 16) & 0xFF);
+            green[i] = sRgbToLinear((rgb[i] >> 8) & 0xFF);
+            blue[i] = sRgbToLinear(rgb[i] & 0xFF);
+        }
+
+        double[][] factors = new double[componentsX * componentsY][];
+        for (int j = 0; j < componentsY; j++) {
+            for (int i = 0; i < componentsX; i++) {
+                factors[j * componentsX + i] = factor(red, green, blue, width, height, i, j);
+            }
+        }
+
+        StringBuilder hash = new StringBuilder(4 + 2 * factors.length);
+        encode83(hash, (componentsX - 1) + (componentsY - 1) * 9, 1);
+
+        double maximumValue;
+        if (factors.length > 1) {
+            double actualMaximum = 0;
+            for (int k = 1; k < factors.length; k++) {
+                for (double value : factors[k]) {
+                    actualMaximum = Math.max(actualMaximum, Math.abs(value));
+                }
+            }
+            int quantisedMaximum = (int) Math.max(0, Math.min(82, Math.floor(actualMaximum * 166 - 0.5)));
+            maximumValue = (quantisedMaximum + 1) / 166d;
+            encode83(hash, quantisedMaximum, 1);
+        } else {
+            maximumValue = 1;
+            encode83(hash, 0, 1);
+        }
+
+        double[] dc = factors[0];
+        encode83(hash, (linearToSRgb(dc[0]) << 16) + (linearToSRgb(dc[1]) << 8) + linearToSRgb(dc[2]), 4);
+        for (int k = 1; k < factors.length; k++) {
+            double[] ac = factors[k];
+            encode83(hash, quantiseAc(ac[0], maximumValue) * 19 * 19
+                    + quantiseAc(ac[1], maximumValue) * 19
+                    + quantiseAc(ac[2], maximumValue), 2);
+        }
+        return hash.toString();
+    }
+
+    private static double[] factor(double[] red, double[] green, double[] blue, int width, int height, int i, int j) {
+        double r = 0;
+        double g = 0;
+        double b = 0;
+        for (int y = 0; y < height; y++) {
+            double basisY = Math.cos(Math.PI * j * y / height);
+            for (int x = 0; x < width; x++) {
+                double basis = Math.cos(Math.PI * i * x / width) * basisY;
+                int pixel = y * width + x;
+                r += basis * red[pixel];
+                g += basis * green[pixel];
+                b += basis * blue[pixel];
+            }
+        }
+        double scale = (i == 0 && j == 0 ? 1d : 2d) / (width * height);
+        return new double[]{r * scale, g * scale, b * scale};
+    }
+
+    private static int quantiseAc(double value, double maximumValue) {
+        return (int) Math.max(0, Math.min(18, Math.floor(signPow(value / maximumValue, 0.5) * 9 + 9.5)));
+    }
+
+    private static double signPow(double value, double exponent) {
+        return Math.copySign(Math.pow(Math.abs(value), exponent), value);
+    }
+
+    private static double sRgbToLinear(int value) {
+        double v = value / 255d;
+        return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+    }
+
+    private static int linearToSRgb(double value) {
+        double v = Math.max(0, Math.min(1, value));
+        return v <= 0.0031308
+                ? (int) (v * 12.92 * 255 + 0.5)
+                : (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private static void encode83(StringBuilder hash, int value, int length) {
+        for (int i = 1; i <= length; i++) {
+            int divisor = 1;
+            for (int k = 0; k < length - i; k++) {
+                divisor *= 83;
+            }
+            hash.append(BASE83[(value / divisor) % 83]);
+        }
+    }
+}
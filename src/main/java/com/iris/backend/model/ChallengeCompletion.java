@@ -24,8 +24,9 @@ public class ChallengeCompletion {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    // Kein Fremdschlüssel, siehe PhotoLike.photo
     @OneToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "photo_id")
+    @JoinColumn(name = "photo_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Photo photo; // Das "Beweis"-Foto
 
     @Column(name = "completed_at", nullable = false)
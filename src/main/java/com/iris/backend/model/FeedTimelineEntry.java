@@ -0,0 +1,38 @@
+package com.iris.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * One photo in the friends feed of one user (fan-out-on-write timeline).
+ *
+ * When a FRIENDS or VISIBLE_TO_ALL photo is uploaded, one row per accepted friend of the uploader
+ * is written. Reading a feed page is then a single index range scan on
+ * (recipient_id, uploaded_at, photo_id) instead of a query over all friends' photos.
+ * Rows carry plain IDs (no associations) and are removed once {@code expiresAt} has passed.
+ */
+@Entity
+@Table(name = "feed_timeline", indexes = {
+        @Index(name = "idx_feed_timeline_page", columnList = "recipient_id, uploaded_at, photo_id"),
+        @Index(name = "idx_feed_timeline_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+public class FeedTimelineEntry {
+
+    @EmbeddedId
+    private FeedTimelineEntryId id;
+
+    @Column(name = "uploader_id", nullable = false)
+    private UUID uploaderId;
+
+    @Column(name = "uploaded_at", nullable = false)
+    private OffsetDateTime uploadedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+}
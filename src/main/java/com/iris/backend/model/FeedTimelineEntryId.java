@@ -0,0 +1,30 @@
+package com.iris.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@EqualsAndHashCode
+public class FeedTimelineEntryId implements Serializable {
+
+    @Column(name = "recipient_id")
+    private UUID recipientId;
+
+    @Column(name = "photo_id")
+    private UUID photoId;
+
+    public FeedTimelineEntryId(UUID recipientId, UUID photoId) {
+        this.recipientId = recipientId;
+        this.photoId = photoId;
+    }
+}
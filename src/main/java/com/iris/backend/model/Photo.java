@@ -5,15 +5,28 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import org.locationtech.jts.geom.Point;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
+// In PostgreSQL nach uploaded_at partitioniert (siehe PhotoPartitionManager), Primärschlüssel dort (id, uploaded_at)
 @Entity
-@Table(name = "photos")
+@Table(name = "photos", indexes = {
+        // Für den Ablauf-Sweep von place_stats und die Uploader-Prüfung beim Hochladen
+        @Index(name = "idx_photos_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_photos_google_place_uploader", columnList = "google_place_id, uploader_id"),
+        @Index(name = "idx_photos_custom_place_uploader", columnList = "custom_place_id, uploader_id"),
+        // Für die Deduplizierung gleicher Dateien eines Uploaders
+        @Index(name = "idx_photos_uploader_content_hash", columnList = "uploader_id, content_hash")
+})
 @Getter
 @Setter
 public class Photo {
 
+    // Lebensdauer ab dem Upload: PUBLIC ("Nur Spot") kürzer, alle anderen MAX_LIFETIME
+    public static final Duration PUBLIC_LIFETIME = Duration.ofHours(48);
+    public static final Duration MAX_LIFETIME = Duration.ofDays(7);
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
@@ -42,6 +55,20 @@ public class Photo {
     @Column(name = "storage_url", nullable = false, length = 1024)
     private String storageUrl;
 
+    // Verkleinerte Fassungen für Listen; null, bis die Derivate nach dem Upload erzeugt wurden
+    @Column(name = "thumbnail_storage_url", length = 1024)
+    private String thumbnailStorageUrl;
+
+    @Column(name = "display_storage_url", length = 1024)
+    private String displayStorageUrl;
+
+    @Column(name = "blurhash", length = 64)
+    private String blurhash;
+
+    // SHA-256 (hex) der Originaldatei; null bei Direkt-Uploads, deren Bytes das Backend nie sieht
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(name = "uploaded_at", nullable = false)
     private OffsetDateTime uploadedAt;
 
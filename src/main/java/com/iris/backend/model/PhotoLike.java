@@ -18,8 +18,11 @@ public class PhotoLike {
     @MapsId("userId")
     private User user;
 
+    // Kein Fremdschlüssel: photos ist partitioniert und id allein dort nicht eindeutig indexiert.
+    // Likes werden zusammen mit dem Foto gelöscht (PhotoService, PhotoExpirySweeper).
     @ManyToOne(fetch = FetchType.LAZY)
     @MapsId("photoId")
+    @JoinColumn(name = "photo_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Photo photo;
 
     @Column(name = "liked_at", nullable = false)
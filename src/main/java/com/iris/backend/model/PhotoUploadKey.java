@@ -0,0 +1,45 @@
+package com.iris.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * An {@code Idempotency-Key} a client sent with a photo upload.
+ *
+ * The key is claimed in the transaction that creates the photo and then points to it, so a retry of
+ * the same request returns the original photo instead of creating a second one. Keys are only
+ * remembered until {@code expiresAt}; expired keys are swept and may be used again.
+ */
+@Entity
+@Table(name = "photo_upload_keys", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_photo_upload_keys_uploader_key", columnNames = {"uploader_id", "idempotency_key"})
+}, indexes = {
+        @Index(name = "idx_photo_upload_keys_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+public class PhotoUploadKey {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "uploader_id", nullable = false)
+    private UUID uploaderId;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    // Kein Fremdschlüssel: das Foto darf vor dem Schlüssel gelöscht werden
+    @Column(name = "photo_id")
+    private UUID photoId;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+}
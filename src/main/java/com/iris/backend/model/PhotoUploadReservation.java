@@ -0,0 +1,43 @@
+package com.iris.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * An object name in the photos bucket reserved for a direct-to-storage upload.
+ *
+ * The client uploads the file with a signed PUT URL and then finalizes the upload with the reservation
+ * ID as upload token, which creates the photo and removes the reservation. Reservations that are not
+ * finalized before {@code expiresAt} are swept together with their object.
+ */
+@Entity
+@Table(name = "photo_upload_reservations", indexes = {
+        @Index(name = "idx_photo_upload_reservations_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+public class PhotoUploadReservation {
+
+    // Zugleich das Upload-Token; zufällig vom Server vergeben
+    @Id
+    private UUID id;
+
+    @Column(name = "uploader_id", nullable = false)
+    private UUID uploaderId;
+
+    @Column(name = "object_name", nullable = false, length = 1024)
+    private String objectName;
+
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+}
@@ -0,0 +1,55 @@
+package com.iris.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A resumable photo upload in progress.
+ *
+ * The client sends the file in chunks of {@code chunkSize} bytes (only the last one may be shorter); every
+ * chunk is stored as an object of its own and {@code receivedBytes} is the offset of the next chunk. After a
+ * dropped connection the client reads the offset and continues there. Finalizing assembles the chunks into
+ * {@code objectName} and creates the photo. Sessions without a chunk for longer than the session TTL expire
+ * and are swept together with their chunks.
+ */
+@Entity
+@Table(name = "photo_upload_sessions", indexes = {
+        @Index(name = "idx_photo_upload_sessions_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+public class PhotoUploadSession {
+
+    // Zugleich das Session-Token; zufällig vom Server vergeben
+    @Id
+    private UUID id;
+
+    @Column(name = "uploader_id", nullable = false)
+    private UUID uploaderId;
+
+    // Die Chunks heißen objectName + ".part-<Index>"; das fertige Foto bekommt je Finalize-Versuch einen davon abgeleiteten Namen
+    @Column(name = "object_name", nullable = false, length = 1024)
+    private String objectName;
+
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    @Column(name = "total_bytes", nullable = false)
+    private long totalBytes;
+
+    @Column(name = "chunk_size", nullable = false)
+    private int chunkSize;
+
+    @Column(name = "received_bytes", nullable = false)
+    private long receivedBytes;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+}
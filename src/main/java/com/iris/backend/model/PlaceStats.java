@@ -0,0 +1,75 @@
+package com.iris.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Materialized photo statistics of one Google Place or Custom Place (exactly one of the two IDs is set).
+ *
+ * Feed items read their photo count, participant count and cover from this row instead of aggregating
+ * the place's photos. The row is updated in the same transaction as photo uploads and deletions, and
+ * places whose photos expired are recomputed by a periodic sweep (see {@code PlaceStatsService}).
+ *
+ * Photo counts only include photos that have not expired. The uploader count covers everyone who ever
+ * uploaded at the place, including photos that were deleted or swept since; it is the estimate of the uploader sketch (exact up to 256 uploaders, HyperLogLog above).
+ * The cover is the newest non-expired PUBLIC photo; its thumbnail and blurhash are filled in once the
+ * photo's derivatives exist.
+ */
+@Entity
+@Table(name = "place_stats", indexes = {
+        // Derivate eines fertig verarbeiteten Fotos werden über sein Original beim Cover hinterlegt
+        @Index(name = "idx_place_stats_cover_storage_url", columnList = "cover_storage_url")
+})
+@Getter
+@Setter
+public class PlaceStats {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "google_place_id", unique = true)
+    private Long googlePlaceId;
+
+    @Column(name = "custom_place_id", unique = true)
+    private UUID customPlaceId;
+
+    @Column(name = "public_photo_count", nullable = false)
+    private long publicPhotoCount;
+
+    @Column(name = "friends_photo_count", nullable = false)
+    private long friendsPhotoCount;
+
+    @Column(name = "visible_to_all_photo_count", nullable = false)
+    private long visibleToAllPhotoCount;
+
+    @Column(name = "uploader_count", nullable = false)
+    private long uploaderCount;
+
+    // Serialisierte UploaderSketch; null bis zum ersten Upload bzw. Rebuild
+    @Column(name = "uploader_sketch")
+    private byte[] uploaderSketch;
+
+    @Column(name = "cover_storage_url", length = 1024)
+    private String coverStorageUrl;
+
+    @Column(name = "cover_uploaded_at")
+    private OffsetDateTime coverUploadedAt;
+
+    // Derivate des Covers (siehe Photo); null, solange sie noch nicht erzeugt wurden
+    @Column(name = "cover_thumbnail_storage_url", length = 1024)
+    private String coverThumbnailStorageUrl;
+
+    @Column(name = "cover_blurhash", length = 64)
+    private String coverBlurhash;
+
+    /**
+     * Number of non-expired photos of any visibility (what the owner of a Custom Place sees).
+     */
+    public long getTotalPhotoCount() {
+        return publicPhotoCount + friendsPhotoCount + visibleToAllPhotoCount;
+    }
+}
@@ -0,0 +1,36 @@
+package com.iris.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Watermark of the {@code place_stats} expiry sweep, shared by all instances (a single row).
+ *
+ * Photos that expired up to {@code sweptUntil} are already counted out of their places. The instance
+ * that sweeps locks the row until commit; the others skip that round, so every interval is swept once.
+ * The row is created by the one-time backfill (see {@code PlaceStatsService}).
+ */
+@Entity
+@Table(name = "place_stats_sweep")
+@Getter
+@Setter
+@NoArgsConstructor
+public class PlaceStatsSweep {
+
+    public static final int ID = 1;
+
+    @Id
+    private int id;
+
+    @Column(name = "swept_until", nullable = false)
+    private OffsetDateTime sweptUntil;
+
+    public PlaceStatsSweep(int id, OffsetDateTime sweptUntil) {
+        this.id = id;
+        this.sweptUntil = sweptUntil;
+    }
+}
@@ -0,0 +1,12 @@
+package com.iris.backend.model.enums;
+
+/**
+ * Reason why a requested photo was not returned to the caller.
+ *
+ * - NOT_FOUND: No photo exists with the requested ID (or it was already deleted).
+ * - NOT_FRIENDS: The photo is FRIENDS-only and the caller is not an accepted friend of the uploader.
+ */
+public enum PhotoAccessDenialReason {
+    NOT_FOUND,
+    NOT_FRIENDS
+}
@@ -1,11 +1,25 @@
 package com.iris.backend.repository;
 import com.iris.backend.model.ChallengeCompletion;
+import com.iris.backend.model.Photo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 public interface ChallengeCompletionRepository extends JpaRepository<ChallengeCompletion, UUID> {
     // Zählt die Abschlüsse für eine Challenge
     int countByChallengeId(UUID placeChallengeId);
     List<ChallengeCompletion> findByChallengeId(UUID placeChallengeId);
-}
\ No newline at end of file
+
+    // Lädt alle Beweis-Fotos einer Challenge in einer Query (statt completion.getPhoto() pro Eintrag)
+    @Query("SELECT c.photo FROM ChallengeCompletion c WHERE c.challenge.id = :challengeId")
+    List<Photo> findPhotosByChallengeId(@Param("challengeId") UUID challengeId);
+
+    // Abschlüsse, deren Beweis-Foto gelöscht wird (Expiry-Sweep)
+    @Modifying
+    @Query("DELETE FROM ChallengeCompletion c WHERE c.photo.id IN :photoIds")
+    int deleteByPhotoIds(@Param("photoIds") Collection<UUID> photoIds);
+}
@@ -7,7 +7,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import com.iris.backend.model.User;
-import java.util.List;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -34,4 +35,36 @@ public interface CustomPlaceRepository extends JpaRepository<CustomPlace, UUID>
     List<CustomPlace> findAllByCreatorOrderByCreatedAtDesc(User creator);
 
     List<CustomPlace> findAllByIsTrendingTrueOrderByCreatedAtDesc();
-}
\ No newline at end of file
+
+    /**
+     * Lädt mehrere Custom Places inklusive Owner mit einer Query (kein Lazy-Load pro Ort).
+     */
+    @Query("SELECT cp FROM CustomPlace cp JOIN FETCH cp.owner WHERE cp.id IN :ids")
+    List<CustomPlace> findAllWithOwnerByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Geometrie aller Spots, die jetzt live und nicht abgelaufen sind (für den Geofence-Index).
+     */
+    @Query(value = """
+        SELECT
+            cp.id AS id,
+            ST_Y(cp.location::geometry) AS latitude,
+            ST_X(cp.location::geometry) AS longitude,
+            cp.radius_meters AS radiusMeters,
+            cp.created_at AS createdAt,
+            cp.expires_at AS expiresAt
+        FROM custom_places cp
+        WHERE cp.is_live = true
+          AND cp.expires_at > NOW()
+        """, nativeQuery = true)
+    List<GeofenceProjection> findLiveGeofences();
+
+    interface GeofenceProjection {
+        UUID getId();
+        Double getLatitude();
+        Double getLongitude();
+        Integer getRadiusMeters();
+        Instant getCreatedAt();
+        Instant getExpiresAt();
+    }
+}
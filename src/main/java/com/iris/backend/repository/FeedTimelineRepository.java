@@ -0,0 +1,160 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.FeedTimelineEntry;
+import com.iris.backend.model.FeedTimelineEntryId;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface FeedTimelineRepository extends JpaRepository<FeedTimelineEntry, FeedTimelineEntryId> {
+
+    /**
+     * Eine Seite der Timeline eines Users (Keyset-Pagination, neueste zuerst).
+     * Liefert nur Einträge, die echt "hinter" dem Cursor (uploadedAt, photoId) liegen.
+     */
+    @Query("""
+        SELECT t FROM FeedTimelineEntry t
+        WHERE t.id.recipientId = :recipientId
+          AND t.expiresAt > :now
+          AND (t.uploadedAt < :cursorUploadedAt
+               OR (t.uploadedAt = :cursorUploadedAt AND t.id.photoId < :cursorPhotoId))
+        ORDER BY t.uploadedAt DESC, t.id.photoId DESC
+    """)
+    List<FeedTimelineEntry> findPage(@Param("recipientId") UUID recipientId,
+                                     @Param("now") OffsetDateTime now,
+                                     @Param("cursorUploadedAt") OffsetDateTime cursorUploadedAt,
+                                     @Param("cursorPhotoId") UUID cursorPhotoId,
+                                     Limit limit);
+
+    /**
+     * Fan-out-on-write: schreibt das Foto mit einem einzigen INSERT ... SELECT
+     * in die Timeline aller akzeptierten Freunde des Uploaders.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO feed_timeline (recipient_id, photo_id, uploader_id, uploaded_at, expires_at)
+        SELECT CASE WHEN f.user_one_id = :uploaderId THEN f.user_two_id ELSE f.user_one_id END,
+               :photoId, :uploaderId, :uploadedAt, :expiresAt
+        FROM friendships f
+        WHERE (f.user_one_id = :uploaderId OR f.user_two_id = :uploaderId)
+          AND f.status = 'ACCEPTED'
+        ON CONFLICT DO NOTHING
+    """, nativeQuery = true)
+    int fanOutToFriends(@Param("photoId") UUID photoId,
+                        @Param("uploaderId") UUID uploaderId,
+                        @Param("uploadedAt") OffsetDateTime uploadedAt,
+                        @Param("expiresAt") OffsetDateTime expiresAt);
+
+    /**
+     * Übernimmt alle noch gültigen Feed-Fotos eines Uploaders in die Timeline eines Empfängers
+     * (z.B. nach einer neuen Freundschaft).
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO feed_timeline (recipient_id, photo_id, uploader_id, uploaded_at, expires_at)
+        SELECT :recipientId, p.id, p.uploader_id, p.uploaded_at, p.expires_at
+        FROM photos p
+        WHERE p.uploader_id = :uploaderId
+          AND p.visibility IN ('FRIENDS', 'VISIBLE_TO_ALL')
+          AND p.expires_at > :now
+        ON CONFLICT DO NOTHING
+    """, nativeQuery = true)
+    int backfillFromUploader(@Param("recipientId") UUID recipientId,
+                             @Param("uploaderId") UUID uploaderId,
+                             @Param("now") OffsetDateTime now);
+
+    /**
+     * Übernimmt die noch gültigen Feed-Fotos eines Uploaders in die Timelines aller seiner Freunde.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO feed_timeline (recipient_id, photo_id, uploader_id, uploaded_at, expires_at)
+        SELECT CASE WHEN f.user_one_id = p.uploader_id THEN f.user_two_id ELSE f.user_one_id END,
+               p.id, p.uploader_id, p.uploaded_at, p.expires_at
+        FROM photos p
+        JOIN friendships f ON (f.user_one_id = p.uploader_id OR f.user_two_id = p.uploader_id)
+                          AND f.status = 'ACCEPTED'
+        WHERE p.uploader_id = :uploaderId
+          AND p.visibility IN ('FRIENDS', 'VISIBLE_TO_ALL')
+          AND p.expires_at > :now
+        ON CONFLICT DO NOTHING
+    """, nativeQuery = true)
+    int backfillToAllFriends(@Param("uploaderId") UUID uploaderId, @Param("now") OffsetDateTime now);
+
+    /**
+     * Rollout-Backfill: übernimmt alle noch gültigen Feed-Fotos in die Timelines der akzeptierten Freunde
+     * ihrer Uploader, außer für Uploader mit mehr als {@code maxFriends} Freunden (die werden beim Lesen gemischt).
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO feed_timeline (recipient_id, photo_id, uploader_id, uploaded_at, expires_at)
+        SELECT CASE WHEN f.user_one_id = p.uploader_id THEN f.user_two_id ELSE f.user_one_id END,
+               p.id, p.uploader_id, p.uploaded_at, p.expires_at
+        FROM photos p
+        JOIN friendships f ON (f.user_one_id = p.uploader_id OR f.user_two_id = p.uploader_id)
+                          AND f.status = 'ACCEPTED'
+        WHERE p.visibility IN ('FRIENDS', 'VISIBLE_TO_ALL')
+          AND p.expires_at > :now
+          AND p.uploader_id NOT IN (
+              SELECT x.user_id
+              FROM (
+                  SELECT d.user_one_id AS user_id FROM friendships d WHERE d.status = 'ACCEPTED'
+                  UNION ALL
+                  SELECT d.user_two_id AS user_id FROM friendships d WHERE d.status = 'ACCEPTED'
+              ) x
+              GROUP BY x.user_id
+              HAVING COUNT(*) > :maxFriends
+          )
+        ON CONFLICT DO NOTHING
+    """, nativeQuery = true)
+    int backfillAll(@Param("now") OffsetDateTime now, @Param("maxFriends") int maxFriends);
+
+    /**
+     * Ob es Einträge gibt, die vor {@code before} hochgeladen wurden (d.h. die Timeline wurde schon befüllt).
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM feed_timeline WHERE uploaded_at < :before)", nativeQuery = true)
+    boolean existsUploadedBefore(@Param("before") OffsetDateTime before);
+
+    /**
+     * Transaktionsgebundener Advisory Lock, damit nur eine Instanz den Backfill ausführt.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryAdvisoryXactLock(@Param("key") long key);
+
+    @Modifying
+    @Query("""
+        DELETE FROM FeedTimelineEntry t
+        WHERE (t.id.recipientId = :userA AND t.uploaderId = :userB)
+           OR (t.id.recipientId = :userB AND t.uploaderId = :userA)
+    """)
+    int deleteBetweenUsers(@Param("userA") UUID userA, @Param("userB") UUID userB);
+
+    @Modifying
+    @Query("DELETE FROM FeedTimelineEntry t WHERE t.id.photoId = :photoId")
+    int deleteByPhotoId(@Param("photoId") UUID photoId);
+
+    /**
+     * Löscht höchstens {@code batchSize} abgelaufene Einträge. In kleinen Portionen,
+     * damit das Aufräumen keine langen Locks auf der Tabelle hält. Jede Portion läuft in einer eigenen Transaktion.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        DELETE FROM feed_timeline
+        WHERE ctid IN (
+            SELECT ctid FROM feed_timeline
+            WHERE expires_at <= :now
+            LIMIT :batchSize
+        )
+    """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") OffsetDateTime now, @Param("batchSize") int batchSize);
+}
@@ -2,11 +2,14 @@ package com.iris.backend.repository;
 
 import com.iris.backend.model.Friendship;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import com.iris.backend.model.User;
 import com.iris.backend.model.enums.FriendshipStatus;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -35,6 +38,92 @@ public interface FriendshipRepository extends JpaRepository<Friendship, UUID> {
     """)
     List<Friendship> findFriendsSortedByInteraction(@Param("user") User user);
 
+    /**
+     * Lädt nur die IDs aller akzeptierten Freunde eines Users (reine Projektion, keine User-Entities).
+     */
+    @Query("""
+        SELECT CASE WHEN f.userOne.id = :userId THEN f.userTwo.id ELSE f.userOne.id END
+        FROM Friendship f
+        WHERE (f.userOne.id = :userId OR f.userTwo.id = :userId)
+          AND f.status = 'ACCEPTED'
+    """)
+    List<UUID> findAcceptedFriendIds(@Param("userId") UUID userId);
+
+    /**
+     * Prüft direkt in der Datenbank, ob zwei User akzeptierte Freunde sind (für Berechtigungsprüfungen).
+     */
+    @Query("""
+        SELECT CASE WHEN COUNT(f) > 0 THEN true ELSE false END
+        FROM Friendship f
+        WHERE ((f.userOne.id = :userA AND f.userTwo.id = :userB)
+           OR (f.userOne.id = :userB AND f.userTwo.id = :userA))
+          AND f.status = 'ACCEPTED'
+    """)
+    boolean existsAcceptedFriendship(@Param("userA") UUID userA, @Param("userB") UUID userB);
+
+    /**
+     * Alle Beziehungen eines Users (Freund oder offene Anfrage in eine der beiden Richtungen) als
+     * ID plus Status. Es werden nur die Fremdschlüssel gelesen, keine User-Entities.
+     */
+    @Query("""
+        SELECT CASE WHEN f.userOne.id = :userId THEN f.userTwo.id ELSE f.userOne.id END AS userId,
+               f.status AS status
+        FROM Friendship f
+        WHERE f.userOne.id = :userId OR f.userTwo.id = :userId
+    """)
+    List<RelationProjection> findRelations(@Param("userId") UUID userId);
+
+    interface RelationProjection {
+        UUID getUserId();
+        FriendshipStatus getStatus();
+    }
+
+    /**
+     * Der ganze Freundschaftsgraph als ID-Paare plus Status (für den Batch der Freundesvorschläge).
+     */
+    @Query("SELECT f.userOne.id AS userOneId, f.userTwo.id AS userTwoId, f.status AS status FROM Friendship f")
+    List<EdgeProjection> findAllEdges();
+
+    interface EdgeProjection {
+        UUID getUserOneId();
+        UUID getUserTwoId();
+        FriendshipStatus getStatus();
+    }
+
+    /**
+     * Alle User mit mehr als {@code threshold} akzeptierten Freunden (Fan-out-Grenze des Freunde-Feeds).
+     */
+    @Query(value = """
+        SELECT x.user_id
+        FROM (
+            SELECT f.user_one_id AS user_id FROM friendships f WHERE f.status = 'ACCEPTED'
+            UNION ALL
+            SELECT f.user_two_id AS user_id FROM friendships f WHERE f.status = 'ACCEPTED'
+        ) x
+        GROUP BY x.user_id
+        HAVING COUNT(*) > :threshold
+    """, nativeQuery = true)
+    List<UUID> findUserIdsWithMoreAcceptedFriendsThan(@Param("threshold") int threshold);
+
+    /**
+     * Addiert gesammelte Interaktionen mit einem UPDATE ... FROM auf die akzeptierten Freundschaften
+     * (write-behind der InteractionSink). Erwartet ein JSON-Array mit {@code userOneId}, {@code userTwoId},
+     * {@code increment} und {@code lastInteractedAt}; die Reihenfolge der beiden User spielt keine Rolle.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE friendships f
+        SET interaction_score = f.interaction_score + r.increment,
+            last_interacted_at = GREATEST(f.last_interacted_at, r."lastInteractedAt")
+        FROM jsonb_to_recordset(CAST(:interactionsJson AS jsonb))
+            AS r("userOneId" uuid, "userTwoId" uuid, increment integer, "lastInteractedAt" timestamptz)
+        WHERE ((f.user_one_id = r."userOneId" AND f.user_two_id = r."userTwoId")
+            OR (f.user_one_id = r."userTwoId" AND f.user_two_id = r."userOneId"))
+          AND f.status = 'ACCEPTED'
+    """, nativeQuery = true)
+    int addInteractions(@Param("interactionsJson") String interactionsJson);
+
     // Hilfsmethode, um die Freundschaft zwischen zwei spezifischen Usern zu finden (für das Update)
     @Query("""
         SELECT f FROM Friendship f 
@@ -43,4 +132,38 @@ public interface FriendshipRepository extends JpaRepository<Friendship, UUID> {
           AND f.status = 'ACCEPTED'
     """)
     Optional<Friendship> findFriendshipBetweenUsers(@Param("userA") User userA, @Param("userB") User userB);
-}
\ No newline at end of file
+
+    /**
+     * Alle (Freund, Spot)-Paare: akzeptierte Freunde mit Standort-Update nach {@code since}, verknüpft mit
+     * allen Google Places bzw. aktiven Custom Places, in deren Radius ihr letzter Standort liegt.
+     * Ein einziger räumlicher Join, unabhängig von der Anzahl Freunde.
+     */
+    @Query(value = """
+        WITH active_friends AS (
+            SELECT u.id, u.last_location
+            FROM friendships f
+            JOIN users u ON u.id = CASE WHEN f.user_one_id = :userId THEN f.user_two_id ELSE f.user_one_id END
+            WHERE (f.user_one_id = :userId OR f.user_two_id = :userId)
+              AND f.status = 'ACCEPTED'
+              AND u.last_location IS NOT NULL
+              AND u.last_location_updated_at > :since
+        )
+        SELECT af.id AS friendId, gp.id AS googlePlaceId, NULL::uuid AS customPlaceId
+        FROM active_friends af
+        JOIN google_places gp ON ST_DWithin(gp.location, af.last_location, gp.radius_meters)
+        UNION ALL
+        SELECT af.id AS friendId, NULL::bigint AS googlePlaceId, cp.id AS customPlaceId
+        FROM active_friends af
+        JOIN custom_places cp ON cp.is_live = true
+            AND cp.expires_at > NOW()
+            AND ST_DWithin(cp.location, af.last_location, cp.radius_meters)
+    """, nativeQuery = true)
+    List<FriendAtSpotProjection> findActiveFriendsAtSpots(@Param("userId") UUID userId,
+                                                          @Param("since") OffsetDateTime since);
+
+    interface FriendAtSpotProjection {
+        UUID getFriendId();
+        Long getGooglePlaceId();
+        UUID getCustomPlaceId();
+    }
+}
@@ -7,6 +7,7 @@ import java.time.OffsetDateTime;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 @Repository
@@ -67,4 +68,63 @@ public interface GooglePlaceRepository extends JpaRepository<GooglePlace, Long>
             @Param("latitude") double latitude,
             @Param("longitude") double longitude
     );
-}
\ No newline at end of file
+
+    /**
+     * Geometrie aller Google Places mit Position und Radius (für den Geofence-Index).
+     */
+    @Query(value = """
+        SELECT
+            p.id AS id,
+            ST_Y(p.location::geometry) AS latitude,
+            ST_X(p.location::geometry) AS longitude,
+            p.radius_meters AS radiusMeters,
+            p.importance AS importance
+        FROM google_places p
+        WHERE p.location IS NOT NULL
+          AND p.radius_meters IS NOT NULL
+        """, nativeQuery = true)
+    List<GeofenceProjection> findAllGeofences();
+
+    interface GeofenceProjection {
+        Long getId();
+        Double getLatitude();
+        Double getLongitude();
+        Integer getRadiusMeters();
+        Integer getImportance();
+    }
+
+    /**
+     * Fügt alle Places aus einem JSON-Array in einem Statement ein bzw. aktualisiert sie
+     * (Schlüssel: google_place_id). Jede google_place_id darf im Array nur einmal vorkommen.
+     * Liefert pro Zeile die interne ID und ob sie neu angelegt wurde (xmax = 0 nur bei INSERT).
+     */
+    @Transactional
+    @Query(value = """
+        INSERT INTO google_places (google_place_id, name, address, location, radius_meters, importance, created_at)
+        SELECT
+            r."googlePlaceId",
+            r.name,
+            r.address,
+            ST_SetSRID(ST_MakePoint(r.longitude, r.latitude), 4326)::geography,
+            r."radiusMeters",
+            r.importance,
+            NOW()
+        FROM jsonb_to_recordset(CAST(:placesJson AS jsonb)) AS r(
+            "googlePlaceId" text, name text, address text, latitude float, longitude float,
+            "radiusMeters" int, importance int)
+        ON CONFLICT (google_place_id) DO UPDATE SET
+            name = EXCLUDED.name,
+            address = EXCLUDED.address,
+            location = EXCLUDED.location,
+            radius_meters = EXCLUDED.radius_meters,
+            importance = EXCLUDED.importance
+        RETURNING id AS id, google_place_id AS googlePlaceId, (xmax = 0) AS inserted
+        """, nativeQuery = true)
+    List<UpsertedPlace> upsertAll(@Param("placesJson") String placesJson);
+
+    interface UpsertedPlace {
+        Long getId();
+        String getGooglePlaceId();
+        boolean getInserted();
+    }
+}
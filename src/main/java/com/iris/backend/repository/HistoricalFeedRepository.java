@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -27,6 +28,8 @@ public interface HistoricalFeedRepository extends JpaRepository<com.iris.backend
             SELECT DISTINCT
                 p.id AS photo_id,
                 p.storage_url,
+                p.thumbnail_storage_url,
+                p.blurhash,
                 p.uploaded_at,
                 gp.id::text AS place_id,
                 gp.name,
@@ -40,21 +43,22 @@ public interface HistoricalFeedRepository extends JpaRepository<com.iris.backend
                 TRUE AS is_live,
                 NULL::timestamptz AS expires_at,
                 NULL::text AS custom_cover_image,
-                -- NEU: Zählt die einzigartigen Uploader für diesen Google Place
-                (SELECT COUNT(DISTINCT ph_sub.uploader_id)
-                 FROM photos ph_sub
-                 WHERE ph_sub.google_place_id = gp.id)::bigint AS participant_count,
+                -- Einzigartige Uploader aus place_stats statt einer Subquery pro Foto
+                COALESCE(ps.uploader_count, 0)::bigint AS participant_count,
                 NULL::text AS owner_id,
                 NULL::text AS owner_username,
                 NULL::text AS owner_profile_image_url
             FROM photos p
             JOIN google_places gp ON p.google_place_id = gp.id
+            LEFT JOIN place_stats ps ON ps.google_place_id = gp.id
             JOIN historical_points h ON ST_DWithin(
                 gp.location,
                 ST_MakePoint(h.longitude, h.latitude)::geography,
                 gp.radius_meters
             )
             WHERE (p.visibility = 'PUBLIC' OR p.visibility = 'VISIBLE_TO_ALL')
+              -- Konstante Grenzen für das Partition Pruning, die Bedingung pro Punkt reicht dafür nicht
+              AND p.uploaded_at BETWEEN :uploadedFrom AND :uploadedTo
               AND p.uploaded_at BETWEEN (h.timestamp - interval '5 hours') AND h.timestamp
         ),
         
@@ -63,6 +67,8 @@ public interface HistoricalFeedRepository extends JpaRepository<com.iris.backend
             SELECT DISTINCT
                 p.id AS photo_id,
                 p.storage_url,
+                p.thumbnail_storage_url,
+                p.blurhash,
                 p.uploaded_at,
                 cp.id::text AS place_id,
                 cp.name,
@@ -76,22 +82,23 @@ public interface HistoricalFeedRepository extends JpaRepository<com.iris.backend
                 cp.is_live,
                 cp.expires_at,
                 cp.cover_image_url AS custom_cover_image,
-                -- NEU: Zählt die einzigartigen Uploader für diesen Custom Place
-                (SELECT COUNT(DISTINCT ph_sub.uploader_id)
-                 FROM photos ph_sub
-                 WHERE ph_sub.custom_place_id = cp.id)::bigint AS participant_count,
+                -- Einzigartige Uploader aus place_stats statt einer Subquery pro Foto
+                COALESCE(ps.uploader_count, 0)::bigint AS participant_count,
                 u.id::text AS owner_id,
                 u.username AS owner_username,
                 u.profile_image_url AS owner_profile_image_url
             FROM photos p
             JOIN custom_places cp ON p.custom_place_id = cp.id
             JOIN users u ON cp.owner_id = u.id
+            LEFT JOIN place_stats ps ON ps.custom_place_id = cp.id
             JOIN historical_points h ON ST_DWithin(
                 cp.location,
                 ST_MakePoint(h.longitude, h.latitude)::geography,
                 cp.radius_meters
             )
             WHERE (p.visibility = 'PUBLIC' OR p.visibility = 'VISIBLE_TO_ALL')
+              -- Konstante Grenzen für das Partition Pruning, die Bedingung pro Punkt reicht dafür nicht
+              AND p.uploaded_at BETWEEN :uploadedFrom AND :uploadedTo
               AND p.uploaded_at BETWEEN (h.timestamp - interval '5 hours') AND h.timestamp
         ),
         
@@ -120,6 +127,9 @@ public interface HistoricalFeedRepository extends JpaRepository<com.iris.backend
                 MAX(participant_count) AS participant_count,
                 COUNT(photo_id) AS photo_count,
                 (ARRAY_AGG(storage_url ORDER BY uploaded_at DESC))[1] AS latest_user_photo,
+                -- Solange das neueste Foto keine Derivate hat, dient das Original als Thumbnail
+                (ARRAY_AGG(COALESCE(thumbnail_storage_url, storage_url) ORDER BY uploaded_at DESC))[1] AS latest_user_thumbnail,
+                (ARRAY_AGG(blurhash ORDER BY uploaded_at DESC))[1] AS latest_user_blurhash,
                 MAX(uploaded_at) AS newest_photo_timestamp,
                 MAX(owner_id) AS owner_id,
                 MAX(owner_username) AS owner_username,
@@ -135,6 +145,9 @@ public interface HistoricalFeedRepository extends JpaRepository<com.iris.backend
             latitude,
             longitude,
             COALESCE(custom_cover_image, latest_user_photo) AS coverImageUrl,
+            -- Eigene Coverbilder haben keine Derivate
+            COALESCE(custom_cover_image, latest_user_thumbnail) AS coverThumbnailUrl,
+            CASE WHEN custom_cover_image IS NULL THEN latest_user_blurhash END AS coverBlurhash,
             photo_count AS photoCount,
             newest_photo_timestamp::timestamptz AS newestPhotoTimestamp,
             CASE WHEN place_type = 'GOOGLE_POI' THEN place_id::bigint ELSE NULL END AS googlePlaceId,
@@ -153,15 +166,134 @@ public interface HistoricalFeedRepository extends JpaRepository<com.iris.backend
         ORDER BY newest_photo_timestamp DESC
     """, nativeQuery = true)
     List<GalleryFeedItemDTOProjection> findHistoricalFeed(
-            @Param("historyJson") String historyJson
+            @Param("historyJson") String historyJson,
+            @Param("uploadedFrom") OffsetDateTime uploadedFrom,
+            @Param("uploadedTo") OffsetDateTime uploadedTo
     );
 
+    /**
+     * Liefert nur die passenden Fotos (ohne Gruppierung und Orts-Daten) für einen Teil der History.
+     * Wird für lange Histories pro Chunk ausgeführt; die Ergebnisse werden danach im Service pro Ort
+     * zusammengeführt (ein Foto kann in mehreren Chunks vorkommen).
+     * {@code uploadedFrom}/{@code uploadedTo} sind die Grenzen aus {@code HistoricalUploadWindow} für den Chunk.
+     */
+    @Query(value = """
+        WITH historical_points AS (
+            SELECT
+                (value ->> 'latitude')::float AS latitude,
+                (value ->> 'longitude')::float AS longitude,
+                (value ->> 'timestamp')::timestamptz AS timestamp
+            FROM jsonb_array_elements(CAST(:historyJson AS jsonb))
+        )
+        SELECT
+            p.id AS photoId,
+            p.storage_url AS storageUrl,
+            p.thumbnail_storage_url AS thumbnailStorageUrl,
+            p.blurhash AS blurhash,
+            p.uploaded_at AS uploadedAt,
+            p.google_place_id AS googlePlaceId,
+            NULL::uuid AS customPlaceId
+        FROM photos p
+        JOIN google_places gp ON p.google_place_id = gp.id
+        WHERE (p.visibility = 'PUBLIC' OR p.visibility = 'VISIBLE_TO_ALL')
+          AND p.uploaded_at BETWEEN :uploadedFrom AND :uploadedTo
+          AND EXISTS (
+              SELECT 1 FROM historical_points h
+              WHERE ST_DWithin(gp.location, ST_MakePoint(h.longitude, h.latitude)::geography, gp.radius_meters)
+                AND p.uploaded_at BETWEEN (h.timestamp - interval '5 hours') AND h.timestamp
+          )
+        UNION ALL
+        SELECT
+            p.id AS photoId,
+            p.storage_url AS storageUrl,
+            p.thumbnail_storage_url AS thumbnailStorageUrl,
+            p.blurhash AS blurhash,
+            p.uploaded_at AS uploadedAt,
+            NULL::bigint AS googlePlaceId,
+            p.custom_place_id AS customPlaceId
+        FROM photos p
+        JOIN custom_places cp ON p.custom_place_id = cp.id
+        WHERE (p.visibility = 'PUBLIC' OR p.visibility = 'VISIBLE_TO_ALL')
+          AND p.uploaded_at BETWEEN :uploadedFrom AND :uploadedTo
+          AND EXISTS (
+              SELECT 1 FROM historical_points h
+              WHERE ST_DWithin(cp.location, ST_MakePoint(h.longitude, h.latitude)::geography, cp.radius_meters)
+                AND p.uploaded_at BETWEEN (h.timestamp - interval '5 hours') AND h.timestamp
+          )
+    """, nativeQuery = true)
+    List<HistoricalMatchProjection> findHistoricalMatches(@Param("historyJson") String historyJson,
+                                                          @Param("uploadedFrom") OffsetDateTime uploadedFrom,
+                                                          @Param("uploadedTo") OffsetDateTime uploadedTo);
+
+    /**
+     * Lädt alle öffentlichen Fotos mit Ort seit {@code since} für den In-Memory-Index
+     * (Foto-Daten plus Position und Radius des Ortes).
+     */
+    @Query(value = """
+        SELECT
+            p.id AS photoId,
+            p.storage_url AS storageUrl,
+            p.thumbnail_storage_url AS thumbnailStorageUrl,
+            p.blurhash AS blurhash,
+            p.uploaded_at AS uploadedAt,
+            p.google_place_id AS googlePlaceId,
+            p.custom_place_id AS customPlaceId,
+            ST_Y(COALESCE(gp.location, cp.location)::geometry) AS latitude,
+            ST_X(COALESCE(gp.location, cp.location)::geometry) AS longitude,
+            COALESCE(gp.radius_meters, cp.radius_meters) AS radiusMeters
+        FROM photos p
+        LEFT JOIN google_places gp ON p.google_place_id = gp.id
+        LEFT JOIN custom_places cp ON p.custom_place_id = cp.id
+        WHERE (p.visibility = 'PUBLIC' OR p.visibility = 'VISIBLE_TO_ALL')
+          AND (gp.id IS NOT NULL OR cp.id IS NOT NULL)
+          AND p.uploaded_at >= :since
+    """, nativeQuery = true)
+    List<IndexedPhotoProjection> findPhotosForHistoricalIndex(@Param("since") OffsetDateTime since);
+
+    /**
+     * Nur die IDs der Fotos aus {@link #findPhotosForHistoricalIndex}; damit erkennt der Index Fotos,
+     * die über andere Instanzen gelöscht wurden.
+     */
+    @Query(value = """
+        SELECT p.id
+        FROM photos p
+        WHERE (p.visibility = 'PUBLIC' OR p.visibility = 'VISIBLE_TO_ALL')
+          AND (p.google_place_id IS NOT NULL OR p.custom_place_id IS NOT NULL)
+          AND p.uploaded_at >= :since
+    """, nativeQuery = true)
+    List<UUID> findPhotoIdsForHistoricalIndex(@Param("since") OffsetDateTime since);
+
+    interface HistoricalMatchProjection {
+        UUID getPhotoId();
+        String getStorageUrl();
+        String getThumbnailStorageUrl();
+        String getBlurhash();
+        java.time.Instant getUploadedAt();
+        Long getGooglePlaceId();
+        UUID getCustomPlaceId();
+    }
+
+    interface IndexedPhotoProjection {
+        UUID getPhotoId();
+        String getStorageUrl();
+        String getThumbnailStorageUrl();
+        String getBlurhash();
+        java.time.Instant getUploadedAt();
+        Long getGooglePlaceId();
+        UUID getCustomPlaceId();
+        Double getLatitude();
+        Double getLongitude();
+        Integer getRadiusMeters();
+    }
+
     interface GalleryFeedItemDTOProjection {
         GalleryPlaceType getPlaceType();
         String getName();
         double getLatitude();
         double getLongitude();
         String getCoverImageUrl();
+        String getCoverThumbnailUrl();
+        String getCoverBlurhash();
         long getPhotoCount();
         java.time.Instant getNewestPhotoTimestamp();
         Long getGooglePlaceId();
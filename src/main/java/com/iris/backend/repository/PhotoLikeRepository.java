@@ -3,12 +3,33 @@ package com.iris.backend.repository;
 import com.iris.backend.model.PhotoLike;
 import com.iris.backend.model.PhotoLikeId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface PhotoLikeRepository extends JpaRepository<PhotoLike, PhotoLikeId> {
     // Zählt, wie viele Likes ein bestimmtes Foto hat.
     int countByIdPhotoId(UUID photoId);
+
+    /**
+     * Zählt die Likes für mehrere Fotos in einer einzigen Aggregat-Query.
+     * Fotos ohne Likes tauchen im Ergebnis nicht auf.
+     */
+    @Query("SELECT l.id.photoId AS photoId, COUNT(l) AS likeCount FROM PhotoLike l WHERE l.id.photoId IN :photoIds GROUP BY l.id.photoId")
+    List<PhotoLikeCount> countLikesByPhotoIds(@Param("photoIds") Collection<UUID> photoIds);
+
+    @Modifying
+    @Query("DELETE FROM PhotoLike l WHERE l.id.photoId IN :photoIds")
+    int deleteByPhotoIds(@Param("photoIds") Collection<UUID> photoIds);
+
+    interface PhotoLikeCount {
+        UUID getPhotoId();
+        long getLikeCount();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+package com.iris.backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DDL for the daily partitions of {@code photos} (range partitioned by {@code uploaded_at}, one partition
+ * per UTC day, named {@code photos_pYYYYMMDD}). Table names cannot be bind parameters, so this uses
+ * {@link JdbcTemplate} instead of a Spring Data query; all names are built from dates, never from input.
+ *
+ * All methods must run inside a transaction, see {@code PhotoPartitionManager}.
+ */
+@Repository
+public class PhotoPartitionRepository {
+
+    /** Holds the rows from before the conversion, see {@link #convertToPartitioned}. */
+    public static final String LEGACY_PARTITION = "photos_legacy";
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern DAILY_PARTITION = Pattern.compile("photos_p(\\d{8})");
+    // Damit Wartung nie Uploads blockiert: lieber diesen Lauf abbrechen und beim nächsten nochmal versuchen
+    private static final String LOCK_TIMEOUT = "SET LOCAL lock_timeout = '5s'";
+    // Beliebige feste Zahl, identisch auf allen Instanzen
+    private static final long MAINTENANCE_LOCK_KEY = 0x70686F746F73L;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PhotoPartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static String partitionName(LocalDate day) {
+        return "photos_p" + NAME_FORMAT.format(day);
+    }
+
+    /**
+     * The day of a daily partition, or empty for other tables (e.g. {@link #LEGACY_PARTITION}).
+     */
+    public static Optional<LocalDate> partitionDay(String tableName) {
+        Matcher matcher = DAILY_PARTITION.matcher(tableName);
+        return matcher.matches() ? Optional.of(LocalDate.parse(matcher.group(1), NAME_FORMAT)) : Optional.empty();
+    }
+
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('photos'))",
+                Boolean.class));
+    }
+
+    /**
+     * Takes the transaction-scoped maintenance lock; false if another instance holds it.
+     */
+    public boolean tryLockMaintenance() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK_KEY));
+    }
+
+    public List<String> findPartitionNames() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'photos'::regclass
+                ORDER BY c.relname
+                """, String.class);
+    }
+
+    /**
+     * Creates the partition for one UTC day. The table is created on its own and then attached, which only
+     * needs a SHARE UPDATE EXCLUSIVE lock on {@code photos} instead of blocking reads and writes.
+     */
+    public void createPartition(LocalDate day) {
+        String name = partitionName(day);
+        jdbcTemplate.execute(LOCK_TIMEOUT);
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE photos INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        jdbcTemplate.execute("ALTER TABLE photos ATTACH PARTITION " + name
+                + " FOR VALUES FROM ('" + day + " 00:00:00+00') TO ('" + day.plusDays(1) + " 00:00:00+00')");
+    }
+
+    public boolean isEmpty(String partitionName) {
+        return Boolean.FALSE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + partitionName + ")", Boolean.class));
+    }
+
+    /**
+     * Detaches a partition and drops it.
+     */
+    public void dropPartition(String partitionName) {
+        jdbcTemplate.execute(LOCK_TIMEOUT);
+        jdbcTemplate.execute("ALTER TABLE photos DETACH PARTITION " + partitionName);
+        jdbcTemplate.execute("DROP TABLE " + partitionName);
+    }
+
+    /**
+     * One-time conversion of an unpartitioned {@code photos} table. The existing table becomes the
+     * partition {@link #LEGACY_PARTITION} for everything uploaded before {@code cutover}, so no rows are
+     * copied; the caller creates the daily partitions from {@code cutover} on in the same transaction.
+     *
+     * The primary key becomes {@code (id, uploaded_at)} (a partitioned table can only have unique keys
+     * that contain the partition key), so foreign keys that reference {@code photos(id)} are dropped.
+     */
+    public void convertToPartitioned(LocalDate cutover) {
+        String cutoverBound = "'" + cutover + " 00:00:00+00'";
+        jdbcTemplate.execute("LOCK TABLE photos IN ACCESS EXCLUSIVE MODE");
+        jdbcTemplate.execute("""
+                DO $$
+                DECLARE c record;
+                BEGIN
+                    -- Fremdschlüssel auf photos(id) (photo_likes, challenge_completions) und der alte Primärschlüssel
+                    FOR c IN SELECT conrelid::regclass AS tbl, conname FROM pg_constraint
+                             WHERE confrelid = 'photos'::regclass AND contype = 'f' LOOP
+                        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', c.tbl, c.conname);
+                    END LOOP;
+                    FOR c IN SELECT conname FROM pg_constraint WHERE conrelid = 'photos'::regclass AND contype = 'p' LOOP
+                        EXECUTE format('ALTER TABLE photos DROP CONSTRAINT %I', c.conname);
+                    END LOOP;
+                END $$
+                """);
+        jdbcTemplate.execute("ALTER TABLE photos RENAME TO " + LEGACY_PARTITION);
+        jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " ADD PRIMARY KEY (id, uploaded_at)");
+        jdbcTemplate.execute("CREATE TABLE photos (LIKE " + LEGACY_PARTITION
+                + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (uploaded_at)");
+        jdbcTemplate.execute("ALTER TABLE photos ADD PRIMARY KEY (id, uploaded_at)");
+        jdbcTemplate.execute("""
+                DO $$
+                DECLARE c record;
+                BEGIN
+                    -- Indizes und Fremdschlüssel unter den alten Namen auf die neue Tabelle übernehmen;
+                    -- beim ATTACH werden die gleichen Indizes und Constraints der alten Tabelle nur verknüpft
+                    FOR c IN SELECT i.indexname, i.indexdef FROM pg_indexes i
+                             WHERE i.tablename = 'photos_legacy' AND i.indexname NOT LIKE '%_pkey' LOOP
+                        EXECUTE format('ALTER INDEX %I RENAME TO %I', c.indexname, left(c.indexname, 56) || '_legacy');
+                        EXECUTE replace(c.indexdef, ' ON public.photos_legacy ', ' ON public.photos ');
+                    END LOOP;
+                    FOR c IN SELECT conname, pg_get_constraintdef(oid) AS def FROM pg_constraint
+                             WHERE conrelid = 'photos_legacy'::regclass AND contype = 'f' LOOP
+                        EXECUTE format('ALTER TABLE photos ADD CONSTRAINT %I %s', c.conname || '_p', c.def);
+                    END LOOP;
+                END $$
+                """);
+        // Mit dieser Prüfung muss ATTACH die alte Tabelle nicht noch einmal scannen
+        jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " ADD CONSTRAINT photos_legacy_range CHECK (uploaded_at < "
+                + cutoverBound + ")");
+        jdbcTemplate.execute("ALTER TABLE photos ATTACH PARTITION " + LEGACY_PARTITION
+                + " FOR VALUES FROM (MINVALUE) TO (" + cutoverBound + ")");
+        jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " DROP CONSTRAINT photos_legacy_range");
+    }
+}
@@ -2,13 +2,18 @@ package com.iris.backend.repository;
 
 import com.iris.backend.model.CustomPlace;
 import com.iris.backend.model.Photo;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import com.iris.backend.model.User;
-import com.iris.backend.model.enums.PhotoVisibility;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -44,13 +49,16 @@ WHERE
     ph.google_place_id = :googlePlaceId
     AND (ph.visibility = 'PUBLIC' OR ph.visibility = 'VISIBLE_TO_ALL')
     AND ph.uploader_id != :excludeUserId  -- WICHTIG: Eigene Fotos ausschließen
+    AND ph.uploaded_at BETWEEN :uploadedFrom AND :uploadedTo -- Partition Pruning
     AND ph.uploaded_at BETWEEN (h."timestamp" - interval '5 hours') AND h."timestamp"
 ORDER BY ph.uploaded_at DESC
 """, nativeQuery = true)
     List<Photo> findPhotosForGooglePlaceMatchingHistoricalBatchFromOthers(
             @Param("googlePlaceId") Long googlePlaceId,
             @Param("historyJson") String historyJson,
-            @Param("excludeUserId") UUID excludeUserId
+            @Param("excludeUserId") UUID excludeUserId,
+            @Param("uploadedFrom") OffsetDateTime uploadedFrom,
+            @Param("uploadedTo") OffsetDateTime uploadedTo
     );
 
     /**
@@ -79,13 +87,16 @@ JOIN
 WHERE
     ph.google_place_id = :googlePlaceId
     AND ph.uploader_id = :targetUserId -- WICHTIG: Nur meine Fotos
+    AND ph.uploaded_at BETWEEN :uploadedFrom AND :uploadedTo -- Partition Pruning
     AND ph.uploaded_at BETWEEN (h."timestamp" - interval '5 hours') AND h."timestamp"
 ORDER BY ph.uploaded_at DESC
 """, nativeQuery = true)
     List<Photo> findPhotosForGooglePlaceMatchingHistoricalBatchFromUser(
             @Param("googlePlaceId") Long googlePlaceId,
             @Param("historyJson") String historyJson,
-            @Param("targetUserId") UUID targetUserId
+            @Param("targetUserId") UUID targetUserId,
+            @Param("uploadedFrom") OffsetDateTime uploadedFrom,
+            @Param("uploadedTo") OffsetDateTime uploadedTo
     );
 
 
@@ -119,13 +130,16 @@ ORDER BY ph.uploaded_at DESC
             ph.custom_place_id = :customPlaceId
             AND (ph.visibility = 'PUBLIC' OR ph.visibility = 'VISIBLE_TO_ALL')
             AND ph.uploader_id != :excludeUserId
+            AND ph.uploaded_at BETWEEN :uploadedFrom AND :uploadedTo -- Partition Pruning
             AND ph.uploaded_at BETWEEN (h."timestamp" - interval '5 hours') AND h."timestamp"
         ORDER BY ph.uploaded_at DESC
     """, nativeQuery = true)
     List<Photo> findPhotosForCustomPlaceMatchingHistoricalBatchFromOthers(
             @Param("customPlaceId") UUID customPlaceId,
             @Param("historyJson") String historyJson,
-            @Param("excludeUserId") UUID excludeUserId
+            @Param("excludeUserId") UUID excludeUserId,
+            @Param("uploadedFrom") OffsetDateTime uploadedFrom,
+            @Param("uploadedTo") OffsetDateTime uploadedTo
     );
 
     /**
@@ -155,13 +169,16 @@ ORDER BY ph.uploaded_at DESC
         WHERE
             ph.custom_place_id = :customPlaceId
             AND ph.uploader_id = :targetUserId
+            AND ph.uploaded_at BETWEEN :uploadedFrom AND :uploadedTo -- Partition Pruning
             AND ph.uploaded_at BETWEEN (h."timestamp" - interval '5 hours') AND h."timestamp"
         ORDER BY ph.uploaded_at DESC
     """, nativeQuery = true)
     List<Photo> findPhotosForCustomPlaceMatchingHistoricalBatchFromUser(
             @Param("customPlaceId") UUID customPlaceId,
             @Param("historyJson") String historyJson,
-            @Param("targetUserId") UUID targetUserId
+            @Param("targetUserId") UUID targetUserId,
+            @Param("uploadedFrom") OffsetDateTime uploadedFrom,
+            @Param("uploadedTo") OffsetDateTime uploadedTo
     );
 
     /**
@@ -172,6 +189,30 @@ ORDER BY ph.uploaded_at DESC
     @Query("SELECT p FROM Photo p WHERE p.uploader IN :friends AND (p.visibility = 'FRIENDS' OR p.visibility = 'VISIBLE_TO_ALL') AND p.expiresAt > :now ORDER BY p.uploadedAt DESC")
     List<Photo> findFriendsFeedPhotos(@Param("friends") List<User> friends, @Param("now") OffsetDateTime now);
 
+    /**
+     * Fan-out-on-read für den Freunde-Feed: eine Seite der Feed-Fotos bestimmter Uploader
+     * (nur die wenigen Uploader mit sehr vielen Freunden, deren Fotos nicht in die Timelines geschrieben werden).
+     * Gleiche Sortierung und gleicher Cursor wie {@link FeedTimelineRepository#findPage}.
+     * {@code uploadedAfter} (jetzt minus {@link Photo#MAX_LIFETIME}) folgt schon aus {@code expiresAt > now},
+     * lässt PostgreSQL aber die Partitionen mit älteren Fotos überspringen.
+     */
+    @Query("""
+        SELECT p FROM Photo p
+        WHERE p.uploader.id IN :uploaderIds
+          AND (p.visibility = 'FRIENDS' OR p.visibility = 'VISIBLE_TO_ALL')
+          AND p.expiresAt > :now
+          AND p.uploadedAt > :uploadedAfter
+          AND (p.uploadedAt < :cursorUploadedAt
+               OR (p.uploadedAt = :cursorUploadedAt AND p.id < :cursorPhotoId))
+        ORDER BY p.uploadedAt DESC, p.id DESC
+    """)
+    List<Photo> findFriendsFeedPageByUploaders(@Param("uploaderIds") Collection<UUID> uploaderIds,
+                                               @Param("now") OffsetDateTime now,
+                                               @Param("uploadedAfter") OffsetDateTime uploadedAfter,
+                                               @Param("cursorUploadedAt") OffsetDateTime cursorUploadedAt,
+                                               @Param("cursorPhotoId") UUID cursorPhotoId,
+                                               Limit limit);
+
     List<Photo> findAllByUploader(User uploader);
 
     @Query("SELECT DISTINCT p.uploader FROM Photo p WHERE p.customPlace = :customPlace")
@@ -179,17 +220,138 @@ ORDER BY ph.uploaded_at DESC
 
     @Query("SELECT DISTINCT p.uploader FROM Photo p WHERE p.googlePlace.id = :googlePlaceId")
     List<User> findDistinctUploadersByGooglePlaceId(@Param("googlePlaceId") Long googlePlaceId);
-    // NEU: Zählt wie viele verschiedene Benutzer (unique) ein Foto an diesem Custom Spot hochgeladen haben
-    @Query("SELECT COUNT(DISTINCT p.uploader) FROM Photo p WHERE p.customPlace.id = :customPlaceId")
-    long countDistinctUploadersByCustomPlaceId(@Param("customPlaceId") UUID customPlaceId);
-
-    // NEU: Zählt wie viele verschiedene Benutzer (unique) ein Foto an diesem Google Spot hochgeladen haben
-    @Query("SELECT COUNT(DISTINCT p.uploader) FROM Photo p WHERE p.googlePlace.id = :googlePlaceId")
-    long countDistinctUploadersByGooglePlaceId(@Param("googlePlaceId") Long googlePlaceId);
-    Optional<Photo> findFirstByGooglePlaceIdAndVisibilityAndExpiresAtAfterOrderByUploadedAtDesc(Long googlePlaceId, PhotoVisibility visibility, OffsetDateTime now);
-    long countByGooglePlaceIdAndVisibilityAndExpiresAtAfter(Long googlePlaceId, PhotoVisibility visibility, OffsetDateTime now);
-    Optional<Photo> findFirstByCustomPlaceIdAndVisibilityAndExpiresAtAfterOrderByUploadedAtDesc(UUID customPlaceId, PhotoVisibility visibility, OffsetDateTime now);
-    long countByCustomPlaceIdAndVisibilityAndExpiresAtAfter(UUID customPlaceId, PhotoVisibility visibility, OffsetDateTime now);
-
-    long countByCustomPlaceIdAndExpiresAtAfter(UUID customPlaceId, OffsetDateTime now);
+
+    /**
+     * An welchen Orten welcher User seit {@code since} Fotos hochgeladen hat (ein Eintrag pro User und Ort),
+     * für den Ko-Lokations-Bonus der Freundesvorschläge.
+     */
+    @Query(value = """
+        SELECT DISTINCT p.uploader_id AS uploaderId, p.google_place_id AS googlePlaceId, p.custom_place_id AS customPlaceId
+        FROM photos p
+        WHERE p.uploaded_at > :since
+          AND (p.google_place_id IS NOT NULL OR p.custom_place_id IS NOT NULL)
+    """, nativeQuery = true)
+    List<UploadPlaceProjection> findUploadPlacesSince(@Param("since") OffsetDateTime since);
+
+    /**
+     * Speichert die Derivate eines Fotos in einer eigenen Transaktion; 0, wenn das Foto inzwischen gelöscht wurde.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE Photo p SET p.thumbnailStorageUrl = :thumbnail, p.displayStorageUrl = :display, p.blurhash = :blurhash
+        WHERE p.id = :photoId
+    """)
+    int updateDerivatives(@Param("photoId") UUID photoId,
+                          @Param("thumbnail") String thumbnailStorageUrl,
+                          @Param("display") String displayStorageUrl,
+                          @Param("blurhash") String blurhash);
+
+    /**
+     * Übernimmt die Derivate eines Fotos für seine Duplikate (gleicher Uploader, gleiche Datei), die noch keine haben.
+     * Nach {@link #updateDerivatives} in einer eigenen Transaktion aufrufen: dessen UPDATE wartet auf Duplikate,
+     * die das Foto gerade mit {@link #findByUploaderAndContentHash} gesperrt haben, so dass diese hier schon sichtbar sind.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE photos d
+        SET thumbnail_storage_url = :thumbnail, display_storage_url = :display, blurhash = :blurhash
+        FROM photos o
+        WHERE o.id = :photoId
+          AND d.uploader_id = o.uploader_id AND d.content_hash = o.content_hash AND d.storage_url = o.storage_url
+          AND d.id <> o.id AND d.thumbnail_storage_url IS NULL
+    """, nativeQuery = true)
+    int updateDerivativesOfDuplicates(@Param("photoId") UUID photoId,
+                                      @Param("thumbnail") String thumbnailStorageUrl,
+                                      @Param("display") String displayStorageUrl,
+                                      @Param("blurhash") String blurhash);
+
+    /**
+     * Das neueste Foto des Uploaders mit diesem Inhalt, das noch mindestens bis {@code aliveUntil} lebt
+     * (sonst könnte der Ablauf-Sweep seine Datei gerade löschen). Sperrt es bis zum Commit (FOR SHARE), damit
+     * es nicht gelöscht wird, bevor das neue Foto, das seine Datei mitbenutzt, sichtbar ist (siehe {@link #lockById}).
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("""
+        SELECT p FROM Photo p
+        WHERE p.uploader.id = :uploaderId AND p.contentHash = :contentHash AND p.expiresAt > :aliveUntil
+        ORDER BY p.uploadedAt DESC
+    """)
+    List<Photo> findByUploaderAndContentHash(@Param("uploaderId") UUID uploaderId,
+                                             @Param("contentHash") String contentHash,
+                                             @Param("aliveUntil") OffsetDateTime aliveUntil,
+                                             Limit limit);
+
+    /**
+     * Lädt ein Foto und sperrt es bis zum Commit (FOR UPDATE). Vor {@link #countOtherReferences} beim Löschen:
+     * wartet auf Uploads, die das Foto als Duplikat gerade mitbenutzen, und zählt diese danach mit.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Photo p WHERE p.id = :photoId")
+    Optional<Photo> lockById(@Param("photoId") UUID photoId);
+
+    /**
+     * Wie viele andere Fotos des Uploaders dieselbe Datei (Original oder Derivat) benutzen.
+     * Dateien werden nur innerhalb eines Uploaders geteilt.
+     */
+    @Query("""
+        SELECT COUNT(p) FROM Photo p
+        WHERE p.uploader.id = :uploaderId AND p.id <> :photoId
+          AND (p.storageUrl = :objectName OR p.thumbnailStorageUrl = :objectName OR p.displayStorageUrl = :objectName)
+    """)
+    long countOtherReferences(@Param("uploaderId") UUID uploaderId,
+                              @Param("photoId") UUID photoId,
+                              @Param("objectName") String objectName);
+
+    /**
+     * Sperrt bis zu :batchSize abgelaufene Fotos für den Expiry-Sweep. SKIP LOCKED überspringt Zeilen, die eine
+     * andere Instanz gerade bearbeitet, so dass parallele Sweeps disjunkte Batches bekommen statt aufeinander zu warten.
+     */
+    @Query(value = """
+        SELECT p.id AS id, p.uploader_id AS uploaderId, p.storage_url AS storageUrl,
+               p.thumbnail_storage_url AS thumbnailStorageUrl, p.display_storage_url AS displayStorageUrl
+        FROM photos p
+        WHERE p.expires_at <= :expiredBefore
+        ORDER BY p.expires_at
+        LIMIT :batchSize
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<ExpiredPhotoProjection> lockExpiredBatch(@Param("expiredBefore") OffsetDateTime expiredBefore,
+                                                  @Param("batchSize") int batchSize);
+
+    @Modifying
+    @Query("DELETE FROM Photo p WHERE p.id IN :photoIds")
+    int deleteAllByIds(@Param("photoIds") Collection<UUID> photoIds);
+
+    /**
+     * Welche der Dateien noch von Fotos der Uploader benutzt werden (geteilte Duplikate, siehe
+     * {@link #countOtherReferences}). Mengenvariante für den Expiry-Sweep, nach dem Löschen des Batches aufzurufen.
+     */
+    @Query(value = """
+        SELECT p.storage_url FROM photos p
+        WHERE p.uploader_id IN (:uploaderIds) AND p.storage_url IN (:objectNames)
+        UNION
+        SELECT p.thumbnail_storage_url FROM photos p
+        WHERE p.uploader_id IN (:uploaderIds) AND p.thumbnail_storage_url IN (:objectNames)
+        UNION
+        SELECT p.display_storage_url FROM photos p
+        WHERE p.uploader_id IN (:uploaderIds) AND p.display_storage_url IN (:objectNames)
+    """, nativeQuery = true)
+    List<String> findReferencedObjectNames(@Param("uploaderIds") Collection<UUID> uploaderIds,
+                                           @Param("objectNames") Collection<String> objectNames);
+
+    interface ExpiredPhotoProjection {
+        UUID getId();
+        UUID getUploaderId();
+        String getStorageUrl();
+        String getThumbnailStorageUrl();
+        String getDisplayStorageUrl();
+    }
+
+    interface UploadPlaceProjection {
+        UUID getUploaderId();
+        Long getGooglePlaceId();
+        UUID getCustomPlaceId();
+    }
 }
\ No newline at end of file
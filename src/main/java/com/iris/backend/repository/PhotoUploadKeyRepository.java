@@ -0,0 +1,52 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.PhotoUploadKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface PhotoUploadKeyRepository extends JpaRepository<PhotoUploadKey, UUID> {
+
+    @Query("""
+        SELECT k.photoId FROM PhotoUploadKey k
+        WHERE k.uploaderId = :uploaderId AND k.idempotencyKey = :key AND k.expiresAt > :now AND k.photoId IS NOT NULL
+    """)
+    Optional<UUID> findPhotoId(@Param("uploaderId") UUID uploaderId,
+                               @Param("key") String key,
+                               @Param("now") OffsetDateTime now);
+
+    /**
+     * Belegt einen Schlüssel (oder übernimmt einen abgelaufenen). Hält ein paralleler Request denselben Schlüssel,
+     * wartet das INSERT auf dessen Commit und liefert danach 0; bei dessen Rollback liefert es 1.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO photo_upload_keys (id, uploader_id, idempotency_key, photo_id, created_at, expires_at)
+        VALUES (:id, :uploaderId, :key, NULL, :now, :expiresAt)
+        ON CONFLICT (uploader_id, idempotency_key) DO UPDATE
+            SET id = EXCLUDED.id, photo_id = NULL, created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at
+            WHERE photo_upload_keys.expires_at <= EXCLUDED.created_at
+    """, nativeQuery = true)
+    int claim(@Param("id") UUID id,
+              @Param("uploaderId") UUID uploaderId,
+              @Param("key") String key,
+              @Param("now") OffsetDateTime now,
+              @Param("expiresAt") OffsetDateTime expiresAt);
+
+    @Modifying
+    @Query("UPDATE PhotoUploadKey k SET k.photoId = :photoId WHERE k.uploaderId = :uploaderId AND k.idempotencyKey = :key")
+    int complete(@Param("uploaderId") UUID uploaderId, @Param("key") String key, @Param("photoId") UUID photoId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PhotoUploadKey k WHERE k.expiresAt <= :now")
+    int deleteExpired(@Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,36 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.PhotoUploadReservation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface PhotoUploadReservationRepository extends JpaRepository<PhotoUploadReservation, UUID> {
+
+    List<PhotoUploadReservation> findByExpiresAtLessThanEqualOrderByExpiresAt(OffsetDateTime now, Limit limit);
+
+    /**
+     * Löst eine noch gültige Reservierung ein, indem sie gelöscht wird. Die Zeile bleibt bis zum Commit gesperrt:
+     * ein paralleles Einlösen oder der Sweep wartet und findet sie danach nicht mehr (Rückgabe 0).
+     */
+    @Modifying
+    @Query("DELETE FROM PhotoUploadReservation r WHERE r.id = :id AND r.expiresAt > :now")
+    int claim(@Param("id") UUID id, @Param("now") OffsetDateTime now);
+
+    /**
+     * Löscht eine abgelaufene Reservierung in einer eigenen Transaktion; 0, wenn sie inzwischen eingelöst wurde.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PhotoUploadReservation r WHERE r.id = :id AND r.expiresAt <= :now")
+    int deleteIfExpired(@Param("id") UUID id, @Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,56 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.PhotoUploadSession;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface PhotoUploadSessionRepository extends JpaRepository<PhotoUploadSession, UUID> {
+
+    List<PhotoUploadSession> findByExpiresAtLessThanEqualOrderByExpiresAt(OffsetDateTime now, Limit limit);
+
+    /**
+     * Schiebt den Offset nach einem gespeicherten Chunk weiter und verlängert die Session, aber nur, wenn der
+     * Offset noch {@code offset} ist; 0, wenn ein paralleler Request denselben Chunk schneller gespeichert hat.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE PhotoUploadSession s SET s.receivedBytes = :receivedBytes, s.expiresAt = :expiresAt
+        WHERE s.id = :id AND s.receivedBytes = :offset AND s.expiresAt > :now
+    """)
+    int advance(@Param("id") UUID id,
+                @Param("offset") long offset,
+                @Param("receivedBytes") long receivedBytes,
+                @Param("now") OffsetDateTime now,
+                @Param("expiresAt") OffsetDateTime expiresAt);
+
+    /**
+     * Löst eine vollständige, noch gültige Session ein, indem sie gelöscht wird (wie
+     * {@link PhotoUploadReservationRepository#claim}).
+     */
+    @Modifying
+    @Query("""
+        DELETE FROM PhotoUploadSession s
+        WHERE s.id = :id AND s.expiresAt > :now AND s.receivedBytes = s.totalBytes
+    """)
+    int claim(@Param("id") UUID id, @Param("now") OffsetDateTime now);
+
+    /**
+     * Löscht eine abgelaufene Session in einer eigenen Transaktion; 0, wenn sie inzwischen eingelöst oder
+     * durch einen Chunk verlängert wurde.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PhotoUploadSession s WHERE s.id = :id AND s.expiresAt <= :now")
+    int deleteIfExpired(@Param("id") UUID id, @Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,357 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.PlaceStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface PlaceStatsRepository extends JpaRepository<PlaceStats, UUID> {
+
+    Optional<PlaceStats> findByGooglePlaceId(Long googlePlaceId);
+
+    Optional<PlaceStats> findByCustomPlaceId(UUID customPlaceId);
+
+    List<PlaceStats> findAllByGooglePlaceIdIn(Collection<Long> googlePlaceIds);
+
+    List<PlaceStats> findAllByCustomPlaceIdIn(Collection<UUID> customPlaceIds);
+
+    /**
+     * Zählt ein neues Foto inkrementell in die Statistik seines Google Place ein (legt die Zeile bei Bedarf an)
+     * und sperrt sie bis zum Commit. Ein neueres PUBLIC-Foto wird das Cover; die Uploader-Zahl kommt aus der
+     * Skizze (siehe {@link #updateGooglePlaceSketch}).
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO place_stats AS s (id, google_place_id, public_photo_count, friends_photo_count,
+                                      visible_to_all_photo_count, uploader_count, cover_storage_url, cover_uploaded_at,
+                                      cover_thumbnail_storage_url, cover_blurhash)
+        VALUES (gen_random_uuid(), :placeId,
+                CASE WHEN :visibility = 'PUBLIC' THEN 1 ELSE 0 END,
+                CASE WHEN :visibility = 'FRIENDS' THEN 1 ELSE 0 END,
+                CASE WHEN :visibility = 'VISIBLE_TO_ALL' THEN 1 ELSE 0 END,
+                0,
+                CASE WHEN :visibility = 'PUBLIC' THEN CAST(:storageUrl AS varchar) END,
+                CASE WHEN :visibility = 'PUBLIC' THEN CAST(:uploadedAt AS timestamptz) END,
+                NULL, NULL)
+        ON CONFLICT (google_place_id) DO UPDATE SET
+            public_photo_count = s.public_photo_count + EXCLUDED.public_photo_count,
+            friends_photo_count = s.friends_photo_count + EXCLUDED.friends_photo_count,
+            visible_to_all_photo_count = s.visible_to_all_photo_count + EXCLUDED.visible_to_all_photo_count,
+            cover_storage_url = CASE WHEN EXCLUDED.cover_uploaded_at >= COALESCE(s.cover_uploaded_at, '-infinity')
+                                     THEN EXCLUDED.cover_storage_url ELSE s.cover_storage_url END,
+            cover_thumbnail_storage_url = CASE WHEN EXCLUDED.cover_uploaded_at >= COALESCE(s.cover_uploaded_at, '-infinity')
+                                               THEN NULL ELSE s.cover_thumbnail_storage_url END,
+            cover_blurhash = CASE WHEN EXCLUDED.cover_uploaded_at >= COALESCE(s.cover_uploaded_at, '-infinity')
+                                  THEN NULL ELSE s.cover_blurhash END,
+            cover_uploaded_at = GREATEST(s.cover_uploaded_at, EXCLUDED.cover_uploaded_at)
+    """, nativeQuery = true)
+    int addGooglePlacePhoto(@Param("placeId") Long placeId,
+                            @Param("visibility") String visibility,
+                            @Param("storageUrl") String storageUrl,
+                            @Param("uploadedAt") OffsetDateTime uploadedAt);
+
+    /**
+     * Wie {@link #addGooglePlacePhoto}, für einen Custom Place.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO place_stats AS s (id, custom_place_id, public_photo_count, friends_photo_count,
+                                      visible_to_all_photo_count, uploader_count, cover_storage_url, cover_uploaded_at,
+                                      cover_thumbnail_storage_url, cover_blurhash)
+        VALUES (gen_random_uuid(), :placeId,
+                CASE WHEN :visibility = 'PUBLIC' THEN 1 ELSE 0 END,
+                CASE WHEN :visibility = 'FRIENDS' THEN 1 ELSE 0 END,
+                CASE WHEN :visibility = 'VISIBLE_TO_ALL' THEN 1 ELSE 0 END,
+                0,
+                CASE WHEN :visibility = 'PUBLIC' THEN CAST(:storageUrl AS varchar) END,
+                CASE WHEN :visibility = 'PUBLIC' THEN CAST(:uploadedAt AS timestamptz) END,
+                NULL, NULL)
+        ON CONFLICT (custom_place_id) DO UPDATE SET
+            public_photo_count = s.public_photo_count + EXCLUDED.public_photo_count,
+            friends_photo_count = s.friends_photo_count + EXCLUDED.friends_photo_count,
+            visible_to_all_photo_count = s.visible_to_all_photo_count + EXCLUDED.visible_to_all_photo_count,
+            cover_storage_url = CASE WHEN EXCLUDED.cover_uploaded_at >= COALESCE(s.cover_uploaded_at, '-infinity')
+                                     THEN EXCLUDED.cover_storage_url ELSE s.cover_storage_url END,
+            cover_thumbnail_storage_url = CASE WHEN EXCLUDED.cover_uploaded_at >= COALESCE(s.cover_uploaded_at, '-infinity')
+                                               THEN NULL ELSE s.cover_thumbnail_storage_url END,
+            cover_blurhash = CASE WHEN EXCLUDED.cover_uploaded_at >= COALESCE(s.cover_uploaded_at, '-infinity')
+                                  THEN NULL ELSE s.cover_blurhash END,
+            cover_uploaded_at = GREATEST(s.cover_uploaded_at, EXCLUDED.cover_uploaded_at)
+    """, nativeQuery = true)
+    int addCustomPlacePhoto(@Param("placeId") UUID placeId,
+                            @Param("visibility") String visibility,
+                            @Param("storageUrl") String storageUrl,
+                            @Param("uploadedAt") OffsetDateTime uploadedAt);
+
+    /**
+     * Berechnet die Statistik eines Google Place aus seinen Fotos neu (z.B. nach dem Löschen eines Fotos).
+     * Ein Ort ohne Fotos bekommt eine Zeile mit Nullen. Die Uploader-Zahl wird nur beim Anlegen gezählt,
+     * danach kommt sie aus der Skizze.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+        INSERT INTO place_stats AS s (id, google_place_id, public_photo_count, friends_photo_count,
+                                      visible_to_all_photo_count, uploader_count, cover_storage_url, cover_uploaded_at,
+                                      cover_thumbnail_storage_url, cover_blurhash)
+        SELECT gen_random_uuid(), place.id,
+               COUNT(p.id) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now),
+               COUNT(p.id) FILTER (WHERE p.visibility = 'FRIENDS' AND p.expires_at > :now),
+               COUNT(p.id) FILTER (WHERE p.visibility = 'VISIBLE_TO_ALL' AND p.expires_at > :now),
+               COUNT(DISTINCT p.uploader_id),
+               (ARRAY_AGG(p.storage_url ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1],
+               MAX(p.uploaded_at) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now),
+               (ARRAY_AGG(p.thumbnail_storage_url ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1],
+               (ARRAY_AGG(p.blurhash ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1]
+        FROM (SELECT CAST(:placeId AS bigint) AS id) place
+        LEFT JOIN photos p ON p.google_place_id = place.id
+        GROUP BY place.id
+        ON CONFLICT (google_place_id) DO UPDATE SET
+            public_photo_count = EXCLUDED.public_photo_count,
+            friends_photo_count = EXCLUDED.friends_photo_count,
+            visible_to_all_photo_count = EXCLUDED.visible_to_all_photo_count,
+            cover_storage_url = EXCLUDED.cover_storage_url,
+            cover_uploaded_at = EXCLUDED.cover_uploaded_at,
+            cover_thumbnail_storage_url = EXCLUDED.cover_thumbnail_storage_url,
+            cover_blurhash = EXCLUDED.cover_blurhash
+    """, nativeQuery = true)
+    int recomputeGooglePlace(@Param("placeId") Long placeId, @Param("now") OffsetDateTime now);
+
+    /**
+     * Wie {@link #recomputeGooglePlace}, für einen Custom Place.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+        INSERT INTO place_stats AS s (id, custom_place_id, public_photo_count, friends_photo_count,
+                                      visible_to_all_photo_count, uploader_count, cover_storage_url, cover_uploaded_at,
+                                      cover_thumbnail_storage_url, cover_blurhash)
+        SELECT gen_random_uuid(), place.id,
+               COUNT(p.id) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now),
+               COUNT(p.id) FILTER (WHERE p.visibility = 'FRIENDS' AND p.expires_at > :now),
+               COUNT(p.id) FILTER (WHERE p.visibility = 'VISIBLE_TO_ALL' AND p.expires_at > :now),
+               COUNT(DISTINCT p.uploader_id),
+               (ARRAY_AGG(p.storage_url ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1],
+               MAX(p.uploaded_at) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now),
+               (ARRAY_AGG(p.thumbnail_storage_url ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1],
+               (ARRAY_AGG(p.blurhash ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1]
+        FROM (SELECT CAST(:placeId AS uuid) AS id) place
+        LEFT JOIN photos p ON p.custom_place_id = place.id
+        GROUP BY place.id
+        ON CONFLICT (custom_place_id) DO UPDATE SET
+            public_photo_count = EXCLUDED.public_photo_count,
+            friends_photo_count = EXCLUDED.friends_photo_count,
+            visible_to_all_photo_count = EXCLUDED.visible_to_all_photo_count,
+            cover_storage_url = EXCLUDED.cover_storage_url,
+            cover_uploaded_at = EXCLUDED.cover_uploaded_at,
+            cover_thumbnail_storage_url = EXCLUDED.cover_thumbnail_storage_url,
+            cover_blurhash = EXCLUDED.cover_blurhash
+    """, nativeQuery = true)
+    int recomputeCustomPlace(@Param("placeId") UUID placeId, @Param("now") OffsetDateTime now);
+
+    /**
+     * Berechnet alle Google Places neu, bei denen ein Foto im Intervall (expiredAfter, expiredUntil] abläuft
+     * (Ablauf-Sweep). Mit einem Intervall über alle Zeiten wird die ganze Tabelle neu aufgebaut.
+     * Läuft in einer eigenen Transaktion. Die Uploader-Zahl wird wie bei {@link #recomputeGooglePlace} nur beim
+     * Anlegen gezählt.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO place_stats AS s (id, google_place_id, public_photo_count, friends_photo_count,
+                                      visible_to_all_photo_count, uploader_count, cover_storage_url, cover_uploaded_at,
+                                      cover_thumbnail_storage_url, cover_blurhash)
+        SELECT gen_random_uuid(), p.google_place_id,
+               COUNT(*) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now),
+               COUNT(*) FILTER (WHERE p.visibility = 'FRIENDS' AND p.expires_at > :now),
+               COUNT(*) FILTER (WHERE p.visibility = 'VISIBLE_TO_ALL' AND p.expires_at > :now),
+               COUNT(DISTINCT p.uploader_id),
+               (ARRAY_AGG(p.storage_url ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1],
+               MAX(p.uploaded_at) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now),
+               (ARRAY_AGG(p.thumbnail_storage_url ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1],
+               (ARRAY_AGG(p.blurhash ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1]
+        FROM photos p
+        WHERE p.google_place_id IN (
+            SELECT e.google_place_id FROM photos e
+            WHERE e.expires_at > :expiredAfter AND e.expires_at <= :expiredUntil AND e.google_place_id IS NOT NULL
+        )
+        GROUP BY p.google_place_id
+        ON CONFLICT (google_place_id) DO UPDATE SET
+            public_photo_count = EXCLUDED.public_photo_count,
+            friends_photo_count = EXCLUDED.friends_photo_count,
+            visible_to_all_photo_count = EXCLUDED.visible_to_all_photo_count,
+            cover_storage_url = EXCLUDED.cover_storage_url,
+            cover_uploaded_at = EXCLUDED.cover_uploaded_at,
+            cover_thumbnail_storage_url = EXCLUDED.cover_thumbnail_storage_url,
+            cover_blurhash = EXCLUDED.cover_blurhash
+    """, nativeQuery = true)
+    int recomputeGooglePlacesWithExpiries(@Param("expiredAfter") OffsetDateTime expiredAfter,
+                                          @Param("expiredUntil") OffsetDateTime expiredUntil,
+                                          @Param("now") OffsetDateTime now);
+
+    /**
+     * Wie {@link #recomputeGooglePlacesWithExpiries}, für Custom Places.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO place_stats AS s (id, custom_place_id, public_photo_count, friends_photo_count,
+                                      visible_to_all_photo_count, uploader_count, cover_storage_url, cover_uploaded_at,
+                                      cover_thumbnail_storage_url, cover_blurhash)
+        SELECT gen_random_uuid(), p.custom_place_id,
+               COUNT(*) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now),
+               COUNT(*) FILTER (WHERE p.visibility = 'FRIENDS' AND p.expires_at > :now),
+               COUNT(*) FILTER (WHERE p.visibility = 'VISIBLE_TO_ALL' AND p.expires_at > :now),
+               COUNT(DISTINCT p.uploader_id),
+               (ARRAY_AGG(p.storage_url ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1],
+               MAX(p.uploaded_at) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now),
+               (ARRAY_AGG(p.thumbnail_storage_url ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1],
+               (ARRAY_AGG(p.blurhash ORDER BY p.uploaded_at DESC) FILTER (WHERE p.visibility = 'PUBLIC' AND p.expires_at > :now))[1]
+        FROM photos p
+        WHERE p.custom_place_id IN (
+            SELECT e.custom_place_id FROM photos e
+            WHERE e.expires_at > :expiredAfter AND e.expires_at <= :expiredUntil AND e.custom_place_id IS NOT NULL
+        )
+        GROUP BY p.custom_place_id
+        ON CONFLICT (custom_place_id) DO UPDATE SET
+            public_photo_count = EXCLUDED.public_photo_count,
+            friends_photo_count = EXCLUDED.friends_photo_count,
+            visible_to_all_photo_count = EXCLUDED.visible_to_all_photo_count,
+            cover_storage_url = EXCLUDED.cover_storage_url,
+            cover_uploaded_at = EXCLUDED.cover_uploaded_at,
+            cover_thumbnail_storage_url = EXCLUDED.cover_thumbnail_storage_url,
+            cover_blurhash = EXCLUDED.cover_blurhash
+    """, nativeQuery = true)
+    int recomputeCustomPlacesWithExpiries(@Param("expiredAfter") OffsetDateTime expiredAfter,
+                                          @Param("expiredUntil") OffsetDateTime expiredUntil,
+                                          @Param("now") OffsetDateTime now);
+
+    /**
+     * Hinterlegt die Derivate eines Fotos bei allen Orten, deren Cover es ist. Läuft in einer eigenen Transaktion.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE place_stats SET cover_thumbnail_storage_url = :thumbnail, cover_blurhash = :blurhash
+        WHERE cover_storage_url = :storageUrl
+    """, nativeQuery = true)
+    int updateCoverDerivatives(@Param("storageUrl") String storageUrl,
+                               @Param("thumbnail") String thumbnailStorageUrl,
+                               @Param("blurhash") String blurhash);
+
+    /**
+     * Speichert die Uploader-Skizze eines Google Place zusammen mit ihrer Schätzung als Uploader-Zahl.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE place_stats SET uploader_sketch = :sketch, uploader_count = :uploaderCount
+        WHERE google_place_id = :placeId
+    """, nativeQuery = true)
+    int updateGooglePlaceSketch(@Param("placeId") Long placeId,
+                                @Param("sketch") byte[] sketch,
+                                @Param("uploaderCount") long uploaderCount);
+
+    /**
+     * Wie {@link #updateGooglePlaceSketch}, für einen Custom Place.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE place_stats SET uploader_sketch = :sketch, uploader_count = :uploaderCount
+        WHERE custom_place_id = :placeId
+    """, nativeQuery = true)
+    int updateCustomPlaceSketch(@Param("placeId") UUID placeId,
+                                @Param("sketch") byte[] sketch,
+                                @Param("uploaderCount") long uploaderCount);
+
+    /**
+     * Ob die Tabelle schon Zeilen hat (d.h. der einmalige Backfill ist nicht nötig).
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM place_stats)", nativeQuery = true)
+    boolean existsAny();
+
+    /**
+     * Transaktionsgebundener Advisory Lock, damit nur eine Instanz den Backfill ausführt.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryAdvisoryXactLock(@Param("key") long key);
+
+    @Query(value = "SELECT uploader_sketch FROM place_stats WHERE google_place_id = :placeId", nativeQuery = true)
+    byte[] findGooglePlaceSketch(@Param("placeId") Long placeId);
+
+    @Query(value = "SELECT uploader_sketch FROM place_stats WHERE custom_place_id = :placeId", nativeQuery = true)
+    byte[] findCustomPlaceSketch(@Param("placeId") UUID placeId);
+
+    @Query(value = "SELECT DISTINCT p.uploader_id FROM photos p WHERE p.google_place_id = :placeId", nativeQuery = true)
+    List<UUID> findUploaderIdsByGooglePlace(@Param("placeId") Long placeId);
+
+    @Query(value = "SELECT DISTINCT p.uploader_id FROM photos p WHERE p.custom_place_id = :placeId", nativeQuery = true)
+    List<UUID> findUploaderIdsByCustomPlace(@Param("placeId") UUID placeId);
+
+    interface GooglePlaceUploaderProjection {
+        Long getPlaceId();
+        UUID getUploaderId();
+    }
+
+    interface CustomPlaceUploaderProjection {
+        UUID getPlaceId();
+        UUID getUploaderId();
+    }
+
+    /**
+     * Alle (Ort, Uploader)-Paare der Google Places, deren Zeile noch keine Skizze hat.
+     */
+    @Query(value = """
+        SELECT DISTINCT p.google_place_id AS placeId, p.uploader_id AS uploaderId
+        FROM photos p
+        JOIN place_stats s ON s.google_place_id = p.google_place_id
+        WHERE s.uploader_sketch IS NULL
+    """, nativeQuery = true)
+    List<GooglePlaceUploaderProjection> findGooglePlaceUploadersWithoutSketch();
+
+    /**
+     * Wie {@link #findGooglePlaceUploadersWithoutSketch}, für Custom Places.
+     */
+    @Query(value = """
+        SELECT DISTINCT p.custom_place_id AS placeId, p.uploader_id AS uploaderId
+        FROM photos p
+        JOIN place_stats s ON s.custom_place_id = p.custom_place_id
+        WHERE s.uploader_sketch IS NULL
+    """, nativeQuery = true)
+    List<CustomPlaceUploaderProjection> findCustomPlaceUploadersWithoutSketch();
+
+    /**
+     * Setzt Skizze und Uploader-Zahl für mehrere Google Places, die noch keine Skizze haben
+     * (JSON-Array aus {placeId, sketch (Base64), uploaderCount}). Eine inzwischen von einem Upload
+     * geschriebene Skizze wird nicht überschrieben.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE place_stats s
+        SET uploader_sketch = decode(r.sketch, 'base64'), uploader_count = r."uploaderCount"
+        FROM jsonb_to_recordset(CAST(:rowsJson AS jsonb)) AS r("placeId" bigint, sketch text, "uploaderCount" bigint)
+        WHERE s.google_place_id = r."placeId" AND s.uploader_sketch IS NULL
+    """, nativeQuery = true)
+    int fillMissingGooglePlaceSketches(@Param("rowsJson") String rowsJson);
+
+    /**
+     * Wie {@link #fillMissingGooglePlaceSketches}, für Custom Places.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE place_stats s
+        SET uploader_sketch = decode(r.sketch, 'base64'), uploader_count = r."uploaderCount"
+        FROM jsonb_to_recordset(CAST(:rowsJson AS jsonb)) AS r("placeId" uuid, sketch text, "uploaderCount" bigint)
+        WHERE s.custom_place_id = r."placeId" AND s.uploader_sketch IS NULL
+    """, nativeQuery = true)
+    int fillMissingCustomPlaceSketches(@Param("rowsJson") String rowsJson);
+}
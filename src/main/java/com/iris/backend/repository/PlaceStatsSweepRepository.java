@@ -0,0 +1,27 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.PlaceStatsSweep;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface PlaceStatsSweepRepository extends JpaRepository<PlaceStatsSweep, Integer> {
+
+    /**
+     * Sperrt das Wasserzeichen bis zum Commit (FOR UPDATE SKIP LOCKED). Leer, wenn es noch nicht existiert
+     * oder eine andere Instanz es gerade gesperrt hat.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    // -2 = SKIP LOCKED (Hibernate)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT s FROM PlaceStatsSweep s WHERE s.id = :id")
+    Optional<PlaceStatsSweep> lockIfAvailable(@Param("id") int id);
+}
@@ -5,9 +5,13 @@ import org.locationtech.jts.geom.Point;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -64,4 +68,42 @@ public interface UserRepository extends JpaRepository<User, UUID> {
      */
     @Query("SELECT u FROM User u WHERE LOWER(u.username) LIKE LOWER(CONCAT('%', :query, '%')) AND u.id != :currentUserId")
     Page<User> searchUsers(@Param("query") String query, @Param("currentUserId") UUID currentUserId, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Letzte Position aller Benutzer, die sich seit {@code since} gemeldet haben (Start des Presence-Speichers).
+     */
+    @Query(value = """
+        SELECT
+            u.id AS id,
+            ST_Y(u.last_location::geometry) AS latitude,
+            ST_X(u.last_location::geometry) AS longitude,
+            u.last_location_updated_at AS updatedAt
+        FROM users u
+        WHERE u.last_location IS NOT NULL
+          AND u.last_location_updated_at > :since
+        """, nativeQuery = true)
+    List<LocationProjection> findLocationsUpdatedSince(@Param("since") OffsetDateTime since);
+
+    /**
+     * Schreibt die Positionen mehrerer Benutzer mit einem UPDATE ... FROM (write-behind des Presence-Speichers).
+     * Erwartet ein JSON-Array mit {@code id}, {@code latitude}, {@code longitude} und {@code updatedAt}.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE users u
+        SET last_location = ST_SetSRID(ST_MakePoint(r.longitude, r.latitude), 4326)::geography,
+            last_location_updated_at = r."updatedAt"
+        FROM jsonb_to_recordset(CAST(:locationsJson AS jsonb))
+            AS r(id uuid, latitude double precision, longitude double precision, "updatedAt" timestamptz)
+        WHERE u.id = r.id
+        """, nativeQuery = true)
+    int updateLocations(@Param("locationsJson") String locationsJson);
+
+    interface LocationProjection {
+        UUID getId();
+        Double getLatitude();
+        Double getLongitude();
+        Instant getUpdatedAt();
+    }
+}
@@ -74,7 +74,7 @@ public class ChallengeService {
 
         // 2. Alle Teilnehmer und Abschlüsse holen
         List<User> participants = participantRepository.findParticipantsByChallengeId(challengeId);
-        List<ChallengeCompletion> completions = completionRepository.findByChallengeId(challengeId);
+        List<Photo> completionPhotos = completionRepository.findPhotosByChallengeId(challengeId);
 
         // 3. Basis-Infos berechnen (Progress, Joined-Status)
         boolean isJoined = participants.stream()
@@ -83,10 +83,8 @@ public class ChallengeService {
         int progress = calculateProgress(challengeId, participants.size());
 
         // 4. "images" Liste erstellen (Alle Fotos der Challenge)
-        List<PhotoResponseDTO> allImages = completions.stream()
-                .map(ChallengeCompletion::getPhoto)
-                .filter(photo -> photo != null) // Filtern, falls Foto gelöscht wurde
-                .map(photoService::toPhotoResponseDTO) // Foto-Entity -> DTO
+        // Alle Fotos werden gesammelt (Batch) in DTOs umgewandelt statt einzeln pro Foto
+        List<PhotoResponseDTO> allImages = photoService.toPhotoResponseDTOs(completionPhotos).stream()
                 .sorted(Comparator.comparing(PhotoResponseDTO::timestamp).reversed()) // Neueste zuerst
                 .collect(Collectors.toList());
 
@@ -4,6 +4,7 @@ import com.iris.backend.dto.CreateCustomPlaceRequestDTO;
 import com.iris.backend.dto.ParticipantDTO;
 import com.iris.backend.dto.UpdateCustomPlaceRequestDTO;
 import com.iris.backend.dto.UserDTO;
+import com.iris.backend.event.CustomPlaceChangedEvent;
 import com.iris.backend.model.CustomPlace;
 import com.iris.backend.model.Friendship;
 import com.iris.backend.model.User;
@@ -16,6 +17,7 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -34,6 +36,8 @@ public class CustomPlaceService {
     private final PhotoRepository photoRepository; // Abhängigkeit hinzugefügt
     private final FriendshipRepository friendshipRepository;
     private final GcsStorageService gcsStorageService; // Abhängigkeit hinzugefügt
+    private final HistoricalPhotoIndex historicalPhotoIndex;
+    private final ApplicationEventPublisher eventPublisher;
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
 
     @Value("${gcs.bucket.profile-images.name}") // Lädt den Bucket-Namen aus application.properties
@@ -44,12 +48,16 @@ public class CustomPlaceService {
             CustomPlaceRepository customPlaceRepository,
             PhotoRepository photoRepository,
             FriendshipRepository friendshipRepository,
-            GcsStorageService gcsStorageService
+            GcsStorageService gcsStorageService,
+            HistoricalPhotoIndex historicalPhotoIndex,
+            ApplicationEventPublisher eventPublisher
     ) {
         this.customPlaceRepository = customPlaceRepository;
         this.photoRepository = photoRepository;
         this.friendshipRepository = friendshipRepository;
         this.gcsStorageService = gcsStorageService;
+        this.historicalPhotoIndex = historicalPhotoIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -85,7 +93,10 @@ public class CustomPlaceService {
             newPlace.setScheduledLiveAt(request.scheduledLiveAt());
         }
 
-        return customPlaceRepository.save(newPlace);
+        CustomPlace savedPlace = customPlaceRepository.save(newPlace);
+        // Der Geofence-Index übernimmt den Spot erst nach dem Commit
+        eventPublisher.publishEvent(new CustomPlaceChangedEvent(savedPlace));
+        return savedPlace;
     }
 
     @Transactional(readOnly = true)
@@ -179,6 +190,14 @@ public class CustomPlaceService {
             place.setCoverImageUrl(newCoverImageName);
         }
 
-        return customPlaceRepository.save(place);
+        CustomPlace savedPlace = customPlaceRepository.save(place);
+        // Radius, Live-Status oder Ablauf können sich geändert haben
+        eventPublisher.publishEvent(new CustomPlaceChangedEvent(savedPlace));
+        if (request.radiusMeters() != null) {
+            // Der Historical-Feed-Index rechnet mit dem Radius des Spots
+            historicalPhotoIndex.updatePlaceGeometry(HistoricalPhotoIndex.PlaceKey.custom(savedPlace.getId()),
+                    savedPlace.getLocation(), savedPlace.getRadiusMeters());
+        }
+        return savedPlace;
     }
 }
\ No newline at end of file
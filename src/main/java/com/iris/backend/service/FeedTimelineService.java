@@ -0,0 +1,305 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.FeedTimelineEntry;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.repository.FeedTimelineRepository;
+import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.PhotoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains and reads the materialized friends-feed timelines.
+ *
+ * Fan-out-on-write: a FRIENDS or VISIBLE_TO_ALL upload is copied into the timeline of every accepted
+ * friend of the uploader with one INSERT ... SELECT. Reading a page is then one index range scan.
+ *
+ * Fan-out-on-read: uploaders with more than {@code feed.timeline.fanout-max-friends} friends are not
+ * copied (one upload would write thousands of rows). Their photos are pulled at read time and merged
+ * with the timeline page. The set of these high-degree users is recomputed periodically; users that
+ * drop back below the limit get their still valid photos backfilled into their friends' timelines.
+ *
+ * Pages are keyset-paginated on (uploadedAt, photoId), newest first.
+ *
+ * Photos uploaded before the timeline existed are copied in once on startup (see {@link #backfillOnRollout()}).
+ */
+@Service
+public class FeedTimelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedTimelineService.class);
+
+    static final int MAX_PAGE_SIZE = 50;
+    private static final int PRUNE_BATCH_SIZE = 5000;
+    // Beliebige feste Zahl, identisch auf allen Instanzen
+    private static final long BACKFILL_LOCK_KEY = 0x66656564L;
+
+    private final FeedTimelineRepository feedTimelineRepository;
+    private final FriendshipRepository friendshipRepository;
+    private final PhotoRepository photoRepository;
+    private final int fanOutMaxFriends;
+    private final OffsetDateTime startedAt = OffsetDateTime.now();
+
+    // Wird nur komplett ersetzt, nie verändert -> volatile reicht
+    private volatile Set<UUID> highDegreeUserIds = Set.of();
+
+    /**
+     * A page of the friends feed.
+     *
+     * @param photos     the photos of the page, newest first
+     * @param nextCursor the cursor for the next page, or null if this was the last page
+     */
+    public record Page(List<Photo> photos, String nextCursor) {}
+
+    /**
+     * Position in the feed: everything strictly older than (uploadedAt, photoId) comes next.
+     * Encoded as opaque URL-safe Base64 of "epochMicros:photoId".
+     */
+    record Cursor(OffsetDateTime uploadedAt, UUID photoId) {
+
+        // Liegt hinter allen echten Einträgen, d.h. "erste Seite"
+        static final Cursor START = new Cursor(
+                OffsetDateTime.of(9999, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC),
+                new UUID(-1L, -1L));
+
+        // Gleiche Reihenfolge wie ORDER BY uploaded_at DESC, photo_id DESC in Postgres
+        // (uuid wird dort bytweise, also vorzeichenlos verglichen)
+        static final Comparator<Cursor> NEWEST_FIRST = Comparator
+                .comparing(Cursor::uploadedAt)
+                .thenComparing(Cursor::photoId, Cursor::compareUnsigned)
+                .reversed();
+
+        String encode() {
+            long micros = ChronoUnit.MICROS.between(Instant.EPOCH, uploadedAt.toInstant());
+            String raw = micros + ":" + photoId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return START;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf(':');
+                long micros = Long.parseLong(raw.substring(0, separator));
+                Instant instant = Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+                return new Cursor(OffsetDateTime.ofInstant(instant, ZoneOffset.UTC), UUID.fromString(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid feed cursor: " + cursor, e);
+            }
+        }
+
+        private static int compareUnsigned(UUID a, UUID b) {
+            int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+            return result != 0 ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+        }
+    }
+
+    public FeedTimelineService(FeedTimelineRepository feedTimelineRepository,
+                               FriendshipRepository friendshipRepository,
+                               PhotoRepository photoRepository,
+                               @Value("${feed.timeline.fanout-max-friends:1000}") int fanOutMaxFriends) {
+        this.feedTimelineRepository = feedTimelineRepository;
+        this.friendshipRepository = friendshipRepository;
+        this.photoRepository = photoRepository;
+        this.fanOutMaxFriends = fanOutMaxFriends;
+    }
+
+    /**
+     * Copies all still valid feed photos into the timelines of their uploaders' friends, once after the
+     * timeline was rolled out. Only one instance runs it (advisory lock); it is skipped as soon as the
+     * timeline holds an entry uploaded before this instance started, i.e. once an earlier start has
+     * backfilled it. Uploads fanned out during startup are newer and don't count. Inserting is idempotent.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillOnRollout() {
+        if (!feedTimelineRepository.tryAdvisoryXactLock(BACKFILL_LOCK_KEY)
+                || feedTimelineRepository.existsUploadedBefore(startedAt)) {
+            return;
+        }
+        int rows = feedTimelineRepository.backfillAll(OffsetDateTime.now(), fanOutMaxFriends);
+        logger.info("Backfilled {} feed timeline entries", rows);
+    }
+
+    /**
+     * Writes a freshly uploaded photo into the timelines of the uploader's friends.
+     * Photos that don't belong into the friends feed and photos of high-degree uploaders are skipped.
+     */
+    @Transactional
+    public void fanOut(Photo photo) {
+        if (!isFeedVisibility(photo.getVisibility())) {
+            return;
+        }
+        UUID uploaderId = photo.getUploader().getId();
+        if (highDegreeUserIds.contains(uploaderId)) {
+            logger.debug("Skipping fan-out of photo {}: uploader {} has more than {} friends (read-time merge)",
+                    photo.getId(), uploaderId, fanOutMaxFriends);
+            return;
+        }
+        int rows = feedTimelineRepository.fanOutToFriends(
+                photo.getId(), uploaderId, photo.getUploadedAt(), photo.getExpiresAt());
+        logger.debug("Fanned out photo {} to {} timelines", photo.getId(), rows);
+    }
+
+    /**
+     * Backfills the still valid feed photos of two users that just became friends into each other's timeline.
+     */
+    @Transactional
+    public void onFriendshipAccepted(UUID userA, UUID userB) {
+        OffsetDateTime now = OffsetDateTime.now();
+        if (!highDegreeUserIds.contains(userA)) {
+            feedTimelineRepository.backfillFromUploader(userB, userA, now);
+        }
+        if (!highDegreeUserIds.contains(userB)) {
+            feedTimelineRepository.backfillFromUploader(userA, userB, now);
+        }
+    }
+
+    /**
+     * Removes the photos of two former friends from each other's timeline.
+     */
+    @Transactional
+    public void onFriendshipRemoved(UUID userA, UUID userB) {
+        feedTimelineRepository.deleteBetweenUsers(userA, userB);
+    }
+
+    @Transactional
+    public void onPhotoDeleted(UUID photoId) {
+        feedTimelineRepository.deleteByPhotoId(photoId);
+    }
+
+    /**
+     * Reads one page of the friends feed of a user.
+     *
+     * @param userId the user whose feed is read
+     * @param cursor the cursor returned with the previous page, or null/blank for the first page
+     * @param limit  the requested page size (clamped to 1..{@value #MAX_PAGE_SIZE})
+     * @return the page, newest first
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public Page getFriendsFeedPage(UUID userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Cursor position = Cursor.decode(cursor);
+        OffsetDateTime now = OffsetDateTime.now();
+
+        // 1. Materialisierte Timeline (Fan-out-on-write)
+        List<FeedTimelineEntry> entries = feedTimelineRepository.findPage(
+                userId, now, position.uploadedAt(), position.photoId(), Limit.of(pageSize));
+
+        // 2. Fotos von Freunden mit sehr vielen Freunden direkt lesen (Fan-out-on-read)
+        Set<UUID> pulledUploaders = highDegreeFriendsOf(userId);
+        List<Photo> pulledPhotos = pulledUploaders.isEmpty()
+                ? List.of()
+                : photoRepository.findFriendsFeedPageByUploaders(
+                        pulledUploaders, now, now.minus(Photo.MAX_LIFETIME), position.uploadedAt(), position.photoId(),
+                        Limit.of(pageSize));
+
+        // 3. Beide sortierten Listen zusammenführen, Duplikate entfernen, auf die Seitengröße kürzen
+        Map<UUID, Cursor> candidates = new HashMap<>();
+        for (FeedTimelineEntry entry : entries) {
+            candidates.put(entry.getId().getPhotoId(), new Cursor(entry.getUploadedAt(), entry.getId().getPhotoId()));
+        }
+        for (Photo photo : pulledPhotos) {
+            candidates.put(photo.getId(), new Cursor(photo.getUploadedAt(), photo.getId()));
+        }
+        List<Cursor> page = candidates.values().stream()
+                .sorted(Cursor.NEWEST_FIRST)
+                .limit(pageSize)
+                .toList();
+
+        // 4. Fehlende Photo-Entities (aus der Timeline) mit einer Query nachladen
+        Map<UUID, Photo> photosById = pulledPhotos.stream()
+                .collect(Collectors.toMap(Photo::getId, Function.identity()));
+        List<UUID> missing = page.stream()
+                .map(Cursor::photoId)
+                .filter(id -> !photosById.containsKey(id))
+                .toList();
+        if (!missing.isEmpty()) {
+            photoRepository.findAllById(missing).forEach(photo -> photosById.put(photo.getId(), photo));
+        }
+
+        // Fotos, die inzwischen gelöscht wurden, fallen einfach weg
+        List<Photo> photos = page.stream()
+                .map(key -> photosById.get(key.photoId()))
+                .filter(Objects::nonNull)
+                .toList();
+        String nextCursor = page.size() == pageSize ? page.get(page.size() - 1).encode() : null;
+        return new Page(photos, nextCursor);
+    }
+
+    /**
+     * Recomputes the set of uploaders that are excluded from fan-out-on-write.
+     * Users that dropped below the limit get their still valid photos backfilled, so nothing
+     * they posted while being read-time merged disappears from their friends' feeds.
+     */
+    @Scheduled(fixedDelayString = "${feed.timeline.high-degree-refresh-ms:600000}")
+    @Transactional
+    public void refreshHighDegreeUsers() {
+        Set<UUID> previous = highDegreeUserIds;
+        Set<UUID> current = Set.copyOf(friendshipRepository.findUserIdsWithMoreAcceptedFriendsThan(fanOutMaxFriends));
+
+        OffsetDateTime now = OffsetDateTime.now();
+        for (UUID userId : previous) {
+            if (!current.contains(userId)) {
+                int rows = feedTimelineRepository.backfillToAllFriends(userId, now);
+                logger.info("User {} is back below the fan-out limit, backfilled {} timeline entries", userId, rows);
+            }
+        }
+        highDegreeUserIds = current;
+    }
+
+    /**
+     * Deletes timeline entries whose photo has expired, in small batches.
+     */
+    @Scheduled(fixedDelayString = "${feed.timeline.prune-interval-ms:900000}")
+    public void pruneExpiredEntries() {
+        OffsetDateTime now = OffsetDateTime.now();
+        int total = 0;
+        int deleted;
+        do {
+            deleted = feedTimelineRepository.deleteExpiredBatch(now, PRUNE_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == PRUNE_BATCH_SIZE);
+
+        if (total > 0) {
+            logger.info("Pruned {} expired feed timeline entries", total);
+        }
+    }
+
+    private Set<UUID> highDegreeFriendsOf(UUID userId) {
+        Set<UUID> highDegree = highDegreeUserIds;
+        if (highDegree.isEmpty()) {
+            return Set.of();
+        }
+        Set<UUID> result = new HashSet<>();
+        for (UUID friendId : friendshipRepository.findAcceptedFriendIds(userId)) {
+            if (highDegree.contains(friendId)) {
+                result.add(friendId);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isFeedVisibility(PhotoVisibility visibility) {
+        return visibility == PhotoVisibility.FRIENDS || visibility == PhotoVisibility.VISIBLE_TO_ALL;
+    }
+}
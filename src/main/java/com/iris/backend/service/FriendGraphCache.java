@@ -0,0 +1,227 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.enums.FriendshipStatus;
+import com.iris.backend.repository.FriendshipRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Friend-graph adjacency cache: per user, the IDs of their accepted friends and of all users they
+ * have a friendship row with (accepted or pending, in either direction).
+ *
+ * Both sets are loaded with one ID-only projection (no {@code User} entities) and stored as sorted
+ * primitive arrays ({@link IdSet}, 16 bytes per ID). Whenever a friendship is requested, accepted,
+ * rejected or removed, the entries of both users are dropped, once right away and once after commit,
+ * so the next read loads the committed state. Entries also expire after a TTL, which covers rows that
+ * change outside of {@link FriendshipService} (e.g. cascades on account deletion). The cache is
+ * bounded (LRU).
+ */
+@Component
+public class FriendGraphCache {
+
+    /**
+     * Immutable, sorted set of user IDs backed by one {@code long[]} (most/least significant bits
+     * interleaved). Lookups are a binary search without boxing.
+     */
+    public static final class IdSet {
+
+        private final long[] bits;
+
+        private IdSet(long[] bits) {
+            this.bits = bits;
+        }
+
+        static IdSet of(Collection<UUID> ids) {
+            UUID[] sorted = ids.stream().distinct().sorted(IdSet::compare).toArray(UUID[]::new);
+            long[] bits = new long[sorted.length * 2];
+            for (int i = 0; i < sorted.length; i++) {
+                bits[2 * i] = sorted[i].getMostSignificantBits();
+                bits[2 * i + 1] = sorted[i].getLeastSignificantBits();
+            }
+            return new IdSet(bits);
+        }
+
+        public boolean contains(UUID id) {
+            long msb = id.getMostSignificantBits();
+            long lsb = id.getLeastSignificantBits();
+            int low = 0;
+            int high = size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = Long.compare(bits[2 * mid], msb);
+                if (cmp == 0) {
+                    cmp = Long.compare(bits[2 * mid + 1], lsb);
+                }
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int size() {
+            return bits.length / 2;
+        }
+
+        public boolean isEmpty() {
+            return bits.length == 0;
+        }
+
+        public List<UUID> toList() {
+            List<UUID> result = new ArrayList<>(size());
+            for (int i = 0; i < bits.length; i += 2) {
+                result.add(new UUID(bits[i], bits[i + 1]));
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdSet other && Arrays.equals(bits, other.bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bits);
+        }
+
+        // Vorzeichenbehaftet wie in contains(); UUID#compareTo vergleicht genauso
+        private static int compare(UUID a, UUID b) {
+            int cmp = Long.compare(a.getMostSignificantBits(), b.getMostSignificantBits());
+            return cmp != 0 ? cmp : Long.compare(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+        }
+    }
+
+    private record Entry(IdSet friendIds, IdSet relatedUserIds, Instant expiresAt) {}
+
+    private final FriendshipRepository friendshipRepository;
+    private final Duration ttl;
+    private final Clock clock;
+    private final Map<UUID, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    // Wird bei jeder Invalidierung erhöht; ein Load, der eine Invalidierung überlappt, wird nicht gespeichert
+    private long generation;
+
+    @Autowired
+    public FriendGraphCache(FriendshipRepository friendshipRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${friend-graph.cache.max-users:50000}") int maxUsers,
+                            @Value("${friend-graph.cache.ttl-minutes:10}") long ttlMinutes) {
+        this(friendshipRepository, meterRegistry, maxUsers, Duration.ofMinutes(ttlMinutes), Clock.systemUTC());
+    }
+
+    FriendGraphCache(FriendshipRepository friendshipRepository, MeterRegistry meterRegistry, int maxUsers,
+                     Duration ttl, Clock clock) {
+        this.friendshipRepository = friendshipRepository;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.hits = meterRegistry.counter("iris.friend_graph_cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("iris.friend_graph_cache.requests", "result", "miss");
+
+        // LRU wie beim SignedUrlCache
+        this.entries = new LinkedHashMap<>(Math.min(maxUsers, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return size() > maxUsers;
+            }
+        };
+        Gauge.builder("iris.friend_graph_cache.size", this, FriendGraphCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the IDs of the accepted friends of the given user.
+     */
+    public IdSet friendIds(UUID userId) {
+        return entry(userId).friendIds();
+    }
+
+    /**
+     * Returns the IDs of all users the given user is a friend of or has a pending request with.
+     */
+    public IdSet relatedUserIds(UUID userId) {
+        return entry(userId).relatedUserIds();
+    }
+
+    /**
+     * Drops the cached relations of both users after their friendship row changed. Inside a transaction
+     * the entries are dropped again after commit, so a concurrent load of the old state does not stick.
+     */
+    public void invalidate(UUID userA, UUID userB) {
+        drop(userA, userB);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    drop(userA, userB);
+                }
+            });
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Entry entry(UUID userId) {
+        Instant now = clock.instant();
+        long loadGeneration;
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.expiresAt().isAfter(now)) {
+                hits.increment();
+                return entry;
+            }
+            loadGeneration = generation;
+        }
+
+        misses.increment();
+        // Query bewusst außerhalb des Locks
+        List<UUID> friends = new ArrayList<>();
+        List<UUID> related = new ArrayList<>();
+        for (FriendshipRepository.RelationProjection relation : friendshipRepository.findRelations(userId)) {
+            related.add(relation.getUserId());
+            if (relation.getStatus() == FriendshipStatus.ACCEPTED) {
+                friends.add(relation.getUserId());
+            }
+        }
+        Entry loaded = new Entry(IdSet.of(friends), IdSet.of(related), now.plus(ttl));
+        synchronized (entries) {
+            if (generation == loadGeneration) {
+                entries.put(userId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    private void drop(UUID userA, UUID userB) {
+        synchronized (entries) {
+            generation++;
+            entries.remove(userA);
+            entries.remove(userB);
+        }
+    }
+}
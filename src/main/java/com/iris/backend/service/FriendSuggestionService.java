@@ -0,0 +1,253 @@
+package com.iris.backend.service;
+
+import com.iris.backend.dto.FriendSuggestionDTO;
+import com.iris.backend.event.FriendshipChangedEvent;
+import com.iris.backend.model.User;
+import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.PhotoRepository;
+import com.iris.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * "People you may know": friends of friends, ranked by the number of mutual friends plus a bonus for
+ * every place both users uploaded photos at within the co-location window.
+ *
+ * A nightly batch loads the whole friendship graph and the upload places with two ID-only queries
+ * into a {@link SuggestionGraph} and stores the top K suggestions of every user. When a friendship
+ * changes, both users are recomputed by the next incremental refresh from the {@link FriendGraphCache}
+ * (their friends' lists catch up with the next batch). Reads only filter the stored list against the
+ * caller's current relations and load the users to display.
+ */
+@Service
+public class FriendSuggestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FriendSuggestionService.class);
+
+    /**
+     * A suggested user with the reasons for the suggestion.
+     */
+    public record Suggestion(UUID userId, int mutualFriends, int sharedPlaces) {}
+
+    private final FriendshipRepository friendshipRepository;
+    private final PhotoRepository photoRepository;
+    private final UserRepository userRepository;
+    private final FriendGraphCache friendGraphCache;
+    private final GcsStorageService gcsStorageService;
+    private final String profileImagesBucketName;
+    private final int topK;
+    private final double sharedPlaceWeight;
+    private final int maxFriendDegree;
+    private final Duration coLocationWindow;
+    private final Clock clock;
+    private final Counter batchRefreshes;
+    private final Counter incrementalRefreshes;
+
+    private final ConcurrentMap<UUID, List<Suggestion>> suggestions = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    // Orte pro User aus dem letzten Batch, für den Ko-Lokations-Bonus der inkrementellen Updates
+    private volatile SuggestionGraph graph = SuggestionGraph.EMPTY;
+
+    @Autowired
+    public FriendSuggestionService(FriendshipRepository friendshipRepository,
+                                   PhotoRepository photoRepository,
+                                   UserRepository userRepository,
+                                   FriendGraphCache friendGraphCache,
+                                   GcsStorageService gcsStorageService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${gcs.bucket.profile-images.name}") String profileImagesBucketName,
+                                   @Value("${suggestions.top-k:50}") int topK,
+                                   @Value("${suggestions.shared-place-weight:0.5}") double sharedPlaceWeight,
+                                   @Value("${suggestions.max-friend-degree:1000}") int maxFriendDegree,
+                                   @Value("${suggestions.co-location-window-days:90}") long coLocationWindowDays) {
+        this(friendshipRepository, photoRepository, userRepository, friendGraphCache, gcsStorageService, meterRegistry,
+                profileImagesBucketName, topK, sharedPlaceWeight, maxFriendDegree, Duration.ofDays(coLocationWindowDays),
+                Clock.systemUTC());
+    }
+
+    FriendSuggestionService(FriendshipRepository friendshipRepository, PhotoRepository photoRepository,
+                            UserRepository userRepository, FriendGraphCache friendGraphCache,
+                            GcsStorageService gcsStorageService, MeterRegistry meterRegistry,
+                            String profileImagesBucketName, int topK, double sharedPlaceWeight, int maxFriendDegree,
+                            Duration coLocationWindow, Clock clock) {
+        this.friendshipRepository = friendshipRepository;
+        this.photoRepository = photoRepository;
+        this.userRepository = userRepository;
+        this.friendGraphCache = friendGraphCache;
+        this.gcsStorageService = gcsStorageService;
+        this.profileImagesBucketName = profileImagesBucketName;
+        this.topK = topK;
+        this.sharedPlaceWeight = sharedPlaceWeight;
+        this.maxFriendDegree = maxFriendDegree;
+        this.coLocationWindow = coLocationWindow;
+        this.clock = clock;
+        this.batchRefreshes = meterRegistry.counter("iris.friend_suggestions.refreshes", "mode", "batch");
+        this.incrementalRefreshes = meterRegistry.counter("iris.friend_suggestions.refreshes", "mode", "incremental");
+        Gauge.builder("iris.friend_suggestions.users", suggestions, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the best suggestions for the user, without users they are already related to.
+     *
+     * @param limit the requested number of suggestions (clamped to 1..{@code suggestions.top-k})
+     */
+    public List<FriendSuggestionDTO> getSuggestions(User currentUser, int limit) {
+        int maxSuggestions = Math.max(1, Math.min(limit, topK));
+        FriendGraphCache.IdSet related = friendGraphCache.relatedUserIds(currentUser.getId());
+        List<Suggestion> top = suggestions.getOrDefault(currentUser.getId(), List.of()).stream()
+                .filter(suggestion -> !related.contains(suggestion.userId()))
+                .limit(maxSuggestions)
+                .toList();
+        if (top.isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, User> users = userRepository.findAllById(top.stream().map(Suggestion::userId).toList()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return top.stream()
+                .filter(suggestion -> users.containsKey(suggestion.userId()))
+                .map(suggestion -> toDTO(users.get(suggestion.userId()), suggestion))
+                .toList();
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        recomputeAll();
+    }
+
+    /**
+     * Recomputes the suggestions of all users from one snapshot of the friendship graph.
+     */
+    @Scheduled(cron = "${suggestions.batch-cron:0 30 4 * * *}")
+    public synchronized void recomputeAll() {
+        long start = clock.millis();
+        SuggestionGraph snapshot;
+        try {
+            snapshot = SuggestionGraph.build(friendshipRepository.findAllEdges(),
+                    photoRepository.findUploadPlacesSince(clock.instant().minus(coLocationWindow).atOffset(ZoneOffset.UTC)));
+        } catch (RuntimeException e) {
+            logger.error("Could not load the friendship graph for suggestions: {}", e.getMessage());
+            return;
+        }
+
+        Map<UUID, List<Suggestion>> computed = new HashMap<>();
+        int[] counts = new int[snapshot.size()];
+        for (int user = 0; user < snapshot.size(); user++) {
+            List<Suggestion> top = top(snapshot.candidates(user, maxFriendDegree, counts));
+            if (!top.isEmpty()) {
+                computed.put(snapshot.userId(user), top);
+            }
+        }
+        suggestions.keySet().retainAll(computed.keySet());
+        suggestions.putAll(computed);
+        graph = snapshot;
+        batchRefreshes.increment();
+        logger.info("Friend suggestions recomputed for {} users in {} ms", computed.size(), clock.millis() - start);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        dirty.add(event.userOneId());
+        dirty.add(event.userTwoId());
+    }
+
+    /**
+     * Recomputes the suggestions of the users whose friendships changed since the last run.
+     */
+    @Scheduled(fixedDelayString = "${suggestions.refresh-interval-ms:60000}")
+    public synchronized void refreshDirty() {
+        for (UUID userId : List.copyOf(dirty)) {
+            dirty.remove(userId);
+            try {
+                List<Suggestion> top = top(candidatesFromCache(userId));
+                if (top.isEmpty()) {
+                    suggestions.remove(userId);
+                } else {
+                    suggestions.put(userId, top);
+                }
+                incrementalRefreshes.increment();
+            } catch (RuntimeException e) {
+                dirty.add(userId);
+                logger.warn("Could not refresh friend suggestions of user {}: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    // Wie SuggestionGraph#candidates, aber mit den aktuellen Freundeslisten aus dem Cache
+    private List<Suggestion> candidatesFromCache(UUID userId) {
+        FriendGraphCache.IdSet related = friendGraphCache.relatedUserIds(userId);
+        Map<UUID, Integer> mutualFriends = new HashMap<>();
+        for (UUID friendId : friendGraphCache.friendIds(userId).toList()) {
+            FriendGraphCache.IdSet friendsOfFriend = friendGraphCache.friendIds(friendId);
+            if (friendsOfFriend.size() > maxFriendDegree) {
+                continue;
+            }
+            for (UUID candidate : friendsOfFriend.toList()) {
+                if (!candidate.equals(userId) && !related.contains(candidate)) {
+                    mutualFriends.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+
+        SuggestionGraph snapshot = graph;
+        int[] ownPlaces = snapshot.placesOf(userId);
+        List<Suggestion> result = new ArrayList<>(mutualFriends.size());
+        mutualFriends.forEach((candidate, mutual) -> result.add(new Suggestion(candidate, mutual,
+                SuggestionGraph.intersectionSize(ownPlaces, snapshot.placesOf(candidate)))));
+        return result;
+    }
+
+    // Die besten K Kandidaten, beste zuerst (Min-Heap der Größe K)
+    private List<Suggestion> top(List<Suggestion> candidates) {
+        Comparator<Suggestion> byScore = Comparator.comparingDouble(this::score)
+                .thenComparingInt(Suggestion::mutualFriends)
+                .thenComparing(Suggestion::userId, Comparator.reverseOrder());
+        PriorityQueue<Suggestion> best = new PriorityQueue<>(byScore);
+        for (Suggestion candidate : candidates) {
+            best.add(candidate);
+            if (best.size() > topK) {
+                best.poll();
+            }
+        }
+        List<Suggestion> result = new ArrayList<>(best);
+        result.sort(byScore.reversed());
+        return List.copyOf(result);
+    }
+
+    private double score(Suggestion suggestion) {
+        return suggestion.mutualFriends() + sharedPlaceWeight * suggestion.sharedPlaces();
+    }
+
+    private FriendSuggestionDTO toDTO(User user, Suggestion suggestion) {
+        String signedProfileUrl = null;
+        String objectName = user.getProfileImageUrl();
+        if (objectName != null && !objectName.isBlank()) {
+            signedProfileUrl = gcsStorageService.generateSignedUrl(profileImagesBucketName, objectName, 15, TimeUnit.MINUTES);
+        }
+        return new FriendSuggestionDTO(user.getId(), user.getUsername(), signedProfileUrl,
+                suggestion.mutualFriends(), suggestion.sharedPlaces());
+    }
+}
@@ -5,10 +5,10 @@ import com.iris.backend.dto.FriendshipActionDTO;
 import com.iris.backend.dto.PendingRequestDTO;
 import com.iris.backend.dto.UserDTO;
 import com.iris.backend.dto.feed.GalleryFeedItemDTO;
-import com.iris.backend.model.CustomPlace;
 import com.iris.backend.dto.LocationReportDTO;
+import com.iris.backend.event.FriendshipChangedEvent;
+import com.iris.backend.geo.Geodesy;
 import com.iris.backend.model.Friendship;
-import com.iris.backend.model.GooglePlace;
 import com.iris.backend.model.User;
 import com.iris.backend.model.enums.FriendshipStatus;
 import com.iris.backend.repository.CustomPlaceRepository;
@@ -20,15 +20,13 @@ import org.locationtech.jts.geom.Point;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -43,9 +41,18 @@ public class FriendshipService {
     private final GooglePlaceRepository googlePlaceRepository;
     private final CustomPlaceRepository customPlaceRepository;
     private final GalleryFeedService galleryFeedService;
+    private final FeedTimelineService feedTimelineService;
+    private final PresenceService presenceService;
+    private final GeofenceIndex geofenceIndex;
+    private final FriendGraphCache friendGraphCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InteractionSink interactionSink;
 
     @Value("${gcs.bucket.profile-images.name}")
     private String profileImagesBucketName;
+    // Halbwertszeit des Interaktions-Scores in der Teilen-Liste (0 = kein Zerfall)
+    @Value("${friendship.interaction.half-life-days:14}")
+    private double interactionHalfLifeDays;
     private static final Logger logger = LoggerFactory.getLogger(FriendshipService.class);
 
     private static final double MAX_DISTANCE_METERS = 50000000.0;
@@ -59,7 +66,13 @@ public class FriendshipService {
                              FcmService fcmService,
                              GooglePlaceRepository googlePlaceRepository,
                              CustomPlaceRepository customPlaceRepository,
-                             @Lazy GalleryFeedService galleryFeedService) {
+                             @Lazy GalleryFeedService galleryFeedService,
+                             FeedTimelineService feedTimelineService,
+                             PresenceService presenceService,
+                             GeofenceIndex geofenceIndex,
+                             FriendGraphCache friendGraphCache,
+                             ApplicationEventPublisher eventPublisher,
+                             InteractionSink interactionSink) {
         this.userRepository = userRepository;
         this.friendshipRepository = friendshipRepository;
         this.gcsStorageService = gcsStorageService;
@@ -67,6 +80,12 @@ public class FriendshipService {
         this.googlePlaceRepository = googlePlaceRepository;
         this.customPlaceRepository = customPlaceRepository;
         this.galleryFeedService = galleryFeedService;
+        this.feedTimelineService = feedTimelineService;
+        this.presenceService = presenceService;
+        this.geofenceIndex = geofenceIndex;
+        this.friendGraphCache = friendGraphCache;
+        this.eventPublisher = eventPublisher;
+        this.interactionSink = interactionSink;
     }
 
     /**
@@ -78,74 +97,92 @@ public class FriendshipService {
      */
     @Transactional(readOnly = true)
     public List<FriendAtSpotDTO> getFriendsAtSpots(User currentUser) {
-        OffsetDateTime fiveMinutesAgo = OffsetDateTime.now().minusMinutes(5);
+        // 1. + 2. Aktive Freunde pro Spot sammeln (Reihenfolge der Freunde stabil halten):
+        //    aus Presence-Speicher und Geofence-Index, solange diese noch laden per räumlichem Join in SQL
+        Map<Long, Set<UUID>> friendsPerGooglePlace = new HashMap<>();
+        Map<UUID, Set<UUID>> friendsPerCustomPlace = new HashMap<>();
+        Set<UUID> friendIds = new HashSet<>();
+        if (!collectFriendsAtSpotsInMemory(currentUser.getId(), friendsPerGooglePlace, friendsPerCustomPlace, friendIds)) {
+            OffsetDateTime fiveMinutesAgo = OffsetDateTime.now().minusMinutes(5);
+            for (FriendshipRepository.FriendAtSpotProjection pair
+                    : friendshipRepository.findActiveFriendsAtSpots(currentUser.getId(), fiveMinutesAgo)) {
+                friendIds.add(pair.getFriendId());
+                if (pair.getGooglePlaceId() != null) {
+                    friendsPerGooglePlace.computeIfAbsent(pair.getGooglePlaceId(), k -> new LinkedHashSet<>()).add(pair.getFriendId());
+                } else {
+                    friendsPerCustomPlace.computeIfAbsent(pair.getCustomPlaceId(), k -> new LinkedHashSet<>()).add(pair.getFriendId());
+                }
+            }
+        }
+        if (friendIds.isEmpty()) {
+            return List.of(); // Keine aktiven Freunde an einem Spot
+        }
 
-        // 1. Finde alle Freunde mit einem aktuellen Standort-Update
-        List<User> activeFriends = getFriendsAsEntities(currentUser.getId()).stream()
-                .filter(friend -> friend.getLastLocation() != null &&
-                        friend.getLastLocationUpdatedAt() != null &&
-                        friend.getLastLocationUpdatedAt().isAfter(fiveMinutesAgo))
-                .toList();
+        // 3. Freunde, Orte und Orts-Kennzahlen gesammelt laden (Anzahl Queries unabhängig von der Anzahl Freunde)
+        Map<UUID, UserDTO> friends = userRepository.findAllById(friendIds).stream()
+                .collect(Collectors.toMap(User::getId, this::toUserDTOWithSignedUrl));
+        Map<Long, GalleryFeedItemDTO> googleSpots = friendsPerGooglePlace.isEmpty()
+                ? Map.of()
+                : galleryFeedService.getFeedItemsForGooglePlaces(googlePlaceRepository.findAllById(friendsPerGooglePlace.keySet()));
+        Map<UUID, GalleryFeedItemDTO> customSpots = friendsPerCustomPlace.isEmpty()
+                ? Map.of()
+                : galleryFeedService.getFeedItemsForCustomPlaces(customPlaceRepository.findAllWithOwnerByIdIn(friendsPerCustomPlace.keySet()));
+
+        // 4. DTOs zusammenbauen
+        List<FriendAtSpotDTO> result = new ArrayList<>();
+        friendsPerGooglePlace.forEach((placeId, ids) -> addFriendAtSpot(result, googleSpots.get(placeId), ids, friends));
+        friendsPerCustomPlace.forEach((placeId, ids) -> addFriendAtSpot(result, customSpots.get(placeId), ids, friends));
+        result.sort(Comparator.comparing(dto -> dto.spotInfo().name())); // Sortiere nach Spot-Name
+        return result;
+    }
 
+    /**
+     * Ordnet die aktiven Freunde über ihre Position im Presence-Speicher den Orten im Geofence-Index zu.
+     *
+     * @return false, wenn einer der beiden noch nicht geladen ist (dann bleiben die Maps leer)
+     */
+    private boolean collectFriendsAtSpotsInMemory(UUID userId, Map<Long, Set<UUID>> friendsPerGooglePlace,
+                                                  Map<UUID, Set<UUID>> friendsPerCustomPlace, Set<UUID> friendIds) {
+        // Freundesliste aus der DB, nicht aus dem FriendGraphCache: sie entscheidet, wessen Standort
+        // gezeigt wird, und der Cache dieser Instanz kann ein Unfriend auf einer anderen noch nicht kennen
+        Optional<Map<UUID, PresenceService.Location>> activeFriends =
+                presenceService.findActive(friendshipRepository.findAcceptedFriendIds(userId));
         if (activeFriends.isEmpty()) {
-            return List.of(); // Keine aktiven Freunde, keine Spots
+            return false;
         }
-
-        // 2. Erstelle eine Map, um Freunde pro Spot zu sammeln
-        // Wir brauchen einen eindeutigen Key für Google (Long) und Custom (UUID)
-        // Wir nutzen "g-123" für GooglePlace 123 und "c-abc..." für CustomPlace abc...
-        Map<String, List<User>> friendsPerSpotKey = new java.util.HashMap<>();
-        Map<String, Object> spotEntityMap = new java.util.HashMap<>();
-
-        // 3. Iteriere durch jeden aktiven Freund und finde seine Spots
-        for (User friend : activeFriends) {
-            double lat = friend.getLastLocation().getY();
-            double lon = friend.getLastLocation().getX();
-
-            // Finde Google Places für den Freund
-            List<GooglePlace> googlePlaces = googlePlaceRepository.findActivePlacesForUserLocation(lat, lon);
-            for (GooglePlace spot : googlePlaces) {
-                String key = "g-" + spot.getId();
-                spotEntityMap.putIfAbsent(key, spot);
-                friendsPerSpotKey.computeIfAbsent(key, k -> new java.util.ArrayList<>()).add(friend);
+        for (Map.Entry<UUID, PresenceService.Location> friend : activeFriends.get().entrySet()) {
+            Optional<GeofenceIndex.Containing> containing =
+                    geofenceIndex.findContaining(friend.getValue().latitude(), friend.getValue().longitude());
+            if (containing.isEmpty()) {
+                friendsPerGooglePlace.clear();
+                friendsPerCustomPlace.clear();
+                friendIds.clear();
+                return false;
             }
-
-            // Finde Custom Places für den Freund
-            List<CustomPlace> customPlaces = customPlaceRepository.findActivePlacesForUserLocation(lat, lon);
-            for (CustomPlace spot : customPlaces) {
-                String key = "c-" + spot.getId();
-                spotEntityMap.putIfAbsent(key, spot);
-                friendsPerSpotKey.computeIfAbsent(key, k -> new java.util.ArrayList<>()).add(friend);
+            UUID friendId = friend.getKey();
+            containing.get().googlePlaceIds().forEach(placeId ->
+                    friendsPerGooglePlace.computeIfAbsent(placeId, k -> new LinkedHashSet<>()).add(friendId));
+            containing.get().customPlaceIds().forEach(placeId ->
+                    friendsPerCustomPlace.computeIfAbsent(placeId, k -> new LinkedHashSet<>()).add(friendId));
+            if (!containing.get().googlePlaceIds().isEmpty() || !containing.get().customPlaceIds().isEmpty()) {
+                friendIds.add(friendId);
             }
         }
+        return true;
+    }
 
-        // 4. Konvertiere die gesammelten Daten in die finalen DTOs
-        return friendsPerSpotKey.entrySet().stream()
-                .map(entry -> {
-                    String spotKey = entry.getKey();
-                    Object spotEntity = spotEntityMap.get(spotKey);
-
-                    // Konvertiere das Entity (Google/Custom) in ein GalleryFeedItemDTO
-                    GalleryFeedItemDTO spotInfo;
-                    if (spotEntity instanceof GooglePlace gp) {
-                        // 'true' = Lade Foto-Infos (Coverbild etc.)
-                        spotInfo = galleryFeedService.getFeedItemForPlace(gp, true);
-                    } else if (spotEntity instanceof CustomPlace cp) {
-                        spotInfo = galleryFeedService.getFeedItemForPlace(cp, true);
-                    } else {
-                        return null; // Sollte nicht passieren
-                    }
-
-                    // Konvertiere die Liste der User-Entities in UserDTOs (mit Profilbild-URL)
-                    List<UserDTO> friendDTOs = entry.getValue().stream()
-                            .map(this::toUserDTOWithSignedUrl) // Diese Helfermethode haben wir schon
-                            .toList();
-
-                    return new FriendAtSpotDTO(spotInfo, friendDTOs);
-                })
-                .filter(dto -> dto != null && !dto.friendsAtSpot().isEmpty())
-                .sorted(Comparator.comparing(dto -> dto.spotInfo().name())) // Sortiere nach Spot-Name
+    private static void addFriendAtSpot(List<FriendAtSpotDTO> result, GalleryFeedItemDTO spotInfo,
+                                        Set<UUID> friendIds, Map<UUID, UserDTO> friends) {
+        if (spotInfo == null) {
+            return; // Ort wurde zwischenzeitlich gelöscht
+        }
+        List<UserDTO> friendDTOs = friendIds.stream()
+                .map(friends::get)
+                .filter(Objects::nonNull)
                 .toList();
+        if (!friendDTOs.isEmpty()) {
+            result.add(new FriendAtSpotDTO(spotInfo, friendDTOs));
+        }
     }
 
     /**
@@ -185,19 +222,31 @@ public class FriendshipService {
     }
 
     /**
-     * Retrieves the list of friends for a specified user as entity representations.
-     * (Diese Methode bleibt unverändert, da sie keine DTOs verwendet)
+     * Retrieves the list of friends for a specified user as entity representations, in no particular order.
+     * Die Freundes-IDs kommen aus dem {@link FriendGraphCache}; geladen werden nur die User selbst.
+     * Nicht für Berechtigungsprüfungen verwenden, dafür gibt es {@link #areFriends}.
+     *
+     * @throws RuntimeException if the user does not exist
      */
     public List<User> getFriendsAsEntities(UUID userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        List<Friendship> friendships = friendshipRepository
-                .findByUserOneAndStatusOrUserTwoAndStatus(user, FriendshipStatus.ACCEPTED, user, FriendshipStatus.ACCEPTED);
+        List<UUID> friendIds = friendGraphCache.friendIds(userId).toList();
+        if (friendIds.isEmpty()) {
+            // Ein unbekannter User hat im Cache auch keine Freunde
+            if (!userRepository.existsById(userId)) {
+                throw new RuntimeException("User not found");
+            }
+            return List.of();
+        }
+        return userRepository.findAllById(friendIds);
+    }
 
-        return friendships.stream()
-                .map(friendship -> friendship.getUserOne().getId().equals(userId) ? friendship.getUserTwo() : friendship.getUserOne())
-                .collect(Collectors.toList());
+    /**
+     * Checks whether two users are accepted friends. Reads the database instead of the
+     * {@link FriendGraphCache}: the cache is per instance and may lag behind an unfriend on another
+     * instance by up to its TTL, which is fine for lists but not for permission checks.
+     */
+    public boolean areFriends(UUID userId, UUID otherUserId) {
+        return friendshipRepository.existsAcceptedFriendship(userId, otherUserId);
     }
 
     /**
@@ -227,6 +276,8 @@ public class FriendshipService {
         newFriendship.setActionUser(requester);
 
         friendshipRepository.save(newFriendship);
+        friendGraphCache.invalidate(userOne.getId(), userTwo.getId());
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userOne.getId(), userTwo.getId()));
     }
 
     /**
@@ -317,6 +368,11 @@ public class FriendshipService {
         friendship.setStatus(FriendshipStatus.ACCEPTED);
         friendship.setActionUser(acceptor); // Setze den annehmenden User als letzten Akteur
         friendshipRepository.save(friendship);
+        friendGraphCache.invalidate(friendship.getUserOne().getId(), friendship.getUserTwo().getId());
+        eventPublisher.publishEvent(new FriendshipChangedEvent(friendship.getUserOne().getId(), friendship.getUserTwo().getId()));
+
+        // Noch gültige Feed-Fotos gegenseitig in die Timelines übernehmen
+        feedTimelineService.onFriendshipAccepted(friendship.getUserOne().getId(), friendship.getUserTwo().getId());
     }
 
     /**
@@ -390,15 +446,30 @@ public class FriendshipService {
             return List.of();
         }
 
-        List<UUID> friendIds = getFriendsAsEntities(currentUser.getId()).stream()
-                .map(User::getId)
-                .collect(Collectors.toList());
-
+        // Aus der DB statt aus dem FriendGraphCache, siehe collectFriendsAtSpotsInMemory
+        List<UUID> friendIds = friendshipRepository.findAcceptedFriendIds(currentUser.getId());
         if (friendIds.isEmpty()) {
             return List.of();
         }
 
         double radius = 100.0; // 100 Meter Radius
+        Optional<Map<UUID, PresenceService.Location>> activeFriends = presenceService.findActive(friendIds);
+        if (activeFriends.isPresent()) {
+            // Aus dem Presence-Speicher: enthält nur Standorte der letzten 5 Minuten;
+            // geladen werden nur die Freunde, die tatsächlich am Ort sind
+            List<UUID> nearbyFriendIds = activeFriends.get().entrySet().stream()
+                    .filter(friend -> Geodesy.distanceMeters(placeLocation.getY(), placeLocation.getX(),
+                            friend.getValue().latitude(), friend.getValue().longitude()) <= radius)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            if (nearbyFriendIds.isEmpty()) {
+                return List.of();
+            }
+            return userRepository.findAllById(nearbyFriendIds).stream()
+                    .map(this::toUserDTOWithSignedUrl)
+                    .collect(Collectors.toList());
+        }
+
         List<User> nearbyFriends = userRepository.findFriendsByIdsAndLocation(friendIds, placeLocation, radius);
 
         return nearbyFriends.stream()
@@ -461,6 +532,8 @@ public class FriendshipService {
 
         // 3. Wenn alle Checks bestanden sind, lösche den Eintrag komplett.
         friendshipRepository.deleteById(friendshipId);
+        friendGraphCache.invalidate(friendship.getUserOne().getId(), friendship.getUserTwo().getId());
+        eventPublisher.publishEvent(new FriendshipChangedEvent(friendship.getUserOne().getId(), friendship.getUserTwo().getId()));
     }
 
     /**
@@ -484,6 +557,9 @@ public class FriendshipService {
         }
 
         friendshipRepository.delete(friendship);
+        friendGraphCache.invalidate(currentUser.getId(), friendId);
+        eventPublisher.publishEvent(new FriendshipChangedEvent(currentUser.getId(), friendId));
+        feedTimelineService.onFriendshipRemoved(currentUser.getId(), friendId);
     }
 
     /**
@@ -491,18 +567,14 @@ public class FriendshipService {
      */
     @Transactional(readOnly = true)
     public void pingFriend(User sender, UUID targetUserId) {
-        User target = userRepository.findById(targetUserId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        // 1. Sicherheits-Check: Sind sie Freunde?
-        boolean areFriends = friendshipRepository.findFriendshipBetweenUsers(sender, target)
-                .map(f -> f.getStatus() == FriendshipStatus.ACCEPTED)
-                .orElse(false);
-
-        if (!areFriends) {
+        // 1. Sicherheits-Check: Sind sie Freunde? (immer aus der Datenbank)
+        if (!areFriends(sender.getId(), targetUserId)) {
             throw new SecurityException("You can only ping accepted friends.");
         }
 
+        User target = userRepository.findById(targetUserId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
         // 2. Check FCM Token
         String targetFcmToken = target.getFcmToken();
         if (targetFcmToken == null || targetFcmToken.isBlank()) {
@@ -523,11 +595,7 @@ public class FriendshipService {
         // 4. Sende Nachricht
         fcmService.sendPingNotification(targetFcmToken, sender, senderProfileUrl);
 
-        friendshipRepository.findFriendshipBetweenUsers(sender, target).ifPresent(friendship -> {
-            friendship.setInteractionScore(friendship.getInteractionScore() + 1);
-            friendship.setLastInteractedAt(OffsetDateTime.now());
-            friendshipRepository.save(friendship);
-        });
+        interactionSink.record(sender.getId(), target.getId());
     }
 
     @Transactional(readOnly = true)
@@ -535,8 +603,11 @@ public class FriendshipService {
         User currentUser = userRepository.findById(currentUserId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        // Holt die Freunde bereits in der PERFEKTEN Reihenfolge aus der Datenbank
-        List<Friendship> sortedFriendships = friendshipRepository.findFriendsSortedByInteraction(currentUser);
+        // Vorsortiert nach Score; die stabile Sortierung nach dem zerfallenen Score behält die
+        // Reihenfolge der Datenbank (letzte Interaktion, Alter der Freundschaft) bei Gleichstand
+        OffsetDateTime now = OffsetDateTime.now();
+        List<Friendship> sortedFriendships = new ArrayList<>(friendshipRepository.findFriendsSortedByInteraction(currentUser));
+        sortedFriendships.sort(Comparator.comparingDouble((Friendship friendship) -> decayedInteractionScore(friendship, now)).reversed());
 
         return sortedFriendships.stream()
                 .map(friendship -> {
@@ -549,11 +620,27 @@ public class FriendshipService {
                     String profileUrl = null;
                     if (friend.getProfileImageUrl() != null && !friend.getProfileImageUrl().isBlank()) {
                         profileUrl = gcsStorageService.generateSignedUrl(
-                                "iris-profile-images-prod", friend.getProfileImageUrl(), 15, TimeUnit.MINUTES);
+                                profileImagesBucketName, friend.getProfileImageUrl(), 15, TimeUnit.MINUTES);
                     }
 
                     return new UserDTO(friend.getId(), friend.getUsername(), profileUrl);
                 })
                 .collect(Collectors.toList());
     }
+
+    /**
+     * The interaction score, halved for every half-life since the last interaction (or since the
+     * friendship was created), so old interactions rank below recent ones.
+     */
+    private double decayedInteractionScore(Friendship friendship, OffsetDateTime now) {
+        double score = friendship.getInteractionScore();
+        if (interactionHalfLifeDays <= 0 || score == 0) {
+            return score;
+        }
+        OffsetDateTime since = friendship.getLastInteractedAt() != null
+                ? friendship.getLastInteractedAt()
+                : friendship.getCreatedAt();
+        double ageDays = Math.max(0, Duration.between(since, now).toMillis()) / (double) Duration.ofDays(1).toMillis();
+        return score * Math.pow(0.5, ageDays / interactionHalfLifeDays);
+    }
 }
\ No newline at end of file
@@ -5,12 +5,11 @@ import com.iris.backend.dto.feed.GalleryFeedItemDTO;
 import com.iris.backend.dto.feed.GalleryPlaceType;
 import com.iris.backend.model.CustomPlace;
 import com.iris.backend.model.GooglePlace;
-import com.iris.backend.model.Photo;
+import com.iris.backend.model.PlaceStats;
 import com.iris.backend.model.User;
-import com.iris.backend.model.enums.PhotoVisibility;
 import com.iris.backend.repository.CustomPlaceRepository;
 import com.iris.backend.repository.GooglePlaceRepository;
-import com.iris.backend.repository.PhotoRepository;
+import com.iris.backend.repository.PlaceStatsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,11 +18,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -37,36 +34,46 @@ public class GalleryFeedService {
     private static final Logger logger = LoggerFactory.getLogger(GalleryFeedService.class);
     private final CustomPlaceRepository customPlaceRepository;
     private final GooglePlaceRepository googlePlaceRepository;
-    private final PhotoRepository photoRepository;
+    private final PlaceStatsRepository placeStatsRepository;
     private final GcsStorageService gcsStorageService;
     private final GoogleApiService googleApiService;
+    private final GeofenceIndex geofenceIndex;
 
     // NEU: Kein @Value mehr hier oben! Das Feld ist jetzt final.
     private final String photosBucketName;
 
-    public record AggregatedPhotoInfo(long count, String coverImageUrl, OffsetDateTime newestPhotoTimestamp) {
-        public static final AggregatedPhotoInfo EMPTY = new AggregatedPhotoInfo(0, null, null);
+    public record AggregatedPhotoInfo(long count, String coverImageUrl, String coverThumbnailUrl, String coverBlurhash,
+                                      OffsetDateTime newestPhotoTimestamp) {
+        public static final AggregatedPhotoInfo EMPTY = new AggregatedPhotoInfo(0, null, null, null, null);
     }
 
     // NEU: Constructor Injection für ALLES
     public GalleryFeedService(CustomPlaceRepository customPlaceRepository,
                               GooglePlaceRepository googlePlaceRepository,
-                              PhotoRepository photoRepository,
+                              PlaceStatsRepository placeStatsRepository,
                               GcsStorageService gcsStorageService,
                               @Lazy GoogleApiService googleApiService, // <-- Bricht versteckte Zyklen auf!
-                              @Value("${gcs.bucket.photos.name}") String photosBucketName) { // <-- Wert wird hier übergeben
+                              @Value("${gcs.bucket.photos.name}") String photosBucketName, // <-- Wert wird hier übergeben
+                              GeofenceIndex geofenceIndex) {
         this.customPlaceRepository = customPlaceRepository;
         this.googlePlaceRepository = googlePlaceRepository;
-        this.photoRepository = photoRepository;
+        this.placeStatsRepository = placeStatsRepository;
         this.gcsStorageService = gcsStorageService;
         this.googleApiService = googleApiService;
         this.photosBucketName = photosBucketName;
+        this.geofenceIndex = geofenceIndex;
     }
 
     @Transactional(readOnly = false)
     public List<GalleryFeedItemDTO> getTaggablePlaces(double latitude, double longitude) {
-        List<CustomPlace> customPlaces = customPlaceRepository.findActivePlacesForUserLocation(latitude, longitude);
-        List<GooglePlace> localGooglePlaces = googlePlaceRepository.findActivePlacesForUserLocation(latitude, longitude);
+        // Geofence-Index statt ST_DWithin über alle Orte; solange er nicht geladen ist, fragt SQL
+        Optional<GeofenceIndex.Containing> containing = geofenceIndex.findContaining(latitude, longitude);
+        List<CustomPlace> customPlaces = containing
+                .map(c -> inOrder(customPlaceRepository.findAllById(c.customPlaceIds()), CustomPlace::getId, c.customPlaceIds()))
+                .orElseGet(() -> customPlaceRepository.findActivePlacesForUserLocation(latitude, longitude));
+        List<GooglePlace> localGooglePlaces = containing
+                .map(c -> inOrder(googlePlaceRepository.findAllById(c.googlePlaceIds()), GooglePlace::getId, c.googlePlaceIds()))
+                .orElseGet(() -> googlePlaceRepository.findActivePlacesForUserLocation(latitude, longitude));
         List<GalleryFeedItemDTO> googlePlaceDTOs;
 
         if (localGooglePlaces.isEmpty()) {
@@ -88,6 +95,12 @@ public class GalleryFeedService {
                 .collect(Collectors.toList());
     }
 
+    // findAllById liefert keine definierte Reihenfolge; IDs ohne Zeile (z.B. inzwischen gelöscht) fallen weg
+    private static <T, K> List<T> inOrder(List<T> entities, Function<T, K> idOf, List<K> ids) {
+        Map<K, T> byId = entities.stream().collect(Collectors.toMap(idOf, Function.identity()));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
     public List<GalleryFeedItemDTO> getTrendingSpots() {
         return customPlaceRepository.findAllByIsTrendingTrueOrderByCreatedAtDesc()
                 .stream()
@@ -104,12 +117,12 @@ public class GalleryFeedService {
     }
 
     private GalleryFeedItemDTO convertToFeedItem(GooglePlace place, boolean loadPhotoInfo) {
+        // Alle Kennzahlen aus einer Zeile von place_stats
+        PlaceStats stats = placeStatsRepository.findByGooglePlaceId(place.getId()).orElse(null);
         AggregatedPhotoInfo photoInfo = loadPhotoInfo
-                ? getAggregatedPhotoInfo(place.getId(), null, false)
+                ? getAggregatedPhotoInfo(stats, false)
                 : AggregatedPhotoInfo.EMPTY;
-
-        // NEU: Zähle Uploader für Google Place
-        long participantCount = photoRepository.countDistinctUploadersByGooglePlaceId(place.getId());
+        long participantCount = stats != null ? stats.getUploaderCount() : 0;
 
         return new GalleryFeedItemDTO(
                 GalleryPlaceType.GOOGLE_POI,
@@ -117,6 +130,8 @@ public class GalleryFeedService {
                 place.getLocation().getY(),
                 place.getLocation().getX(),
                 photoInfo.coverImageUrl(),
+                photoInfo.coverThumbnailUrl(),
+                photoInfo.coverBlurhash(),
                 photoInfo.count(),
                 photoInfo.newestPhotoTimestamp(),
                 place.getId(),
@@ -134,6 +149,8 @@ public class GalleryFeedService {
 
     private GalleryFeedItemDTO convertToFeedItem(CustomPlace place, boolean loadPhotoInfo, boolean isOwnerMode) {
         String coverUrl = null;
+        String coverThumbnailUrl = null;
+        String coverBlurhash = null;
         long photoCount = 0;
         OffsetDateTime newestTimestamp = null;
 
@@ -144,20 +161,23 @@ public class GalleryFeedService {
                     60,
                     TimeUnit.MINUTES
             );
+            coverThumbnailUrl = coverUrl; // Eigene Coverbilder haben keine Derivate
         }
 
+        PlaceStats stats = placeStatsRepository.findByCustomPlaceId(place.getId()).orElse(null);
         if (loadPhotoInfo) {
-            AggregatedPhotoInfo photoInfo = getAggregatedPhotoInfo(null, place.getId(), isOwnerMode);
+            AggregatedPhotoInfo photoInfo = getAggregatedPhotoInfo(stats, isOwnerMode);
             photoCount = photoInfo.count();
             newestTimestamp = photoInfo.newestPhotoTimestamp();
 
             if (coverUrl == null) {
                 coverUrl = photoInfo.coverImageUrl();
+                coverThumbnailUrl = photoInfo.coverThumbnailUrl();
+                coverBlurhash = photoInfo.coverBlurhash();
             }
         }
 
-        // NEU: Zähle Uploader für Custom Place (Nutzt die PhotoRepository Methode)
-        long participantCount = photoRepository.countDistinctUploadersByCustomPlaceId(place.getId());
+        long participantCount = stats != null ? stats.getUploaderCount() : 0;
 
         User owner = place.getOwner();
         UserDTO ownerDTO = new UserDTO(owner.getId(), owner.getUsername(), owner.getProfileImageUrl());
@@ -168,6 +188,8 @@ public class GalleryFeedService {
                 place.getLocation().getY(),
                 place.getLocation().getX(),
                 coverUrl,
+                coverThumbnailUrl,
+                coverBlurhash,
                 photoCount,
                 newestTimestamp,
                 null,
@@ -183,51 +205,167 @@ public class GalleryFeedService {
         );
     }
 
-    private AggregatedPhotoInfo getAggregatedPhotoInfo(Long googlePlaceId, UUID customPlaceId, boolean includePrivate) {
-        long count;
-        OffsetDateTime now = OffsetDateTime.now();
-
-        if (googlePlaceId != null) {
-            count = photoRepository.countByGooglePlaceIdAndVisibilityAndExpiresAtAfter(
-                    googlePlaceId, PhotoVisibility.PUBLIC, now
-            );
-        } else {
-            if (includePrivate) {
-                count = photoRepository.countByCustomPlaceIdAndExpiresAtAfter(customPlaceId, now);
-            } else {
-                count = photoRepository.countByCustomPlaceIdAndVisibilityAndExpiresAtAfter(
-                        customPlaceId, PhotoVisibility.PUBLIC, now
-                );
-            }
+    // Öffentliche Sicht zählt nur PUBLIC-Fotos, die Owner-Sicht alle; das Cover ist immer das neueste PUBLIC-Foto
+    private AggregatedPhotoInfo getAggregatedPhotoInfo(PlaceStats stats, boolean includePrivate) {
+        if (stats == null) {
+            return AggregatedPhotoInfo.EMPTY;
         }
-
+        long count = includePrivate ? stats.getTotalPhotoCount() : stats.getPublicPhotoCount();
         if (count == 0) {
             return AggregatedPhotoInfo.EMPTY;
         }
 
-        Optional<Photo> coverPhotoOpt;
-        if (googlePlaceId != null) {
-            coverPhotoOpt = photoRepository.findFirstByGooglePlaceIdAndVisibilityAndExpiresAtAfterOrderByUploadedAtDesc(
-                    googlePlaceId, PhotoVisibility.PUBLIC, now);
-        } else {
-            coverPhotoOpt = photoRepository.findFirstByCustomPlaceIdAndVisibilityAndExpiresAtAfterOrderByUploadedAtDesc(
-                    customPlaceId, PhotoVisibility.PUBLIC, now);
+        String signedUrl = null;
+        String signedThumbnailUrl = null;
+        if (stats.getCoverStorageUrl() != null) {
+            signedUrl = gcsStorageService.generateSignedUrl(
+                    photosBucketName, coverObjectName(stats.getCoverStorageUrl()), 15, TimeUnit.MINUTES);
+            signedThumbnailUrl = stats.getCoverThumbnailStorageUrl() != null
+                    ? gcsStorageService.generateSignedUrl(photosBucketName, stats.getCoverThumbnailStorageUrl(), 15, TimeUnit.MINUTES)
+                    : signedUrl;
         }
+        return new AggregatedPhotoInfo(count, signedUrl, signedThumbnailUrl, stats.getCoverBlurhash(), stats.getCoverUploadedAt());
+    }
 
-        String signedUrl = null;
-        OffsetDateTime uploadedAt = null;
-
-        if (coverPhotoOpt.isPresent()) {
-            Photo coverPhoto = coverPhotoOpt.get();
-            uploadedAt = coverPhoto.getUploadedAt();
-            String objectName = coverPhoto.getStorageUrl();
-            if (coverPhoto.getStorageUrl().contains("/")) {
-                objectName = coverPhoto.getStorageUrl().substring(coverPhoto.getStorageUrl().lastIndexOf('/') + 1);
+    /**
+     * Baut die Feed-Items (mit Foto-Infos) für mehrere Google Places auf einmal.
+     * Inhalt wie {@link #getFeedItemForPlace(GooglePlace, boolean)}, aber mit einer Query auf place_stats
+     * für alle Orte.
+     *
+     * @return die Items nach interner Place-ID
+     */
+    public Map<Long, GalleryFeedItemDTO> getFeedItemsForGooglePlaces(Collection<GooglePlace> places) {
+        if (places.isEmpty()) {
+            return Map.of();
+        }
+        Set<Long> placeIds = places.stream().map(GooglePlace::getId).collect(Collectors.toSet());
+
+        Map<Long, PlaceStats> statsByPlace = placeStatsRepository.findAllByGooglePlaceIdIn(placeIds).stream()
+                .collect(Collectors.toMap(PlaceStats::getGooglePlaceId, Function.identity()));
+        Map<String, String> signedCovers = gcsStorageService.generateSignedUrls(
+                photosBucketName,
+                coverObjectNames(statsByPlace.values()),
+                15,
+                TimeUnit.MINUTES
+        );
+
+        Map<Long, GalleryFeedItemDTO> items = new HashMap<>();
+        for (GooglePlace place : places) {
+            PlaceStats stats = statsByPlace.get(place.getId());
+            boolean hasPhotos = stats != null && stats.getPublicPhotoCount() > 0;
+            items.put(place.getId(), new GalleryFeedItemDTO(
+                    GalleryPlaceType.GOOGLE_POI,
+                    place.getName(),
+                    place.getLocation().getY(),
+                    place.getLocation().getX(),
+                    hasPhotos ? signedCovers.get(coverObjectName(stats.getCoverStorageUrl())) : null,
+                    hasPhotos ? signedCovers.get(coverThumbnailObjectName(stats)) : null,
+                    hasPhotos ? stats.getCoverBlurhash() : null,
+                    hasPhotos ? stats.getPublicPhotoCount() : 0,
+                    hasPhotos ? stats.getCoverUploadedAt() : null,
+                    place.getId(),
+                    null,
+                    place.getAddress(),
+                    place.getRadiusMeters(),
+                    null,
+                    false,
+                    true,
+                    null,
+                    stats != null ? stats.getUploaderCount() : 0L,
+                    null
+            ));
+        }
+        return items;
+    }
+
+    /**
+     * Baut die Feed-Items (mit Foto-Infos, Owner-Sicht) für mehrere Custom Places auf einmal.
+     * Inhalt wie {@link #getFeedItemForPlace(CustomPlace, boolean)}; die Owner müssen bereits geladen sein
+     * (z.B. über {@link CustomPlaceRepository#findAllWithOwnerByIdIn}).
+     *
+     * @return die Items nach Place-ID
+     */
+    public Map<UUID, GalleryFeedItemDTO> getFeedItemsForCustomPlaces(Collection<CustomPlace> places) {
+        if (places.isEmpty()) {
+            return Map.of();
+        }
+        Set<UUID> placeIds = places.stream().map(CustomPlace::getId).collect(Collectors.toSet());
+
+        Map<UUID, PlaceStats> statsByPlace = placeStatsRepository.findAllByCustomPlaceIdIn(placeIds).stream()
+                .collect(Collectors.toMap(PlaceStats::getCustomPlaceId, Function.identity()));
+        // Eigene Coverbilder werden länger signiert als Foto-Cover (wie in convertToFeedItem)
+        Map<String, String> signedPlaceCovers = gcsStorageService.generateSignedUrls(
+                photosBucketName,
+                places.stream().map(CustomPlace::getCoverImageUrl).toList(),
+                60,
+                TimeUnit.MINUTES
+        );
+        Map<String, String> signedPhotoCovers = gcsStorageService.generateSignedUrls(
+                photosBucketName,
+                coverObjectNames(statsByPlace.values()),
+                15,
+                TimeUnit.MINUTES
+        );
+
+        Map<UUID, GalleryFeedItemDTO> items = new HashMap<>();
+        for (CustomPlace place : places) {
+            PlaceStats stats = statsByPlace.get(place.getId());
+            boolean hasPhotos = stats != null && stats.getTotalPhotoCount() > 0;
+            String coverUrl = signedPlaceCovers.get(place.getCoverImageUrl());
+            String coverThumbnailUrl = coverUrl;
+            String coverBlurhash = null;
+            if (coverUrl == null && hasPhotos) {
+                coverUrl = signedPhotoCovers.get(coverObjectName(stats.getCoverStorageUrl()));
+                coverThumbnailUrl = signedPhotoCovers.get(coverThumbnailObjectName(stats));
+                coverBlurhash = stats.getCoverBlurhash();
             }
-            signedUrl = gcsStorageService.generateSignedUrl(photosBucketName, objectName, 15, TimeUnit.MINUTES);
+            User owner = place.getOwner();
+
+            items.put(place.getId(), new GalleryFeedItemDTO(
+                    GalleryPlaceType.IRIS_SPOT,
+                    place.getName(),
+                    place.getLocation().getY(),
+                    place.getLocation().getX(),
+                    coverUrl,
+                    coverThumbnailUrl,
+                    coverBlurhash,
+                    hasPhotos ? stats.getTotalPhotoCount() : 0,
+                    hasPhotos ? stats.getCoverUploadedAt() : null,
+                    null,
+                    place.getId(),
+                    null,
+                    place.getRadiusMeters(),
+                    place.getAccessType().name(),
+                    place.isTrending(),
+                    place.isLive(),
+                    place.getExpiresAt(),
+                    stats != null ? stats.getUploaderCount() : 0L,
+                    new UserDTO(owner.getId(), owner.getUsername(), owner.getProfileImageUrl())
+            ));
         }
+        return items;
+    }
+
+    // Cover und (falls schon erzeugt) Cover-Thumbnail aller Orte, für eine gemeinsame Signierung
+    private static List<String> coverObjectNames(Collection<PlaceStats> stats) {
+        return stats.stream()
+                .flatMap(s -> Stream.of(coverObjectName(s.getCoverStorageUrl()), s.getCoverThumbnailStorageUrl()))
+                .toList();
+    }
 
-        return new AggregatedPhotoInfo(count, signedUrl, uploadedAt);
+    // Solange das Cover keine Derivate hat, dient es selbst als Thumbnail
+    private static String coverThumbnailObjectName(PlaceStats stats) {
+        return stats.getCoverThumbnailStorageUrl() != null
+                ? stats.getCoverThumbnailStorageUrl()
+                : coverObjectName(stats.getCoverStorageUrl());
+    }
+
+    // Nur der Teil nach dem letzten '/' ist der Objektname
+    private static String coverObjectName(String storageUrl) {
+        if (storageUrl == null) {
+            return null;
+        }
+        return storageUrl.contains("/") ? storageUrl.substring(storageUrl.lastIndexOf('/') + 1) : storageUrl;
     }
 
     public GalleryFeedItemDTO getFeedItemForPlace(CustomPlace place, boolean loadPhotoInfo) {
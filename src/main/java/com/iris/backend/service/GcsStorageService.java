@@ -1,14 +1,28 @@
 package com.iris.backend.service;
 
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -17,6 +31,17 @@ public class GcsStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(GcsStorageService.class);
     private final Storage storage;
+    private final SignedUrlCache signedUrlCache;
+    private final UploadBufferPool uploadBufferPool;
+    private final long maxUploadBytes;
+    private final int uploadChunkSize;
+
+    /**
+     * A photo stored by {@link #storePhoto}.
+     *
+     * @param contentHash the lowercase hex SHA-256 of the stored bytes.
+     */
+    public record StoredPhoto(String objectName, long size, String contentHash) {}
 
     // Bucket-Namen aus der Konfiguration laden
     private final String photosBucketName;
@@ -27,29 +52,123 @@ public class GcsStorageService {
      * Bucket names are injected from application properties.
      */
     public GcsStorageService(Storage storage,
+                             SignedUrlCache signedUrlCache,
+                             UploadBufferPool uploadBufferPool,
                              @Value("${gcs.bucket.photos.name}") String photosBucketName,
-                             @Value("${gcs.bucket.profile-images.name}") String profileImagesBucketName) {
+                             @Value("${gcs.bucket.profile-images.name}") String profileImagesBucketName,
+                             @Value("${gcs.upload.max-bytes:26214400}") long maxUploadBytes,
+                             @Value("${gcs.upload.chunk-size-bytes:1048576}") int uploadChunkSize) {
         this.storage = storage;
+        this.signedUrlCache = signedUrlCache;
+        this.uploadBufferPool = uploadBufferPool;
+        this.maxUploadBytes = maxUploadBytes;
+        this.uploadChunkSize = uploadChunkSize;
         this.photosBucketName = photosBucketName;
         this.profileImagesBucketName = profileImagesBucketName;
     }
 
     /**
-     * Uploads a photo file to the photos bucket.
+     * Uploads a photo file to the photos bucket. The file is streamed in chunks (see {@link #streamUpload}).
      *
      * @param file the photo file to upload.
      * @return The unique object name of the uploaded file.
      * @throws IOException if an I/O error occurs.
+     * @throws MaxUploadSizeExceededException if the file is larger than {@code gcs.upload.max-bytes}.
      */
     public String uploadPhoto(MultipartFile file) throws IOException {
-        String objectName = UUID.randomUUID().toString() + "-" + file.getOriginalFilename();
+        return storePhoto(file).objectName(); // WICHTIG: Nur den Objektnamen zurückgeben
+    }
+
+    /**
+     * Like {@link #uploadPhoto}, but also returns the size and the SHA-256 of the file. The hash is computed
+     * from the same buffer while streaming, so the file is still read only once.
+     */
+    public StoredPhoto storePhoto(MultipartFile file) throws IOException {
+        String objectName = newPhotoObjectName(file.getOriginalFilename());
         BlobId blobId = BlobId.of(photosBucketName, objectName);
         BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
                 .setContentType(file.getContentType())
                 .build();
-        storage.create(blobInfo, file.getBytes());
-        logger.info("Successfully uploaded photo {} to bucket {}", objectName, photosBucketName);
-        return objectName; // WICHTIG: Nur den Objektnamen zurückgeben
+        MessageDigest digest = sha256();
+        long size = streamUpload(blobInfo, file, digest);
+        logger.info("Successfully uploaded photo {} ({} bytes) to bucket {}", objectName, size, photosBucketName);
+        return new StoredPhoto(objectName, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * A new, unique object name in the photos bucket for a file with the given original name.
+     */
+    public String newPhotoObjectName(String originalFilename) {
+        return UUID.randomUUID().toString() + "-" + originalFilename;
+    }
+
+    public long getMaxUploadBytes() {
+        return maxUploadBytes;
+    }
+
+    /**
+     * Creates a V4 signed URL with which a client can PUT a photo directly into the photos bucket.
+     * The URL only accepts the given content type and at most {@code gcs.upload.max-bytes}; the client
+     * has to send exactly the headers of {@link #photoUploadHeaders(String)}.
+     *
+     * @throws IllegalStateException if the URL could not be signed.
+     */
+    public String generateSignedPhotoUploadUrl(String objectName, String contentType, Duration validity) {
+        try {
+            BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(photosBucketName, objectName)).build();
+            URL signedUrl = storage.signUrl(blobInfo, validity.toSeconds(), TimeUnit.SECONDS,
+                    Storage.SignUrlOption.httpMethod(HttpMethod.PUT),
+                    Storage.SignUrlOption.withExtHeaders(photoUploadHeaders(contentType)),
+                    Storage.SignUrlOption.withV4Signature());
+            return signedUrl.toExternalForm();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not sign upload URL for object " + objectName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The signed headers the client has to send with the PUT to a signed photo upload URL. The upload
+     * only succeeds if the object does not exist yet, so a signed URL can't replace a finished photo.
+     */
+    public Map<String, String> photoUploadHeaders(String contentType) {
+        // GCS lehnt den Upload ab, wenn Content-Type oder Größe nicht passen
+        // oder das Objekt schon existiert (Generation 0 = noch keine Version)
+        return Map.of(
+                "Content-Type", contentType,
+                "x-goog-content-length-range", "1," + maxUploadBytes,
+                "x-goog-if-generation-match", "0");
+    }
+
+    /**
+     * Looks up an object in the photos bucket.
+     *
+     * @return The object's metadata (size, content type), or null if it does not exist.
+     */
+    public Blob getPhotoObject(String objectName) {
+        return storage.get(BlobId.of(photosBucketName, objectName));
+    }
+
+    /**
+     * Opens an object of the photos bucket for streaming reads. Reading fails if the object does not exist.
+     */
+    public InputStream openPhoto(String objectName) {
+        return Channels.newInputStream(storage.reader(BlobId.of(photosBucketName, objectName)));
+    }
+
+    /**
+     * Stores a derivative (e.g. a thumbnail) of a photo in the photos bucket. Derivatives are small and
+     * already in memory, so they are written with a single request.
+     *
+     * @param name        distinguishes the derivative in the object name, e.g. "thumbnail.jpg".
+     * @return The unique object name of the derivative.
+     */
+    public String uploadPhotoDerivative(String name, byte[] content, String contentType) {
+        String objectName = newPhotoObjectName(name);
+        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(photosBucketName, objectName))
+                .setContentType(contentType)
+                .build();
+        storage.create(blobInfo, content);
+        return objectName;
     }
 
     /**
@@ -75,8 +194,8 @@ public class GcsStorageService {
                 .setContentType(file.getContentType()) // Nutzt den echten Content-Type (z.B. image/png)
                 .build();
 
-        storage.create(blobInfo, file.getBytes());
-        logger.info("Successfully uploaded profile image {} to bucket {}", objectName, profileImagesBucketName);
+        long size = streamUpload(blobInfo, file, null);
+        logger.info("Successfully uploaded profile image {} ({} bytes) to bucket {}", objectName, size, profileImagesBucketName);
         return objectName;
     }
 
@@ -94,6 +213,120 @@ public class GcsStorageService {
         return objectName;
     }
 
+    /**
+     * Stores one chunk of a resumable upload as an object of its own in the photos bucket.
+     * The chunk is streamed like a multipart file; it is only finalized if it has exactly the expected size.
+     *
+     * @throws IllegalArgumentException if the stream does not contain exactly {@code expectedBytes} bytes.
+     */
+    public void uploadPhotoPart(String objectName, InputStream in, long expectedBytes) throws IOException {
+        WriteChannel writer = newWriter(BlobInfo.newBuilder(BlobId.of(photosBucketName, objectName)).build());
+        long written;
+        try {
+            written = copy(in, writer, expectedBytes, null);
+        } catch (MaxUploadSizeExceededException e) {
+            throw new IllegalArgumentException("Chunk is larger than " + expectedBytes + " bytes");
+        }
+        if (written != expectedBytes) {
+            // Verbindung abgerissen: Teilstück nicht abschließen, der Client schickt den Chunk erneut
+            throw new IllegalArgumentException("Chunk has " + written + " bytes, expected " + expectedBytes);
+        }
+        writer.close();
+    }
+
+    /**
+     * Concatenates objects of the photos bucket (the chunks of a resumable upload) into a new photo object.
+     * The data is copied through the pooled buffer and hashed on the way, like {@link #storePhoto}.
+     * The source objects are left in place.
+     *
+     * @return The new object with its size and SHA-256.
+     * @throws MaxUploadSizeExceededException if the parts are larger than {@code gcs.upload.max-bytes} together.
+     */
+    public StoredPhoto assemblePhoto(String objectName, String contentType, List<String> partNames) throws IOException {
+        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(photosBucketName, objectName))
+                .setContentType(contentType)
+                .build();
+        MessageDigest digest = sha256();
+        WriteChannel writer = newWriter(blobInfo);
+        long size = 0;
+        for (String partName : partNames) {
+            try (InputStream in = openPhoto(partName)) {
+                size += copy(in, writer, maxUploadBytes - size, digest);
+            }
+        }
+        writer.close();
+        logger.info("Assembled photo {} ({} bytes) from {} parts in bucket {}", objectName, size, partNames.size(), photosBucketName);
+        return new StoredPhoto(objectName, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Streams a multipart file into a GCS {@link WriteChannel} through one buffer from the
+     * {@link UploadBufferPool}; the channel sends a request per chunk of {@code gcs.upload.chunk-size-bytes}.
+     * Neither the file nor the object is ever held on the heap as a whole.
+     * The size is checked while streaming; if the file turns out to be too large or reading fails, the
+     * channel is not closed, so GCS never finalizes the partial object.
+     *
+     * @param digest if not null, updated with every chunk that is written.
+     * @return The number of bytes written.
+     */
+    private long streamUpload(BlobInfo blobInfo, MultipartFile file, MessageDigest digest) throws IOException {
+        if (file.getSize() > maxUploadBytes) {
+            throw new MaxUploadSizeExceededException(maxUploadBytes);
+        }
+        try (InputStream in = file.getInputStream()) {
+            WriteChannel writer = newWriter(blobInfo);
+            long written = copy(in, writer, maxUploadBytes, digest);
+            writer.close();
+            return written;
+        }
+    }
+
+    private WriteChannel newWriter(BlobInfo blobInfo) {
+        WriteChannel writer = storage.writer(blobInfo);
+        // Der Kanal puffert selbst höchstens einen Chunk (Vielfaches von 256 KiB)
+        writer.setChunkSize(uploadChunkSize);
+        return writer;
+    }
+
+    /**
+     * Copies a stream into a channel through a pooled buffer, without closing the channel.
+     *
+     * @throws MaxUploadSizeExceededException as soon as more than {@code maxBytes} bytes were read.
+     */
+    private long copy(InputStream in, WriteChannel writer, long maxBytes, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = uploadBufferPool.acquire();
+        try {
+            long written = 0;
+            int read;
+            while ((read = in.readNBytes(buffer.array(), 0, buffer.capacity())) > 0) {
+                written += read;
+                if (written > maxBytes) {
+                    // Die angegebene Größe war falsch: abbrechen, ohne das Objekt abzuschließen
+                    throw new MaxUploadSizeExceededException(maxBytes);
+                }
+                if (digest != null) {
+                    digest.update(buffer.array(), 0, read);
+                }
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    writer.write(buffer);
+                }
+            }
+            return written;
+        } finally {
+            uploadBufferPool.release(buffer);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Jede JVM muss SHA-256 anbieten
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Deletes an object from a specified bucket.
      *
@@ -104,6 +337,11 @@ public class GcsStorageService {
         if (objectName == null || objectName.isBlank()) {
             return;
         }
+        // Gecachte URLs dürfen nicht auf ein gelöschtes Objekt zeigen; der Cache kennt nur normalisierte Namen
+        String cacheObjectName = normalizeObjectName(objectName);
+        if (cacheObjectName != null) {
+            signedUrlCache.invalidate(bucketName, cacheObjectName);
+        }
         try {
             BlobId blobId = BlobId.of(bucketName, objectName);
             if (storage.delete(blobId)) {
@@ -116,9 +354,45 @@ public class GcsStorageService {
         }
     }
 
+    /**
+     * Deletes many objects from the photos bucket with batch requests instead of one request per object.
+     *
+     * @param objectNames The objects to delete.
+     * @return The combined size of the objects that were actually deleted, in bytes.
+     */
+    public long deletePhotoObjects(Collection<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return 0;
+        }
+        List<BlobId> blobIds = objectNames.stream().map(name -> BlobId.of(photosBucketName, name)).toList();
+        objectNames.stream()
+                .map(GcsStorageService::normalizeObjectName)
+                .filter(Objects::nonNull)
+                .forEach(name -> signedUrlCache.invalidate(photosBucketName, name));
+        // Die Größen vorher holen (ebenfalls ein Batch), ein gelöschtes Objekt hat keine mehr
+        List<Blob> blobs = storage.get(blobIds);
+        List<Boolean> deleted = storage.delete(blobIds);
+        long bytes = 0;
+        int missing = 0;
+        for (int i = 0; i < blobIds.size(); i++) {
+            if (deleted.get(i)) {
+                Blob blob = blobs.get(i);
+                bytes += blob != null && blob.getSize() != null ? blob.getSize() : 0;
+            } else {
+                missing++;
+            }
+        }
+        if (missing > 0) {
+            logger.warn("{} of {} objects not found in bucket {} for deletion.", missing, blobIds.size(), photosBucketName);
+        }
+        return bytes;
+    }
+
     /**
      * Generates a signed URL for an object in a specified bucket with a custom expiration.
      * This is now the single, flexible method for creating all signed URLs.
+     * URLs are served from the {@link SignedUrlCache}; the returned URL is valid for at least
+     * the requested duration, but may be shared with other callers and live slightly longer.
      *
      * @param bucketName The bucket containing the object.
      * @param objectName The name of the object.
@@ -131,25 +405,67 @@ public class GcsStorageService {
             return null;
         }
 
+        String finalObjectName = normalizeObjectName(objectName);
+        if (finalObjectName == null) {
+            return null; // Im Fehlerfall abbrechen
+        }
+
+        String cacheObjectName = finalObjectName;
+        return signedUrlCache.getOrSign(bucketName, finalObjectName, Duration.ofMillis(timeUnit.toMillis(duration)),
+                request -> signUrl(bucketName, cacheObjectName, request.durationSeconds()));
+    }
+
+    /**
+     * Generates signed URLs for a whole batch of objects in one bucket.
+     * Duplicate and blank object names are signed only once / skipped.
+     *
+     * @param bucketName  The bucket containing the objects.
+     * @param objectNames The object names (may contain nulls and duplicates).
+     * @param duration    The numerical value of the duration.
+     * @param timeUnit    The unit of the duration.
+     * @return A map from object name to signed URL; objects that could not be signed are missing.
+     */
+    public Map<String, String> generateSignedUrls(String bucketName, Collection<String> objectNames, long duration, TimeUnit timeUnit) {
+        Map<String, String> signedUrls = new HashMap<>();
+        for (String objectName : objectNames) {
+            if (objectName == null || objectName.isBlank() || signedUrls.containsKey(objectName)) {
+                continue;
+            }
+            String signedUrl = generateSignedUrl(bucketName, objectName, duration, timeUnit);
+            if (signedUrl != null) {
+                signedUrls.put(objectName, signedUrl);
+            }
+        }
+        return signedUrls;
+    }
+
+    /**
+     * The object name under which URLs are signed and cached.
+     *
+     * @return the name, or null if it could not be parsed.
+     */
+    static String normalizeObjectName(String objectName) {
         // --- HIER IST DIE WICHTIGE ABSICHERUNG ---
         // Wenn der objectName eine volle URL ist, extrahieren wir nur den Dateinamen.
         // Das macht den Code robust gegenüber alten, falsch gespeicherten Daten.
-        String finalObjectName = objectName;
-        if (objectName.startsWith("http")) {
-            try {
-                finalObjectName = objectName.substring(objectName.lastIndexOf('/') + 1);
-            } catch (Exception e) {
-                logger.error("Could not parse object name from full URL: {}", objectName);
-                return null; // Im Fehlerfall abbrechen
-            }
+        if (!objectName.startsWith("http")) {
+            return objectName;
         }
+        try {
+            return objectName.substring(objectName.lastIndexOf('/') + 1);
+        } catch (Exception e) {
+            logger.error("Could not parse object name from full URL: {}", objectName);
+            return null;
+        }
+    }
 
+    private String signUrl(String bucketName, String objectName, long durationSeconds) {
         try {
-            BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(bucketName, finalObjectName)).build();
-            URL signedUrl = storage.signUrl(blobInfo, duration, timeUnit, Storage.SignUrlOption.withV4Signature());
+            BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(bucketName, objectName)).build();
+            URL signedUrl = storage.signUrl(blobInfo, durationSeconds, TimeUnit.SECONDS, Storage.SignUrlOption.withV4Signature());
             return signedUrl.toExternalForm();
         } catch (Exception e) {
-            logger.error("Could not generate signed URL for object {} in bucket {}: {}", finalObjectName, bucketName, e.getMessage());
+            logger.error("Could not generate signed URL for object {} in bucket {}: {}", objectName, bucketName, e.getMessage());
             return null;
         }
     }
@@ -0,0 +1,419 @@
+package com.iris.backend.service;
+
+import com.iris.backend.event.CustomPlaceChangedEvent;
+import com.iris.backend.geo.Geodesy;
+import com.iris.backend.model.CustomPlace;
+import com.iris.backend.repository.CustomPlaceRepository;
+import com.iris.backend.repository.GooglePlaceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory geofence engine: answers "which live places contain this point" without a PostGIS query.
+ *
+ * Every Google Place and every live, not yet expired Custom Place is stored with a lat/lon envelope
+ * around its radius in a JTS {@link STRtree}. A lookup queries the tree with the point and then applies
+ * the same exact check as {@code findActivePlacesForUserLocation} (ellipsoidal distance within the
+ * place radius; for Custom Places additionally {@code expires_at > now}).
+ *
+ * An STRtree cannot be changed once it is built. Places created or changed afterwards are kept in a
+ * small set of dirty entries that is scanned linearly on each lookup (and hides their stale tree
+ * entries) until the next periodic rebuild folds them into a fresh tree. As long as the index is not
+ * loaded, {@link #findContaining} returns empty and the caller uses the SQL queries instead.
+ *
+ * Local changes only cover this instance. {@link #reload} therefore re-reads all geofences from the
+ * database periodically, which also picks up places edited on other instances and Custom Places that
+ * went live via {@code scheduled_live_at}.
+ */
+@Component
+public class GeofenceIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeofenceIndex.class);
+
+    // Kleinste Länge eines Breitengrads bzw. (am Äquator) eines Längengrads auf dem WGS84-Ellipsoid
+    private static final double MIN_METERS_PER_DEGREE_LATITUDE = 110_574;
+    private static final double METERS_PER_DEGREE_LONGITUDE = 111_319;
+    // Sicherheitszuschlag, damit das Rechteck den Radius garantiert umschließt
+    private static final double ENVELOPE_MARGIN = 1.01;
+
+    /**
+     * The places containing a point, each list in the order of the corresponding SQL query
+     * (Google Places by importance, Custom Places newest first).
+     */
+    public record Containing(List<Long> googlePlaceIds, List<UUID> customPlaceIds) {}
+
+    // rank: Sortierschlüssel absteigend (Google: importance, Custom: created_at in Nanosekunden)
+    private record Fence(HistoricalPhotoIndex.PlaceKey key, double latitude, double longitude, int radiusMeters,
+                         long rank, Instant expiresAt) {
+
+        boolean contains(double pointLatitude, double pointLongitude, Instant now) {
+            if (expiresAt != null && !expiresAt.isAfter(now)) {
+                return false;
+            }
+            return Geodesy.distanceMeters(latitude, longitude, pointLatitude, pointLongitude) <= radiusMeters;
+        }
+
+        Envelope envelope() {
+            double latDelta = radiusMeters * ENVELOPE_MARGIN / MIN_METERS_PER_DEGREE_LATITUDE;
+            double maxAbsLatitude = Math.min(90, Math.abs(latitude) + latDelta);
+            double cos = Math.cos(Math.toRadians(maxAbsLatitude));
+            double lonDelta = cos < 1e-6 ? 360 : radiusMeters * ENVELOPE_MARGIN / (METERS_PER_DEGREE_LONGITUDE * cos);
+            double minLon = longitude - lonDelta;
+            double maxLon = longitude + lonDelta;
+            if (minLon < -180 || maxLon > 180) {
+                // Über die Datumsgrenze: konservativ den ganzen Längenbereich abdecken
+                minLon = -180;
+                maxLon = 180;
+            }
+            return new Envelope(minLon, maxLon, latitude - latDelta, latitude + latDelta);
+        }
+    }
+
+    private final GooglePlaceRepository googlePlaceRepository;
+    private final CustomPlaceRepository customPlaceRepository;
+    private final Clock clock;
+    private final Counter indexHits;
+    private final Counter fallbacks;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<HistoricalPhotoIndex.PlaceKey, Fence> fences = new HashMap<>();
+    private STRtree tree = emptyTree();
+    // Seit dem letzten Build geänderte Orte -> Sequenznummer der letzten Änderung
+    private final Map<HistoricalPhotoIndex.PlaceKey, Long> dirty = new HashMap<>();
+    private long sequence;
+    private boolean loaded;
+    private boolean loading;
+    // Änderungen, die während des Ladens eintreffen, werden danach nachgespielt
+    private final List<Runnable> pendingUpdates = new ArrayList<>();
+
+    @Autowired
+    public GeofenceIndex(GooglePlaceRepository googlePlaceRepository,
+                         CustomPlaceRepository customPlaceRepository,
+                         MeterRegistry meterRegistry) {
+        this(googlePlaceRepository, customPlaceRepository, meterRegistry, Clock.systemUTC());
+    }
+
+    GeofenceIndex(GooglePlaceRepository googlePlaceRepository, CustomPlaceRepository customPlaceRepository,
+                  MeterRegistry meterRegistry, Clock clock) {
+        this.googlePlaceRepository = googlePlaceRepository;
+        this.customPlaceRepository = customPlaceRepository;
+        this.clock = clock;
+        this.indexHits = meterRegistry.counter("iris.geofence.requests", "source", "index");
+        this.fallbacks = meterRegistry.counter("iris.geofence.requests", "source", "database");
+        Gauge.builder("iris.geofence.places", this, GeofenceIndex::size).register(meterRegistry);
+    }
+
+    /**
+     * (Re)loads all geofences from the database. Runs asynchronously after startup; until it has
+     * finished all lookups fall back to SQL.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            loading = true;
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Fence> loadedFences;
+        try {
+            loadedFences = readFences();
+        } catch (RuntimeException e) {
+            logger.error("Could not load geofence index, using SQL only: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                loading = false;
+                pendingUpdates.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            fences.clear();
+            dirty.clear();
+            loadedFences.forEach(fence -> fences.put(fence.key(), fence));
+            tree = build(fences.values());
+            loading = false;
+            loaded = true;
+            pendingUpdates.forEach(Runnable::run);
+            pendingUpdates.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Geofence index loaded: {} places", loadedFences.size());
+    }
+
+    /**
+     * Replaces the loaded geofences with the current database state. Changes applied locally after the
+     * read started are newer than the rows and are kept; everything else that differs is marked dirty
+     * and folded into the tree by {@link #rebuild}. Lookups keep using the index meanwhile.
+     */
+    @Scheduled(fixedDelayString = "${geofence.reload-interval-ms:60000}",
+            initialDelayString = "${geofence.reload-interval-ms:60000}")
+    public void reload() {
+        long startSequence;
+        lock.readLock().lock();
+        try {
+            if (!loaded) {
+                return; // load() läuft noch oder ist gescheitert
+            }
+            startSequence = sequence;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<HistoricalPhotoIndex.PlaceKey, Fence> current = new HashMap<>();
+        try {
+            readFences().forEach(fence -> current.put(fence.key(), fence));
+        } catch (RuntimeException e) {
+            logger.warn("Could not reload geofence index, keeping the current state: {}", e.getMessage());
+            return;
+        }
+
+        int changed = 0;
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            Set<HistoricalPhotoIndex.PlaceKey> keys = new HashSet<>(fences.keySet());
+            keys.addAll(current.keySet());
+            for (HistoricalPhotoIndex.PlaceKey key : keys) {
+                Long changedAt = dirty.get(key);
+                if (changedAt != null && changedAt > startSequence) {
+                    continue; // Lokal nach dem Lesen geändert: der lokale Stand ist neuer
+                }
+                Fence fence = current.get(key);
+                if (!Objects.equals(fences.get(key), fence)) {
+                    put(key, fence);
+                    changed++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (changed > 0) {
+            logger.debug("Geofence reload changed {} places", changed);
+            rebuild();
+        }
+    }
+
+    /**
+     * Applies a committed Custom Place change. Runs after the commit so a rolled-back create or update
+     * never leaves a fence behind.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCustomPlaceChanged(CustomPlaceChangedEvent event) {
+        updateCustomPlace(event.place());
+    }
+
+    /**
+     * Adds or updates a Google Place (e.g. after a nearby search upserted it).
+     */
+    public void updateGooglePlace(Long id, Point location, Integer radiusMeters, int importance) {
+        HistoricalPhotoIndex.PlaceKey key = HistoricalPhotoIndex.PlaceKey.google(id);
+        if (location == null || radiusMeters == null) {
+            apply(() -> put(key, null));
+            return;
+        }
+        Fence fence = new Fence(key, location.getY(), location.getX(), radiusMeters, importance, null);
+        apply(() -> put(key, fence));
+    }
+
+    /**
+     * Adds, updates or removes a Custom Place depending on whether it is currently live.
+     */
+    public void updateCustomPlace(CustomPlace place) {
+        HistoricalPhotoIndex.PlaceKey key = HistoricalPhotoIndex.PlaceKey.custom(place.getId());
+        boolean active = place.isLive()
+                && place.getExpiresAt() != null
+                && place.getExpiresAt().toInstant().isAfter(clock.instant())
+                && place.getLocation() != null
+                && place.getRadiusMeters() != null;
+        Fence fence = active
+                ? new Fence(key, place.getLocation().getY(), place.getLocation().getX(), place.getRadiusMeters(),
+                        rank(place.getCreatedAt() != null ? place.getCreatedAt().toInstant() : clock.instant()),
+                        place.getExpiresAt().toInstant())
+                : null;
+        apply(() -> put(key, fence));
+    }
+
+    /**
+     * Finds all places whose geofence contains the point.
+     *
+     * @return the containing places, or empty if the index is not loaded yet
+     */
+    public Optional<Containing> findContaining(double latitude, double longitude) {
+        Instant now = clock.instant();
+        List<Fence> matches = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            if (!loaded) {
+                fallbacks.increment();
+                return Optional.empty();
+            }
+            @SuppressWarnings("unchecked")
+            List<Fence> candidates = tree.query(new Envelope(longitude, longitude, latitude, latitude));
+            for (Fence fence : candidates) {
+                // Geänderte Orte stehen veraltet im Baum; maßgeblich ist der aktuelle Stand unten
+                if (!dirty.containsKey(fence.key()) && fence.contains(latitude, longitude, now)) {
+                    matches.add(fence);
+                }
+            }
+            for (HistoricalPhotoIndex.PlaceKey key : dirty.keySet()) {
+                Fence fence = fences.get(key);
+                if (fence != null && fence.contains(latitude, longitude, now)) {
+                    matches.add(fence);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(Comparator.comparingLong(Fence::rank).reversed());
+        List<Long> googlePlaceIds = new ArrayList<>();
+        List<UUID> customPlaceIds = new ArrayList<>();
+        for (Fence fence : matches) {
+            if (fence.key().googlePlaceId() != null) {
+                googlePlaceIds.add(fence.key().googlePlaceId());
+            } else {
+                customPlaceIds.add(fence.key().customPlaceId());
+            }
+        }
+        indexHits.increment();
+        return Optional.of(new Containing(googlePlaceIds, customPlaceIds));
+    }
+
+    /**
+     * Removes expired Custom Places and folds all changes since the last build into a fresh tree.
+     * The tree is built outside the lock; changes made meanwhile stay dirty for the next round.
+     */
+    @Scheduled(fixedDelayString = "${geofence.rebuild-interval-ms:30000}")
+    public void rebuild() {
+        Instant now = clock.instant();
+        List<Fence> snapshot;
+        long snapshotSequence;
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            List<HistoricalPhotoIndex.PlaceKey> expired = fences.values().stream()
+                    .filter(fence -> fence.expiresAt() != null && !fence.expiresAt().isAfter(now))
+                    .map(Fence::key)
+                    .toList();
+            expired.forEach(key -> put(key, null));
+            if (dirty.isEmpty()) {
+                return;
+            }
+            snapshot = new ArrayList<>(fences.values());
+            snapshotSequence = sequence;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        STRtree rebuilt = build(snapshot);
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return; // Inzwischen neu geladen
+            }
+            tree = rebuilt;
+            dirty.values().removeIf(changedAt -> changedAt <= snapshotSequence);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Geofence tree rebuilt with {} places", snapshot.size());
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return fences.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Runnable update) {
+        lock.writeLock().lock();
+        try {
+            if (loading) {
+                pendingUpdates.add(update);
+            } else if (loaded) {
+                update.run();
+            }
+            // Nicht geladen und lädt nicht: der nächste load() liest den Stand ohnehin aus der Datenbank
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Nur unter Write-Lock aufrufen; fence == null entfernt den Ort
+    private void put(HistoricalPhotoIndex.PlaceKey key, Fence fence) {
+        Fence previous = fence != null ? fences.put(key, fence) : fences.remove(key);
+        if (previous != null || fence != null) {
+            dirty.put(key, ++sequence);
+        }
+    }
+
+    private List<Fence> readFences() {
+        List<Fence> read = new ArrayList<>();
+        for (GooglePlaceRepository.GeofenceProjection row : googlePlaceRepository.findAllGeofences()) {
+            read.add(new Fence(HistoricalPhotoIndex.PlaceKey.google(row.getId()), row.getLatitude(),
+                    row.getLongitude(), row.getRadiusMeters(), row.getImportance(), null));
+        }
+        for (CustomPlaceRepository.GeofenceProjection row : customPlaceRepository.findLiveGeofences()) {
+            read.add(new Fence(HistoricalPhotoIndex.PlaceKey.custom(row.getId()), row.getLatitude(),
+                    row.getLongitude(), row.getRadiusMeters(), rank(row.getCreatedAt()), row.getExpiresAt()));
+        }
+        return read;
+    }
+
+    private static STRtree build(Collection<Fence> fences) {
+        STRtree built = new STRtree();
+        for (Fence fence : fences) {
+            built.insert(fence.envelope(), fence);
+        }
+        built.build();
+        return built;
+    }
+
+    private static STRtree emptyTree() {
+        STRtree empty = new STRtree();
+        empty.build();
+        return empty;
+    }
+
+    private static long rank(Instant createdAt) {
+        return createdAt.getEpochSecond() * 1_000_000_000L + createdAt.getNano();
+    }
+}
@@ -3,20 +3,26 @@ package com.iris.backend.service;
 import com.iris.backend.dto.ParticipantDTO;
 import com.iris.backend.dto.feed.GalleryFeedItemDTO;
 import com.iris.backend.dto.feed.GalleryPlaceType;
+import com.iris.backend.geo.Geodesy;
+import com.iris.backend.geo.Geohash;
 import com.iris.backend.model.Friendship;
-import com.iris.backend.model.GooglePlace;
 import com.iris.backend.model.User;
 import com.iris.backend.model.enums.FriendshipStatus;
 import com.iris.backend.repository.FriendshipRepository;
 import com.iris.backend.repository.GooglePlaceRepository;
 import com.iris.backend.repository.PhotoRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.maps.GeoApiContext;
 import com.google.maps.PlacesApi;
 import com.google.maps.model.LatLng;
 import com.google.maps.model.PlacesSearchResponse;
 import com.google.maps.model.PlacesSearchResult;
 import org.locationtech.jts.geom.Coordinate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +43,12 @@ public class GoogleApiService {
     private final PhotoRepository photoRepository;
     private final FriendshipRepository friendshipRepository;
     private final GcsStorageService gcsStorageService;
+    private final HistoricalPhotoIndex historicalPhotoIndex;
+    private final GeofenceIndex geofenceIndex;
+    private final PlacesNearbyCache placesNearbyCache;
+    private final ObjectMapper objectMapper;
+    private final Counter insertedPlaces;
+    private final Counter updatedPlaces;
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
 
     @Value("${gcs.bucket.profile-images.name}")
@@ -66,6 +78,10 @@ public class GoogleApiService {
     private static final PlaceRule DEFAULT_RULE = new PlaceRule(100, 0); // Standard für alles andere
     // --- ENDE Regelwerk ---
 
+    private static final int SEARCH_RADIUS_METERS = 50;
+    // Die Nearby Search liefert pro Seite höchstens 20 Ergebnisse
+    static final int MAX_RESULTS_PER_PAGE = 20;
+
     private static final Set<String> UNINTERESTING_PLACE_TYPES = Set.of(
             "street_address", "route", "intersection", "political", "country",
             "administrative_area_level_1", "administrative_area_level_2",
@@ -76,30 +92,42 @@ public class GoogleApiService {
                             GooglePlaceRepository googlePlaceRepository,
                             PhotoRepository photoRepository,
                             FriendshipRepository friendshipRepository,
-                            GcsStorageService gcsStorageService) {
+                            GcsStorageService gcsStorageService,
+                            HistoricalPhotoIndex historicalPhotoIndex,
+                            GeofenceIndex geofenceIndex,
+                            PlacesNearbyCache placesNearbyCache,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry) {
         this.geoApiContext = geoApiContext;
         this.googlePlaceRepository = googlePlaceRepository;
         this.photoRepository = photoRepository;
         this.friendshipRepository = friendshipRepository;
         this.gcsStorageService = gcsStorageService;
+        this.historicalPhotoIndex = historicalPhotoIndex;
+        this.geofenceIndex = geofenceIndex;
+        this.placesNearbyCache = placesNearbyCache;
+        this.objectMapper = objectMapper;
+        this.insertedPlaces = meterRegistry.counter("iris.google_places.upserts", "result", "inserted");
+        this.updatedPlaces = meterRegistry.counter("iris.google_places.upserts", "result", "updated");
     }
 
     /**
-     * KORREKTUR: Gibt jetzt List<GalleryFeedItemDTO> zurück
+     * Findet die Google Places im Umkreis von {@value #SEARCH_RADIUS_METERS} m.
+     * Die Places API wird pro Geohash-Zelle nur einmal gefragt (siehe {@link PlacesNearbyCache}),
+     * danach wird das Zellen-Ergebnis auf den Umkreis des Aufrufers gefiltert. Hat die Zellen-Suche die
+     * Ergebnisgrenze erreicht, wird wie früher direkt um den Aufrufer gesucht.
      */
     public List<GalleryFeedItemDTO> findNearbyPlaces(double latitude, double longitude) {
         try {
-            LatLng coords = new LatLng(latitude, longitude);
-            PlacesSearchResponse response = PlacesApi.nearbySearchQuery(geoApiContext, coords)
-                    .radius(50) // Radius für die API-Suche
-                    .await();
-
-            return Arrays.stream(response.results)
-                    .filter(googlePlace -> Collections.disjoint(Arrays.asList(googlePlace.types), UNINTERESTING_PLACE_TYPES))
-                    .map(this::saveOrUpdatePlaceFromPoi) // Gibt jetzt GalleryFeedItemDTO zurück
-                    .sorted(Comparator.comparing(GalleryFeedItemDTO::name)) // Sortiere nach Name (passend zu getTaggablePlaces)
+            PlacesNearbyCache.CellPlaces cell = placesNearbyCache.get(latitude, longitude, this::searchCell);
+            if (!cell.complete()) {
+                // Dichte Gegend: kleine Orte direkt beim Aufrufer können im Zellen-Ergebnis fehlen
+                return search(new LatLng(latitude, longitude), SEARCH_RADIUS_METERS).places();
+            }
+            return cell.places().stream()
+                    .filter(place -> Geodesy.distanceMeters(latitude, longitude, place.latitude(), place.longitude())
+                            <= SEARCH_RADIUS_METERS)
                     .collect(Collectors.toList());
-
         } catch (Exception e) {
             logger.error("Error calling Google Places API for nearby search: {}", e.getMessage());
             return List.of();
@@ -107,48 +135,123 @@ public class GoogleApiService {
     }
 
     /**
-     * KORREKTUR: Gibt jetzt GalleryFeedItemDTO zurück
+     * Sucht alle Places einer ganzen Geohash-Zelle: vom Zellenmittelpunkt aus mit einem Radius, der die
+     * Zelle plus den Such-Radius abdeckt. Fehler werden geworfen (und damit nicht gecacht).
+     */
+    PlacesNearbyCache.CellPlaces searchCell(String cell) {
+        Geohash.Bounds bounds = Geohash.bounds(cell);
+        double halfDiagonal = Geodesy.distanceMeters(bounds.centerLatitude(), bounds.centerLongitude(),
+                bounds.maxLatitude(), bounds.maxLongitude());
+        LatLng center = new LatLng(bounds.centerLatitude(), bounds.centerLongitude());
+        return search(center, (int) Math.ceil(halfDiagonal) + SEARCH_RADIUS_METERS);
+    }
+
+    private PlacesNearbyCache.CellPlaces search(LatLng center, int radiusMeters) {
+        PlacesSearchResponse response;
+        try {
+            response = PlacesApi.nearbySearchQuery(geoApiContext, center)
+                    .radius(radiusMeters)
+                    .await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during Google Places nearby search", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Google Places nearby search failed at " + center + ": " + e.getMessage(), e);
+        }
+
+        List<PlacesSearchResult> relevantResults = Arrays.stream(response.results)
+                .filter(googlePlace -> Collections.disjoint(Arrays.asList(googlePlace.types), UNINTERESTING_PLACE_TYPES))
+                .toList();
+        List<GalleryFeedItemDTO> places = upsertPlaces(relevantResults).stream()
+                .sorted(Comparator.comparing(GalleryFeedItemDTO::name)) // Sortiere nach Name (passend zu getTaggablePlaces)
+                .collect(Collectors.toList());
+        // Eine volle Seite heißt: es gibt vermutlich mehr Orte, als die API geliefert hat
+        return new PlacesNearbyCache.CellPlaces(places, response.results.length < MAX_RESULTS_PER_PAGE);
+    }
+
+    /**
+     * Eine Zeile für {@link GooglePlaceRepository#upsertAll}; die Feldnamen sind die JSON-Keys der Query.
+     */
+    record PlaceUpsertRow(String googlePlaceId, String name, String address, double latitude, double longitude,
+                          int radiusMeters, int importance) {}
+
+    /**
+     * Speichert alle Ergebnisse einer Suche mit einem einzigen INSERT ... ON CONFLICT DO UPDATE
+     * (statt findByGooglePlaceId + save pro Ort) und baut die DTOs mit den zurückgegebenen IDs.
      */
-    private GalleryFeedItemDTO saveOrUpdatePlaceFromPoi(PlacesSearchResult placeResult) {
-        GooglePlace googlePlace = googlePlaceRepository.findByGooglePlaceId(placeResult.placeId).orElseGet(GooglePlace::new);
-        googlePlace.setGooglePlaceId(placeResult.placeId);
-        googlePlace.setName(placeResult.name);
-        googlePlace.setAddress(placeResult.vicinity);
-        googlePlace.setLocation(geometryFactory.createPoint(new Coordinate(placeResult.geometry.location.lng, placeResult.geometry.location.lat)));
-
-        // --- NEU: Wende unser Regelwerk an ---
-        PlaceRule rule = Arrays.stream(placeResult.types)
+    private List<GalleryFeedItemDTO> upsertPlaces(List<PlacesSearchResult> results) {
+        // Dieselbe place_id zweimal im Statement würde ON CONFLICT dieselbe Zeile zweimal treffen lassen
+        Map<String, PlaceUpsertRow> rows = new LinkedHashMap<>();
+        for (PlacesSearchResult result : results) {
+            PlaceRule rule = ruleFor(result.types);
+            rows.put(result.placeId, new PlaceUpsertRow(
+                    result.placeId,
+                    result.name,
+                    result.vicinity,
+                    result.geometry.location.lat,
+                    result.geometry.location.lng,
+                    rule.radius(),
+                    rule.importance()
+            ));
+        }
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        String placesJson;
+        try {
+            placesJson = objectMapper.writeValueAsString(rows.values());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize Google Places for upsert", e);
+        }
+        List<GooglePlaceRepository.UpsertedPlace> upserted = googlePlaceRepository.upsertAll(placesJson);
+
+        List<GalleryFeedItemDTO> result = new ArrayList<>(upserted.size());
+        for (GooglePlaceRepository.UpsertedPlace place : upserted) {
+            (place.getInserted() ? insertedPlaces : updatedPlaces).increment();
+
+            PlaceUpsertRow row = rows.get(place.getGooglePlaceId());
+            Point location = geometryFactory.createPoint(new Coordinate(row.longitude(), row.latitude()));
+            // Position/Radius können sich geändert haben -> Historical-Feed-Index nachziehen (no-op, falls nicht indexiert)
+            historicalPhotoIndex.updatePlaceGeometry(HistoricalPhotoIndex.PlaceKey.google(place.getId()),
+                    location, row.radiusMeters());
+            geofenceIndex.updateGooglePlace(place.getId(), location, row.radiusMeters(), row.importance());
+
+            result.add(new GalleryFeedItemDTO(
+                    GalleryPlaceType.GOOGLE_POI,
+                    row.name(),
+                    row.latitude(),
+                    row.longitude(),
+                    null, // coverImageUrl - nicht benötigt für taggable places
+                    null, // coverThumbnailUrl - nicht benötigt für taggable places
+                    null, // coverBlurhash - nicht benötigt für taggable places
+                    0,    // photoCount - nicht benötigt für taggable places
+                    null, // newestPhotoTimestamp - nicht benötigt für taggable places
+                    place.getId(), // googlePlaceId (unsere interne Long ID)
+                    null, // customPlaceId
+                    row.address(),
+                    row.radiusMeters(),
+                    null, // accessType
+                    false, // isTrending
+                    true,  // isLive (Google POIs sind immer "live")
+                    null,  // expiresAt
+                    0L,
+                    null   // owner (nur für IRIS_SPOT)
+            ));
+        }
+        logger.debug("Upserted {} Google Places in one statement", upserted.size());
+        return result;
+    }
+
+    private static PlaceRule ruleFor(String[] types) {
+        if (types == null) {
+            return DEFAULT_RULE;
+        }
+        return Arrays.stream(types)
                 .map(PLACE_RULES::get)
                 .filter(Objects::nonNull)
                 .findFirst()
                 .orElse(DEFAULT_RULE);
-
-        googlePlace.setRadiusMeters(rule.radius());
-        googlePlace.setImportance(rule.importance());
-        // --- ENDE Regelwerk-Anwendung ---
-
-        GooglePlace savedGooglePlace = googlePlaceRepository.save(googlePlace);
-
-        // KORREKTUR: Wir geben jetzt ein GalleryFeedItemDTO zurück
-        return new GalleryFeedItemDTO(
-                GalleryPlaceType.GOOGLE_POI,
-                savedGooglePlace.getName(),
-                savedGooglePlace.getLocation().getY(), // latitude
-                savedGooglePlace.getLocation().getX(), // longitude
-                null, // coverImageUrl - nicht benötigt für taggable places
-                0,    // photoCount - nicht benötigt für taggable places
-                null, // newestPhotoTimestamp - nicht benötigt für taggable places
-                savedGooglePlace.getId(), // googlePlaceId (unsere interne Long ID)
-                null, // customPlaceId
-                savedGooglePlace.getAddress(),
-                savedGooglePlace.getRadiusMeters(),
-                null, // accessType
-                false, // isTrending
-                true,  // isLive (Google POIs sind immer "live")
-                null,  // expiresAt
-                0L,
-                null   // owner (nur für IRIS_SPOT)
-        );
     }
 
     /**
@@ -0,0 +1,163 @@
+package com.iris.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.dto.HistoricalPointDTO;
+import com.iris.backend.geo.Geohash;
+import com.iris.backend.repository.HistoricalFeedRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the SQL matching of long histories in time-ordered chunks, concurrently on virtual threads.
+ *
+ * One query with thousands of points holds a connection for the whole evaluation and becomes a
+ * latency cliff. Instead the history is cut into chunks of {@code feed.historical.chunk-size}
+ * points; at most {@code feed.historical.max-parallel-chunks} chunks (over all requests) run at
+ * the same time, so long histories can never take more than that many pool connections. The chunks
+ * only return the matching photos; merging per place happens afterwards in {@link HistoricalFeedService}.
+ *
+ * The caller must not hold a connection while it waits for its chunks: if all pool connections are held
+ * by waiting callers, no chunk gets one and nothing progresses. Callers inside a transaction therefore get
+ * their chunks run one after another on their own thread (and connection); {@link HistoricalFeedService}
+ * calls this without a transaction so the chunks can run in parallel.
+ */
+@Component
+public class HistoricalChunkExecutor {
+
+    // Präzision 7 = Zellen von ca. 153 x 153 m, Zeit-Bucket 5 Minuten
+    static final int SIMPLIFY_CELL_PRECISION = 7;
+    static final Duration SIMPLIFY_TIME_BUCKET = Duration.ofMinutes(5);
+
+    private final HistoricalFeedRepository historicalFeedRepository;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public HistoricalChunkExecutor(HistoricalFeedRepository historicalFeedRepository,
+                                   ObjectMapper objectMapper,
+                                   @Value("${feed.historical.chunk-size:250}") int chunkSize,
+                                   @Value("${feed.historical.max-parallel-chunks:4}") int maxParallelChunks) {
+        if (chunkSize < 1 || maxParallelChunks < 1) {
+            throw new IllegalArgumentException("chunk-size and max-parallel-chunks must be positive");
+        }
+        this.historicalFeedRepository = historicalFeedRepository;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.permits = new Semaphore(maxParallelChunks);
+    }
+
+    /**
+     * Drops points that add nothing: of all points in the same geohash cell and 5-minute bucket only
+     * the latest one is kept (its 5-hour window covers the others up to one bucket). Points without
+     * timestamp never match in SQL and are dropped as well. The result is ordered by time.
+     */
+    public static List<HistoricalPointDTO> simplify(List<HistoricalPointDTO> history) {
+        long bucketSeconds = SIMPLIFY_TIME_BUCKET.toSeconds();
+        Map<String, HistoricalPointDTO> latestPerBucket = new HashMap<>();
+        for (HistoricalPointDTO point : history) {
+            if (point == null || point.timestamp() == null) {
+                continue;
+            }
+            long bucket = Math.floorDiv(point.timestamp().toEpochSecond(), bucketSeconds);
+            String key = Geohash.encode(point.latitude(), point.longitude(), SIMPLIFY_CELL_PRECISION) + ":" + bucket;
+            latestPerBucket.merge(key, point,
+                    (kept, candidate) -> candidate.timestamp().isAfter(kept.timestamp()) ? candidate : kept);
+        }
+        List<HistoricalPointDTO> simplified = new ArrayList<>(latestPerBucket.values());
+        simplified.sort(Comparator.comparing(HistoricalPointDTO::timestamp));
+        return simplified;
+    }
+
+    /**
+     * Finds the matching photos of a (simplified, time-ordered) history chunk by chunk.
+     *
+     * @return the matches, each photo only once, or empty if the history fits into a single chunk
+     * (the caller then uses the single aggregated query)
+     */
+    public Optional<List<HistoricalPhotoIndex.Match>> findMatches(List<HistoricalPointDTO> history) {
+        if (history.size() <= chunkSize) {
+            return Optional.empty();
+        }
+
+        // Mit offener Transaktion hält der Aufrufer eine Verbindung -> Chunks nicht auf weitere Verbindungen warten lassen
+        boolean inline = TransactionSynchronizationManager.isActualTransactionActive();
+        List<Future<List<HistoricalFeedRepository.HistoricalMatchProjection>>> futures = new ArrayList<>();
+        for (int from = 0; from < history.size(); from += chunkSize) {
+            List<HistoricalPointDTO> chunk = history.subList(from, Math.min(from + chunkSize, history.size()));
+            // Zeitlich sortiert -> jeder Chunk deckt nur wenige Tage (Partitionen) ab
+            Optional<HistoricalUploadWindow> window = HistoricalUploadWindow.of(chunk);
+            if (window.isEmpty()) {
+                continue;
+            }
+            String chunkJson = toJson(chunk);
+            if (inline) {
+                futures.add(CompletableFuture.completedFuture(
+                        historicalFeedRepository.findHistoricalMatches(chunkJson, window.get().from(), window.get().to())));
+            } else {
+                futures.add(executor.submit(() -> queryChunk(chunkJson, window.get())));
+            }
+        }
+
+        // Ein Foto kann zu Punkten in mehreren Chunks passen -> pro Foto-ID nur einmal übernehmen
+        Map<UUID, HistoricalPhotoIndex.Match> matches = new LinkedHashMap<>();
+        try {
+            for (Future<List<HistoricalFeedRepository.HistoricalMatchProjection>> future : futures) {
+                for (HistoricalFeedRepository.HistoricalMatchProjection row : future.get()) {
+                    matches.putIfAbsent(row.getPhotoId(), toMatch(row));
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing historical data", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new RuntimeException("Error processing historical data", e.getCause());
+        }
+        return Optional.of(new ArrayList<>(matches.values()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private List<HistoricalFeedRepository.HistoricalMatchProjection> queryChunk(String chunkJson, HistoricalUploadWindow window)
+            throws InterruptedException {
+        permits.acquire();
+        try {
+            return historicalFeedRepository.findHistoricalMatches(chunkJson, window.from(), window.to());
+        } finally {
+            permits.release();
+        }
+    }
+
+    private String toJson(List<HistoricalPointDTO> chunk) {
+        try {
+            return objectMapper.writeValueAsString(chunk);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error processing historical data", e);
+        }
+    }
+
+    private static HistoricalPhotoIndex.Match toMatch(HistoricalFeedRepository.HistoricalMatchProjection row) {
+        HistoricalPhotoIndex.PlaceKey place = row.getGooglePlaceId() != null
+                ? HistoricalPhotoIndex.PlaceKey.google(row.getGooglePlaceId())
+                : HistoricalPhotoIndex.PlaceKey.custom(row.getCustomPlaceId());
+        return new HistoricalPhotoIndex.Match(row.getPhotoId(), place, row.getStorageUrl(),
+                row.getThumbnailStorageUrl(), row.getBlurhash(), row.getUploadedAt());
+    }
+}
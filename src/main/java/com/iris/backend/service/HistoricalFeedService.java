@@ -6,19 +6,24 @@ import com.iris.backend.dto.feed.GalleryFeedItemDTO; // NEUER IMPORT
 // import com.iris.backend.dto.FeedPlaceDTO; // ALTER IMPORT ENTFERNT
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.dto.feed.GalleryPlaceType;
+import com.iris.backend.model.CustomPlace;
+import com.iris.backend.model.GooglePlace;
+import com.iris.backend.model.User;
+import com.iris.backend.repository.CustomPlaceRepository;
+import com.iris.backend.repository.GooglePlaceRepository;
 import com.iris.backend.repository.HistoricalFeedRepository; // NEUER IMPORT
+import com.iris.backend.repository.PlaceStatsRepository;
+import com.iris.backend.repository.UserRepository;
 // import com.iris.backend.repository.FeedRepository; // ALTER IMPORT ENTFERNT
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp; // Nicht mehr benötigt
-import java.time.Instant; // Nicht mehr benötigt
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
-import java.util.Comparator; // Nicht mehr benötigt
-import java.util.List;
-import java.util.UUID; // Nicht mehr benötigt
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream; // Nicht mehr benötigt
@@ -31,34 +36,86 @@ public class HistoricalFeedService {
     private final ObjectMapper objectMapper;
     private final GcsStorageService gcsStorageService;
     private final String photosBucketName;
+    private final HistoricalPhotoIndex historicalPhotoIndex;
+    private final GooglePlaceRepository googlePlaceRepository;
+    private final CustomPlaceRepository customPlaceRepository;
+    private final UserRepository userRepository;
+    private final PlaceStatsRepository placeStatsRepository;
+    private final HistoricalChunkExecutor historicalChunkExecutor;
 
     public HistoricalFeedService(
             HistoricalFeedRepository historicalFeedRepository, // NEU
             ObjectMapper objectMapper,
             GcsStorageService gcsStorageService,
-            @Value("${gcs.bucket.photos.name}") String photosBucketName) {
+            @Value("${gcs.bucket.photos.name}") String photosBucketName,
+            HistoricalPhotoIndex historicalPhotoIndex,
+            GooglePlaceRepository googlePlaceRepository,
+            CustomPlaceRepository customPlaceRepository,
+            UserRepository userRepository,
+            PlaceStatsRepository placeStatsRepository,
+            HistoricalChunkExecutor historicalChunkExecutor) {
         this.historicalFeedRepository = historicalFeedRepository;
         this.objectMapper = objectMapper;
         this.gcsStorageService = gcsStorageService;
         this.photosBucketName = photosBucketName;
+        this.historicalPhotoIndex = historicalPhotoIndex;
+        this.googlePlaceRepository = googlePlaceRepository;
+        this.customPlaceRepository = customPlaceRepository;
+        this.userRepository = userRepository;
+        this.placeStatsRepository = placeStatsRepository;
+        this.historicalChunkExecutor = historicalChunkExecutor;
     }
 
     /**
      * Generiert den Historical Feed.
-     * Nutzt jetzt die neue, saubere Repository-Methode.
+     * Die History wird zuerst vereinfacht (siehe {@link HistoricalChunkExecutor#simplify}) und dann
+     * wenn möglich aus dem In-Memory-Index beantwortet, sonst über SQL.
+     * Bewusst ohne Transaktion: sonst hielte der Request eine Verbindung, während er auf die Chunks wartet
+     * (siehe {@link HistoricalChunkExecutor}); die Repository-Aufrufe laufen je in ihrer eigenen.
      */
-    @Transactional(readOnly = true)
     public List<GalleryFeedItemDTO> generateHistoricalFeed(List<HistoricalPointDTO> history) {
         if (history == null || history.isEmpty()) {
             return List.of();
         }
+        List<HistoricalPointDTO> simplified = HistoricalChunkExecutor.simplify(history);
+        if (simplified.isEmpty()) {
+            return List.of();
+        }
+        return generateFromIndex(simplified).orElseGet(() -> generateFromDatabase(simplified));
+    }
 
+    /**
+     * Beantwortet den Historical Feed aus dem {@link HistoricalPhotoIndex}.
+     * Nur die gefundenen Orte, deren Owner und Uploader-Zahlen werden (gruppiert) aus der Datenbank geladen.
+     *
+     * @return the feed, or empty if the index cannot answer this history (not loaded / too old)
+     */
+    public Optional<List<GalleryFeedItemDTO>> generateFromIndex(List<HistoricalPointDTO> history) {
+        return historicalPhotoIndex.findMatches(history).map(this::aggregateMatches);
+    }
+
+    /**
+     * Der SQL-Weg (Fallback und Referenz für den Index).
+     * Lange Histories werden in Chunks parallel abgefragt und hier pro Ort zusammengeführt,
+     * kurze gehen wie bisher in eine einzige aggregierende Query.
+     */
+    public List<GalleryFeedItemDTO> generateFromDatabase(List<HistoricalPointDTO> history) {
+        return historicalChunkExecutor.findMatches(history)
+                .map(this::aggregateMatches)
+                .orElseGet(() -> generateFromSingleQuery(history));
+    }
+
+    private List<GalleryFeedItemDTO> generateFromSingleQuery(List<HistoricalPointDTO> history) {
+        Optional<HistoricalUploadWindow> window = HistoricalUploadWindow.of(history);
+        if (window.isEmpty()) {
+            return List.of();
+        }
         try {
             String historyJson = objectMapper.writeValueAsString(history);
 
             // 1. Rufe die neue, saubere Query auf
             List<HistoricalFeedRepository.GalleryFeedItemDTOProjection> results =
-                    historicalFeedRepository.findHistoricalFeed(historyJson);
+                    historicalFeedRepository.findHistoricalFeed(historyJson, window.get().from(), window.get().to());
 
             // 2. Wandle Projektionen in DTOs um und generiere signierte URLs
             return results.stream()
@@ -91,6 +148,8 @@ public class HistoricalFeedService {
                                 projection.getLatitude(),
                                 projection.getLongitude(),
                                 signedUrl, // Ersetze Objektname durch signierte URL
+                                generateSignedUrl(projection.getCoverThumbnailUrl()),
+                                projection.getCoverBlurhash(),
                                 projection.getPhotoCount(),
                                 newestPhotoTs,
                                 projection.getGooglePlaceId(),
@@ -112,6 +171,141 @@ public class HistoricalFeedService {
         }
     }
 
+    /**
+     * Gruppiert die Treffer pro Ort (wie {@code grouped_places} in der SQL-Query) und baut die DTOs.
+     */
+    private List<GalleryFeedItemDTO> aggregateMatches(List<HistoricalPhotoIndex.Match> matches) {
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+
+        // 1. Pro Ort: Anzahl Fotos, neuestes Foto
+        Map<HistoricalPhotoIndex.PlaceKey, PlaceAggregate> aggregates = new HashMap<>();
+        for (HistoricalPhotoIndex.Match match : matches) {
+            aggregates.computeIfAbsent(match.place(), key -> new PlaceAggregate()).add(match);
+        }
+
+        Set<Long> googlePlaceIds = new HashSet<>();
+        Set<UUID> customPlaceIds = new HashSet<>();
+        for (HistoricalPhotoIndex.PlaceKey key : aggregates.keySet()) {
+            if (key.type() == GalleryPlaceType.GOOGLE_POI) {
+                googlePlaceIds.add(key.googlePlaceId());
+            } else {
+                customPlaceIds.add(key.customPlaceId());
+            }
+        }
+
+        // 2. Orts-Daten, Owner und Uploader-Zahlen gesammelt laden
+        Map<Long, GooglePlace> googlePlaces = new HashMap<>();
+        Map<Long, Long> googleParticipants = new HashMap<>();
+        if (!googlePlaceIds.isEmpty()) {
+            googlePlaceRepository.findAllById(googlePlaceIds).forEach(place -> googlePlaces.put(place.getId(), place));
+            placeStatsRepository.findAllByGooglePlaceIdIn(googlePlaceIds)
+                    .forEach(stats -> googleParticipants.put(stats.getGooglePlaceId(), stats.getUploaderCount()));
+        }
+        Map<UUID, CustomPlace> customPlaces = new HashMap<>();
+        Map<UUID, Long> customParticipants = new HashMap<>();
+        Map<UUID, User> owners = new HashMap<>();
+        if (!customPlaceIds.isEmpty()) {
+            customPlaceRepository.findAllById(customPlaceIds).forEach(place -> customPlaces.put(place.getId(), place));
+            placeStatsRepository.findAllByCustomPlaceIdIn(customPlaceIds)
+                    .forEach(stats -> customParticipants.put(stats.getCustomPlaceId(), stats.getUploaderCount()));
+            Set<UUID> ownerIds = customPlaces.values().stream()
+                    .map(place -> place.getOwner().getId())
+                    .collect(Collectors.toSet());
+            userRepository.findAllById(ownerIds).forEach(owner -> owners.put(owner.getId(), owner));
+        }
+
+        // 3. DTOs bauen (Orte, die es nicht mehr gibt, fallen weg - wie beim JOIN in SQL)
+        List<GalleryFeedItemDTO> result = new ArrayList<>(aggregates.size());
+        aggregates.forEach((key, aggregate) -> {
+            OffsetDateTime newest = aggregate.newestUploadedAt.atOffset(ZoneOffset.UTC);
+            if (key.type() == GalleryPlaceType.GOOGLE_POI) {
+                GooglePlace place = googlePlaces.get(key.googlePlaceId());
+                if (place == null) {
+                    return;
+                }
+                result.add(new GalleryFeedItemDTO(
+                        GalleryPlaceType.GOOGLE_POI,
+                        place.getName(),
+                        place.getLocation().getY(),
+                        place.getLocation().getX(),
+                        generateSignedUrl(aggregate.latestStorageUrl),
+                        generateSignedUrl(aggregate.latestThumbnailName()),
+                        aggregate.latestBlurhash,
+                        aggregate.photoCount,
+                        newest,
+                        place.getId(),
+                        null,
+                        place.getAddress(),
+                        place.getRadiusMeters() != null ? place.getRadiusMeters() : 0,
+                        null,
+                        false,
+                        true,
+                        null,
+                        googleParticipants.getOrDefault(place.getId(), 0L),
+                        null
+                ));
+            } else {
+                CustomPlace place = customPlaces.get(key.customPlaceId());
+                User owner = place != null ? owners.get(place.getOwner().getId()) : null;
+                if (place == null || owner == null) {
+                    return;
+                }
+                // Eigene Coverbilder haben keine Derivate
+                boolean ownCover = place.getCoverImageUrl() != null;
+                String signedCover = generateSignedUrl(ownCover ? place.getCoverImageUrl() : aggregate.latestStorageUrl);
+                result.add(new GalleryFeedItemDTO(
+                        GalleryPlaceType.IRIS_SPOT,
+                        place.getName(),
+                        place.getLocation().getY(),
+                        place.getLocation().getX(),
+                        signedCover,
+                        ownCover ? signedCover : generateSignedUrl(aggregate.latestThumbnailName()),
+                        ownCover ? null : aggregate.latestBlurhash,
+                        aggregate.photoCount,
+                        newest,
+                        null,
+                        place.getId(),
+                        null,
+                        place.getRadiusMeters(),
+                        place.getAccessType().name(),
+                        place.isTrending(),
+                        place.isLive(),
+                        place.getExpiresAt().toInstant().atOffset(ZoneOffset.UTC),
+                        customParticipants.getOrDefault(place.getId(), 0L),
+                        new UserDTO(owner.getId(), owner.getUsername(), owner.getProfileImageUrl())
+                ));
+            }
+        });
+
+        result.sort(Comparator.comparing(GalleryFeedItemDTO::newestPhotoTimestamp).reversed());
+        return result;
+    }
+
+    private static final class PlaceAggregate {
+        private long photoCount;
+        private Instant newestUploadedAt;
+        private String latestStorageUrl;
+        private String latestThumbnailStorageUrl;
+        private String latestBlurhash;
+
+        private void add(HistoricalPhotoIndex.Match match) {
+            photoCount++;
+            if (newestUploadedAt == null || match.uploadedAt().isAfter(newestUploadedAt)) {
+                newestUploadedAt = match.uploadedAt();
+                latestStorageUrl = match.storageUrl();
+                latestThumbnailStorageUrl = match.thumbnailStorageUrl();
+                latestBlurhash = match.blurhash();
+            }
+        }
+
+        // Solange das neueste Foto keine Derivate hat, dient das Original als Thumbnail
+        private String latestThumbnailName() {
+            return latestThumbnailStorageUrl != null ? latestThumbnailStorageUrl : latestStorageUrl;
+        }
+    }
+
     // Hilfsmethode (unverändert)
     private String generateSignedUrl(String objectName) {
         if (objectName == null) return null;
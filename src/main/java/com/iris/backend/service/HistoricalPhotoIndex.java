@@ -0,0 +1,521 @@
+package com.iris.backend.service;
+
+import com.iris.backend.dto.HistoricalPointDTO;
+import com.iris.backend.dto.feed.GalleryPlaceType;
+import com.iris.backend.event.PhotoCreatedEvent;
+import com.iris.backend.event.PhotoDeletedEvent;
+import com.iris.backend.geo.Geodesy;
+import com.iris.backend.geo.Geohash;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.repository.HistoricalFeedRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.locationtech.jts.geom.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory spatio-temporal index of recent PUBLIC and VISIBLE_TO_ALL photos for the historical feed.
+ *
+ * Photos are bucketed by the geohash cell of their place and the hour of their upload. A history point
+ * only has to look at the cells around it (within the largest place radius) and at the hours of its
+ * 5-hour window; the exact check is the same as in SQL (ellipsoidal distance to the place within the
+ * place radius, {@code uploaded_at BETWEEN t - 5h AND t}).
+ *
+ * The index covers all photos uploaded since {@code now - retention}. It is loaded once after startup,
+ * kept up to date through the local photo create/delete events and trimmed hourly. Photos uploaded or
+ * deleted through other instances are picked up by {@link #sync()} every
+ * {@code feed.historical-index.sync-interval-ms}, so they show up at most that late. As long as it is not loaded,
+ * or if a history point reaches further back than the covered window, {@link #findMatches} returns
+ * empty and the caller uses the SQL query instead.
+ */
+@Component
+public class HistoricalPhotoIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoricalPhotoIndex.class);
+
+    // Präzision 5 = Zellen von ca. 4.9 x 4.9 km (am Äquator), d.h. meist 1-4 Zellen pro Punkt
+    static final int CELL_PRECISION = 5;
+    static final Duration MATCH_WINDOW = Duration.ofHours(5);
+    private static final long HOUR_SECONDS = 3600;
+    // uploaded_at wird vor dem Commit gesetzt; so weit zurück liest sync() erneut, damit späte Commits nicht fehlen
+    static final Duration SYNC_OVERLAP = Duration.ofMinutes(5);
+
+    /**
+     * Identifies a place of either type.
+     */
+    public record PlaceKey(GalleryPlaceType type, Long googlePlaceId, UUID customPlaceId) {
+        public static PlaceKey google(Long googlePlaceId) {
+            return new PlaceKey(GalleryPlaceType.GOOGLE_POI, googlePlaceId, null);
+        }
+
+        public static PlaceKey custom(UUID customPlaceId) {
+            return new PlaceKey(GalleryPlaceType.IRIS_SPOT, null, customPlaceId);
+        }
+    }
+
+    /**
+     * A photo that matched at least one history point. {@code thumbnailStorageUrl} and {@code blurhash}
+     * are null as long as the photo has no derivatives.
+     */
+    public record Match(UUID photoId, PlaceKey place, String storageUrl, String thumbnailStorageUrl, String blurhash,
+                        Instant uploadedAt) {}
+
+    private record IndexedPhoto(UUID photoId, PlaceKey place, String storageUrl, String thumbnailStorageUrl,
+                                String blurhash, Instant uploadedAt, long hour) {}
+
+    private record Bucket(String cell, long hour) {}
+
+    private static final class IndexedPlace {
+        private double latitude;
+        private double longitude;
+        private int radiusMeters;
+        private String cell;
+        private final Set<UUID> photoIds = new HashSet<>();
+    }
+
+    private final HistoricalFeedRepository historicalFeedRepository;
+    private final Duration retention;
+    private final Clock clock;
+    private final Counter indexHits;
+    private final Counter fallbacks;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, IndexedPhoto> photos = new HashMap<>();
+    private final Map<PlaceKey, IndexedPlace> places = new HashMap<>();
+    private final Map<Bucket, List<UUID>> buckets = new HashMap<>();
+    private double maxRadiusMeters;
+    // null = (noch) nicht geladen -> alle Anfragen gehen an die Datenbank
+    private Instant windowStart;
+    private boolean loading;
+    // Änderungen, die während des Ladens eintreffen, werden danach nachgespielt
+    private final List<Runnable> pendingUpdates = new ArrayList<>();
+    // Stand des letzten load()/sync(); null = nicht geladen
+    private Instant syncedAt;
+    // Lokal gelöschte Fotos seit dem letzten sync(); die können in dessen (älteren) Abfrageergebnissen noch vorkommen
+    private final Set<UUID> deletedSinceSync = new HashSet<>();
+
+    @Autowired
+    public HistoricalPhotoIndex(HistoricalFeedRepository historicalFeedRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${feed.historical-index.retention-hours:168}") long retentionHours) {
+        this(historicalFeedRepository, meterRegistry, Duration.ofHours(retentionHours), Clock.systemUTC());
+    }
+
+    HistoricalPhotoIndex(HistoricalFeedRepository historicalFeedRepository, MeterRegistry meterRegistry,
+                         Duration retention, Clock clock) {
+        this.historicalFeedRepository = historicalFeedRepository;
+        this.retention = retention;
+        this.clock = clock;
+        this.indexHits = meterRegistry.counter("iris.historical_feed.requests", "source", "index");
+        this.fallbacks = meterRegistry.counter("iris.historical_feed.requests", "source", "database");
+        Gauge.builder("iris.historical_index.photos", this, HistoricalPhotoIndex::size).register(meterRegistry);
+    }
+
+    /**
+     * (Re)loads the index from the database. Runs asynchronously after startup; until it has finished
+     * all lookups fall back to SQL.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Instant loadStartedAt = clock.instant();
+        Instant since = loadStartedAt.minus(retention);
+
+        lock.writeLock().lock();
+        try {
+            loading = true;
+            windowStart = null;
+            syncedAt = null;
+            photos.clear();
+            places.clear();
+            buckets.clear();
+            maxRadiusMeters = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<HistoricalFeedRepository.IndexedPhotoProjection> rows;
+        try {
+            rows = historicalFeedRepository.findPhotosForHistoricalIndex(since.atOffset(ZoneOffset.UTC));
+        } catch (RuntimeException e) {
+            logger.error("Could not load historical photo index, using SQL only: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                loading = false;
+                pendingUpdates.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            rows.forEach(this::insert);
+            pendingUpdates.forEach(Runnable::run);
+            pendingUpdates.clear();
+            deletedSinceSync.clear();
+            windowStart = since;
+            syncedAt = loadStartedAt;
+            loading = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Historical photo index loaded: {} photos at {} places", rows.size(), places.size());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPhotoCreated(PhotoCreatedEvent event) {
+        Photo photo = event.photo();
+        if (photo.getVisibility() != PhotoVisibility.PUBLIC && photo.getVisibility() != PhotoVisibility.VISIBLE_TO_ALL) {
+            return;
+        }
+
+        PlaceKey place;
+        Point location;
+        Integer radius;
+        if (photo.getGooglePlace() != null) {
+            place = PlaceKey.google(photo.getGooglePlace().getId());
+            location = photo.getGooglePlace().getLocation();
+            radius = photo.getGooglePlace().getRadiusMeters();
+        } else if (photo.getCustomPlace() != null) {
+            place = PlaceKey.custom(photo.getCustomPlace().getId());
+            location = photo.getCustomPlace().getLocation();
+            radius = photo.getCustomPlace().getRadiusMeters();
+        } else {
+            return; // Fotos ohne Ort kommen im Historical Feed nicht vor
+        }
+
+        UUID photoId = photo.getId();
+        String storageUrl = photo.getStorageUrl();
+        // Gesetzt, wenn das Foto die Derivate eines Duplikats übernommen hat, sonst kommen sie über updateDerivatives()
+        String thumbnailStorageUrl = photo.getThumbnailStorageUrl();
+        String blurhash = photo.getBlurhash();
+        Instant uploadedAt = photo.getUploadedAt().toInstant();
+        Double latitude = location != null ? location.getY() : null;
+        Double longitude = location != null ? location.getX() : null;
+        apply(() -> {
+            if (windowStart == null || !uploadedAt.isBefore(windowStart)) {
+                insert(photoId, place, storageUrl, thumbnailStorageUrl, blurhash, uploadedAt, latitude, longitude, radius);
+            }
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPhotoDeleted(PhotoDeletedEvent event) {
+        UUID photoId = event.photoId();
+        apply(() -> {
+            remove(photoId);
+            deletedSinceSync.add(photoId);
+        });
+    }
+
+    /**
+     * Catches up with photos that were uploaded or deleted through other instances: reads the photos
+     * uploaded since the last sync (minus {@link #SYNC_OVERLAP}) and the IDs of all photos in the indexed
+     * window, adds the new ones and drops indexed photos that no longer exist. Derivatives created through
+     * other instances within that range are taken over as well.
+     */
+    @Scheduled(fixedDelayString = "${feed.historical-index.sync-interval-ms:60000}",
+            initialDelayString = "${feed.historical-index.sync-interval-ms:60000}")
+    public void sync() {
+        Instant since;
+        Instant window;
+        lock.readLock().lock();
+        try {
+            if (loading || syncedAt == null) {
+                return;
+            }
+            since = syncedAt.minus(SYNC_OVERLAP);
+            window = windowStart;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Instant syncStartedAt = clock.instant();
+        List<HistoricalFeedRepository.IndexedPhotoProjection> rows;
+        Set<UUID> existing;
+        try {
+            rows = historicalFeedRepository.findPhotosForHistoricalIndex(since.atOffset(ZoneOffset.UTC));
+            existing = new HashSet<>(historicalFeedRepository.findPhotoIdsForHistoricalIndex(window.atOffset(ZoneOffset.UTC)));
+        } catch (RuntimeException e) {
+            logger.warn("Could not sync historical photo index: {}", e.getMessage());
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (loading || syncedAt == null) {
+                return; // Inzwischen wird neu geladen
+            }
+            int before = photos.size();
+            for (HistoricalFeedRepository.IndexedPhotoProjection row : rows) {
+                if (!deletedSinceSync.contains(row.getPhotoId())) {
+                    insert(row);
+                }
+            }
+            int added = photos.size() - before;
+            // Lokal eingefügte Fotos, die nach der ID-Abfrage committet wurden, fehlen dort noch
+            Instant removableBefore = syncStartedAt.minus(SYNC_OVERLAP);
+            List<UUID> removed = photos.values().stream()
+                    .filter(photo -> photo.uploadedAt().isBefore(removableBefore) && !existing.contains(photo.photoId()))
+                    .map(IndexedPhoto::photoId)
+                    .toList();
+            removed.forEach(this::remove);
+            deletedSinceSync.clear();
+            syncedAt = syncStartedAt;
+            if (added > 0 || !removed.isEmpty()) {
+                logger.debug("Synced historical index: {} photos added, {} removed", added, removed.size());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the geometry of an indexed place (e.g. after its radius was changed).
+     * Places without indexed photos are ignored; new photos bring their current geometry along.
+     */
+    public void updatePlaceGeometry(PlaceKey key, Point location, Integer radiusMeters) {
+        if (location == null || radiusMeters == null) {
+            return;
+        }
+        double latitude = location.getY();
+        double longitude = location.getX();
+        apply(() -> {
+            IndexedPlace place = places.get(key);
+            if (place == null) {
+                return;
+            }
+            String cell = Geohash.encode(latitude, longitude, CELL_PRECISION);
+            if (!cell.equals(place.cell)) {
+                for (UUID photoId : place.photoIds) {
+                    IndexedPhoto photo = photos.get(photoId);
+                    removeFromBucket(new Bucket(place.cell, photo.hour()), photoId);
+                    buckets.computeIfAbsent(new Bucket(cell, photo.hour()), b -> new ArrayList<>()).add(photoId);
+                }
+                place.cell = cell;
+            }
+            place.latitude = latitude;
+            place.longitude = longitude;
+            place.radiusMeters = radiusMeters;
+            maxRadiusMeters = Math.max(maxRadiusMeters, radiusMeters);
+        });
+    }
+
+    /**
+     * Records the derivatives of an indexed photo once they have been created. Photos that are not
+     * indexed are ignored; they bring their derivatives along when they are loaded.
+     */
+    public void updateDerivatives(UUID photoId, String thumbnailStorageUrl, String blurhash) {
+        apply(() -> setDerivatives(photoId, thumbnailStorageUrl, blurhash));
+    }
+
+    /**
+     * Drops all hour buckets that are older than the retention.
+     */
+    @Scheduled(cron = "0 5 * * * *")
+    public void evictExpired() {
+        long cutoffHour = Math.floorDiv(clock.instant().minus(retention).getEpochSecond(), HOUR_SECONDS);
+
+        lock.writeLock().lock();
+        try {
+            if (windowStart == null) {
+                return;
+            }
+            List<UUID> expired = photos.values().stream()
+                    .filter(photo -> photo.hour() < cutoffHour)
+                    .map(IndexedPhoto::photoId)
+                    .toList();
+            expired.forEach(this::remove);
+
+            Instant cutoff = Instant.ofEpochSecond(cutoffHour * HOUR_SECONDS);
+            if (cutoff.isAfter(windowStart)) {
+                windowStart = cutoff;
+            }
+            if (!expired.isEmpty()) {
+                logger.debug("Evicted {} photos from the historical index", expired.size());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds all indexed photos that match at least one history point.
+     *
+     * @param history the user's location history
+     * @return the distinct matching photos, or empty if the index cannot answer this request
+     *         (not loaded yet, or a point reaches back further than the indexed window)
+     */
+    public Optional<List<Match>> findMatches(List<HistoricalPointDTO> history) {
+        lock.readLock().lock();
+        try {
+            if (windowStart == null || !isCovered(history)) {
+                fallbacks.increment();
+                return Optional.empty();
+            }
+
+            Map<UUID, Match> matches = new LinkedHashMap<>();
+            for (HistoricalPointDTO point : history) {
+                if (point.timestamp() == null) {
+                    continue; // In SQL ergibt BETWEEN mit NULL keinen Treffer
+                }
+                Instant to = point.timestamp().toInstant();
+                Instant from = to.minus(MATCH_WINDOW);
+                long fromHour = Math.floorDiv(from.getEpochSecond(), HOUR_SECONDS);
+                long toHour = Math.floorDiv(to.getEpochSecond(), HOUR_SECONDS);
+
+                for (String cell : Geohash.cellsCovering(point.latitude(), point.longitude(), maxRadiusMeters, CELL_PRECISION)) {
+                    for (long hour = fromHour; hour <= toHour; hour++) {
+                        List<UUID> bucket = buckets.get(new Bucket(cell, hour));
+                        if (bucket == null) {
+                            continue;
+                        }
+                        for (UUID photoId : bucket) {
+                            if (matches.containsKey(photoId)) {
+                                continue;
+                            }
+                            IndexedPhoto photo = photos.get(photoId);
+                            if (photo.uploadedAt().isBefore(from) || photo.uploadedAt().isAfter(to)) {
+                                continue;
+                            }
+                            IndexedPlace place = places.get(photo.place());
+                            double distance = Geodesy.distanceMeters(
+                                    place.latitude, place.longitude, point.latitude(), point.longitude());
+                            if (distance <= place.radiusMeters) {
+                                matches.put(photoId, new Match(photoId, photo.place(), photo.storageUrl(),
+                                        photo.thumbnailStorageUrl(), photo.blurhash(), photo.uploadedAt()));
+                            }
+                        }
+                    }
+                }
+            }
+            indexHits.increment();
+            return Optional.of(new ArrayList<>(matches.values()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return photos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isCovered(List<HistoricalPointDTO> history) {
+        for (HistoricalPointDTO point : history) {
+            OffsetDateTime timestamp = point.timestamp();
+            if (timestamp != null && timestamp.toInstant().minus(MATCH_WINDOW).isBefore(windowStart)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void apply(Runnable update) {
+        lock.writeLock().lock();
+        try {
+            if (loading) {
+                pendingUpdates.add(update);
+            } else if (windowStart != null) {
+                update.run();
+            }
+            // Nicht geladen und lädt nicht: der nächste load() liest den Stand ohnehin aus der Datenbank
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Nur unter Write-Lock aufrufen ---
+
+    private void insert(HistoricalFeedRepository.IndexedPhotoProjection row) {
+        PlaceKey place = row.getGooglePlaceId() != null
+                ? PlaceKey.google(row.getGooglePlaceId())
+                : PlaceKey.custom(row.getCustomPlaceId());
+        if (photos.containsKey(row.getPhotoId())) {
+            // Schon indexiert; die Derivate können inzwischen auf einer anderen Instanz entstanden sein
+            setDerivatives(row.getPhotoId(), row.getThumbnailStorageUrl(), row.getBlurhash());
+            return;
+        }
+        insert(row.getPhotoId(), place, row.getStorageUrl(), row.getThumbnailStorageUrl(), row.getBlurhash(),
+                row.getUploadedAt(), row.getLatitude(), row.getLongitude(), row.getRadiusMeters());
+    }
+
+    private void insert(UUID photoId, PlaceKey key, String storageUrl, String thumbnailStorageUrl, String blurhash,
+                        Instant uploadedAt, Double latitude, Double longitude, Integer radiusMeters) {
+        // Ohne Position oder Radius kann ein Ort in SQL nie matchen (ST_DWithin mit NULL)
+        if (latitude == null || longitude == null || radiusMeters == null || photos.containsKey(photoId)) {
+            return;
+        }
+        IndexedPlace place = places.computeIfAbsent(key, k -> {
+            IndexedPlace created = new IndexedPlace();
+            created.latitude = latitude;
+            created.longitude = longitude;
+            created.radiusMeters = radiusMeters;
+            created.cell = Geohash.encode(latitude, longitude, CELL_PRECISION);
+            return created;
+        });
+        long hour = Math.floorDiv(uploadedAt.getEpochSecond(), HOUR_SECONDS);
+        photos.put(photoId, new IndexedPhoto(photoId, key, storageUrl, thumbnailStorageUrl, blurhash, uploadedAt, hour));
+        place.photoIds.add(photoId);
+        buckets.computeIfAbsent(new Bucket(place.cell, hour), b -> new ArrayList<>()).add(photoId);
+        maxRadiusMeters = Math.max(maxRadiusMeters, place.radiusMeters);
+    }
+
+    private void setDerivatives(UUID photoId, String thumbnailStorageUrl, String blurhash) {
+        IndexedPhoto photo = photos.get(photoId);
+        if (photo == null || thumbnailStorageUrl == null) {
+            return;
+        }
+        photos.put(photoId, new IndexedPhoto(photoId, photo.place(), photo.storageUrl(), thumbnailStorageUrl, blurhash,
+                photo.uploadedAt(), photo.hour()));
+    }
+
+    private void remove(UUID photoId) {
+        IndexedPhoto photo = photos.remove(photoId);
+        if (photo == null) {
+            return;
+        }
+        IndexedPlace place = places.get(photo.place());
+        removeFromBucket(new Bucket(place.cell, photo.hour()), photoId);
+        place.photoIds.remove(photoId);
+        if (place.photoIds.isEmpty()) {
+            places.remove(photo.place());
+        }
+    }
+
+    private void removeFromBucket(Bucket bucket, UUID photoId) {
+        List<UUID> ids = buckets.get(bucket);
+        if (ids != null) {
+            ids.remove(photoId);
+            if (ids.isEmpty()) {
+                buckets.remove(bucket);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.iris.backend.service;
+
+import com.iris.backend.dto.HistoricalPointDTO;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The upload times a history can match: from {@link HistoricalPhotoIndex#MATCH_WINDOW} before its first
+ * point up to its last point.
+ *
+ * The historical queries get these bounds as plain parameters in addition to the per-point condition.
+ * The per-point condition depends on the joined history rows, so PostgreSQL cannot use it to prune the
+ * {@code photos} partitions; with constant bounds only the partitions of the history's days are scanned.
+ */
+public record HistoricalUploadWindow(OffsetDateTime from, OffsetDateTime to) {
+
+    /**
+     * @return the window, or empty if no point has a timestamp (such a history matches nothing)
+     */
+    public static Optional<HistoricalUploadWindow> of(List<HistoricalPointDTO> history) {
+        List<OffsetDateTime> timestamps = history.stream()
+                .filter(Objects::nonNull)
+                .map(HistoricalPointDTO::timestamp)
+                .filter(Objects::nonNull)
+                .toList();
+        if (timestamps.isEmpty()) {
+            return Optional.empty();
+        }
+        OffsetDateTime first = timestamps.stream().min(OffsetDateTime.timeLineOrder()).get();
+        OffsetDateTime last = timestamps.stream().max(OffsetDateTime.timeLineOrder()).get();
+        return Optional.of(new HistoricalUploadWindow(first.minus(HistoricalPhotoIndex.MATCH_WINDOW), last));
+    }
+}
@@ -0,0 +1,164 @@
+package com.iris.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.repository.FriendshipRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects friendship interactions (tagging, likes, pings) in memory and adds them to
+ * {@code friendships.interaction_score} / {@code last_interacted_at} in one batched UPDATE per flush.
+ *
+ * Recording an interaction does not touch the database and never reads the friendship, so concurrent
+ * interactions cannot overwrite each other. Interactions recorded inside a transaction are only
+ * collected after it committed. Every pair of users has its own counter; counters of pairs
+ * without new interactions are retired, so memory only holds pairs that interacted recently.
+ * Interactions of users that are not (or no longer) accepted friends are dropped by the UPDATE.
+ */
+@Component
+public class InteractionSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(InteractionSink.class);
+
+    // Zähler eines zurückgezogenen Eintrags: record() legt dann einen neuen an
+    private static final long RETIRED = -1;
+
+    // Ungeordnetes Paar: die kleinere ID steht immer in userOneId
+    private record Pair(UUID userOneId, UUID userTwoId) {
+        static Pair of(UUID a, UUID b) {
+            return a.compareTo(b) < 0 ? new Pair(a, b) : new Pair(b, a);
+        }
+    }
+
+    private static final class Pending {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong lastAtMillis = new AtomicLong();
+
+        boolean tryAdd(long increment, long atMillis) {
+            long current;
+            do {
+                current = count.get();
+                if (current == RETIRED) {
+                    return false;
+                }
+            } while (!count.compareAndSet(current, current + increment));
+            lastAtMillis.accumulateAndGet(atMillis, Math::max);
+            return true;
+        }
+    }
+
+    // Eine Zeile für FriendshipRepository#addInteractions; die Feldnamen sind die JSON-Keys der Query
+    record InteractionRow(UUID userOneId, UUID userTwoId, long increment, Instant lastInteractedAt) {}
+
+    private final FriendshipRepository friendshipRepository;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final Counter recorded;
+    private final Counter written;
+    private final ConcurrentMap<Pair, Pending> pending = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InteractionSink(FriendshipRepository friendshipRepository, ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry) {
+        this(friendshipRepository, objectMapper, meterRegistry, Clock.systemUTC());
+    }
+
+    InteractionSink(FriendshipRepository friendshipRepository, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                    Clock clock) {
+        this.friendshipRepository = friendshipRepository;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.recorded = meterRegistry.counter("iris.interactions.recorded");
+        this.written = meterRegistry.counter("iris.interactions.written");
+        Gauge.builder("iris.interactions.pending_pairs", pending, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Records one interaction between the two users. Does not touch the database. Inside a transaction
+     * the interaction only counts once the transaction has committed, so a rolled-back like or upload
+     * adds no score.
+     */
+    public void record(UUID userA, UUID userB) {
+        if (userA.equals(userB)) {
+            return;
+        }
+        Pair pair = Pair.of(userA, userB);
+        long atMillis = clock.millis();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(pair, 1, atMillis);
+                    recorded.increment();
+                }
+            });
+            return;
+        }
+        add(pair, 1, atMillis);
+        recorded.increment();
+    }
+
+    /**
+     * Adds all collected interactions to the friendships with one UPDATE. Pairs without new
+     * interactions since the last flush are retired.
+     */
+    @Scheduled(fixedDelayString = "${friendship.interaction.flush-interval-ms:5000}")
+    public void flush() {
+        List<InteractionRow> rows = new ArrayList<>();
+        pending.forEach((pair, entry) -> {
+            long increment = entry.count.getAndUpdate(current -> current > 0 ? 0 : current);
+            if (increment > 0) {
+                rows.add(new InteractionRow(pair.userOneId(), pair.userTwoId(), increment,
+                        Instant.ofEpochMilli(entry.lastAtMillis.get())));
+            } else if (entry.count.compareAndSet(0, RETIRED)) {
+                pending.remove(pair, entry);
+            }
+        });
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            friendshipRepository.addInteractions(objectMapper.writeValueAsString(rows));
+            written.increment(rows.size());
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Zurücklegen und beim nächsten Flush erneut versuchen
+            logger.warn("Could not write {} friendship interactions: {}", rows.size(), e.getMessage());
+            for (InteractionRow row : rows) {
+                add(new Pair(row.userOneId(), row.userTwoId()), row.increment(), row.lastInteractedAt().toEpochMilli());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private void add(Pair pair, long increment, long atMillis) {
+        while (!pending.computeIfAbsent(pair, key -> new Pending()).tryAdd(increment, atMillis)) {
+            // Eintrag wurde gerade zurückgezogen: entfernen helfen und neu anlegen
+            pending.computeIfPresent(pair, (key, entry) -> entry.count.get() == RETIRED ? null : entry);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.iris.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Uploads the files of a batch concurrently on virtual threads.
+ *
+ * A slow storage write only delays its own file instead of the whole batch. Per user at most
+ * {@code gcs.upload.max-parallel-per-user} files are written at the same time, over all of the user's
+ * running batches, so a single client cannot take all upload buffers and storage connections.
+ */
+@Component
+public class ParallelUploadExecutor {
+
+    @FunctionalInterface
+    public interface Upload {
+        /**
+         * @return The object name of the stored file.
+         */
+        String upload(MultipartFile file) throws IOException;
+    }
+
+    /**
+     * Result of one file: either the object name or the error.
+     */
+    public record Outcome(String objectName, Exception error) {
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    // Permits eines Users; batches zählt die laufenden Batches, damit der Eintrag danach wieder verschwindet
+    private static final class UserPermits {
+        private final Semaphore semaphore;
+        private int batches;
+
+        private UserPermits(int permits) {
+            this.semaphore = new Semaphore(permits);
+        }
+    }
+
+    private final int maxParallelPerUser;
+    private final ConcurrentHashMap<UUID, UserPermits> permitsByUser = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ParallelUploadExecutor(@Value("${gcs.upload.max-parallel-per-user:4}") int maxParallelPerUser) {
+        if (maxParallelPerUser < 1) {
+            throw new IllegalArgumentException("gcs.upload.max-parallel-per-user must be positive");
+        }
+        this.maxParallelPerUser = maxParallelPerUser;
+    }
+
+    /**
+     * Uploads all files and waits until every upload has finished or failed.
+     *
+     * @return One outcome per file, in the order of {@code files}.
+     */
+    public List<Outcome> uploadAll(UUID userId, List<MultipartFile> files, Upload upload) {
+        UserPermits permits = permitsByUser.compute(userId, (id, existing) -> {
+            UserPermits current = existing != null ? existing : new UserPermits(maxParallelPerUser);
+            current.batches++;
+            return current;
+        });
+        List<Future<String>> futures = new ArrayList<>(files.size());
+        try {
+            for (MultipartFile file : files) {
+                futures.add(executor.submit(() -> uploadWithPermit(permits.semaphore, file, upload)));
+            }
+            List<Outcome> outcomes = new ArrayList<>(files.size());
+            for (Future<String> future : futures) {
+                outcomes.add(await(future));
+            }
+            return outcomes;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading photos", e);
+        } finally {
+            permitsByUser.computeIfPresent(userId, (id, current) -> --current.batches == 0 ? null : current);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static String uploadWithPermit(Semaphore semaphore, MultipartFile file, Upload upload) throws Exception {
+        semaphore.acquire();
+        try {
+            return upload.upload(file);
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private static Outcome await(Future<String> future) throws InterruptedException {
+        try {
+            return new Outcome(future.get(), null);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            return new Outcome(null, cause instanceof Exception exception ? exception : new RuntimeException(cause));
+        }
+    }
+}
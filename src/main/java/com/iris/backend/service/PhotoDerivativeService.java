@@ -0,0 +1,245 @@
+package com.iris.backend.service;
+
+import com.iris.backend.event.PhotoCreatedEvent;
+import com.iris.backend.image.Blurhash;
+import com.iris.backend.repository.PhotoRepository;
+import com.iris.backend.repository.PlaceStatsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the list-view derivatives of new photos: a thumbnail, a display size and a blurhash placeholder.
+ *
+ * Work starts after the upload transaction committed and runs on a small fixed pool of
+ * {@code photos.derivatives.worker-threads} with a queue of {@code photos.derivatives.queue-capacity},
+ * so decoding never blocks a request and the number of images held in memory is bounded. When the queue
+ * is full, the photo simply keeps serving its original. Derivatives are WebP if an ImageIO WebP writer is
+ * on the classpath, JPEG otherwise.
+ */
+@Service
+public class PhotoDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoDerivativeService.class);
+
+    private static final float QUALITY = 0.8f;
+    private static final int BLURHASH_EDGE = 32;
+    private static final int BLURHASH_COMPONENTS_X = 4;
+    private static final int BLURHASH_COMPONENTS_Y = 3;
+
+    private record Format(String formatName, String extension, String contentType) {}
+
+    private static final Format WEBP = new Format("webp", "webp", "image/webp");
+    private static final Format JPEG = new Format("jpeg", "jpg", "image/jpeg");
+
+    private final GcsStorageService gcsStorageService;
+    private final PhotoRepository photoRepository;
+    private final PlaceStatsRepository placeStatsRepository;
+    private final HistoricalPhotoIndex historicalPhotoIndex;
+    private final String photosBucketName;
+    private final int thumbnailEdge;
+    private final int displayEdge;
+    private final long maxPixels;
+    private final Format format;
+    private final ThreadPoolExecutor executor;
+    private final Counter created;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public PhotoDerivativeService(GcsStorageService gcsStorageService,
+                                  PhotoRepository photoRepository,
+                                  PlaceStatsRepository placeStatsRepository,
+                                  HistoricalPhotoIndex historicalPhotoIndex,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${gcs.bucket.photos.name}") String photosBucketName,
+                                  @Value("${photos.derivatives.thumbnail-edge:320}") int thumbnailEdge,
+                                  @Value("${photos.derivatives.display-edge:1280}") int displayEdge,
+                                  @Value("${photos.derivatives.max-pixels:60000000}") long maxPixels,
+                                  @Value("${photos.derivatives.worker-threads:2}") int workerThreads,
+                                  @Value("${photos.derivatives.queue-capacity:200}") int queueCapacity) {
+        if (thumbnailEdge < 1 || displayEdge < thumbnailEdge || workerThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid photos.derivatives configuration");
+        }
+        this.gcsStorageService = gcsStorageService;
+        this.photoRepository = photoRepository;
+        this.placeStatsRepository = placeStatsRepository;
+        this.historicalPhotoIndex = historicalPhotoIndex;
+        this.photosBucketName = photosBucketName;
+        this.thumbnailEdge = thumbnailEdge;
+        this.displayEdge = displayEdge;
+        this.maxPixels = maxPixels;
+        this.format = ImageIO.getImageWritersByFormatName(WEBP.formatName()).hasNext() ? WEBP : JPEG;
+        this.executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("photo-derivatives-", 0).daemon().factory());
+        this.created = meterRegistry.counter("iris.photos.derivatives.created");
+        this.failed = meterRegistry.counter("iris.photos.derivatives.failed");
+        this.rejected = meterRegistry.counter("iris.photos.derivatives.rejected");
+        Gauge.builder("iris.photos.derivatives.queued", executor, e -> e.getQueue().size()).register(meterRegistry);
+        logger.info("Photo derivatives are encoded as {}", format.contentType());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPhotoCreated(PhotoCreatedEvent event) {
+        UUID photoId = event.photo().getId();
+        String objectName = event.photo().getStorageUrl();
+        if (event.duplicate()) {
+            // Duplikat einer vorhandenen Datei: benutzt deren Derivate, auch wenn sie noch erzeugt werden
+            return;
+        }
+        try {
+            executor.execute(() -> createDerivatives(photoId, objectName));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Derivative queue full, photo {} keeps serving its original", photoId);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Creates and stores the derivatives of one photo. Failures are logged; the photo then keeps
+     * serving its original.
+     */
+    void createDerivatives(UUID photoId, String objectName) {
+        try {
+            BufferedImage source;
+            try (InputStream in = gcsStorageService.openPhoto(objectName)) {
+                source = decode(in);
+            }
+            BufferedImage display = scaleToFit(source, displayEdge);
+            BufferedImage thumbnail = scaleToFit(display, thumbnailEdge);
+            String blurhash = Blurhash.encode(scaleToFit(thumbnail, BLURHASH_EDGE), BLURHASH_COMPONENTS_X, BLURHASH_COMPONENTS_Y);
+
+            String displayName = gcsStorageService.uploadPhotoDerivative(
+                    "display." + format.extension(), encode(display), format.contentType());
+            String thumbnailName = gcsStorageService.uploadPhotoDerivative(
+                    "thumbnail." + format.extension(), encode(thumbnail), format.contentType());
+
+            if (photoRepository.updateDerivatives(photoId, thumbnailName, displayName, blurhash) == 0) {
+                // Foto wurde inzwischen gelöscht: sonst würde niemand die Derivate je löschen
+                gcsStorageService.deleteFile(photosBucketName, displayName);
+                gcsStorageService.deleteFile(photosBucketName, thumbnailName);
+                return;
+            }
+            // Eigene Transaktion nach updateDerivatives(), siehe dort
+            photoRepository.updateDerivativesOfDuplicates(photoId, thumbnailName, displayName, blurhash);
+            placeStatsRepository.updateCoverDerivatives(objectName, thumbnailName, blurhash);
+            historicalPhotoIndex.updateDerivatives(photoId, thumbnailName, blurhash);
+            created.increment();
+        } catch (Exception e) {
+            failed.increment();
+            logger.warn("Could not create derivatives of photo {}: {}", photoId, e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes an image, but only as finely as the largest derivative needs: large photos are subsampled
+     * while reading, so a 50 MP original never exists on the heap at full resolution.
+     */
+    private BufferedImage decode(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("Image too large: " + width + "x" + height);
+                }
+                // Mindestens die doppelte Zielkante behalten, damit das Verkleinern danach sauber bleibt
+                int subsampling = Math.max(1, Math.max(width, height) / (2 * displayEdge));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales an image so its longer edge is at most {@code maxEdge} (never enlarges) and flattens it onto
+     * an opaque RGB image. Large factors are done in halving steps; one bilinear step would skip pixels.
+     */
+    static BufferedImage scaleToFit(BufferedImage source, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1d, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        do {
+            width = Math.max(width / 2, targetWidth);
+            height = Math.max(height / 2, targetHeight);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format.formatName()).next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
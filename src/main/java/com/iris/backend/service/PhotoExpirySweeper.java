@@ -0,0 +1,167 @@
+package com.iris.backend.service;
+
+import com.iris.backend.event.PhotoDeletedEvent;
+import com.iris.backend.repository.ChallengeCompletionRepository;
+import com.iris.backend.repository.PhotoLikeRepository;
+import com.iris.backend.repository.PhotoRepository;
+import com.iris.backend.repository.PhotoRepository.ExpiredPhotoProjection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Deletes expired photos together with their likes, challenge completions and files.
+ *
+ * Each batch locks up to {@code photos.expiry.batch-size} photos with {@code FOR UPDATE SKIP LOCKED} and
+ * deletes them and their rows in one transaction, so several instances can sweep at the same time without
+ * deleting a photo twice or waiting for each other. The files are deleted with GCS batch requests after the
+ * commit: a rollback then never leaves rows pointing at deleted files, only (at worst) orphaned files.
+ * Files that another photo of the uploader still shares (see {@link PhotoUploadDeduplicator}) are kept.
+ *
+ * Photos are only swept {@code photos.expiry.grace-minutes} after they expired, so the place stats sweep has
+ * already taken them out of the stats by then (it finds the places through the expired rows).
+ */
+@Service
+public class PhotoExpirySweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoExpirySweeper.class);
+
+    private final PhotoRepository photoRepository;
+    private final PhotoLikeRepository photoLikeRepository;
+    private final ChallengeCompletionRepository challengeCompletionRepository;
+    private final GcsStorageService gcsStorageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration grace;
+    private final Clock clock;
+    private final Counter sweptRows;
+    private final Counter reclaimedBytes;
+
+    @Autowired
+    public PhotoExpirySweeper(PhotoRepository photoRepository,
+                              PhotoLikeRepository photoLikeRepository,
+                              ChallengeCompletionRepository challengeCompletionRepository,
+                              GcsStorageService gcsStorageService,
+                              ApplicationEventPublisher eventPublisher,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${photos.expiry.batch-size:100}") int batchSize,
+                              @Value("${photos.expiry.max-batches-per-run:50}") int maxBatchesPerRun,
+                              @Value("${photos.expiry.grace-minutes:60}") long graceMinutes) {
+        this(photoRepository, photoLikeRepository, challengeCompletionRepository, gcsStorageService, eventPublisher,
+                transactionManager, meterRegistry, batchSize, maxBatchesPerRun, Duration.ofMinutes(graceMinutes),
+                Clock.systemUTC());
+    }
+
+    PhotoExpirySweeper(PhotoRepository photoRepository, PhotoLikeRepository photoLikeRepository,
+                       ChallengeCompletionRepository challengeCompletionRepository,
+                       GcsStorageService gcsStorageService, ApplicationEventPublisher eventPublisher,
+                       PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                       int batchSize, int maxBatchesPerRun, Duration grace, Clock clock) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("photos.expiry.batch-size must be positive");
+        }
+        this.photoRepository = photoRepository;
+        this.photoLikeRepository = photoLikeRepository;
+        this.challengeCompletionRepository = challengeCompletionRepository;
+        this.gcsStorageService = gcsStorageService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.grace = grace;
+        this.clock = clock;
+        this.sweptRows = Counter.builder("iris.photos.expiry.rows")
+                .description("Expired photos deleted by the expiry sweep")
+                .register(meterRegistry);
+        this.reclaimedBytes = Counter.builder("iris.photos.expiry.bytes")
+                .baseUnit("bytes")
+                .description("Storage freed by deleting the files of expired photos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Deletes expired photos in batches until none are left or {@code photos.expiry.max-batches-per-run}
+     * is reached; the rest is picked up by the next run.
+     */
+    @Scheduled(fixedDelayString = "${photos.expiry.sweep-interval-ms:300000}")
+    public void sweep() {
+        OffsetDateTime expiredBefore = OffsetDateTime.now(clock).minus(grace);
+        int rows = 0;
+        long bytes = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            SweptBatch swept = transactionTemplate.execute(status -> deleteBatch(expiredBefore));
+            rows += swept.rows();
+            sweptRows.increment(swept.rows());
+            bytes += deleteObjects(swept.objectNames());
+            if (swept.rows() < batchSize) {
+                break;
+            }
+        }
+        if (rows > 0) {
+            logger.info("Expiry sweep deleted {} photos and reclaimed {} bytes", rows, bytes);
+        }
+    }
+
+    private SweptBatch deleteBatch(OffsetDateTime expiredBefore) {
+        List<ExpiredPhotoProjection> expired = photoRepository.lockExpiredBatch(expiredBefore, batchSize);
+        if (expired.isEmpty()) {
+            return new SweptBatch(0, Set.of());
+        }
+        List<UUID> photoIds = expired.stream().map(ExpiredPhotoProjection::getId).toList();
+        photoLikeRepository.deleteByPhotoIds(photoIds);
+        challengeCompletionRepository.deleteByPhotoIds(photoIds);
+        int rows = photoRepository.deleteAllByIds(photoIds);
+
+        Set<UUID> uploaderIds = new HashSet<>();
+        Set<String> objectNames = new HashSet<>();
+        for (ExpiredPhotoProjection photo : expired) {
+            uploaderIds.add(photo.getUploaderId());
+            Stream.of(photo.getStorageUrl(), photo.getThumbnailStorageUrl(), photo.getDisplayStorageUrl())
+                    .filter(name -> name != null && !name.isBlank())
+                    .forEach(objectNames::add);
+        }
+        // Dateien, die ein noch lebendes Duplikat teilt, bleiben liegen
+        objectNames.removeAll(photoRepository.findReferencedObjectNames(uploaderIds, objectNames));
+
+        // Feed-Index erst nach dem Commit aktualisieren (die Listener laufen AFTER_COMMIT)
+        photoIds.forEach(photoId -> eventPublisher.publishEvent(new PhotoDeletedEvent(photoId)));
+        return new SweptBatch(rows, objectNames);
+    }
+
+    private long deleteObjects(Set<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return 0;
+        }
+        try {
+            long bytes = gcsStorageService.deletePhotoObjects(objectNames);
+            reclaimedBytes.increment(bytes);
+            return bytes;
+        } catch (RuntimeException e) {
+            // Die Zeilen sind schon weg; die Dateien bleiben verwaist liegen, der nächste Batch läuft trotzdem
+            logger.error("Failed to delete {} files of expired photos: {}", objectNames.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    private record SweptBatch(int rows, Set<String> objectNames) {}
+}
@@ -4,13 +4,11 @@ import com.iris.backend.model.Photo;
 import com.iris.backend.model.PhotoLike;
 import com.iris.backend.model.PhotoLikeId;
 import com.iris.backend.model.User;
-import com.iris.backend.repository.FriendshipRepository;
 import com.iris.backend.repository.PhotoLikeRepository;
 import com.iris.backend.repository.PhotoRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.OffsetDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,14 +17,14 @@ public class PhotoLikeService {
 
     private final PhotoLikeRepository photoLikeRepository;
     private final PhotoRepository photoRepository;
-    private final FriendshipRepository friendshipRepository; // NEU
+    private final InteractionSink interactionSink;
 
     public PhotoLikeService(PhotoLikeRepository photoLikeRepository,
                             PhotoRepository photoRepository,
-                            FriendshipRepository friendshipRepository) {
+                            InteractionSink interactionSink) {
         this.photoLikeRepository = photoLikeRepository;
         this.photoRepository = photoRepository;
-        this.friendshipRepository = friendshipRepository;
+        this.interactionSink = interactionSink;
     }
 
     @Transactional
@@ -48,14 +46,7 @@ public class PhotoLikeService {
             newLike.setPhoto(photo);
             photoLikeRepository.save(newLike);
 
-            User uploader = photo.getUploader();
-            if (!uploader.getId().equals(currentUser.getId())) {
-                friendshipRepository.findFriendshipBetweenUsers(currentUser, uploader).ifPresent(friendship -> {
-                    friendship.setInteractionScore(friendship.getInteractionScore() + 1);
-                    friendship.setLastInteractedAt(OffsetDateTime.now());
-                    friendshipRepository.save(friendship);
-                });
-            }
+            interactionSink.record(currentUser.getId(), photo.getUploader().getId());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.Photo;
+import com.iris.backend.repository.PhotoPartitionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Keeps the daily partitions of {@code photos} in step with time.
+ *
+ * Only a few days of photos are alive (see {@link Photo#MAX_LIFETIME}), so with the queries bounding
+ * {@code uploaded_at} (see {@link HistoricalUploadWindow}) PostgreSQL only scans the partitions of those
+ * days, no matter how much history has accumulated. Each run creates the partitions for the next
+ * {@code photos.partitioning.premake-days} days; there is no default partition, so an upload for a day
+ * without a partition would fail. Partitions that ended more than {@code photos.partitioning.retention-days}
+ * ago only contain expired photos; once {@link PhotoExpirySweeper} has deleted those (with their likes and
+ * files) the empty partition is detached and dropped. Non-empty partitions are never detached, which would
+ * leave their files and likes behind.
+ *
+ * An unpartitioned table is converted once on startup if {@code photos.partitioning.convert-on-startup} is
+ * set, otherwise the manager does nothing. Runs on several instances are serialized by an advisory lock.
+ */
+@Service
+public class PhotoPartitionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoPartitionManager.class);
+
+    private final PhotoPartitionRepository partitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean convertOnStartup;
+    private final int premakeDays;
+    private final Duration retention;
+    private final Clock clock;
+    private final Counter createdPartitions;
+    private final Counter droppedPartitions;
+
+    @Autowired
+    public PhotoPartitionManager(PhotoPartitionRepository partitionRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${photos.partitioning.convert-on-startup:false}") boolean convertOnStartup,
+                                 @Value("${photos.partitioning.premake-days:14}") int premakeDays,
+                                 @Value("${photos.partitioning.retention-days:8}") long retentionDays) {
+        this(partitionRepository, transactionManager, meterRegistry, convertOnStartup, premakeDays,
+                Duration.ofDays(retentionDays), Clock.systemUTC());
+    }
+
+    PhotoPartitionManager(PhotoPartitionRepository partitionRepository, PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry, boolean convertOnStartup, int premakeDays,
+                          Duration retention, Clock clock) {
+        if (retention.compareTo(Photo.MAX_LIFETIME) <= 0) {
+            throw new IllegalArgumentException("photos.partitioning.retention-days must be longer than the photo lifetime");
+        }
+        this.partitionRepository = partitionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.convertOnStartup = convertOnStartup;
+        this.premakeDays = premakeDays;
+        this.retention = retention;
+        this.clock = clock;
+        this.createdPartitions = meterRegistry.counter("iris.photos.partitions.created");
+        this.droppedPartitions = meterRegistry.counter("iris.photos.partitions.dropped");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            if (convertOnStartup) {
+                transactionTemplate.executeWithoutResult(status -> convertIfNeeded());
+            }
+            maintain();
+        } catch (RuntimeException e) {
+            logger.error("Could not maintain photo partitions: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the upcoming partitions and drops the expired, empty ones.
+     */
+    @Scheduled(fixedDelayString = "${photos.partitioning.maintenance-interval-ms:3600000}",
+            initialDelayString = "${photos.partitioning.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!partitionRepository.tryLockMaintenance() || !partitionRepository.isPartitioned()) {
+                return;
+            }
+            LocalDate today = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+            List<String> partitions = partitionRepository.findPartitionNames();
+            // Am Tag der Umstellung deckt die alte Tabelle heute noch ab
+            LocalDate from = legacyEnd(partitions).filter(today::isBefore).orElse(today);
+            createUpcoming(from, today, partitions);
+            dropExpired(today, partitions);
+        });
+    }
+
+    private void convertIfNeeded() {
+        if (!partitionRepository.tryLockMaintenance() || partitionRepository.isPartitioned()) {
+            return;
+        }
+        // Die alte Tabelle deckt alles bis einschließlich heute ab, die Tagespartitionen beginnen morgen
+        LocalDate today = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+        LocalDate cutover = today.plusDays(1);
+        partitionRepository.convertToPartitioned(cutover);
+        createUpcoming(cutover, today, List.of());
+        logger.info("Converted photos into a partitioned table, daily partitions start at {}", cutover);
+    }
+
+    private void createUpcoming(LocalDate from, LocalDate today, List<String> partitions) {
+        Set<LocalDate> existing = new HashSet<>();
+        partitions.forEach(name -> PhotoPartitionRepository.partitionDay(name).ifPresent(existing::add));
+        for (LocalDate day = from; !day.isAfter(today.plusDays(premakeDays)); day = day.plusDays(1)) {
+            if (existing.contains(day)) {
+                continue;
+            }
+            partitionRepository.createPartition(day);
+            createdPartitions.increment();
+            logger.info("Created photo partition {}", PhotoPartitionRepository.partitionName(day));
+        }
+    }
+
+    private void dropExpired(LocalDate today, List<String> partitions) {
+        LocalDate expiredBefore = today.minusDays(retention.toDays());
+        Optional<LocalDate> legacyEnd = legacyEnd(partitions);
+        for (String name : partitions) {
+            Optional<LocalDate> end = name.equals(PhotoPartitionRepository.LEGACY_PARTITION)
+                    ? legacyEnd
+                    : PhotoPartitionRepository.partitionDay(name).map(day -> day.plusDays(1));
+            if (end.isEmpty() || end.get().isAfter(expiredBefore)) {
+                continue;
+            }
+            if (!partitionRepository.isEmpty(name)) {
+                logger.debug("Photo partition {} has expired but still contains photos, waiting for the expiry sweep", name);
+                continue;
+            }
+            partitionRepository.dropPartition(name);
+            droppedPartitions.increment();
+            logger.info("Dropped expired photo partition {}", name);
+        }
+    }
+
+    // Die alte Tabelle reicht bis zur ersten Tagespartition (exklusiv)
+    private static Optional<LocalDate> legacyEnd(List<String> partitions) {
+        if (!partitions.contains(PhotoPartitionRepository.LEGACY_PARTITION)) {
+            return Optional.empty();
+        }
+        return partitions.stream()
+                .map(PhotoPartitionRepository::partitionDay)
+                .flatMap(Optional::stream)
+                .min(LocalDate::compareTo);
+    }
+}
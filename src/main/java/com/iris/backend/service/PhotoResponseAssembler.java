@@ -0,0 +1,183 @@
+package com.iris.backend.service;
+
+import com.iris.backend.dto.PhotoResponseDTO;
+import com.iris.backend.dto.feed.GalleryPlaceType;
+import com.iris.backend.model.CustomPlace;
+import com.iris.backend.model.GooglePlace;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.User;
+import com.iris.backend.repository.CustomPlaceRepository;
+import com.iris.backend.repository.GooglePlaceRepository;
+import com.iris.backend.repository.PhotoLikeRepository;
+import com.iris.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds {@link PhotoResponseDTO}s for whole lists of photos.
+ *
+ * Mapping photos one by one touches the lazy uploader and place associations and counts the likes
+ * per photo, i.e. several queries per item. This assembler only reads the foreign-key IDs from the
+ * (possibly uninitialized) proxies and then resolves uploaders, places and like counts with a
+ * constant number of grouped {@code IN} queries. Signed URLs are generated once per distinct object.
+ */
+@Component
+public class PhotoResponseAssembler {
+
+    private static final String FRIENDS_FEED_PLACE_NAME = "Friends Feed";
+
+    private final UserRepository userRepository;
+    private final GooglePlaceRepository googlePlaceRepository;
+    private final CustomPlaceRepository customPlaceRepository;
+    private final PhotoLikeRepository photoLikeRepository;
+    private final GcsStorageService gcsStorageService;
+    private final String photosBucketName;
+    private final String profileImagesBucketName;
+
+    public PhotoResponseAssembler(UserRepository userRepository,
+                                  GooglePlaceRepository googlePlaceRepository,
+                                  CustomPlaceRepository customPlaceRepository,
+                                  PhotoLikeRepository photoLikeRepository,
+                                  GcsStorageService gcsStorageService,
+                                  @Value("${gcs.bucket.photos.name}") String photosBucketName,
+                                  @Value("${gcs.bucket.profile-images.name}") String profileImagesBucketName) {
+        this.userRepository = userRepository;
+        this.googlePlaceRepository = googlePlaceRepository;
+        this.customPlaceRepository = customPlaceRepository;
+        this.photoLikeRepository = photoLikeRepository;
+        this.gcsStorageService = gcsStorageService;
+        this.photosBucketName = photosBucketName;
+        this.profileImagesBucketName = profileImagesBucketName;
+    }
+
+    /**
+     * Converts a list of photos into DTOs, preserving the order of the input list.
+     *
+     * @param photos the photos to convert (must be managed or at least carry their association IDs)
+     * @return the DTOs in the same order as {@code photos}
+     */
+    public List<PhotoResponseDTO> toPhotoResponseDTOs(List<Photo> photos) {
+        if (photos == null || photos.isEmpty()) {
+            return List.of();
+        }
+
+        // 1. Nur die Fremdschlüssel einsammeln (getId() auf einem Proxy löst kein SELECT aus)
+        Set<UUID> uploaderIds = new HashSet<>();
+        Set<Long> googlePlaceIds = new HashSet<>();
+        Set<UUID> customPlaceIds = new HashSet<>();
+        Set<UUID> photoIds = new HashSet<>();
+        for (Photo photo : photos) {
+            photoIds.add(photo.getId());
+            uploaderIds.add(photo.getUploader().getId());
+            if (photo.getGooglePlace() != null) {
+                googlePlaceIds.add(photo.getGooglePlace().getId());
+            } else if (photo.getCustomPlace() != null) {
+                customPlaceIds.add(photo.getCustomPlace().getId());
+            }
+        }
+
+        // 2. Alles gruppiert nachladen: eine Query pro Tabelle, unabhängig von der Anzahl Fotos
+        Map<UUID, User> uploaders = indexById(userRepository.findAllById(uploaderIds), User::getId);
+        Map<Long, GooglePlace> googlePlaces = googlePlaceIds.isEmpty()
+                ? Map.of()
+                : indexById(googlePlaceRepository.findAllById(googlePlaceIds), GooglePlace::getId);
+        Map<UUID, CustomPlace> customPlaces = customPlaceIds.isEmpty()
+                ? Map.of()
+                : indexById(customPlaceRepository.findAllById(customPlaceIds), CustomPlace::getId);
+        Map<UUID, Long> likeCounts = photoLikeRepository.countLikesByPhotoIds(photoIds).stream()
+                .collect(Collectors.toMap(
+                        PhotoLikeRepository.PhotoLikeCount::getPhotoId,
+                        PhotoLikeRepository.PhotoLikeCount::getLikeCount
+                ));
+
+        // 3. Signierte URLs für den ganzen Batch (jedes Objekt nur einmal), inkl. der Derivate
+        Map<String, String> signedPhotoUrls = gcsStorageService.generateSignedUrls(
+                photosBucketName,
+                photos.stream()
+                        .flatMap(photo -> Stream.of(photo.getStorageUrl(), photo.getThumbnailStorageUrl(), photo.getDisplayStorageUrl()))
+                        .toList(),
+                15,
+                TimeUnit.MINUTES
+        );
+        Map<String, String> signedProfileUrls = gcsStorageService.generateSignedUrls(
+                profileImagesBucketName,
+                uploaders.values().stream().map(User::getProfileImageUrl).toList(),
+                15,
+                TimeUnit.MINUTES
+        );
+
+        // 4. DTOs in der ursprünglichen Reihenfolge zusammenbauen
+        List<PhotoResponseDTO> result = new ArrayList<>(photos.size());
+        for (Photo photo : photos) {
+            User uploader = uploaders.get(photo.getUploader().getId());
+            if (uploader == null) {
+                continue; // Uploader wurde zwischenzeitlich gelöscht
+            }
+
+            GalleryPlaceType placeType = null;
+            Long googlePlaceId = null;
+            UUID customPlaceId = null;
+            String placeName = FRIENDS_FEED_PLACE_NAME;
+
+            if (photo.getGooglePlace() != null) {
+                GooglePlace place = googlePlaces.get(photo.getGooglePlace().getId());
+                placeType = GalleryPlaceType.GOOGLE_POI;
+                googlePlaceId = photo.getGooglePlace().getId();
+                placeName = place != null ? place.getName() : placeName;
+            } else if (photo.getCustomPlace() != null) {
+                CustomPlace place = customPlaces.get(photo.getCustomPlace().getId());
+                placeType = GalleryPlaceType.IRIS_SPOT;
+                customPlaceId = photo.getCustomPlace().getId();
+                placeName = place != null ? place.getName() : placeName;
+            }
+
+            result.add(new PhotoResponseDTO(
+                    photo.getId(),
+                    signedPhotoUrls.get(photo.getStorageUrl()),
+                    signedPhotoUrls.get(derivativeOrOriginal(photo.getThumbnailStorageUrl(), photo)),
+                    signedPhotoUrls.get(derivativeOrOriginal(photo.getDisplayStorageUrl(), photo)),
+                    photo.getBlurhash(),
+                    photo.getUploadedAt(),
+                    placeType,
+                    googlePlaceId,
+                    customPlaceId,
+                    placeName,
+                    uploader.getId(),
+                    uploader.getUsername(),
+                    signedProfileUrls.get(uploader.getProfileImageUrl()),
+                    likeCounts.getOrDefault(photo.getId(), 0L).intValue()
+            ));
+        }
+        return result;
+    }
+
+    /**
+     * Converts a single photo; convenience wrapper around {@link #toPhotoResponseDTOs(List)}.
+     */
+    public PhotoResponseDTO toPhotoResponseDTO(Photo photo) {
+        List<PhotoResponseDTO> dtos = toPhotoResponseDTOs(List.of(photo));
+        if (dtos.isEmpty()) {
+            throw new RuntimeException("Uploader of photo " + photo.getId() + " not found");
+        }
+        return dtos.get(0);
+    }
+
+    // Solange die Derivate noch nicht erzeugt sind, bekommt der Client das Original
+    private static String derivativeOrOriginal(String derivative, Photo photo) {
+        return derivative != null ? derivative : photo.getStorageUrl();
+    }
+
+    private static <K, V> Map<K, V> indexById(List<V> entities, Function<V, K> idFunction) {
+        Map<K, V> index = new HashMap<>(entities.size() * 2);
+        for (V entity : entities) {
+            index.put(idFunction.apply(entity), entity);
+        }
+        return index;
+    }
+}
@@ -3,32 +3,40 @@ package com.iris.backend.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.iris.backend.dto.HistoricalPointDTO;
+import com.iris.backend.dto.PhotoBatchResponseDTO;
+import com.iris.backend.dto.PhotoBatchUploadResultDTO;
+import com.iris.backend.dto.PhotoDenialDTO;
 import com.iris.backend.dto.PhotoResponseDTO;
 import com.iris.backend.dto.PhotoUploadRequestDTO;
-import com.iris.backend.dto.PhotoUploadResponse;
-import com.iris.backend.dto.feed.GalleryPlaceType;
+import com.iris.backend.dto.feed.FriendsFeedPageDTO;
+import com.iris.backend.event.PhotoCreatedEvent;
+import com.iris.backend.event.PhotoDeletedEvent;
 import com.iris.backend.model.*;
-import com.iris.backend.model.enums.FriendshipStatus;
 import com.iris.backend.model.enums.PhotoVisibility;
 import com.iris.backend.repository.*;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.PrecisionModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
 public class PhotoService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PhotoService.class);
     private final PhotoRepository photoRepository;
     private final GooglePlaceRepository googlePlaceRepository;
     private final GcsStorageService gcsStorageService;
@@ -39,11 +47,25 @@ public class PhotoService {
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
     private final String photosBucketName;
     private final String profileImagesBucketName;
-    private final FriendshipRepository friendshipRepository;
+    private final InteractionSink interactionSink;
     private final FcmService fcmService;
     private final ObjectMapper objectMapper;
     private final ChallengeCompletionRepository challengeCompletionRepository;
     private final CustomPlaceChallengeRepository challengeRepository;
+    private final PhotoResponseAssembler photoResponseAssembler;
+    private final PhotoVisibilityEvaluator photoVisibilityEvaluator;
+    private final FeedTimelineService feedTimelineService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlaceStatsService placeStatsService;
+    private final ParallelUploadExecutor parallelUploadExecutor;
+    private final PhotoUploadDeduplicator photoUploadDeduplicator;
+    private final TransactionTemplate transactionTemplate;
+
+    // Ein geprüfter Eintrag eines Batch-Uploads: Orte und Challenge sind schon geladen
+    private record PreparedPhoto(int index, PhotoUploadRequestDTO request, GooglePlace googlePlace,
+                                 CustomPlace customPlace, CustomPlaceChallenge challenge) {}
+
+    private record UploadedPhoto(PreparedPhoto prepared, String objectName) {}
 
     public PhotoService(
             //Repositories
@@ -57,9 +79,17 @@ public class PhotoService {
             PhotoLikeRepository photoLikeRepository,
             FcmService fcmService,
             ObjectMapper objectMapper,
-            FriendshipRepository friendshipRepository,
+            InteractionSink interactionSink,
             ChallengeCompletionRepository challengeCompletionRepository,
             CustomPlaceChallengeRepository challengeRepository,
+            PhotoResponseAssembler photoResponseAssembler,
+            PhotoVisibilityEvaluator photoVisibilityEvaluator,
+            FeedTimelineService feedTimelineService,
+            ApplicationEventPublisher eventPublisher,
+            PlaceStatsService placeStatsService,
+            ParallelUploadExecutor parallelUploadExecutor,
+            PhotoUploadDeduplicator photoUploadDeduplicator,
+            PlatformTransactionManager transactionManager,
             //Werte aus application.properties
             @Value("${gcs.bucket.photos.name}") String photosBucketName,
             @Value("${gcs.bucket.profile-images.name}") String profileImagesBucketName
@@ -75,129 +105,198 @@ public class PhotoService {
         this.objectMapper = objectMapper;
         this.challengeCompletionRepository = challengeCompletionRepository;
         this.challengeRepository = challengeRepository;
-        this.friendshipRepository = friendshipRepository;
+        this.interactionSink = interactionSink;
+        this.photoResponseAssembler = photoResponseAssembler;
+        this.photoVisibilityEvaluator = photoVisibilityEvaluator;
+        this.feedTimelineService = feedTimelineService;
+        this.eventPublisher = eventPublisher;
+        this.placeStatsService = placeStatsService;
+        this.parallelUploadExecutor = parallelUploadExecutor;
+        this.photoUploadDeduplicator = photoUploadDeduplicator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.photosBucketName = photosBucketName;
         this.profileImagesBucketName = profileImagesBucketName;
     }
 
+    /**
+     * Uploads a photo and creates it.
+     *
+     * With an idempotency key, a retry of a request that already created its photo returns that photo's ID
+     * without storing the file again; a concurrent retry waits for the first request and then does the same.
+     * If the uploader already has a photo with identical content, the new photo shares its stored object
+     * instead of keeping a second copy (see {@link PhotoUploadDeduplicator}).
+     *
+     * @param idempotencyKey the client's {@code Idempotency-Key}, or null.
+     * @return The ID of the new photo, or of the photo created earlier with the same key.
+     * @throws IllegalArgumentException if both places are set or the key is malformed.
+     */
     @Transactional
     public UUID createPhoto(MultipartFile file, double latitude, double longitude,
                             PhotoVisibility visibility, Long googlePlaceId, UUID customPlaceId,
-                            User uploader, List<UUID> friendIds, UUID challengeId) {
+                            User uploader, List<UUID> friendIds, UUID challengeId, String idempotencyKey) {
         if (googlePlaceId != null && customPlaceId != null) {
             throw new IllegalArgumentException("A photo can only be linked to a Google Place or a Custom Place, not both.");
         }
-
-        try {
-            String objectName = gcsStorageService.uploadPhoto(file);
-            Point location = geometryFactory.createPoint(new Coordinate(longitude, latitude));
-
-            Photo newPhoto = new Photo();
-            newPhoto.setUploader(uploader);
-            newPhoto.setLocation(location);
-            newPhoto.setVisibility(visibility);
-            newPhoto.setStorageUrl(objectName);
-
-            if (googlePlaceId != null) {
-                GooglePlace place = googlePlaceRepository.findById(googlePlaceId)
-                        .orElseThrow(() -> new RuntimeException("GooglePlace with ID " + googlePlaceId + " not found."));
-                newPhoto.setGooglePlace(place);
-            } else if (customPlaceId != null) {
-                CustomPlace place = customPlaceRepository.findById(customPlaceId)
-                        .orElseThrow(() -> new RuntimeException("CustomPlace with ID " + customPlaceId + " not found."));
-                newPhoto.setCustomPlace(place);
+        if (idempotencyKey != null) {
+            PhotoUploadDeduplicator.validateKey(idempotencyKey);
+            // Wiederholung eines abgeschlossenen Requests: nichts hochladen
+            Optional<UUID> replayed = photoUploadDeduplicator.findReplay(uploader.getId(), idempotencyKey);
+            if (replayed.isPresent()) {
+                return replayed.get();
             }
+        }
 
-            OffsetDateTime now = OffsetDateTime.now();
-            newPhoto.setUploadedAt(now);
-            newPhoto.setExpiresAt(visibility == PhotoVisibility.PUBLIC ? now.plusHours(48) : now.plusDays(7));
-
-            Photo savedPhoto = photoRepository.save(newPhoto);
-
-            if (friendIds != null && !friendIds.isEmpty()) {
-                OffsetDateTime interactionTime = OffsetDateTime.now();
-                for (UUID friendId : friendIds) {
-                    userRepository.findById(friendId).flatMap(friend ->
-                            friendshipRepository.findFriendshipBetweenUsers(uploader, friend)
-                    ).ifPresent(friendship -> {
-                        friendship.setInteractionScore(friendship.getInteractionScore() + 1);
-                        friendship.setLastInteractedAt(interactionTime);
-                        friendshipRepository.save(friendship);
-                    });
-                }
-            }
+        // Unbekannte Orte oder Challenges vor dem Upload erkennen
+        GooglePlace googlePlace = googlePlaceId != null ? findGooglePlace(googlePlaceId) : null;
+        CustomPlace customPlace = customPlaceId != null ? findCustomPlace(customPlaceId) : null;
+        CustomPlaceChallenge challenge = challengeId != null ? findChallenge(challengeId) : null;
 
-            if (challengeId != null) {
-                // Finde die Challenge-Instanz
-                CustomPlaceChallenge challenge = challengeRepository.findById(challengeId)
-                        .orElseThrow(() -> new RuntimeException("Challenge not found with ID: " + challengeId));
+        GcsStorageService.StoredPhoto stored;
+        try {
+            stored = gcsStorageService.storePhoto(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not upload file: " + e.getMessage());
+        }
 
-                // Erstelle den "Abschluss"-Eintrag
-                ChallengeCompletion completion = new ChallengeCompletion();
-                completion.setChallenge(challenge);
-                completion.setUser(uploader);
-                completion.setPhoto(savedPhoto); // Verknüpfe das gerade gespeicherte Foto
+        if (idempotencyKey != null && !photoUploadDeduplicator.claim(uploader.getId(), idempotencyKey)) {
+            // Ein paralleler Request mit demselben Schlüssel war schneller und ist inzwischen committet
+            gcsStorageService.deleteFile(photosBucketName, stored.objectName());
+            return photoUploadDeduplicator.findReplay(uploader.getId(), idempotencyKey)
+                    .orElseThrow(() -> new IllegalStateException("Idempotency-Key " + idempotencyKey + " is in use."));
+        }
 
-                challengeCompletionRepository.save(completion);
-            }
+        UUID photoId = saveStoredPhoto(stored, latitude, longitude, visibility, googlePlace, customPlace, challenge,
+                uploader, friendIds);
+        if (idempotencyKey != null) {
+            photoUploadDeduplicator.complete(uploader.getId(), idempotencyKey, photoId);
+        }
+        return photoId;
+    }
 
-            if (savedPhoto.getVisibility() == PhotoVisibility.FRIENDS || savedPhoto.getVisibility() == PhotoVisibility.VISIBLE_TO_ALL) {
-                List<User> friends = friendshipService.getFriendsAsEntities(uploader.getId());
-                List<String> friendTokens = friends.stream()
-                        .map(User::getFcmToken)
-                        .filter(token -> token != null && !token.isEmpty())
-                        .toList();
+    /**
+     * Creates the photo for a file the backend has stored and hashed itself, e.g. the assembled chunks of a
+     * resumable upload. Like {@link #createPhoto}, an identical earlier photo of the uploader is reused.
+     *
+     * @return The ID of the new photo.
+     */
+    @Transactional
+    public UUID createPhotoForStoredPhoto(GcsStorageService.StoredPhoto stored, double latitude, double longitude,
+                                         PhotoVisibility visibility, Long googlePlaceId, UUID customPlaceId,
+                                         User uploader, List<UUID> friendIds, UUID challengeId) {
+        if (googlePlaceId != null && customPlaceId != null) {
+            throw new IllegalArgumentException("A photo can only be linked to a Google Place or a Custom Place, not both.");
+        }
+        return saveStoredPhoto(stored, latitude, longitude, visibility,
+                googlePlaceId != null ? findGooglePlace(googlePlaceId) : null,
+                customPlaceId != null ? findCustomPlace(customPlaceId) : null,
+                challengeId != null ? findChallenge(challengeId) : null,
+                uploader, friendIds);
+    }
 
-                fcmService.sendNewPhotoNotification(friendTokens, savedPhoto);
-            }
+    private UUID saveStoredPhoto(GcsStorageService.StoredPhoto stored, double latitude, double longitude,
+                                 PhotoVisibility visibility, GooglePlace googlePlace, CustomPlace customPlace,
+                                 CustomPlaceChallenge challenge, User uploader, List<UUID> friendIds) {
+        Photo newPhoto = newPhoto(stored.objectName(), latitude, longitude, visibility, googlePlace, customPlace, uploader);
+        newPhoto.setContentHash(stored.contentHash());
+        Optional<Photo> existing = photoUploadDeduplicator.reuseExisting(uploader.getId(), stored);
+        existing.ifPresent(original -> {
+            // Gleiche Datei: Objekt und Derivate des älteren Fotos mitbenutzen; fehlen sie noch, kommen sie mit dessen Derivaten
+            newPhoto.setStorageUrl(original.getStorageUrl());
+            newPhoto.setThumbnailStorageUrl(original.getThumbnailStorageUrl());
+            newPhoto.setDisplayStorageUrl(original.getDisplayStorageUrl());
+            newPhoto.setBlurhash(original.getBlurhash());
+        });
+
+        Photo savedPhoto = photoRepository.save(newPhoto);
+        afterPhotoSaved(savedPhoto, existing.isPresent(), uploader, friendIds, challenge,
+                notifiesFriends(visibility) ? friendTokensOf(uploader) : List.of());
+        return savedPhoto.getId();
+    }
 
-            return savedPhoto.getId();
-        } catch (IOException e) {
-            throw new RuntimeException("Could not upload file: " + e.getMessage());
+    /**
+     * Creates the photo for an object that is already stored in the photos bucket, e.g. after a
+     * direct upload through a signed URL, and runs the usual follow-ups (place stats, tags,
+     * challenge completion, feed fan-out, notifications).
+     *
+     * @return The ID of the new photo.
+     */
+    @Transactional
+    public UUID createPhotoForObject(String objectName, double latitude, double longitude,
+                                     PhotoVisibility visibility, Long googlePlaceId, UUID customPlaceId,
+                                     User uploader, List<UUID> friendIds, UUID challengeId) {
+        if (googlePlaceId != null && customPlaceId != null) {
+            throw new IllegalArgumentException("A photo can only be linked to a Google Place or a Custom Place, not both.");
         }
+
+        GooglePlace googlePlace = googlePlaceId != null ? findGooglePlace(googlePlaceId) : null;
+        CustomPlace customPlace = customPlaceId != null ? findCustomPlace(customPlaceId) : null;
+        CustomPlaceChallenge challenge = challengeId != null ? findChallenge(challengeId) : null;
+
+        Photo savedPhoto = photoRepository.save(
+                newPhoto(objectName, latitude, longitude, visibility, googlePlace, customPlace, uploader));
+        afterPhotoSaved(savedPhoto, false, uploader, friendIds, challenge,
+                notifiesFriends(visibility) ? friendTokensOf(uploader) : List.of());
+
+        return savedPhoto.getId();
     }
 
     // KORREKTUR: Ruft die richtige deleteFile-Methode in deinem GcsStorageService auf
     @Transactional
     public void deletePhoto(UUID photoId, User currentUser) {
-        Photo photo = photoRepository.findById(photoId)
+        // Gesperrt: ein Upload, der das Foto gerade als Duplikat mitbenutzt, ist danach committet und wird mitgezählt
+        Photo photo = photoRepository.lockById(photoId)
                 .orElseThrow(() -> new RuntimeException("Photo not found with ID: " + photoId));
 
         if (!photo.getUploader().getId().equals(currentUser.getId())) {
             throw new SecurityException("User is not authorized to delete this photo.");
         }
-        // Der Aufruf hier ist korrekt, da dein Service den Bucket-Namen als ersten Parameter erwartet
-        gcsStorageService.deleteFile(photosBucketName, photo.getStorageUrl());
+        // Dateien, die ein Duplikat desselben Uploaders noch benutzt, bleiben liegen
+        for (String objectName : Arrays.asList(photo.getStorageUrl(), photo.getThumbnailStorageUrl(), photo.getDisplayStorageUrl())) {
+            if (objectName != null
+                    && photoRepository.countOtherReferences(currentUser.getId(), photoId, objectName) == 0) {
+                gcsStorageService.deleteFile(photosBucketName, objectName);
+            }
+        }
+        feedTimelineService.onPhotoDeleted(photoId);
+        // Ohne Fremdschlüssel auf die partitionierte photos-Tabelle räumt die Datenbank das nicht selbst ab
+        photoLikeRepository.deleteByPhotoIds(List.of(photoId));
+        challengeCompletionRepository.deleteByPhotoIds(List.of(photoId));
         photoRepository.delete(photo);
+        placeStatsService.onPhotosDeleted(List.of(photo));
+        eventPublisher.publishEvent(new PhotoDeletedEvent(photoId));
     }
 
-    // Die restlichen Methoden bleiben wie von dir bereitgestellt
     /**
      * Holt eine Liste von Foto-DTOs, basierend auf einer Liste von IDs.
-     * Prüft für jede ID die Berechtigung.
+     * Fotos, die nicht existieren oder nicht sichtbar sind, werden weggelassen.
      */
     @Transactional(readOnly = true)
     public List<PhotoResponseDTO> getPhotoDTOsByIds(List<UUID> photoIds, User currentUser) {
-        if (photoIds == null || photoIds.isEmpty()) {
-            return List.of();
+        return getPhotoBatch(photoIds, currentUser).photos();
+    }
+
+    /**
+     * Holt mehrere Fotos auf einmal und prüft die Berechtigung mengenbasiert:
+     * eine Query für alle Fotos, eine für die Freundes-IDs, Entscheidung im Speicher.
+     * Die Reihenfolge der angefragten IDs bleibt erhalten; abgelehnte IDs werden mit Grund gemeldet.
+     *
+     * @param photoIds    the requested photo IDs
+     * @param currentUser the user requesting the photos
+     * @return the visible photos (request order) plus the denied IDs with their reason
+     */
+    @Transactional(readOnly = true)
+    public PhotoBatchResponseDTO getPhotoBatch(List<UUID> photoIds, User currentUser) {
+        PhotoVisibilityEvaluator.Result result = photoVisibilityEvaluator.evaluate(photoIds, currentUser);
+
+        List<PhotoDenialDTO> denied = result.denied().entrySet().stream()
+                .map(entry -> new PhotoDenialDTO(entry.getKey(), entry.getValue()))
+                .toList();
+        if (!denied.isEmpty()) {
+            logger.debug("Photo batch for user {}: {} of {} IDs denied: {}",
+                    currentUser.getId(), denied.size(), photoIds.size(), denied);
         }
 
-        // Rufe die 'getPhotoDTOById'-Methode für jede ID in der Liste auf.
-        // Stream verarbeitet das parallel und effizient.
-        return photoIds.stream()
-                .map(photoId -> {
-                    try {
-                        // Rufe die Helfermethode auf, die die Sicherheitsprüfung enthält
-                        return getPhotoDTOById(photoId, currentUser);
-                    } catch (Exception e) {
-                        // Wenn Foto nicht gefunden oder keine Berechtigung,
-                        // gib null zurück.
-                        // (Man könnte hier loggen: logger.warn("Konnte Foto {} für User {} nicht laden: {}", photoId, currentUser.getId(), e.getMessage());)
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull) // Filtere alle 'null'-Ergebnisse (ungültige/verbotene IDs) heraus
-                .collect(Collectors.toList());
+        return new PhotoBatchResponseDTO(photoResponseAssembler.toPhotoResponseDTOs(result.visible()), denied);
     }
 
     /**
@@ -223,9 +322,7 @@ public class PhotoService {
 
         // 3. Fall: Das Foto ist FRIENDS-Only
         if (photo.getVisibility() == PhotoVisibility.FRIENDS) {
-            Optional<Friendship> friendship = friendshipRepository.findFriendshipBetweenUsers(currentUser, uploader);
-
-            if (friendship.isPresent() && friendship.get().getStatus() == FriendshipStatus.ACCEPTED) {
+            if (friendshipService.areFriends(currentUser.getId(), uploader.getId())) {
                 return toPhotoResponseDTO(photo);
             }
         }
@@ -245,26 +342,20 @@ public class PhotoService {
         photoLikeRepository.save(newLike);
     }
 
-    public List<PhotoResponseDTO> getFriendsFeed(UUID userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        List<User> friends = friendshipService.getFriendsAsEntities(user.getId());
-
-        if (friends.isEmpty()) {
-            return List.of();
-        }
-
-        // KORREKTUR: Nutzt jetzt die Custom-Query, die sowohl 'FRIENDS'
-        // als auch 'VISIBLE_TO_ALL' berücksichtigt.
-        List<Photo> photos = photoRepository.findFriendsFeedPhotos(
-                friends,
-                OffsetDateTime.now()
-        );
-
-        return photos.stream()
-                .map(this::toPhotoResponseDTO)
-                .collect(Collectors.toList());
+    /**
+     * Holt eine Seite des Freunde-Feeds (FRIENDS und VISIBLE_TO_ALL Fotos der Freunde, neueste zuerst).
+     * Gelesen wird aus der materialisierten Timeline statt über alle Fotos aller Freunde.
+     *
+     * @param userId the user whose feed is requested
+     * @param cursor the {@code nextCursor} of the previous page, or null for the first page
+     * @param limit  the page size
+     * @return the photos of the page and the cursor for the next one
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public FriendsFeedPageDTO getFriendsFeed(UUID userId, String cursor, int limit) {
+        FeedTimelineService.Page page = feedTimelineService.getFriendsFeedPage(userId, cursor, limit);
+        return new FriendsFeedPageDTO(photoResponseAssembler.toPhotoResponseDTOs(page.photos()), page.nextCursor());
     }
 
     // === GOOGLE PLACES ===
@@ -274,14 +365,15 @@ public class PhotoService {
      */
     @Transactional(readOnly = true)
     public List<PhotoResponseDTO> findHistoricalPhotosForGooglePlaceFromOthers(Long googlePlaceId, List<HistoricalPointDTO> history, User currentUser) {
-        if (history == null || history.isEmpty()) return List.of();
+        Optional<HistoricalUploadWindow> window = history == null ? Optional.empty() : HistoricalUploadWindow.of(history);
+        if (window.isEmpty()) return List.of();
         try {
             String historyJson = objectMapper.writeValueAsString(history);
             // Ruft die neue Repo-Methode mit excludeUserId auf
             List<Photo> photos = photoRepository.findPhotosForGooglePlaceMatchingHistoricalBatchFromOthers(
-                    googlePlaceId, historyJson, currentUser.getId()
+                    googlePlaceId, historyJson, currentUser.getId(), window.get().from(), window.get().to()
             );
-            return photos.stream().map(this::toPhotoResponseDTO).collect(Collectors.toList());
+            return photoResponseAssembler.toPhotoResponseDTOs(photos);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error processing historical photo data", e);
         }
@@ -292,14 +384,15 @@ public class PhotoService {
      */
     @Transactional(readOnly = true)
     public List<PhotoResponseDTO> findHistoricalPhotosForGooglePlaceFromUser(Long googlePlaceId, List<HistoricalPointDTO> history, User currentUser) {
-        if (history == null || history.isEmpty()) return List.of();
+        Optional<HistoricalUploadWindow> window = history == null ? Optional.empty() : HistoricalUploadWindow.of(history);
+        if (window.isEmpty()) return List.of();
         try {
             String historyJson = objectMapper.writeValueAsString(history);
             // Ruft die neue Repo-Methode mit targetUserId auf
             List<Photo> photos = photoRepository.findPhotosForGooglePlaceMatchingHistoricalBatchFromUser(
-                    googlePlaceId, historyJson, currentUser.getId()
+                    googlePlaceId, historyJson, currentUser.getId(), window.get().from(), window.get().to()
             );
-            return photos.stream().map(this::toPhotoResponseDTO).collect(Collectors.toList());
+            return photoResponseAssembler.toPhotoResponseDTOs(photos);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error processing historical photo data", e);
         }
@@ -313,13 +406,14 @@ public class PhotoService {
      */
     @Transactional(readOnly = true)
     public List<PhotoResponseDTO> findHistoricalPhotosForCustomPlaceFromOthers(UUID customPlaceId, List<HistoricalPointDTO> history, User currentUser) {
-        if (history == null || history.isEmpty()) return List.of();
+        Optional<HistoricalUploadWindow> window = history == null ? Optional.empty() : HistoricalUploadWindow.of(history);
+        if (window.isEmpty()) return List.of();
         try {
             String historyJson = objectMapper.writeValueAsString(history);
             List<Photo> photos = photoRepository.findPhotosForCustomPlaceMatchingHistoricalBatchFromOthers(
-                    customPlaceId, historyJson, currentUser.getId()
+                    customPlaceId, historyJson, currentUser.getId(), window.get().from(), window.get().to()
             );
-            return photos.stream().map(this::toPhotoResponseDTO).collect(Collectors.toList());
+            return photoResponseAssembler.toPhotoResponseDTOs(photos);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error processing historical photo data", e);
         }
@@ -330,13 +424,14 @@ public class PhotoService {
      */
     @Transactional(readOnly = true)
     public List<PhotoResponseDTO> findHistoricalPhotosForCustomPlaceFromUser(UUID customPlaceId, List<HistoricalPointDTO> history, User currentUser) {
-        if (history == null || history.isEmpty()) return List.of();
+        Optional<HistoricalUploadWindow> window = history == null ? Optional.empty() : HistoricalUploadWindow.of(history);
+        if (window.isEmpty()) return List.of();
         try {
             String historyJson = objectMapper.writeValueAsString(history);
             List<Photo> photos = photoRepository.findPhotosForCustomPlaceMatchingHistoricalBatchFromUser(
-                    customPlaceId, historyJson, currentUser.getId()
+                    customPlaceId, historyJson, currentUser.getId(), window.get().from(), window.get().to()
             );
-            return photos.stream().map(this::toPhotoResponseDTO).collect(Collectors.toList());
+            return photoResponseAssembler.toPhotoResponseDTOs(photos);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error processing historical photo data", e);
         }
@@ -344,102 +439,201 @@ public class PhotoService {
 
     /**
      * Wandelt eine Photo-Entity in das (jetzt saubere) PhotoResponseDTO um.
-     * Diese Methode befüllt die neuen polymorphen Place-Felder korrekt.
+     * Für Listen bitte {@link #toPhotoResponseDTOs(List)} verwenden, das alle Zusatzdaten
+     * (Uploader, Orte, Likes, signierte URLs) gesammelt für den ganzen Batch lädt.
      *
      * @param photo the photo entity to be converted into a PhotoResponseDTO
      * @return a PhotoResponseDTO containing detailed information about the photo, including signed URLs,
      * uploader details, place information (polymorphic), and dynamically loaded like count
      */
     public PhotoResponseDTO toPhotoResponseDTO(Photo photo) {
-        User uploader = photo.getUploader();
+        return photoResponseAssembler.toPhotoResponseDTO(photo);
+    }
 
-        // 1. Signierte URLs generieren
-        String signedPhotoUrl = gcsStorageService.generateSignedUrl(
-                photosBucketName,
-                photo.getStorageUrl(),
-                15,
-                TimeUnit.MINUTES
-        );
-        String signedProfileImageUrl = gcsStorageService.generateSignedUrl(
-                profileImagesBucketName,
-                uploader.getProfileImageUrl(),
-                15,
-                TimeUnit.MINUTES
-        );
-
-        // 2. NEUE Logik: Polymorphe Place-Informationen bestimmen
-        GalleryPlaceType placeType = null;
-        Long googlePlaceId = null;
-        UUID customPlaceId = null;
-        String placeName = "Friends Feed"; // Standard, falls weder POI noch Spot
-
-        if (photo.getGooglePlace() != null) {
-            placeType = GalleryPlaceType.GOOGLE_POI;
-            googlePlaceId = photo.getGooglePlace().getId();
-            placeName = photo.getGooglePlace().getName();
-        } else if (photo.getCustomPlace() != null) {
-            placeType = GalleryPlaceType.IRIS_SPOT;
-            customPlaceId = photo.getCustomPlace().getId();
-            placeName = photo.getCustomPlace().getName();
-        }
-        // (Wenn beide null sind, war es ein "FRIENDS" Upload ohne Ort -> placeName bleibt "Friends Feed")
-
-        // 3. Like-Anzahl holen (unverändert)
-        int currentLikeCount = photoLikeRepository.countByIdPhotoId(photo.getId());
-
-        // 4. Das NEUE DTO zurückgeben
-        return new PhotoResponseDTO(
-                photo.getId(),
-                signedPhotoUrl,
-                photo.getUploadedAt(),
-                placeType,
-                googlePlaceId,
-                customPlaceId,
-                placeName,
-                uploader.getId(),
-                uploader.getUsername(),
-                signedProfileImageUrl,
-                currentLikeCount
-        );
+    /**
+     * Wandelt eine Liste von Photo-Entities in DTOs um (Reihenfolge bleibt erhalten),
+     * mit einer konstanten Anzahl Queries unabhängig von der Listengröße.
+     */
+    public List<PhotoResponseDTO> toPhotoResponseDTOs(List<Photo> photos) {
+        return photoResponseAssembler.toPhotoResponseDTOs(photos);
     }
 
     /**
-     * Uploads photos with associated metadata and returns a list of responses containing
-     * the IDs of the uploaded photos. Each photo is uploaded based on the information
-     * provided in the corresponding request DTO.
+     * Uploads a batch of photos and reports the result per file.
+     *
+     * The metadata of every file is checked first, so files with unknown places or challenges are not
+     * uploaded at all. The remaining files are streamed to storage concurrently (see
+     * {@link ParallelUploadExecutor}); a failed upload only fails its own file. All uploaded photos are
+     * then saved in one transaction with batched inserts. If that transaction fails, the uploaded
+     * objects are deleted again and all of these files are reported as failed.
      *
-     * @param files       an array of {@code MultipartFile} representing the photos to be uploaded.
-     * @param requests    a list of {@code PhotoUploadRequestDTO} containing metadata for each photo,
-     *                    such as location and visibility settings.
+     * @param files       the photos to be uploaded.
+     * @param requests    the metadata for each photo, in the same order as {@code files}.
      * @param currentUser the {@code User} who is uploading the photos.
-     * @return a list of {@code PhotoUploadResponse} containing the IDs of the successfully uploaded photos.
-     * @throws IOException if an error occurs during file processing.
+     * @return one result per file, in the order of {@code files}.
+     * @throws IllegalArgumentException if the number of files and metadata entries differ.
      */
-    @Transactional
-    public List<PhotoUploadResponse> uploadPhotos(MultipartFile[] files,
-                                                  List<PhotoUploadRequestDTO> requests,
-                                                  User currentUser) throws IOException {
-        List<PhotoUploadResponse> responses = new ArrayList<>();
+    public List<PhotoBatchUploadResultDTO> uploadPhotos(MultipartFile[] files,
+                                                        List<PhotoUploadRequestDTO> requests,
+                                                        User currentUser) {
+        if (files.length != requests.size()) {
+            throw new IllegalArgumentException("Expected metadata for each of the " + files.length + " files, got " + requests.size());
+        }
+        UUID[] photoIds = new UUID[files.length];
+        String[] errors = new String[files.length];
 
+        // 1. Metadaten prüfen, bevor etwas hochgeladen wird
+        List<PreparedPhoto> prepared = new ArrayList<>();
         for (int i = 0; i < files.length; i++) {
-            PhotoUploadRequestDTO dto = requests.get(i);
-
-            // Aufruf deiner bestehenden createPhoto-Methode
-            UUID photoId = this.createPhoto(
-                    files[i],
-                    dto.latitude(),
-                    dto.longitude(),
-                    dto.visibility(),
-                    dto.googlePlaceId(),
-                    dto.customPlaceId(),
-                    currentUser,
-                    dto.friendIds(), // Falls im DTO vorhanden
-                    dto.challengeId() // Falls im DTO vorhanden
-            );
+            try {
+                prepared.add(prepare(i, requests.get(i)));
+            } catch (RuntimeException e) {
+                errors[i] = e.getMessage();
+            }
+        }
+
+        // 2. Dateien parallel hochladen
+        List<ParallelUploadExecutor.Outcome> outcomes = parallelUploadExecutor.uploadAll(currentUser.getId(),
+                prepared.stream().map(photo -> files[photo.index()]).toList(), gcsStorageService::uploadPhoto);
+        List<UploadedPhoto> uploaded = new ArrayList<>();
+        for (int i = 0; i < prepared.size(); i++) {
+            ParallelUploadExecutor.Outcome outcome = outcomes.get(i);
+            if (outcome.succeeded()) {
+                uploaded.add(new UploadedPhoto(prepared.get(i), outcome.objectName()));
+            } else {
+                logger.warn("Upload of batch file {} failed", prepared.get(i).index(), outcome.error());
+                errors[prepared.get(i).index()] = "Could not upload file: " + outcome.error().getMessage();
+            }
+        }
+
+        // 3. Alle hochgeladenen Fotos in einer Transaktion speichern
+        if (!uploaded.isEmpty()) {
+            try {
+                List<Photo> savedPhotos = transactionTemplate.execute(status -> saveBatch(uploaded, currentUser));
+                for (int i = 0; i < uploaded.size(); i++) {
+                    photoIds[uploaded.get(i).prepared().index()] = savedPhotos.get(i).getId();
+                }
+            } catch (RuntimeException e) {
+                // Kompensation: ohne Foto-Zeile würde niemand die Objekte je löschen
+                logger.error("Could not save batch of {} photos, deleting the uploaded files", uploaded.size(), e);
+                for (UploadedPhoto photo : uploaded) {
+                    gcsStorageService.deleteFile(photosBucketName, photo.objectName());
+                    errors[photo.prepared().index()] = "Could not save photo: " + e.getMessage();
+                }
+            }
+        }
+
+        List<PhotoBatchUploadResultDTO> results = new ArrayList<>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            results.add(new PhotoBatchUploadResultDTO(i, photoIds[i], photoIds[i] == null ? errors[i] : null));
+        }
+        return results;
+    }
+
+    private PreparedPhoto prepare(int index, PhotoUploadRequestDTO request) {
+        if (request.googlePlaceId() != null && request.customPlaceId() != null) {
+            throw new IllegalArgumentException("A photo can only be linked to a Google Place or a Custom Place, not both.");
+        }
+        return new PreparedPhoto(index, request,
+                request.googlePlaceId() != null ? findGooglePlace(request.googlePlaceId()) : null,
+                request.customPlaceId() != null ? findCustomPlace(request.customPlaceId()) : null,
+                request.challengeId() != null ? findChallenge(request.challengeId()) : null);
+    }
+
+    private List<Photo> saveBatch(List<UploadedPhoto> uploaded, User uploader) {
+        List<Photo> photos = new ArrayList<>(uploaded.size());
+        for (UploadedPhoto photo : uploaded) {
+            PhotoUploadRequestDTO request = photo.prepared().request();
+            photos.add(newPhoto(photo.objectName(), request.latitude(), request.longitude(), request.visibility(),
+                    photo.prepared().googlePlace(), photo.prepared().customPlace(), uploader));
+        }
+        List<Photo> savedPhotos = photoRepository.saveAll(photos);
+        // Jetzt flushen: alle INSERTs gehen als ein JDBC-Batch raus, bevor die Folgeschritte eigene Queries auslösen
+        photoRepository.flush();
+
+        boolean anyNotifiesFriends = uploaded.stream()
+                .anyMatch(photo -> notifiesFriends(photo.prepared().request().visibility()));
+        List<String> friendTokens = anyNotifiesFriends ? friendTokensOf(uploader) : List.of();
+        for (int i = 0; i < savedPhotos.size(); i++) {
+            PreparedPhoto prepared = uploaded.get(i).prepared();
+            afterPhotoSaved(savedPhotos.get(i), false, uploader, prepared.request().friendIds(), prepared.challenge(), friendTokens);
+        }
+        return savedPhotos;
+    }
+
+    private Photo newPhoto(String objectName, double latitude, double longitude, PhotoVisibility visibility,
+                           GooglePlace googlePlace, CustomPlace customPlace, User uploader) {
+        Point location = geometryFactory.createPoint(new Coordinate(longitude, latitude));
+
+        Photo newPhoto = new Photo();
+        newPhoto.setUploader(uploader);
+        newPhoto.setLocation(location);
+        newPhoto.setVisibility(visibility);
+        newPhoto.setStorageUrl(objectName);
+        newPhoto.setGooglePlace(googlePlace);
+        newPhoto.setCustomPlace(customPlace);
+
+        OffsetDateTime now = OffsetDateTime.now();
+        newPhoto.setUploadedAt(now);
+        newPhoto.setExpiresAt(now.plus(visibility == PhotoVisibility.PUBLIC ? Photo.PUBLIC_LIFETIME : Photo.MAX_LIFETIME));
+        return newPhoto;
+    }
 
-            responses.add(new PhotoUploadResponse(photoId));
+    /**
+     * Follow-ups of a new photo within its transaction: place stats, tagged friends, challenge completion,
+     * feed fan-out and notifications. {@code duplicate} marks a photo that shares the file of an earlier one.
+     */
+    private void afterPhotoSaved(Photo savedPhoto, boolean duplicate, User uploader, List<UUID> friendIds,
+                                 CustomPlaceChallenge challenge, List<String> friendTokens) {
+        eventPublisher.publishEvent(new PhotoCreatedEvent(savedPhoto, duplicate));
+        placeStatsService.onPhotoCreated(savedPhoto);
+
+        if (friendIds != null) {
+            // Markierte Freunde: zählt erst nach dem Commit, Score wird gesammelt geschrieben (nur für akzeptierte Freundschaften)
+            friendIds.forEach(friendId -> interactionSink.record(uploader.getId(), friendId));
         }
 
-        return responses;
+        if (challenge != null) {
+            // Erstelle den "Abschluss"-Eintrag
+            ChallengeCompletion completion = new ChallengeCompletion();
+            completion.setChallenge(challenge);
+            completion.setUser(uploader);
+            completion.setPhoto(savedPhoto); // Verknüpfe das gerade gespeicherte Foto
+
+            challengeCompletionRepository.save(completion);
+        }
+
+        if (notifiesFriends(savedPhoto.getVisibility())) {
+            // In die Feed-Timelines der Freunde schreiben (Fan-out-on-write)
+            feedTimelineService.fanOut(savedPhoto);
+            fcmService.sendNewPhotoNotification(friendTokens, savedPhoto);
+        }
+    }
+
+    private static boolean notifiesFriends(PhotoVisibility visibility) {
+        return visibility == PhotoVisibility.FRIENDS || visibility == PhotoVisibility.VISIBLE_TO_ALL;
+    }
+
+    private List<String> friendTokensOf(User uploader) {
+        return friendshipService.getFriendsAsEntities(uploader.getId()).stream()
+                .map(User::getFcmToken)
+                .filter(token -> token != null && !token.isEmpty())
+                .toList();
+    }
+
+    private GooglePlace findGooglePlace(Long googlePlaceId) {
+        return googlePlaceRepository.findById(googlePlaceId)
+                .orElseThrow(() -> new RuntimeException("GooglePlace with ID " + googlePlaceId + " not found."));
+    }
+
+    private CustomPlace findCustomPlace(UUID customPlaceId) {
+        return customPlaceRepository.findById(customPlaceId)
+                .orElseThrow(() -> new RuntimeException("CustomPlace with ID " + customPlaceId + " not found."));
+    }
+
+    private CustomPlaceChallenge findChallenge(UUID challengeId) {
+        // Finde die Challenge-Instanz
+        return challengeRepository.findById(challengeId)
+                .orElseThrow(() -> new RuntimeException("Challenge not found with ID: " + challengeId));
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.Photo;
+import com.iris.backend.repository.PhotoRepository;
+import com.iris.backend.repository.PhotoUploadKeyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps retried and repeated photo uploads from creating duplicates.
+ *
+ * Requests with an {@code Idempotency-Key} are remembered for {@code photos.idempotency.ttl-hours}: a retry
+ * of a request that already created its photo gets that photo's ID without uploading anything. Independent
+ * of keys, a file whose SHA-256 matches another photo of the same uploader is not stored twice; the new
+ * photo shares the existing object and its derivatives. Shared objects are only deleted together with
+ * their last photo (see {@link PhotoRepository#countOtherReferences}).
+ */
+@Service
+public class PhotoUploadDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoUploadDeduplicator.class);
+
+    // Typischerweise eine UUID; nur druckbares ASCII, damit der Schlüssel gefahrlos geloggt werden kann
+    private static final Pattern VALID_KEY = Pattern.compile("[\\x21-\\x7E]{1,255}");
+
+    private final PhotoUploadKeyRepository keyRepository;
+    private final PhotoRepository photoRepository;
+    private final GcsStorageService gcsStorageService;
+    private final String photosBucketName;
+    private final Duration keyTtl;
+    private final Duration minRemainingLifetime;
+    private final Clock clock;
+    private final Counter deduplicatedBytes;
+    private final Counter replays;
+
+    @Autowired
+    public PhotoUploadDeduplicator(PhotoUploadKeyRepository keyRepository,
+                                   PhotoRepository photoRepository,
+                                   GcsStorageService gcsStorageService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${gcs.bucket.photos.name}") String photosBucketName,
+                                   @Value("${photos.idempotency.ttl-hours:24}") long keyTtlHours,
+                                   @Value("${photos.dedup.min-remaining-lifetime-minutes:60}") long minRemainingLifetimeMinutes) {
+        this(keyRepository, photoRepository, gcsStorageService, meterRegistry, photosBucketName,
+                Duration.ofHours(keyTtlHours), Duration.ofMinutes(minRemainingLifetimeMinutes), Clock.systemUTC());
+    }
+
+    PhotoUploadDeduplicator(PhotoUploadKeyRepository keyRepository, PhotoRepository photoRepository,
+                            GcsStorageService gcsStorageService, MeterRegistry meterRegistry,
+                            String photosBucketName, Duration keyTtl, Duration minRemainingLifetime, Clock clock) {
+        this.keyRepository = keyRepository;
+        this.photoRepository = photoRepository;
+        this.gcsStorageService = gcsStorageService;
+        this.photosBucketName = photosBucketName;
+        this.keyTtl = keyTtl;
+        this.minRemainingLifetime = minRemainingLifetime;
+        this.clock = clock;
+        this.deduplicatedBytes = Counter.builder("iris.photos.dedup.bytes")
+                .baseUnit("bytes")
+                .description("Uploaded bytes that were not stored because an identical file already existed")
+                .register(meterRegistry);
+        this.replays = meterRegistry.counter("iris.photos.idempotent.replays");
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is not 1-255 printable ASCII characters.
+     */
+    public static void validateKey(String idempotencyKey) {
+        if (!VALID_KEY.matcher(idempotencyKey).matches()) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1-255 printable ASCII characters");
+        }
+    }
+
+    /**
+     * The photo an earlier request with this key created, if the key is still remembered.
+     */
+    public Optional<UUID> findReplay(UUID uploaderId, String idempotencyKey) {
+        Optional<UUID> photoId = keyRepository.findPhotoId(uploaderId, idempotencyKey, OffsetDateTime.now(clock));
+        photoId.ifPresent(id -> replays.increment());
+        return photoId;
+    }
+
+    /**
+     * Claims a key in the current transaction. If a concurrent request holds the same key, this waits until
+     * that request's transaction has finished.
+     *
+     * @return false if another request has already created a photo with this key.
+     */
+    public boolean claim(UUID uploaderId, String idempotencyKey) {
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        return keyRepository.claim(UUID.randomUUID(), uploaderId, idempotencyKey, now, now.plus(keyTtl)) == 1;
+    }
+
+    /**
+     * Links a claimed key to the photo created for it, in the same transaction as the photo.
+     */
+    public void complete(UUID uploaderId, String idempotencyKey, UUID photoId) {
+        keyRepository.complete(uploaderId, idempotencyKey, photoId);
+    }
+
+    /**
+     * Looks for an earlier photo of the uploader with the same content. If there is one, the freshly stored
+     * object is deleted again and the earlier photo is returned, so the new photo can share its objects.
+     * Photos that expire within {@code photos.dedup.min-remaining-lifetime-minutes} are not reused, because
+     * the expiry sweep might delete their objects before the new photo is committed. The returned photo stays
+     * locked until the current transaction ends, so a concurrent delete waits and then sees the new photo
+     * as another reference to the object.
+     */
+    public Optional<Photo> reuseExisting(UUID uploaderId, GcsStorageService.StoredPhoto stored) {
+        OffsetDateTime aliveUntil = OffsetDateTime.now(clock).plus(minRemainingLifetime);
+        Optional<Photo> existing = photoRepository
+                .findByUploaderAndContentHash(uploaderId, stored.contentHash(), aliveUntil, Limit.of(1))
+                .stream().findFirst();
+        existing.ifPresent(photo -> {
+            gcsStorageService.deleteFile(photosBucketName, stored.objectName());
+            deduplicatedBytes.increment(stored.size());
+            logger.debug("Upload {} of user {} has the same content as photo {}, reusing {}",
+                    stored.objectName(), uploaderId, photo.getId(), photo.getStorageUrl());
+        });
+        return existing;
+    }
+
+    /**
+     * Forgets expired idempotency keys.
+     */
+    @Scheduled(fixedDelayString = "${photos.idempotency.sweep-interval-ms:600000}")
+    public void sweepExpiredKeys() {
+        int swept = keyRepository.deleteExpired(OffsetDateTime.now(clock));
+        if (swept > 0) {
+            logger.info("Swept {} expired photo upload idempotency keys", swept);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.iris.backend.service;
+
+import com.google.cloud.storage.Blob;
+import com.iris.backend.dto.PhotoUploadRequestDTO;
+import com.iris.backend.dto.PhotoUploadReservationRequestDTO;
+import com.iris.backend.dto.PhotoUploadTicketDTO;
+import com.iris.backend.model.PhotoUploadReservation;
+import com.iris.backend.model.User;
+import com.iris.backend.repository.PhotoUploadReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Two-phase photo upload that keeps the file bytes away from the backend.
+ *
+ * {@link #reserve} reserves an object name and returns a V4 signed PUT URL for it; the client uploads
+ * straight to the photos bucket. {@link #finalizeUpload} then checks the uploaded object and creates the
+ * photo like a multipart upload would. The signed URL expires before the reservation, so once a
+ * reservation has expired no upload to its object can start anymore and the sweep can delete the
+ * object together with the reservation.
+ */
+@Service
+public class PhotoUploadReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoUploadReservationService.class);
+
+    // Reservierungen pro Sweep-Durchlauf
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    private final PhotoUploadReservationRepository reservationRepository;
+    private final GcsStorageService gcsStorageService;
+    private final PhotoService photoService;
+    private final String photosBucketName;
+    private final Duration uploadUrlValidity;
+    private final Duration reservationTtl;
+    private final Clock clock;
+
+    @Autowired
+    public PhotoUploadReservationService(PhotoUploadReservationRepository reservationRepository,
+                                         GcsStorageService gcsStorageService,
+                                         PhotoService photoService,
+                                         @Value("${gcs.bucket.photos.name}") String photosBucketName,
+                                         @Value("${photos.direct-upload.url-validity-minutes:15}") long uploadUrlValidityMinutes,
+                                         @Value("${photos.direct-upload.reservation-ttl-minutes:60}") long reservationTtlMinutes) {
+        this(reservationRepository, gcsStorageService, photoService, photosBucketName,
+                Duration.ofMinutes(uploadUrlValidityMinutes), Duration.ofMinutes(reservationTtlMinutes), Clock.systemUTC());
+    }
+
+    PhotoUploadReservationService(PhotoUploadReservationRepository reservationRepository,
+                                  GcsStorageService gcsStorageService, PhotoService photoService,
+                                  String photosBucketName, Duration uploadUrlValidity, Duration reservationTtl,
+                                  Clock clock) {
+        if (reservationTtl.compareTo(uploadUrlValidity) <= 0) {
+            throw new IllegalArgumentException("The reservation TTL must be longer than the upload URL validity.");
+        }
+        this.reservationRepository = reservationRepository;
+        this.gcsStorageService = gcsStorageService;
+        this.photoService = photoService;
+        this.photosBucketName = photosBucketName;
+        this.uploadUrlValidity = uploadUrlValidity;
+        this.reservationTtl = reservationTtl;
+        this.clock = clock;
+    }
+
+    /**
+     * Phase one: reserves an object name for the user and signs an upload URL for it.
+     *
+     * @throws IllegalArgumentException if the content type is not an image type.
+     */
+    public PhotoUploadTicketDTO reserve(User uploader, PhotoUploadReservationRequestDTO request) {
+        String contentType = request.contentType().trim();
+        if (!contentType.startsWith("image/")) {
+            throw new IllegalArgumentException("Only image uploads are allowed, got " + contentType);
+        }
+        // Nur der letzte Pfadteil, damit der Client keine "Ordner" im Bucket anlegt
+        String fileName = request.fileName().substring(request.fileName().lastIndexOf('/') + 1);
+
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        PhotoUploadReservation reservation = new PhotoUploadReservation();
+        reservation.setId(UUID.randomUUID());
+        reservation.setUploaderId(uploader.getId());
+        reservation.setObjectName(gcsStorageService.newPhotoObjectName(fileName));
+        reservation.setContentType(contentType);
+        reservation.setCreatedAt(now);
+        reservation.setExpiresAt(now.plus(reservationTtl));
+        reservationRepository.save(reservation);
+
+        String uploadUrl = gcsStorageService.generateSignedPhotoUploadUrl(
+                reservation.getObjectName(), contentType, uploadUrlValidity);
+        return new PhotoUploadTicketDTO(
+                reservation.getId(),
+                uploadUrl,
+                gcsStorageService.photoUploadHeaders(contentType),
+                now.plus(uploadUrlValidity),
+                reservation.getExpiresAt());
+    }
+
+    /**
+     * Phase two: checks the uploaded object and creates the photo for it. The reservation is consumed in
+     * the same transaction, so every upload token creates at most one photo.
+     *
+     * @return The ID of the new photo.
+     * @throws RuntimeException         if the user has no reservation with this token.
+     * @throws IllegalStateException    if the reservation has expired or was finalized concurrently.
+     * @throws IllegalArgumentException if the object is missing or does not match the reservation.
+     */
+    @Transactional
+    public UUID finalizeUpload(UUID uploadToken, PhotoUploadRequestDTO metadata, User uploader) {
+        PhotoUploadReservation reservation = reservationRepository.findById(uploadToken)
+                .filter(r -> r.getUploaderId().equals(uploader.getId()))
+                .orElseThrow(() -> new RuntimeException("Upload reservation " + uploadToken + " not found."));
+
+        verifyUploadedObject(reservation);
+
+        // Einlösen per DELETE: sperrt die Zeile bis zum Commit, ein zweites Finalize bekommt 0
+        if (reservationRepository.claim(uploadToken, OffsetDateTime.now(clock)) == 0) {
+            throw new IllegalStateException("Upload reservation " + uploadToken + " has expired or was already finalized.");
+        }
+
+        return photoService.createPhotoForObject(
+                reservation.getObjectName(),
+                metadata.latitude(),
+                metadata.longitude(),
+                metadata.visibility(),
+                metadata.googlePlaceId(),
+                metadata.customPlaceId(),
+                uploader,
+                metadata.friendIds(),
+                metadata.challengeId());
+    }
+
+    /**
+     * Deletes expired reservations and the objects uploaded for them.
+     */
+    @Scheduled(fixedDelayString = "${photos.direct-upload.sweep-interval-ms:300000}")
+    public void sweepExpired() {
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        int swept = 0;
+        List<PhotoUploadReservation> expired;
+        do {
+            expired = reservationRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(now, Limit.of(SWEEP_BATCH_SIZE));
+            for (PhotoUploadReservation reservation : expired) {
+                // 0: wurde gerade noch eingelöst, das Objekt gehört jetzt zu einem Foto
+                if (reservationRepository.deleteIfExpired(reservation.getId(), now) == 1) {
+                    gcsStorageService.deleteFile(photosBucketName, reservation.getObjectName());
+                    swept++;
+                }
+            }
+        } while (expired.size() == SWEEP_BATCH_SIZE);
+        if (swept > 0) {
+            logger.info("Swept {} expired photo upload reservations", swept);
+        }
+    }
+
+    private void verifyUploadedObject(PhotoUploadReservation reservation) {
+        Blob blob = gcsStorageService.getPhotoObject(reservation.getObjectName());
+        if (blob == null) {
+            throw new IllegalArgumentException("No file has been uploaded for reservation " + reservation.getId());
+        }
+        Long size = blob.getSize();
+        if (size == null || size <= 0 || size > gcsStorageService.getMaxUploadBytes()) {
+            throw new IllegalArgumentException("Uploaded file has an invalid size: " + size + " bytes");
+        }
+        if (!reservation.getContentType().equals(blob.getContentType())) {
+            throw new IllegalArgumentException("Uploaded file has content type " + blob.getContentType()
+                    + ", expected " + reservation.getContentType());
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.iris.backend.service;
+
+import com.iris.backend.dto.PhotoUploadRequestDTO;
+import com.iris.backend.dto.PhotoUploadSessionDTO;
+import com.iris.backend.dto.PhotoUploadSessionRequestDTO;
+import com.iris.backend.model.PhotoUploadSession;
+import com.iris.backend.model.User;
+import com.iris.backend.repository.PhotoUploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resumable photo uploads: create a session, PUT the file in chunks at increasing offsets, finalize.
+ *
+ * Every chunk is streamed into an object of its own in the photos bucket, so a dropped connection only
+ * costs the chunk in flight and no request holds a thread for longer than one chunk takes. The offset is
+ * kept in the session row, which makes the protocol work across instances: after reconnecting, the client
+ * reads the offset and continues there. Finalizing copies the chunks into the photo object (hashing it on
+ * the way, so deduplication applies) before it opens a transaction, then consumes the session and creates the
+ * photo in a short one. Sessions without a chunk for
+ * {@code photos.resumable-upload.session-ttl-minutes} expire and are swept together with their chunks.
+ */
+@Service
+public class PhotoUploadSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoUploadSessionService.class);
+
+    // Sessions pro Sweep-Durchlauf
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    private final PhotoUploadSessionRepository sessionRepository;
+    private final GcsStorageService gcsStorageService;
+    private final PhotoService photoService;
+    private final TransactionTemplate transactionTemplate;
+    private final String photosBucketName;
+    private final int chunkSize;
+    private final Duration sessionTtl;
+    private final Clock clock;
+
+    @Autowired
+    public PhotoUploadSessionService(PhotoUploadSessionRepository sessionRepository,
+                                     GcsStorageService gcsStorageService,
+                                     PhotoService photoService,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${gcs.bucket.photos.name}") String photosBucketName,
+                                     @Value("${photos.resumable-upload.chunk-size-bytes:1048576}") int chunkSize,
+                                     @Value("${photos.resumable-upload.session-ttl-minutes:1440}") long sessionTtlMinutes) {
+        this(sessionRepository, gcsStorageService, photoService, transactionManager, photosBucketName, chunkSize,
+                Duration.ofMinutes(sessionTtlMinutes), Clock.systemUTC());
+    }
+
+    PhotoUploadSessionService(PhotoUploadSessionRepository sessionRepository, GcsStorageService gcsStorageService,
+                              PhotoService photoService, PlatformTransactionManager transactionManager,
+                              String photosBucketName, int chunkSize, Duration sessionTtl, Clock clock) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("photos.resumable-upload.chunk-size-bytes must be positive");
+        }
+        this.sessionRepository = sessionRepository;
+        this.gcsStorageService = gcsStorageService;
+        this.photoService = photoService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.photosBucketName = photosBucketName;
+        this.chunkSize = chunkSize;
+        this.sessionTtl = sessionTtl;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts a resumable upload.
+     *
+     * @throws IllegalArgumentException if the content type is not an image type or the file is too large.
+     */
+    public PhotoUploadSessionDTO createSession(User uploader, PhotoUploadSessionRequestDTO request) {
+        String contentType = request.contentType().trim();
+        if (!contentType.startsWith("image/")) {
+            throw new IllegalArgumentException("Only image uploads are allowed, got " + contentType);
+        }
+        if (request.totalBytes() > gcsStorageService.getMaxUploadBytes()) {
+            throw new IllegalArgumentException("File is larger than " + gcsStorageService.getMaxUploadBytes() + " bytes");
+        }
+        // Nur der letzte Pfadteil, damit der Client keine "Ordner" im Bucket anlegt
+        String fileName = request.fileName().substring(request.fileName().lastIndexOf('/') + 1);
+
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        PhotoUploadSession session = new PhotoUploadSession();
+        session.setId(UUID.randomUUID());
+        session.setUploaderId(uploader.getId());
+        session.setObjectName(gcsStorageService.newPhotoObjectName(fileName));
+        session.setContentType(contentType);
+        session.setTotalBytes(request.totalBytes());
+        session.setChunkSize(chunkSize);
+        session.setReceivedBytes(0);
+        session.setCreatedAt(now);
+        session.setExpiresAt(now.plus(sessionTtl));
+        sessionRepository.save(session);
+        return toDTO(session);
+    }
+
+    /**
+     * The current state of a session; a client that lost its connection continues at {@code receivedBytes}.
+     *
+     * @throws RuntimeException if the user has no such session.
+     */
+    public PhotoUploadSessionDTO getSession(UUID sessionId, User uploader) {
+        return toDTO(findSession(sessionId, uploader));
+    }
+
+    /**
+     * Stores the chunk starting at {@code offset}. Only the chunk at the current offset is accepted, so a
+     * chunk that is sent again after its response was lost is rejected instead of being stored twice.
+     *
+     * @return The session state after the chunk.
+     * @throws RuntimeException         if the user has no such session.
+     * @throws IllegalStateException    if the session has expired or {@code offset} is not the current offset.
+     * @throws IllegalArgumentException if the chunk does not have the expected size.
+     */
+    public PhotoUploadSessionDTO appendChunk(UUID sessionId, long offset, InputStream chunk, User uploader) throws IOException {
+        PhotoUploadSession session = findSession(sessionId, uploader);
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        if (!session.getExpiresAt().isAfter(now)) {
+            throw new IllegalStateException("Upload session " + sessionId + " has expired.");
+        }
+        if (offset != session.getReceivedBytes() || offset >= session.getTotalBytes()) {
+            throw new IllegalStateException("Upload session " + sessionId + " expects offset " + session.getReceivedBytes()
+                    + ", got " + offset);
+        }
+
+        long expectedBytes = Math.min(session.getChunkSize(), session.getTotalBytes() - offset);
+        gcsStorageService.uploadPhotoPart(partName(session, offset), chunk, expectedBytes);
+
+        long receivedBytes = offset + expectedBytes;
+        OffsetDateTime expiresAt = now.plus(sessionTtl);
+        // 0: ein paralleler Request hat denselben Chunk gespeichert; derselbe Objektname verhindert ein zweites Teilstück
+        if (sessionRepository.advance(sessionId, offset, receivedBytes, now, expiresAt) == 0) {
+            throw new IllegalStateException("Chunk at offset " + offset + " of upload session " + sessionId
+                    + " was stored concurrently.");
+        }
+        session.setReceivedBytes(receivedBytes);
+        session.setExpiresAt(expiresAt);
+        return toDTO(session);
+    }
+
+    /**
+     * Assembles the chunks and creates the photo. The copy runs before any transaction, since it takes as long
+     * as the upload is large; consuming the session and creating the photo then happen in one short
+     * transaction, so every session creates at most one photo. The chunks are deleted once it has committed.
+     *
+     * @return The ID of the new photo.
+     * @throws RuntimeException         if the user has no such session.
+     * @throws IllegalArgumentException if not all chunks have been uploaded yet.
+     * @throws IllegalStateException    if the session has expired or was finalized concurrently.
+     */
+    public UUID finalizeUpload(UUID sessionId, PhotoUploadRequestDTO metadata, User uploader) throws IOException {
+        PhotoUploadSession session = findSession(sessionId, uploader);
+        if (session.getReceivedBytes() != session.getTotalBytes()) {
+            throw new IllegalArgumentException("Upload session " + sessionId + " has " + session.getReceivedBytes()
+                    + " of " + session.getTotalBytes() + " bytes.");
+        }
+        if (!session.getExpiresAt().isAfter(OffsetDateTime.now(clock))) {
+            throw new IllegalStateException("Upload session " + sessionId + " has expired.");
+        }
+
+        // Eigener Objektname pro Versuch: scheitert ein paralleles Finalize am Einlösen, löscht es nur sein
+        // eigenes Objekt und nicht das Foto des Versuchs, der die Session bekommen hat
+        List<String> partNames = partNames(session);
+        GcsStorageService.StoredPhoto stored = gcsStorageService.assemblePhoto(
+                gcsStorageService.newPhotoObjectName(session.getObjectName()), session.getContentType(), partNames);
+        UUID photoId;
+        try {
+            photoId = transactionTemplate.execute(status -> {
+                // Einlösen per DELETE: sperrt die Zeile bis zum Commit, ein zweites Finalize bekommt 0
+                if (sessionRepository.claim(sessionId, OffsetDateTime.now(clock)) == 0) {
+                    throw new IllegalStateException("Upload session " + sessionId
+                            + " has expired or was already finalized.");
+                }
+                return photoService.createPhotoForStoredPhoto(
+                        stored,
+                        metadata.latitude(),
+                        metadata.longitude(),
+                        metadata.visibility(),
+                        metadata.googlePlaceId(),
+                        metadata.customPlaceId(),
+                        uploader,
+                        metadata.friendIds(),
+                        metadata.challengeId());
+            });
+        } catch (RuntimeException e) {
+            // Die Session bleibt bestehen (nicht eingelöst oder Rollback), das zusammengesetzte Objekt gehört
+            // aber zu keinem Foto; hat die Deduplizierung es schon gelöscht, ist das hier ein No-op
+            gcsStorageService.deleteFile(photosBucketName, stored.objectName());
+            throw e;
+        }
+        // Erst nach dem Commit: eine zurückgerollte Session braucht ihre Chunks für einen neuen Versuch
+        deleteParts(partNames);
+        return photoId;
+    }
+
+    private void deleteParts(List<String> partNames) {
+        partNames.forEach(partName -> gcsStorageService.deleteFile(photosBucketName, partName));
+    }
+
+    /**
+     * Deletes expired sessions and their chunks.
+     */
+    @Scheduled(fixedDelayString = "${photos.resumable-upload.sweep-interval-ms:300000}")
+    public void sweepExpired() {
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        int swept = 0;
+        List<PhotoUploadSession> expired;
+        do {
+            expired = sessionRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(now, Limit.of(SWEEP_BATCH_SIZE));
+            for (PhotoUploadSession session : expired) {
+                // 0: wurde gerade noch eingelöst oder durch einen Chunk verlängert
+                if (sessionRepository.deleteIfExpired(session.getId(), now) == 1) {
+                    deleteParts(partNames(session));
+                    swept++;
+                }
+            }
+        } while (expired.size() == SWEEP_BATCH_SIZE);
+        if (swept > 0) {
+            logger.info("Swept {} expired photo upload sessions", swept);
+        }
+    }
+
+    private PhotoUploadSession findSession(UUID sessionId, User uploader) {
+        return sessionRepository.findById(sessionId)
+                .filter(s -> s.getUploaderId().equals(uploader.getId()))
+                .orElseThrow(() -> new RuntimeException("Upload session " + sessionId + " not found."));
+    }
+
+    // Die Chunks, die laut Offset vollständig gespeichert sind
+    private static List<String> partNames(PhotoUploadSession session) {
+        List<String> partNames = new ArrayList<>();
+        for (long offset = 0; offset < session.getReceivedBytes(); offset += session.getChunkSize()) {
+            partNames.add(partName(session, offset));
+        }
+        return partNames;
+    }
+
+    private static String partName(PhotoUploadSession session, long offset) {
+        return session.getObjectName() + ".part-" + (offset / session.getChunkSize());
+    }
+
+    private static PhotoUploadSessionDTO toDTO(PhotoUploadSession session) {
+        return new PhotoUploadSessionDTO(session.getId(), session.getTotalBytes(), session.getChunkSize(),
+                session.getReceivedBytes(), session.getExpiresAt());
+    }
+}
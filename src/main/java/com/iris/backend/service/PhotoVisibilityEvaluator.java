@@ -0,0 +1,87 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.PhotoAccessDenialReason;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.PhotoRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Decides in memory which photos of a batch a user may see.
+ *
+ * All requested photos are loaded with one query and the caller's accepted-friend IDs with one
+ * projection query (only if a FRIENDS-only photo of somebody else is part of the batch). The rules
+ * are the same as for a single photo:
+ * - the uploader always sees their own photos,
+ * - PUBLIC and VISIBLE_TO_ALL photos are visible to everyone,
+ * - FRIENDS photos are visible to accepted friends of the uploader.
+ */
+@Component
+public class PhotoVisibilityEvaluator {
+
+    private final PhotoRepository photoRepository;
+    private final FriendshipRepository friendshipRepository;
+
+    /**
+     * Result of a batch evaluation.
+     *
+     * @param visible the visible photos, in the order of the requested IDs (duplicates removed)
+     * @param denied  the requested IDs that were not visible, with the reason, in request order
+     */
+    public record Result(List<Photo> visible, Map<UUID, PhotoAccessDenialReason> denied) {}
+
+    public PhotoVisibilityEvaluator(PhotoRepository photoRepository, FriendshipRepository friendshipRepository) {
+        this.photoRepository = photoRepository;
+        this.friendshipRepository = friendshipRepository;
+    }
+
+    public Result evaluate(List<UUID> photoIds, User viewer) {
+        if (photoIds == null || photoIds.isEmpty()) {
+            return new Result(List.of(), Map.of());
+        }
+
+        Set<UUID> requestedIds = new LinkedHashSet<>(photoIds);
+        requestedIds.remove(null);
+        Map<UUID, Photo> photosById = photoRepository.findAllById(requestedIds).stream()
+                .collect(Collectors.toMap(Photo::getId, Function.identity()));
+
+        // Die Freundes-IDs werden nur geladen, wenn sie für die Entscheidung überhaupt gebraucht werden
+        Set<UUID> friendIds = null;
+
+        List<Photo> visible = new ArrayList<>(photosById.size());
+        Map<UUID, PhotoAccessDenialReason> denied = new LinkedHashMap<>();
+        for (UUID photoId : requestedIds) {
+            Photo photo = photosById.get(photoId);
+            if (photo == null) {
+                denied.put(photoId, PhotoAccessDenialReason.NOT_FOUND);
+                continue;
+            }
+
+            UUID uploaderId = photo.getUploader().getId();
+            if (uploaderId.equals(viewer.getId()) || isVisibleToEveryone(photo.getVisibility())) {
+                visible.add(photo);
+                continue;
+            }
+
+            if (friendIds == null) {
+                friendIds = new HashSet<>(friendshipRepository.findAcceptedFriendIds(viewer.getId()));
+            }
+            if (photo.getVisibility() == PhotoVisibility.FRIENDS && friendIds.contains(uploaderId)) {
+                visible.add(photo);
+            } else {
+                denied.put(photoId, PhotoAccessDenialReason.NOT_FRIENDS);
+            }
+        }
+        return new Result(visible, denied);
+    }
+
+    private static boolean isVisibleToEveryone(PhotoVisibility visibility) {
+        return visibility == PhotoVisibility.PUBLIC || visibility == PhotoVisibility.VISIBLE_TO_ALL;
+    }
+}
@@ -0,0 +1,281 @@
+package com.iris.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.PlaceStats;
+import com.iris.backend.model.PlaceStatsSweep;
+import com.iris.backend.repository.PlaceStatsRepository;
+import com.iris.backend.repository.PlaceStatsSweepRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps the {@code place_stats} table in sync with the photos.
+ *
+ * Uploads are counted in incrementally and deletions recompute their place, both inside the
+ * transaction of the photo change. Expiry needs no write on the photo, so a periodic sweep recomputes
+ * every place with a photo that expired since the previous sweep; until then, counts and cover may
+ * include photos that expired less than one sweep interval ago. The sweep watermark lives in the
+ * database ({@link PlaceStatsSweep}), so across all instances every interval is swept once.
+ *
+ * The table is filled once for photos uploaded before it existed: the first instance that starts
+ * without a sweep watermark rebuilds it (only if it is still empty) under an advisory lock.
+ *
+ * Distinct uploaders are counted with an {@link UploaderSketch} per place. An upload reads the stored
+ * sketch after the counter upsert has locked the row until commit, so it always continues the committed
+ * state (also when another instance changed it), writes it only when it changed and never counts the
+ * place's photos. The sketch counts everyone who ever uploaded at the place: neither deletions nor the
+ * expiry of photos take an uploader out again, so a manual delete and {@link PhotoExpirySweeper} agree on
+ * the count.
+ */
+@Service
+public class PlaceStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlaceStatsService.class);
+
+    // Intervall über alle Ablaufzeitpunkte: berechnet jeden Ort mit mindestens einem Foto neu
+    private static final OffsetDateTime BEGINNING = OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final OffsetDateTime END = OffsetDateTime.of(9999, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    // Zeilen pro UPDATE beim Nachfüllen fehlender Skizzen
+    private static final int SKETCH_BATCH_SIZE = 500;
+    // Beliebige feste Zahl, identisch auf allen Instanzen
+    private static final long BACKFILL_LOCK_KEY = 0x706c6163L;
+
+    // Genau eine der beiden IDs ist gesetzt
+    private record PlaceKey(Long googlePlaceId, UUID customPlaceId) {}
+
+    // Eine Zeile für fillMissing*Sketches; die Feldnamen sind die JSON-Keys der Query
+    record SketchRow(Object placeId, byte[] sketch, long uploaderCount) {}
+
+    private final PlaceStatsRepository placeStatsRepository;
+    private final PlaceStatsSweepRepository placeStatsSweepRepository;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    @Autowired
+    public PlaceStatsService(PlaceStatsRepository placeStatsRepository,
+                             PlaceStatsSweepRepository placeStatsSweepRepository,
+                             ObjectMapper objectMapper) {
+        this(placeStatsRepository, placeStatsSweepRepository, objectMapper, Clock.systemUTC());
+    }
+
+    PlaceStatsService(PlaceStatsRepository placeStatsRepository, PlaceStatsSweepRepository placeStatsSweepRepository,
+                      ObjectMapper objectMapper, Clock clock) {
+        this.placeStatsRepository = placeStatsRepository;
+        this.placeStatsSweepRepository = placeStatsSweepRepository;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+    }
+
+    /**
+     * Counts a freshly saved photo into the stats of its place. Photos without a place are ignored.
+     */
+    @Transactional
+    public void onPhotoCreated(Photo photo) {
+        String visibility = photo.getVisibility().name();
+        PlaceKey place;
+        if (photo.getGooglePlace() != null) {
+            place = new PlaceKey(photo.getGooglePlace().getId(), null);
+            placeStatsRepository.addGooglePlacePhoto(place.googlePlaceId(), visibility, photo.getStorageUrl(),
+                    photo.getUploadedAt());
+        } else if (photo.getCustomPlace() != null) {
+            place = new PlaceKey(null, photo.getCustomPlace().getId());
+            placeStatsRepository.addCustomPlacePhoto(place.customPlaceId(), visibility, photo.getStorageUrl(),
+                    photo.getUploadedAt());
+        } else {
+            return;
+        }
+
+        UploaderSketch sketch = lockedSketch(place);
+        if (!sketch.add(photo.getUploader().getId())) {
+            return; // Uploader schon gezählt: nichts zu schreiben
+        }
+        writeSketch(place, sketch.toBytes(), sketch.estimate());
+    }
+
+    /**
+     * Recomputes the stats of the places of photos that were just deleted (each place once). The uploader
+     * sketch is left alone: the participant count is all-time, like after the expiry sweep.
+     */
+    @Transactional
+    public void onPhotosDeleted(Collection<Photo> photos) {
+        Set<Long> googlePlaceIds = new HashSet<>();
+        Set<UUID> customPlaceIds = new HashSet<>();
+        for (Photo photo : photos) {
+            if (photo.getGooglePlace() != null) {
+                googlePlaceIds.add(photo.getGooglePlace().getId());
+            } else if (photo.getCustomPlace() != null) {
+                customPlaceIds.add(photo.getCustomPlace().getId());
+            }
+        }
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        for (Long placeId : googlePlaceIds) {
+            placeStatsRepository.recomputeGooglePlace(placeId, now);
+        }
+        for (UUID placeId : customPlaceIds) {
+            placeStatsRepository.recomputeCustomPlace(placeId, now);
+        }
+    }
+
+    /**
+     * Number of distinct uploaders over several places, e.g. all Google and Custom Places of an area.
+     * Exact up to {@link UploaderSketch#EXACT_LIMIT} uploaders, estimated above. Places that have no
+     * sketch yet (before the backfill filled it) are not counted.
+     */
+    @Transactional(readOnly = true)
+    public long countDistinctUploaders(Collection<Long> googlePlaceIds, Collection<UUID> customPlaceIds) {
+        UploaderSketch union = new UploaderSketch();
+        if (!googlePlaceIds.isEmpty()) {
+            for (PlaceStats stats : placeStatsRepository.findAllByGooglePlaceIdIn(googlePlaceIds)) {
+                mergeInto(union, stats.getUploaderSketch());
+            }
+        }
+        if (!customPlaceIds.isEmpty()) {
+            for (PlaceStats stats : placeStatsRepository.findAllByCustomPlaceIdIn(customPlaceIds)) {
+                mergeInto(union, stats.getUploaderSketch());
+            }
+        }
+        return union.estimate();
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void load() {
+        backfill();
+    }
+
+    /**
+     * One-time backfill: if no sweep watermark exists yet, recomputes every place that has photos
+     * (only if {@code place_stats} is still empty), fills missing uploader sketches and creates the
+     * watermark. Runs on one instance only; the others skip it while the advisory lock is held.
+     */
+    @Transactional
+    public void backfill() {
+        if (!placeStatsRepository.tryAdvisoryXactLock(BACKFILL_LOCK_KEY)
+                || placeStatsSweepRepository.existsById(PlaceStatsSweep.ID)) {
+            return; // Andere Instanz füllt gerade oder es ist schon geschehen
+        }
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        int places = 0;
+        if (!placeStatsRepository.existsAny()) {
+            places = recompute(BEGINNING, END, now);
+        }
+        int sketched = fillMissingSketches();
+        placeStatsSweepRepository.save(new PlaceStatsSweep(PlaceStatsSweep.ID, now));
+        logger.info("Place stats backfilled for {} places ({} uploader sketches filled)", places, sketched);
+    }
+
+    /**
+     * Recomputes the places with photos that expired since the previous sweep of any instance.
+     * Skips the round while another instance sweeps or before the backfill created the watermark.
+     */
+    @Scheduled(fixedDelayString = "${place-stats.sweep-interval-ms:60000}")
+    @Transactional
+    public void sweepExpired() {
+        Optional<PlaceStatsSweep> sweep = placeStatsSweepRepository.lockIfAvailable(PlaceStatsSweep.ID);
+        if (sweep.isEmpty()) {
+            return;
+        }
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        int places = recompute(sweep.get().getSweptUntil(), now, now);
+        sweep.get().setSweptUntil(now);
+        placeStatsSweepRepository.save(sweep.get());
+        if (places > 0) {
+            logger.debug("Place stats recomputed for {} places with expired photos", places);
+        }
+    }
+
+    private int recompute(OffsetDateTime expiredAfter, OffsetDateTime expiredUntil, OffsetDateTime now) {
+        return placeStatsRepository.recomputeGooglePlacesWithExpiries(expiredAfter, expiredUntil, now)
+                + placeStatsRepository.recomputeCustomPlacesWithExpiries(expiredAfter, expiredUntil, now);
+    }
+
+    // Skizzen für Zeilen ohne Skizze aus den Fotos aufbauen (z.B. Orte von vor der Einführung der Skizzen)
+    private int fillMissingSketches() {
+        Map<Object, List<UUID>> googleUploaders = new HashMap<>();
+        placeStatsRepository.findGooglePlaceUploadersWithoutSketch().forEach(row ->
+                googleUploaders.computeIfAbsent(row.getPlaceId(), key -> new ArrayList<>()).add(row.getUploaderId()));
+        Map<Object, List<UUID>> customUploaders = new HashMap<>();
+        placeStatsRepository.findCustomPlaceUploadersWithoutSketch().forEach(row ->
+                customUploaders.computeIfAbsent(row.getPlaceId(), key -> new ArrayList<>()).add(row.getUploaderId()));
+        return fillSketches(googleUploaders, placeStatsRepository::fillMissingGooglePlaceSketches)
+                + fillSketches(customUploaders, placeStatsRepository::fillMissingCustomPlaceSketches);
+    }
+
+    private int fillSketches(Map<Object, List<UUID>> uploadersByPlace, ToIntFunction<String> writer) {
+        int filled = 0;
+        List<SketchRow> batch = new ArrayList<>(SKETCH_BATCH_SIZE);
+        for (Map.Entry<Object, List<UUID>> entry : uploadersByPlace.entrySet()) {
+            UploaderSketch sketch = UploaderSketch.of(entry.getValue());
+            batch.add(new SketchRow(entry.getKey(), sketch.toBytes(), sketch.estimate()));
+            if (batch.size() == SKETCH_BATCH_SIZE) {
+                filled += writeBatch(batch, writer);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            filled += writeBatch(batch, writer);
+        }
+        return filled;
+    }
+
+    private int writeBatch(List<SketchRow> batch, ToIntFunction<String> writer) {
+        try {
+            return writer.applyAsInt(objectMapper.writeValueAsString(batch));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize uploader sketches", e);
+        }
+    }
+
+    // Erst nach dem Upsert aufrufen: die Zeile ist dann bis zum Commit gesperrt, die gelesene Skizze ist
+    // also der committete Stand, auch wenn eine andere Instanz sie zuletzt geschrieben hat
+    private UploaderSketch lockedSketch(PlaceKey place) {
+        byte[] stored = place.googlePlaceId() != null
+                ? placeStatsRepository.findGooglePlaceSketch(place.googlePlaceId())
+                : placeStatsRepository.findCustomPlaceSketch(place.customPlaceId());
+        if (stored != null) {
+            return UploaderSketch.fromBytes(stored);
+        }
+        return UploaderSketch.of(place.googlePlaceId() != null
+                ? placeStatsRepository.findUploaderIdsByGooglePlace(place.googlePlaceId())
+                : placeStatsRepository.findUploaderIdsByCustomPlace(place.customPlaceId()));
+    }
+
+    private void writeSketch(PlaceKey place, byte[] bytes, long uploaderCount) {
+        if (place.googlePlaceId() != null) {
+            placeStatsRepository.updateGooglePlaceSketch(place.googlePlaceId(), bytes, uploaderCount);
+        } else {
+            placeStatsRepository.updateCustomPlaceSketch(place.customPlaceId(), bytes, uploaderCount);
+        }
+    }
+
+    private static void mergeInto(UploaderSketch union, byte[] stored) {
+        if (stored != null) {
+            union.merge(UploaderSketch.fromBytes(stored));
+        }
+    }
+}
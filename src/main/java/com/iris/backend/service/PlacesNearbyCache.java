@@ -0,0 +1,229 @@
+package com.iris.backend.service;
+
+import com.iris.backend.dto.feed.GalleryFeedItemDTO;
+import com.iris.backend.geo.Geohash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Caches Google Places nearby-search results per geohash cell.
+ *
+ * Users standing close to each other (same block, same event) all open the camera at nearly the same
+ * position. Instead of a blocking Places API call per request, the whole cell is searched once and the
+ * result is shared until the TTL expires. Cells without any places are cached as well (with their own,
+ * usually shorter TTL), failures are not cached.
+ *
+ * The Places API returns at most one page of results, ranked by prominence. In dense areas a cell search
+ * can hit that cap and miss small places next to the caller; such cells are cached as not
+ * {@linkplain CellPlaces#complete() complete} and the caller has to search around its own position.
+ *
+ * Concurrent lookups of the same cell are collapsed: the first caller loads, all others wait for its
+ * result. After a miss the eight neighbouring cells can be prefetched in the background (at most
+ * {@code places.nearby-cache.max-parallel-prefetches} at a time), so walking into the next cell is
+ * served locally. That costs up to eight more billed API calls per miss and is off by default
+ * ({@code places.nearby-cache.prefetch-neighbors}).
+ */
+@Component
+public class PlacesNearbyCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlacesNearbyCache.class);
+
+    // Präzision 7 = Zellen von ca. 153 x 153 m (am Äquator)
+    public static final int CELL_PRECISION = 7;
+
+    /**
+     * The places found for a cell.
+     *
+     * @param complete false if the search hit the result cap of the Places API, i.e. places may be missing
+     */
+    public record CellPlaces(List<GalleryFeedItemDTO> places, boolean complete) {
+        public CellPlaces {
+            places = List.copyOf(places);
+        }
+    }
+
+    private record Entry(CellPlaces places, Instant expiresAt) {}
+
+    private final Map<String, Entry> entries;
+    private final ConcurrentMap<String, CompletableFuture<CellPlaces>> inFlight = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final boolean prefetchNeighbors;
+    private final Clock clock;
+    private final Semaphore prefetchPermits;
+    private final ExecutorService prefetchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public PlacesNearbyCache(MeterRegistry meterRegistry,
+                             @Value("${places.nearby-cache.ttl-minutes:360}") long ttlMinutes,
+                             @Value("${places.nearby-cache.negative-ttl-minutes:60}") long negativeTtlMinutes,
+                             @Value("${places.nearby-cache.max-size:20000}") int maxSize,
+                             @Value("${places.nearby-cache.prefetch-neighbors:false}") boolean prefetchNeighbors,
+                             @Value("${places.nearby-cache.max-parallel-prefetches:2}") int maxParallelPrefetches) {
+        this(meterRegistry, Duration.ofMinutes(ttlMinutes), Duration.ofMinutes(negativeTtlMinutes), maxSize,
+                prefetchNeighbors, maxParallelPrefetches, Clock.systemUTC());
+    }
+
+    PlacesNearbyCache(MeterRegistry meterRegistry, Duration ttl, Duration negativeTtl, int maxSize,
+                      boolean prefetchNeighbors, int maxParallelPrefetches, Clock clock) {
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.prefetchNeighbors = prefetchNeighbors;
+        this.clock = clock;
+        this.prefetchPermits = new Semaphore(Math.max(1, maxParallelPrefetches));
+        this.hits = meterRegistry.counter("iris.places_nearby_cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("iris.places_nearby_cache.requests", "result", "miss");
+
+        // LRU wie beim SignedUrlCache
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        Gauge.builder("iris.places_nearby_cache.size", this, PlacesNearbyCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the places of the cell containing the coordinate, loading them if necessary.
+     *
+     * @param latitude  latitude of the caller
+     * @param longitude longitude of the caller
+     * @param loader    searches a whole cell (by geohash); throws on failure, the failure is not cached
+     * @return the places of the cell (possibly empty)
+     */
+    public CellPlaces get(double latitude, double longitude, Function<String, CellPlaces> loader) {
+        String cell = Geohash.encode(latitude, longitude, CELL_PRECISION);
+        CellPlaces cached = lookup(cell);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        CellPlaces places = load(cell, loader);
+        if (prefetchNeighbors) {
+            prefetch(cell, loader);
+        }
+        return places;
+    }
+
+    /**
+     * Drops all cached cells.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private CellPlaces lookup(String cell) {
+        Instant now = clock.instant();
+        synchronized (entries) {
+            Entry entry = entries.get(cell);
+            if (entry == null) {
+                return null;
+            }
+            if (!entry.expiresAt().isAfter(now)) {
+                entries.remove(cell);
+                return null;
+            }
+            return entry.places();
+        }
+    }
+
+    // Single-Flight: pro Zelle lädt nur ein Thread, alle anderen warten auf dessen Ergebnis
+    private CellPlaces load(String cell, Function<String, CellPlaces> loader) {
+        CompletableFuture<CellPlaces> own = new CompletableFuture<>();
+        CompletableFuture<CellPlaces> running = inFlight.putIfAbsent(cell, own);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            // Ein anderer Thread kann zwischen lookup() und putIfAbsent() fertig geworden sein
+            CellPlaces places = lookup(cell);
+            if (places == null) {
+                places = loader.apply(cell);
+                store(cell, places);
+            }
+            own.complete(places);
+            return places;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cell, own);
+        }
+    }
+
+    private void store(String cell, CellPlaces places) {
+        Instant expiresAt = clock.instant().plus(places.places().isEmpty() ? negativeTtl : ttl);
+        synchronized (entries) {
+            entries.put(cell, new Entry(places, expiresAt));
+        }
+    }
+
+    private void prefetch(String cell, Function<String, CellPlaces> loader) {
+        for (String neighbor : Geohash.neighbors(cell)) {
+            if (lookup(neighbor) != null || inFlight.containsKey(neighbor)) {
+                continue;
+            }
+            prefetchExecutor.submit(() -> {
+                try {
+                    prefetchPermits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    load(neighbor, loader);
+                } catch (RuntimeException e) {
+                    logger.debug("Prefetch of places for cell {} failed: {}", neighbor, e.getMessage());
+                } finally {
+                    prefetchPermits.release();
+                }
+            });
+        }
+    }
+
+    private static CellPlaces await(CompletableFuture<CellPlaces> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.iris.backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Uniform latitude/longitude grid of user IDs for the presence store.
+ *
+ * Each cell is a set of user IDs. Cells are only changed inside {@code compute} of the cell map, so
+ * writers lock just the bin of the affected cell (lock striping) and readers never block. A radius
+ * query only visits the cells overlapping the bounding box of the circle; the caller does the exact
+ * distance and freshness check.
+ */
+final class PresenceGrid {
+
+    // Kleinste Länge eines Breitengrads bzw. (am Äquator) eines Längengrads auf dem WGS84-Ellipsoid
+    private static final double MIN_METERS_PER_DEGREE_LATITUDE = 110_574;
+    private static final double METERS_PER_DEGREE_LONGITUDE = 111_319;
+    // Mehr Zellen als das: lieber einmal über alle belegten Zellen gehen
+    private static final long MAX_CELLS_PER_QUERY = 4096;
+
+    private final double cellDegrees;
+    private final ConcurrentMap<Long, Set<UUID>> cells = new ConcurrentHashMap<>();
+
+    PresenceGrid(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+
+    long cellOf(double latitude, double longitude) {
+        return key(row(latitude), column(longitude));
+    }
+
+    void add(UUID userId, long cell) {
+        cells.compute(cell, (key, users) -> {
+            Set<UUID> result = users != null ? users : ConcurrentHashMap.newKeySet();
+            result.add(userId);
+            return result;
+        });
+    }
+
+    void remove(UUID userId, long cell) {
+        cells.computeIfPresent(cell, (key, users) -> {
+            users.remove(userId);
+            return users.isEmpty() ? null : users;
+        });
+    }
+
+    /**
+     * All users in the cells overlapping the circle (may contain users outside of it, and a user
+     * that is just moving may show up twice).
+     */
+    List<UUID> candidates(double latitude, double longitude, double radiusMeters) {
+        double latDelta = radiusMeters / MIN_METERS_PER_DEGREE_LATITUDE;
+        double maxAbsLatitude = Math.min(90, Math.abs(latitude) + latDelta);
+        double cos = Math.cos(Math.toRadians(maxAbsLatitude));
+        double lonDelta = cos < 1e-6 ? 360 : radiusMeters / (METERS_PER_DEGREE_LONGITUDE * cos);
+
+        int minRow = row(Math.max(-90, latitude - latDelta));
+        int maxRow = row(Math.min(90, latitude + latDelta));
+        // Über die Datumsgrenze hinweg wird nicht gesucht (keine Nutzer dort)
+        int minColumn = column(Math.max(-180, longitude - lonDelta));
+        int maxColumn = column(Math.min(180, longitude + lonDelta));
+
+        List<UUID> result = new ArrayList<>();
+        long cellCount = (long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
+        if (cellCount > MAX_CELLS_PER_QUERY) {
+            cells.forEach((key, users) -> {
+                int row = (int) (key >> 32);
+                int column = (int) (long) key;
+                if (row >= minRow && row <= maxRow && column >= minColumn && column <= maxColumn) {
+                    result.addAll(users);
+                }
+            });
+            return result;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                Set<UUID> users = cells.get(key(row, column));
+                if (users != null) {
+                    result.addAll(users);
+                }
+            }
+        }
+        return result;
+    }
+
+    int cellCount() {
+        return cells.size();
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+}
@@ -0,0 +1,341 @@
+package com.iris.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.geo.Geodesy;
+import com.iris.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the latest location of every active user in memory.
+ *
+ * Location pings only update this store; {@code users.last_location} is written behind in batches:
+ * a user is persisted once they moved more than {@code presence.significant-move-meters} away from
+ * the last persisted position, or when the persisted position is older than
+ * {@code presence.persist-interval-seconds} (so SQL queries with the 5-minute freshness filter stay
+ * correct). Entries older than the TTL (5 minutes, like the freshness filter) are evicted.
+ *
+ * Users are additionally kept in a uniform grid ({@link PresenceGrid}), so radius queries only look at
+ * the cells around the caller instead of every active user; stale users are skipped during the query
+ * and leave the grid on eviction.
+ *
+ * After startup the store is filled with the users whose persisted location is still fresh. Until
+ * then the read methods return empty and callers use the SQL queries instead.
+ *
+ * Pings of other instances only reach this store through the database: {@link #sync} merges the
+ * recently written locations every few seconds, so a user is found no matter which instance received
+ * the ping. The default significant move is therefore small (GPS jitter), so other instances see
+ * movements within one flush and sync interval.
+ */
+@Component
+public class PresenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceService.class);
+
+    // Eine Zeile trägt die Zeit des Pings, wird aber erst beim nächsten Flush der anderen Instanz geschrieben
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    /**
+     * The latest known location of a user.
+     */
+    public record Location(double latitude, double longitude, Instant updatedAt) {}
+
+    // Nur Primitive: aktuelle Position und Grid-Zelle plus die zuletzt geschriebene Position
+    // (persistedAtMillis = 0: nie geschrieben)
+    private record Presence(double latitude, double longitude, long updatedAtMillis, long cell,
+                            double persistedLatitude, double persistedLongitude, long persistedAtMillis) {}
+
+    private record Candidate(UUID userId, double distanceMeters) {}
+
+    // Eine Zeile für UserRepository#updateLocations; die Feldnamen sind die JSON-Keys der Query
+    record LocationRow(UUID id, double latitude, double longitude, Instant updatedAt) {}
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration persistInterval;
+    private final double significantMoveMeters;
+    private final Clock clock;
+    private final Counter pings;
+    private final Counter writes;
+
+    private final PresenceGrid grid;
+    private final ConcurrentMap<UUID, Presence> presences = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+    private volatile Instant syncedAt;
+
+    @Autowired
+    public PresenceService(UserRepository userRepository,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${presence.ttl-minutes:5}") long ttlMinutes,
+                           @Value("${presence.persist-interval-seconds:120}") long persistIntervalSeconds,
+                           @Value("${presence.significant-move-meters:10}") double significantMoveMeters,
+                           @Value("${presence.grid-cell-degrees:0.01}") double gridCellDegrees) {
+        this(userRepository, objectMapper, meterRegistry, Duration.ofMinutes(ttlMinutes),
+                Duration.ofSeconds(persistIntervalSeconds), significantMoveMeters, gridCellDegrees, Clock.systemUTC());
+    }
+
+    PresenceService(UserRepository userRepository, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                    Duration ttl, Duration persistInterval, double significantMoveMeters, double gridCellDegrees,
+                    Clock clock) {
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.persistInterval = persistInterval;
+        this.significantMoveMeters = significantMoveMeters;
+        this.clock = clock;
+        this.grid = new PresenceGrid(gridCellDegrees);
+        this.pings = meterRegistry.counter("iris.presence.pings");
+        this.writes = meterRegistry.counter("iris.presence.writes");
+        Gauge.builder("iris.presence.users", presences, Map::size).register(meterRegistry);
+        Gauge.builder("iris.presence.grid_cells", grid, PresenceGrid::cellCount).register(meterRegistry);
+    }
+
+    /**
+     * Fills the store with all users whose persisted location is younger than the TTL.
+     * Pings that arrived in the meantime are newer and win.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Instant startedAt = clock.instant();
+        List<UserRepository.LocationProjection> rows;
+        try {
+            rows = userRepository.findLocationsUpdatedSince(startedAt.minus(ttl).atOffset(ZoneOffset.UTC));
+        } catch (RuntimeException e) {
+            logger.error("Could not load presence store, using SQL only: {}", e.getMessage());
+            return;
+        }
+        merge(rows);
+        syncedAt = startedAt;
+        loaded = true;
+        logger.info("Presence store loaded: {} active users", rows.size());
+    }
+
+    /**
+     * Merges the locations other instances wrote since the last sync. Newer local pings win.
+     */
+    @Scheduled(fixedDelayString = "${presence.sync-interval-ms:5000}",
+            initialDelayString = "${presence.sync-interval-ms:5000}")
+    public void sync() {
+        if (!loaded) {
+            return;
+        }
+        Instant startedAt = clock.instant();
+        Instant since = syncedAt.minus(SYNC_OVERLAP);
+        Instant ttlCutoff = startedAt.minus(ttl);
+        if (since.isBefore(ttlCutoff)) {
+            since = ttlCutoff;
+        }
+        try {
+            merge(userRepository.findLocationsUpdatedSince(since.atOffset(ZoneOffset.UTC)));
+        } catch (RuntimeException e) {
+            // Nächster Versuch liest ab demselben Zeitpunkt
+            logger.warn("Could not sync presence store: {}", e.getMessage());
+            return;
+        }
+        syncedAt = startedAt;
+    }
+
+    /**
+     * Records a location ping. Does not touch the database.
+     */
+    public void update(UUID userId, double latitude, double longitude) {
+        long now = clock.millis();
+        long cell = grid.cellOf(latitude, longitude);
+        presences.compute(userId, (id, current) -> moveInGrid(id, current, current == null
+                ? new Presence(latitude, longitude, now, cell, 0, 0, 0)
+                : new Presence(latitude, longitude, now, cell,
+                        current.persistedLatitude(), current.persistedLongitude(), current.persistedAtMillis())));
+        dirty.add(userId);
+        pings.increment();
+    }
+
+    /**
+     * Returns the fresh locations of the given users; users without a fresh location are missing.
+     *
+     * @return the locations by user, or empty if the store is not loaded yet
+     */
+    public Optional<Map<UUID, Location>> findActive(Collection<UUID> userIds) {
+        if (!loaded) {
+            return Optional.empty();
+        }
+        long cutoff = clock.millis() - ttl.toMillis();
+        Map<UUID, Location> result = new HashMap<>();
+        for (UUID userId : userIds) {
+            Presence presence = presences.get(userId);
+            if (presence != null && presence.updatedAtMillis() > cutoff) {
+                result.put(userId, toLocation(presence));
+            }
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * Finds the users with a fresh location within the radius, nearest first.
+     *
+     * @param include only users passing this filter are returned (applied before the limit)
+     * @param limit   maximum number of users
+     * @return the user IDs ordered by distance, or empty if the store is not loaded yet
+     */
+    public Optional<List<UUID>> findNearest(double latitude, double longitude, double radiusMeters, int limit,
+                                            Predicate<UUID> include) {
+        if (!loaded) {
+            return Optional.empty();
+        }
+        long cutoff = clock.millis() - ttl.toMillis();
+        Set<UUID> seen = new HashSet<>();
+        List<Candidate> candidates = new ArrayList<>();
+        for (UUID userId : grid.candidates(latitude, longitude, radiusMeters)) {
+            if (!seen.add(userId) || !include.test(userId)) {
+                continue;
+            }
+            Presence presence = presences.get(userId);
+            if (presence == null || presence.updatedAtMillis() <= cutoff) {
+                continue; // Veraltet: wird beim nächsten Flush entfernt
+            }
+            double distance = Geodesy.distanceMeters(latitude, longitude, presence.latitude(), presence.longitude());
+            if (distance <= radiusMeters) {
+                candidates.add(new Candidate(userId, distance));
+            }
+        }
+        return Optional.of(candidates.stream()
+                .sorted(Comparator.comparingDouble(Candidate::distanceMeters))
+                .limit(limit)
+                .map(Candidate::userId)
+                .toList());
+    }
+
+    /**
+     * Writes all users that moved significantly or whose persisted location is getting old
+     * with one UPDATE, then evicts users that have not sent a ping within the TTL.
+     */
+    @Scheduled(fixedDelayString = "${presence.flush-interval-ms:10000}")
+    public void flush() {
+        persist(false);
+
+        long cutoff = clock.millis() - ttl.toMillis();
+        for (UUID userId : presences.keySet()) {
+            // Im Lock des Eintrags, damit ein gleichzeitiger Ping nicht mitentfernt wird
+            presences.computeIfPresent(userId, (id, presence) -> {
+                if (presence.updatedAtMillis() > cutoff || dirty.contains(id)) {
+                    return presence;
+                }
+                grid.remove(id, presence.cell());
+                return null;
+            });
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        persist(true);
+    }
+
+    public int size() {
+        return presences.size();
+    }
+
+    private void persist(boolean all) {
+        long now = clock.millis();
+        Map<UUID, Presence> due = new HashMap<>();
+        for (UUID userId : dirty) {
+            Presence presence = presences.get(userId);
+            if (presence == null) {
+                dirty.remove(userId);
+            } else if (all || isDue(presence, now)) {
+                due.put(userId, presence);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        List<LocationRow> rows = new ArrayList<>(due.size());
+        due.forEach((userId, presence) -> rows.add(new LocationRow(userId, presence.latitude(), presence.longitude(),
+                Instant.ofEpochMilli(presence.updatedAtMillis()))));
+        try {
+            userRepository.updateLocations(objectMapper.writeValueAsString(rows));
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Bleiben dirty und werden beim nächsten Flush erneut versucht
+            logger.warn("Could not persist {} user locations: {}", rows.size(), e.getMessage());
+            return;
+        }
+        writes.increment(rows.size());
+
+        due.forEach((userId, written) -> presences.computeIfPresent(userId, (id, current) -> {
+            // Nur sauber, wenn seit dem Schreiben kein neuer Ping kam (update() wartet auf diesen Lock)
+            if (current.updatedAtMillis() == written.updatedAtMillis()) {
+                dirty.remove(id);
+            }
+            return new Presence(current.latitude(), current.longitude(), current.updatedAtMillis(), current.cell(),
+                    written.latitude(), written.longitude(), written.updatedAtMillis());
+        }));
+    }
+
+    private void merge(List<UserRepository.LocationProjection> rows) {
+        for (UserRepository.LocationProjection row : rows) {
+            long updatedAt = row.getUpdatedAt().toEpochMilli();
+            long cell = grid.cellOf(row.getLatitude(), row.getLongitude());
+            Presence persisted = new Presence(row.getLatitude(), row.getLongitude(), updatedAt, cell,
+                    row.getLatitude(), row.getLongitude(), updatedAt);
+            presences.compute(row.getId(), (id, current) -> {
+                if (current != null && current.updatedAtMillis() >= updatedAt) {
+                    return current;
+                }
+                // Die Zeile ist neuer als jeder lokale Ping und bereits geschrieben
+                dirty.remove(id);
+                return moveInGrid(id, current, persisted);
+            });
+        }
+    }
+
+    // Nur innerhalb von presences.compute aufrufen (Lock des Eintrags)
+    private Presence moveInGrid(UUID userId, Presence current, Presence next) {
+        if (current == null) {
+            grid.add(userId, next.cell());
+        } else if (current.cell() != next.cell()) {
+            grid.remove(userId, current.cell());
+            grid.add(userId, next.cell());
+        }
+        return next;
+    }
+
+    private boolean isDue(Presence presence, long now) {
+        if (presence.persistedAtMillis() == 0) {
+            return true; // Noch nie geschrieben (z.B. erster Ping nach langer Pause)
+        }
+        if (now - presence.persistedAtMillis() >= persistInterval.toMillis()) {
+            return true;
+        }
+        return Geodesy.distanceMeters(presence.persistedLatitude(), presence.persistedLongitude(),
+                presence.latitude(), presence.longitude()) >= significantMoveMeters;
+    }
+
+    private static Location toLocation(Presence presence) {
+        return new Location(presence.latitude(), presence.longitude(), Instant.ofEpochMilli(presence.updatedAtMillis()));
+    }
+}
@@ -0,0 +1,169 @@
+package com.iris.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * In-memory cache for V4 signed URLs.
+ *
+ * Every DTO in the app carries one or more signed URLs, and each signature is an RSA operation.
+ * Instead of signing "now + duration" on every call, the cache signs up to an expiry that is aligned
+ * to a fixed time bucket of the requested TTL class. All requests for the same object and TTL class
+ * that arrive within that bucket get the very same URL, across requests and users.
+ *
+ * A handed-out URL is always valid for at least the requested duration: the signed expiry is pushed
+ * one bucket beyond the requested duration, and an entry is only reused while its remaining lifetime
+ * still covers the requested duration (that extra bucket is the refresh margin).
+ *
+ * The cache is bounded (LRU) and entries that no longer satisfy the margin are dropped on access.
+ * A URL signed while {@link #invalidate} ran is handed out but not cached, so a miss racing with a
+ * delete cannot put the URL of the deleted object back.
+ */
+@Component
+public class SignedUrlCache {
+
+    /**
+     * Anzahl Buckets pro TTL-Klasse. Bei 15 Minuten ergibt das 5-Minuten-Buckets,
+     * d.h. eine URL wird bis zu 5 Minuten lang wiederverwendet.
+     */
+    private static final int BUCKETS_PER_TTL = 3;
+    private static final Duration MIN_BUCKET = Duration.ofMinutes(1);
+
+    /**
+     * Cache key: bucket, object and TTL class (requested duration in seconds).
+     */
+    record Key(String bucketName, String objectName, long ttlSeconds) {}
+
+    /**
+     * A signed URL together with the instant at which GCS stops accepting it.
+     */
+    record SignedUrl(String url, Instant expiresAt) {}
+
+    /**
+     * The duration to pass to the signer, computed from the aligned expiry.
+     */
+    public record SigningRequest(long durationSeconds, Instant expiresAt) {}
+
+    private final Map<Key, SignedUrl> entries;
+    private final Clock clock;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    // Wird bei jedem invalidate() erhöht (unter dem Lock von entries)
+    private long invalidations;
+
+    @Autowired
+    public SignedUrlCache(MeterRegistry meterRegistry,
+                          @Value("${gcs.signed-url-cache.max-size:10000}") int maxSize) {
+        this(meterRegistry, maxSize, Clock.systemUTC());
+    }
+
+    SignedUrlCache(MeterRegistry meterRegistry, int maxSize, Clock clock) {
+        this.clock = clock;
+        this.hits = meterRegistry.counter("iris.signed_url_cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("iris.signed_url_cache.requests", "result", "miss");
+        this.evictions = meterRegistry.counter("iris.signed_url_cache.evictions");
+
+        // LinkedHashMap im Access-Order-Modus = LRU. Zugriffe sind kurz, daher reicht ein einfacher Lock.
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SignedUrl> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("iris.signed_url_cache.size", this, SignedUrlCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns a cached signed URL for the object or signs a new one.
+     *
+     * @param bucketName The bucket containing the object.
+     * @param objectName The (already normalized) object name.
+     * @param ttl        The validity the caller needs; this is the TTL class of the entry.
+     * @param signer     Signs the object for the given request; may return null on failure (not cached).
+     * @return A signed URL valid for at least {@code ttl}, or null if signing failed.
+     */
+    public String getOrSign(String bucketName, String objectName, Duration ttl, Function<SigningRequest, String> signer) {
+        Key key = new Key(bucketName, objectName, ttl.toSeconds());
+        Instant now = clock.instant();
+        long generation;
+
+        synchronized (entries) {
+            generation = invalidations;
+            SignedUrl cached = entries.get(key);
+            if (cached != null) {
+                if (!cached.expiresAt().isBefore(now.plus(ttl))) {
+                    hits.increment();
+                    return cached.url();
+                }
+                // Refresh-Margin unterschritten -> neu signieren
+                entries.remove(key);
+            }
+        }
+
+        misses.increment();
+        SigningRequest request = alignedSigningRequest(now, ttl);
+        // Signieren bewusst außerhalb des Locks; parallele Misses signieren im schlimmsten Fall doppelt.
+        String url = signer.apply(request);
+        if (url != null) {
+            synchronized (entries) {
+                // Während des Signierens wurde invalidiert: das Objekt ist evtl. schon gelöscht, nicht cachen
+                if (generation == invalidations) {
+                    entries.put(key, new SignedUrl(url, request.expiresAt()));
+                }
+            }
+        }
+        return url;
+    }
+
+    /**
+     * Drops all cached URLs (every TTL class) for an object, e.g. after it was deleted.
+     *
+     * @param objectName The normalized object name, as passed to {@link #getOrSign}.
+     */
+    public void invalidate(String bucketName, String objectName) {
+        synchronized (entries) {
+            invalidations++;
+            entries.keySet().removeIf(key -> key.bucketName().equals(bucketName) && key.objectName().equals(objectName));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Computes the expiry for a new signature: {@code now + ttl + one bucket}, rounded up to the
+     * next bucket boundary. Everything signed within the same bucket therefore shares one expiry.
+     */
+    static SigningRequest alignedSigningRequest(Instant now, Duration ttl) {
+        long bucketMillis = bucketSize(ttl).toMillis();
+        long earliest = now.plus(ttl).toEpochMilli() + bucketMillis;
+        long aligned = ((earliest + bucketMillis - 1) / bucketMillis) * bucketMillis;
+        Instant expiresAt = Instant.ofEpochMilli(aligned);
+        long durationSeconds = Math.max(1, Duration.between(now, expiresAt).toSeconds());
+        return new SigningRequest(durationSeconds, now.plusSeconds(durationSeconds));
+    }
+
+    private static Duration bucketSize(Duration ttl) {
+        Duration bucket = ttl.dividedBy(BUCKETS_PER_TTL);
+        return bucket.compareTo(MIN_BUCKET) < 0 ? MIN_BUCKET : bucket;
+    }
+}
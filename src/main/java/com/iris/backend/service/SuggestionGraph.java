@@ -0,0 +1,201 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.enums.FriendshipStatus;
+import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.PhotoRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of the friendship graph and of the places each user uploaded photos at, for
+ * {@link FriendSuggestionService}.
+ *
+ * Users and places are mapped to dense int indices; friends, relations (accepted or pending) and
+ * places of a user are sorted {@code int[]}, so exclusion checks are binary searches and the shared
+ * places of two users are counted with one linear merge.
+ */
+final class SuggestionGraph {
+
+    private static final int[] NONE = new int[0];
+
+    static final SuggestionGraph EMPTY = build(List.of(), List.of());
+
+    private final UUID[] userIds;
+    private final Map<UUID, Integer> indexByUserId;
+    private final int[][] friends;
+    private final int[][] related;
+    private final int[][] places;
+
+    private SuggestionGraph(UUID[] userIds, Map<UUID, Integer> indexByUserId, int[][] friends, int[][] related,
+                            int[][] places) {
+        this.userIds = userIds;
+        this.indexByUserId = indexByUserId;
+        this.friends = friends;
+        this.related = related;
+        this.places = places;
+    }
+
+    static SuggestionGraph build(List<FriendshipRepository.EdgeProjection> edges,
+                                 List<PhotoRepository.UploadPlaceProjection> uploads) {
+        // 1. User indizieren und Grade zählen
+        Map<UUID, Integer> index = new HashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        int[] edgeOne = new int[edges.size()];
+        int[] edgeTwo = new int[edges.size()];
+        boolean[] accepted = new boolean[edges.size()];
+        for (int i = 0; i < edges.size(); i++) {
+            FriendshipRepository.EdgeProjection edge = edges.get(i);
+            edgeOne[i] = index.computeIfAbsent(edge.getUserOneId(), id -> { ids.add(id); return ids.size() - 1; });
+            edgeTwo[i] = index.computeIfAbsent(edge.getUserTwoId(), id -> { ids.add(id); return ids.size() - 1; });
+            accepted[i] = edge.getStatus() == FriendshipStatus.ACCEPTED;
+        }
+        int userCount = ids.size();
+        int[] friendDegree = new int[userCount];
+        int[] relatedDegree = new int[userCount];
+        for (int i = 0; i < edgeOne.length; i++) {
+            relatedDegree[edgeOne[i]]++;
+            relatedDegree[edgeTwo[i]]++;
+            if (accepted[i]) {
+                friendDegree[edgeOne[i]]++;
+                friendDegree[edgeTwo[i]]++;
+            }
+        }
+
+        // 2. Adjazenzlisten füllen und sortieren
+        int[][] friends = allocate(friendDegree);
+        int[][] related = allocate(relatedDegree);
+        int[] friendFill = new int[userCount];
+        int[] relatedFill = new int[userCount];
+        for (int i = 0; i < edgeOne.length; i++) {
+            int one = edgeOne[i];
+            int two = edgeTwo[i];
+            related[one][relatedFill[one]++] = two;
+            related[two][relatedFill[two]++] = one;
+            if (accepted[i]) {
+                friends[one][friendFill[one]++] = two;
+                friends[two][friendFill[two]++] = one;
+            }
+        }
+        sortAll(friends);
+        sortAll(related);
+
+        // 3. Orte pro User (nur User, die im Graph vorkommen; ohne Freunde gibt es keine Vorschläge)
+        Map<Object, Integer> placeIndex = new HashMap<>();
+        List<List<Integer>> placesPerUser = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            placesPerUser.add(null);
+        }
+        for (PhotoRepository.UploadPlaceProjection upload : uploads) {
+            Integer user = index.get(upload.getUploaderId());
+            // Google- und Custom-IDs haben verschiedene Typen (Long/UUID) und kollidieren deshalb nicht
+            Object placeKey = upload.getGooglePlaceId() != null ? upload.getGooglePlaceId() : upload.getCustomPlaceId();
+            if (user == null || placeKey == null) {
+                continue;
+            }
+            int place = placeIndex.computeIfAbsent(placeKey, key -> placeIndex.size());
+            if (placesPerUser.get(user) == null) {
+                placesPerUser.set(user, new ArrayList<>());
+            }
+            placesPerUser.get(user).add(place);
+        }
+        int[][] places = new int[userCount][];
+        for (int i = 0; i < userCount; i++) {
+            List<Integer> userPlaces = placesPerUser.get(i);
+            places[i] = userPlaces == null ? NONE : userPlaces.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        }
+
+        return new SuggestionGraph(ids.toArray(UUID[]::new), index, friends, related, places);
+    }
+
+    int size() {
+        return userIds.length;
+    }
+
+    UUID userId(int user) {
+        return userIds[user];
+    }
+
+    /**
+     * The sorted place indices of the user, or an empty array if the user is not in the snapshot.
+     */
+    int[] placesOf(UUID userId) {
+        Integer user = indexByUserId.get(userId);
+        return user == null ? NONE : places[user];
+    }
+
+    /**
+     * All friends of friends of the user that are not related to them yet, with the number of mutual
+     * friends and shared places. Friends with more than {@code maxFriendDegree} friends are skipped as
+     * intermediaries (they would make almost everyone a candidate).
+     *
+     * @param counts scratch array of at least {@link #size()} zeros; it is all zeros again afterwards
+     */
+    List<FriendSuggestionService.Suggestion> candidates(int user, int maxFriendDegree, int[] counts) {
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (int friend : friends[user]) {
+            if (friends[friend].length > maxFriendDegree) {
+                continue;
+            }
+            for (int candidate : friends[friend]) {
+                if (candidate != user && counts[candidate]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = candidate;
+                }
+            }
+        }
+
+        List<FriendSuggestionService.Suggestion> result = new ArrayList<>();
+        for (int i = 0; i < touchedCount; i++) {
+            int candidate = touched[i];
+            if (Arrays.binarySearch(related[user], candidate) < 0) {
+                result.add(new FriendSuggestionService.Suggestion(userIds[candidate], counts[candidate],
+                        intersectionSize(places[user], places[candidate])));
+            }
+            counts[candidate] = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Size of the intersection of two sorted, duplicate-free arrays.
+     */
+    static int intersectionSize(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int[][] allocate(int[] degrees) {
+        int[][] lists = new int[degrees.length][];
+        for (int i = 0; i < degrees.length; i++) {
+            lists[i] = degrees[i] == 0 ? NONE : new int[degrees[i]];
+        }
+        return lists;
+    }
+
+    private static void sortAll(int[][] lists) {
+        for (int[] list : lists) {
+            Arrays.sort(list);
+        }
+    }
+}
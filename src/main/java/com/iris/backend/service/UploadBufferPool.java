@@ -0,0 +1,57 @@
+package com.iris.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of fixed-size read buffers for streaming uploads to GCS.
+ *
+ * Every upload borrows one buffer for its whole duration, so together with the one chunk the GCS
+ * write channel buffers, its heap use does not depend on the file size. When all pooled buffers are
+ * in use, a new one is allocated and dropped again on release, so concurrent uploads never wait for
+ * each other.
+ */
+@Component
+public class UploadBufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final Counter allocations;
+
+    public UploadBufferPool(MeterRegistry meterRegistry,
+                            @Value("${gcs.upload.buffer-size-bytes:65536}") int bufferSize,
+                            @Value("${gcs.upload.pooled-buffers:16}") int pooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(pooledBuffers);
+        this.allocations = meterRegistry.counter("iris.upload.buffers.allocated");
+        Gauge.builder("iris.upload.buffers.idle", buffers, BlockingQueue::size).register(meterRegistry);
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Borrows a cleared buffer of {@link #bufferSize()} bytes. Must be handed back with {@link #release}.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            allocations.increment();
+            return ByteBuffer.allocate(bufferSize);
+        }
+        return buffer.clear();
+    }
+
+    public void release(ByteBuffer buffer) {
+        // Pool voll: Puffer dem GC überlassen
+        buffers.offer(buffer);
+    }
+}
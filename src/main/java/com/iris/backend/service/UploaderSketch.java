@@ -0,0 +1,193 @@
+package com.iris.backend.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Distinct-count sketch of the uploaders of a place, stored in {@code place_stats.uploader_sketch}.
+ *
+ * Up to {@link #EXACT_LIMIT} uploaders the sketch keeps the sorted 64-bit hashes of their IDs and counts
+ * exactly, so small spots show precise numbers. Beyond that it switches to a HyperLogLog with 2^12
+ * one-byte registers (4 KB, about 1.6 % standard error) whose size and estimate cost no longer grow with
+ * the number of uploaders. Sketches of Google and Custom Places can be merged, e.g. for area rollups.
+ *
+ * Not thread-safe; callers synchronize on the sketch.
+ */
+final class UploaderSketch {
+
+    static final int EXACT_LIMIT = 256;
+
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private static final byte FORMAT_EXACT = 1;
+    private static final byte FORMAT_HLL = 2;
+
+    // Exakter Modus: sortierte Hashes, registers == null; HLL-Modus: hashes == null
+    private long[] hashes;
+    private int size;
+    private byte[] registers;
+
+    UploaderSketch() {
+        this.hashes = new long[8];
+    }
+
+    static UploaderSketch of(Collection<UUID> uploaderIds) {
+        UploaderSketch sketch = new UploaderSketch();
+        uploaderIds.forEach(sketch::add);
+        return sketch;
+    }
+
+    /**
+     * Reads a sketch written by {@link #toBytes()}; {@code null} is the empty sketch.
+     */
+    static UploaderSketch fromBytes(byte[] bytes) {
+        UploaderSketch sketch = new UploaderSketch();
+        if (bytes == null || bytes.length == 0) {
+            return sketch;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte format = buffer.get();
+        if (format == FORMAT_EXACT && buffer.remaining() % Long.BYTES == 0) {
+            sketch.size = buffer.remaining() / Long.BYTES;
+            sketch.hashes = new long[Math.max(8, sketch.size)];
+            buffer.asLongBuffer().get(sketch.hashes, 0, sketch.size);
+        } else if (format == FORMAT_HLL && buffer.remaining() == 1 + REGISTERS && buffer.get() == PRECISION) {
+            sketch.hashes = null;
+            sketch.registers = new byte[REGISTERS];
+            buffer.get(sketch.registers);
+        } else {
+            throw new IllegalArgumentException("Unsupported uploader sketch (format " + format + ", " + bytes.length + " bytes)");
+        }
+        return sketch;
+    }
+
+    /**
+     * Adds an uploader.
+     *
+     * @return true if the sketch changed (and has to be written again).
+     */
+    boolean add(UUID uploaderId) {
+        return addHash(hash(uploaderId));
+    }
+
+    /**
+     * Adds all uploaders of the other sketch to this one.
+     */
+    void merge(UploaderSketch other) {
+        if (other.registers != null) {
+            toRegisters();
+            for (int i = 0; i < REGISTERS; i++) {
+                registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+            }
+        } else {
+            for (int i = 0; i < other.size; i++) {
+                addHash(other.hashes[i]);
+            }
+        }
+    }
+
+    /**
+     * Number of distinct uploaders: exact up to {@link #EXACT_LIMIT}, estimated above.
+     */
+    long estimate() {
+        if (registers == null) {
+            return size;
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Kleiner Bereich: Linear Counting ist genauer
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    UploaderSketch copy() {
+        UploaderSketch copy = new UploaderSketch();
+        copy.hashes = hashes != null ? hashes.clone() : null;
+        copy.size = size;
+        copy.registers = registers != null ? registers.clone() : null;
+        return copy;
+    }
+
+    byte[] toBytes() {
+        if (registers != null) {
+            return ByteBuffer.allocate(2 + REGISTERS).put(FORMAT_HLL).put((byte) PRECISION).put(registers).array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + size * Long.BYTES).put(FORMAT_EXACT);
+        buffer.asLongBuffer().put(hashes, 0, size);
+        return buffer.array();
+    }
+
+    private boolean addHash(long hash) {
+        if (registers != null) {
+            return addToRegisters(hash);
+        }
+        int position = Arrays.binarySearch(hashes, 0, size, hash);
+        if (position >= 0) {
+            return false;
+        }
+        if (size == EXACT_LIMIT) {
+            toRegisters();
+            addToRegisters(hash);
+            return true;
+        }
+        int insertAt = -position - 1;
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        System.arraycopy(hashes, insertAt, hashes, insertAt + 1, size - insertAt);
+        hashes[insertAt] = hash;
+        size++;
+        return true;
+    }
+
+    private boolean addToRegisters(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        long rest = hash << PRECISION;
+        // Position der ersten 1 in den restlichen Bits (1-basiert)
+        byte rank = (byte) (rest == 0 ? Long.SIZE - PRECISION + 1 : Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+            return true;
+        }
+        return false;
+    }
+
+    private void toRegisters() {
+        if (registers != null) {
+            return;
+        }
+        registers = new byte[REGISTERS];
+        for (int i = 0; i < size; i++) {
+            addToRegisters(hashes[i]);
+        }
+        hashes = null;
+        size = 0;
+    }
+
+    // 64-Bit-Hash einer UUID (Finalizer von MurmurHash3), gleichverteilt auch für nicht zufällige IDs
+    static long hash(UUID id) {
+        return mix(mix(id.getMostSignificantBits()) ^ id.getLeastSignificantBits());
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,20 +1,21 @@
 package com.iris.backend.service;
 
 import com.iris.backend.dto.*;
+import com.iris.backend.event.PhotoDeletedEvent;
+import com.iris.backend.geo.Geodesy;
 import com.iris.backend.model.Friendship;
 import com.iris.backend.model.Photo;
 import com.iris.backend.model.User;
 import com.iris.backend.model.enums.FriendshipStatus;
 import com.iris.backend.repository.BlockedNumberRepository;
+import com.iris.backend.repository.ChallengeCompletionRepository;
 import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.PhotoLikeRepository;
 import com.iris.backend.repository.PhotoRepository;
 import com.iris.backend.repository.UserRepository;
 import com.google.firebase.auth.FirebaseToken;
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.Point;
-import org.locationtech.jts.geom.PrecisionModel;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -27,10 +28,16 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -41,7 +48,14 @@ public class UserService {
     private final FriendshipRepository friendshipRepository;
     private final BlockedNumberRepository blockedNumberRepository;
     private final GcsStorageService gcsStorageService;
-    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+    private final PresenceService presenceService;
+    private final FriendGraphCache friendGraphCache;
+    private final PlaceStatsService placeStatsService;
+    private final PhotoLikeRepository photoLikeRepository;
+    private final ChallengeCompletionRepository challengeCompletionRepository;
+    private final FeedTimelineService feedTimelineService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxNearbyResults;
     private static final Logger logger = LoggerFactory.getLogger(UserService.class); // NEU
     private final String photosBucketName;
     private final String profileImagesBucketName;
@@ -53,7 +67,15 @@ public class UserService {
             BlockedNumberRepository blockedNumberRepository,
             GcsStorageService gcsStorageService,
             @Value("${gcs.bucket.photos.name}") String photosBucketName,
-            @Value("${gcs.bucket.profile-images.name}") String profileImagesBucketName
+            @Value("${gcs.bucket.profile-images.name}") String profileImagesBucketName,
+            PresenceService presenceService,
+            FriendGraphCache friendGraphCache,
+            PlaceStatsService placeStatsService,
+            PhotoLikeRepository photoLikeRepository,
+            ChallengeCompletionRepository challengeCompletionRepository,
+            FeedTimelineService feedTimelineService,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${users.nearby.max-results:50}") int maxNearbyResults
     ) {
         this.userRepository = userRepository;
         this.photoRepository = photoRepository;
@@ -62,18 +84,22 @@ public class UserService {
         this.gcsStorageService = gcsStorageService;
         this.photosBucketName = photosBucketName;
         this.profileImagesBucketName = profileImagesBucketName;
+        this.presenceService = presenceService;
+        this.friendGraphCache = friendGraphCache;
+        this.placeStatsService = placeStatsService;
+        this.photoLikeRepository = photoLikeRepository;
+        this.challengeCompletionRepository = challengeCompletionRepository;
+        this.feedTimelineService = feedTimelineService;
+        this.eventPublisher = eventPublisher;
+        this.maxNearbyResults = maxNearbyResults;
     }
 
-    @Transactional
+    /**
+     * Records a location ping in the presence store; {@code users.last_location} is written behind
+     * by {@link PresenceService#flush()}.
+     */
     public void updateUserLocation(UUID userId, LocationUpdateRequestDTO locationUpdate) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found with ID: " + userId));
-
-        Point newLocation = geometryFactory.createPoint(new Coordinate(locationUpdate.longitude(), locationUpdate.latitude()));
-
-        user.setLastLocation(newLocation);
-        user.setLastLocationUpdatedAt(OffsetDateTime.now());
-        userRepository.save(user);
+        presenceService.update(userId, locationUpdate.latitude(), locationUpdate.longitude());
     }
 
     @Transactional(readOnly = true)
@@ -117,16 +143,34 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         List<Photo> photosToDelete = photoRepository.findAllByUploader(user);
+        List<UUID> photoIds = photosToDelete.stream().map(Photo::getId).toList();
+        // Duplikate teilen sich Dateien, daher jede Datei nur einmal löschen
+        Set<String> objectNames = new HashSet<>();
         for (Photo photo : photosToDelete) {
-            // KORRIGIERT: Bucket-Name wird jetzt mitgegeben
-            gcsStorageService.deleteFile(photosBucketName, photo.getStorageUrl());
+            objectNames.add(photo.getStorageUrl());
+            objectNames.add(photo.getThumbnailStorageUrl());
+            objectNames.add(photo.getDisplayStorageUrl());
         }
+        objectNames.remove(null);
+        // KORRIGIERT: Bucket-Name wird jetzt mitgegeben
+        objectNames.forEach(objectName -> gcsStorageService.deleteFile(photosBucketName, objectName));
 
         // NEU: Auch das Profilbild aus GCS löschen
         if (user.getProfileImageUrl() != null && !user.getProfileImageUrl().isBlank()) {
             gcsStorageService.deleteFile(profileImagesBucketName, user.getProfileImageUrl());
         }
+        if (!photoIds.isEmpty()) {
+            photoIds.forEach(feedTimelineService::onPhotoDeleted);
+            // Ohne Fremdschlüssel auf die partitionierte photos-Tabelle räumt die Cascade Likes und
+            // Challenge-Abschlüsse der Fotos nicht mehr mit ab
+            photoLikeRepository.deleteByPhotoIds(photoIds);
+            challengeCompletionRepository.deleteByPhotoIds(photoIds);
+            // Historischer Index erst nach dem Commit (die Listener laufen AFTER_COMMIT)
+            photoIds.forEach(photoId -> eventPublisher.publishEvent(new PhotoDeletedEvent(photoId)));
+        }
         userRepository.delete(user);
+        // Die Fotos selbst verschwinden per Cascade; ihre Orte werden neu berechnet
+        placeStatsService.onPhotosDeleted(photosToDelete);
     }
 
     @Transactional // Wichtig für Datenbank-Konsistenz
@@ -187,35 +231,36 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public List<UserDTO> getNearbyUsers(double latitude, double longitude, double radiusInMeters, User currentUser) {
-        // 1. Hole alle Benutzer im Radius, außer dem aktuellen User
-        List<User> usersInRadius = userRepository.findNearbyUsersByLocation(
-                latitude,
-                longitude,
-                radiusInMeters,
-                currentUser.getId() // KORRIGIERT: Ruft die neue, sichere Repository-Methode auf
-        );
-
-        // 2. Hole alle IDs von Benutzern, mit denen bereits eine Beziehung besteht (Freunde oder offen)
-        Set<UUID> existingRelationsIds = friendshipRepository.findByUserOneOrUserTwo(currentUser, currentUser)
-                .stream()
-                .map(friendship -> friendship.getUserOne().getId().equals(currentUser.getId())
-                        ? friendship.getUserTwo().getId()
-                        : friendship.getUserOne().getId())
-                .collect(Collectors.toSet());
-
-        // 3. Filtere die Liste nach den gewünschten Kriterien
-        List<User> filteredUsers = usersInRadius.stream()
-                .filter(user -> {
-                    // Bedingung A: Standort darf nicht veraltet sein (null-check + Zeit)
-                    boolean isLocationRecent = user.getLastLocationUpdatedAt() != null &&
-                            Duration.between(user.getLastLocationUpdatedAt(), OffsetDateTime.now()).toMinutes() <= 5;
-
-                    // Bedingung B: Es darf keine bestehende Beziehung geben
-                    boolean noExistingRelation = !existingRelationsIds.contains(user.getId());
-
-                    return isLocationRecent && noExistingRelation;
-                })
-                .collect(Collectors.toList());
+        // 1. IDs von Benutzern, mit denen bereits eine Beziehung besteht (Freunde oder offen), aus dem Cache
+        FriendGraphCache.IdSet existingRelationsIds = friendGraphCache.relatedUserIds(currentUser.getId());
+        Predicate<UUID> isCandidate = id -> !id.equals(currentUser.getId()) && !existingRelationsIds.contains(id);
+
+        // 2. Die nächsten Benutzer im Radius aus dem Grid des Presence-Speichers
+        //    (dort sind nur Standorte der letzten 5 Minuten; sortiert nach Distanz und begrenzt)
+        Optional<List<UUID>> nearestIds = presenceService.findNearest(
+                latitude, longitude, radiusInMeters, maxNearbyResults, isCandidate);
+
+        List<User> filteredUsers;
+        if (nearestIds.isPresent()) {
+            Map<UUID, User> usersById = userRepository.findAllById(nearestIds.get()).stream()
+                    .collect(Collectors.toMap(User::getId, user -> user));
+            filteredUsers = nearestIds.get().stream()
+                    .map(usersById::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        } else {
+            // 3. Fallback, solange der Presence-Speicher nicht geladen ist: SQL plus Filter in Java
+            filteredUsers = userRepository.findNearbyUsersByLocation(latitude, longitude, radiusInMeters, currentUser.getId())
+                    .stream()
+                    .filter(user -> isCandidate.test(user.getId()))
+                    // Standort darf nicht veraltet sein (null-check + Zeit)
+                    .filter(user -> user.getLastLocationUpdatedAt() != null &&
+                            Duration.between(user.getLastLocationUpdatedAt(), OffsetDateTime.now()).toMinutes() <= 5)
+                    .sorted(Comparator.comparingDouble(user -> Geodesy.distanceMeters(latitude, longitude,
+                            user.getLastLocation().getY(), user.getLastLocation().getX())))
+                    .limit(maxNearbyResults)
+                    .collect(Collectors.toList());
+        }
 
         // 4. Wandle das Ergebnis in DTOs um, inklusive der signierten Profilbild-URL
         return filteredUsers.stream()
@@ -83,7 +83,7 @@ class CustomPlaceControllerTest {
 
         GalleryFeedItemDTO responseDto = new GalleryFeedItemDTO(
                 GalleryPlaceType.IRIS_SPOT, "Secret Rooftop", 46.9480, 7.4474,
-                "https://signed.url/cover.jpg", 0L, null, null, placeId,
+                "https://signed.url/cover.jpg", "https://signed.url/cover.jpg", null, 0L, null, null, placeId,
                 null, 100, "PUBLIC", false, true, null, 0L, null
         );
 
@@ -127,7 +127,7 @@ class CustomPlaceControllerTest {
     void getTrendingSpots_ShouldReturnList() throws Exception {
         // --- ARRANGE ---
         GalleryFeedItemDTO spot = new GalleryFeedItemDTO(
-                GalleryPlaceType.IRIS_SPOT, "Trending", 0.0, 0.0, null, 5L,
+                GalleryPlaceType.IRIS_SPOT, "Trending", 0.0, 0.0, null, null, null, 5L,
                 null, null, UUID.randomUUID(), null, 50, "PUBLIC", true, true, null, 10L, null
         );
         when(galleryFeedService.getTrendingSpots()).thenReturn(List.of(spot));
@@ -57,7 +57,7 @@ class FeedControllerTest {
         // 2. Wir erstellen ein fiktives Ergebnis-Item für den Feed
         GalleryFeedItemDTO mockItem = new GalleryFeedItemDTO(
                 GalleryPlaceType.GOOGLE_POI, "Zytglogge", 46.9480, 7.4474,
-                "https://signed.url/image.jpg", 15L, OffsetDateTime.now(),
+                "https://signed.url/image.jpg", "https://signed.url/image.jpg", null, 15L, OffsetDateTime.now(),
                 1L, null, "Bärenplatz, Bern", null, null, false, false, null, 3L, null
         );
 
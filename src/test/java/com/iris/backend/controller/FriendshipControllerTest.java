@@ -3,12 +3,14 @@ package com.iris.backend.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.iris.backend.dto.FriendRequestDTO;
+import com.iris.backend.dto.FriendSuggestionDTO;
 import com.iris.backend.dto.FriendshipActionDTO;
 import com.iris.backend.dto.LocationReportDTO;
 import com.iris.backend.dto.UserDTO;
 import com.iris.backend.model.User;
 import com.iris.backend.repository.CustomPlaceRepository;
 import com.iris.backend.repository.GooglePlaceRepository;
+import com.iris.backend.service.FriendSuggestionService;
 import com.iris.backend.service.FriendshipService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,6 +39,7 @@ class FriendshipControllerTest {
     private ObjectMapper objectMapper;
 
     @Mock private FriendshipService friendshipService;
+    @Mock private FriendSuggestionService friendSuggestionService;
     @Mock private GooglePlaceRepository googlePlaceRepository;
     @Mock private CustomPlaceRepository customPlaceRepository;
     @Mock private GeometryFactory geometryFactory;
@@ -109,6 +112,20 @@ class FriendshipControllerTest {
                 .andExpect(jsonPath("$[1].username").value("Zoe"));
     }
 
+    @Test
+    void getFriendSuggestions_ShouldPassLimit_AndReturnSuggestions() throws Exception {
+        // --- ARRANGE ---
+        FriendSuggestionDTO suggestion = new FriendSuggestionDTO(UUID.randomUUID(), "Mia", null, 3, 1);
+        when(friendSuggestionService.getSuggestions(any(), eq(5))).thenReturn(List.of(suggestion));
+
+        // --- EXECUTE & ASSERT ---
+        mockMvc.perform(get("/api/v1/friends/suggestions").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].username").value("Mia"))
+                .andExpect(jsonPath("$[0].mutualFriends").value(3))
+                .andExpect(jsonPath("$[0].sharedPlaces").value(1));
+    }
+
     @Test
     void reportLocation_ShouldReturn200Ok() throws Exception {
         // --- ARRANGE ---
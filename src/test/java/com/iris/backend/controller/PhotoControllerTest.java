@@ -4,11 +4,16 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.iris.backend.dto.PhotoResponseDTO;
 import com.iris.backend.dto.PhotoUploadRequestDTO;
+import com.iris.backend.dto.PhotoUploadReservationRequestDTO;
+import com.iris.backend.dto.PhotoUploadSessionDTO;
+import com.iris.backend.dto.PhotoUploadTicketDTO;
 import com.iris.backend.dto.feed.GalleryPlaceType;
 import com.iris.backend.model.User;
 import com.iris.backend.repository.UserRepository;
 import com.iris.backend.service.PhotoLikeService;
 import com.iris.backend.service.PhotoService;
+import com.iris.backend.service.PhotoUploadReservationService;
+import com.iris.backend.service.PhotoUploadSessionService;
 import com.iris.backend.model.enums.PhotoVisibility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,6 +27,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -38,6 +44,8 @@ class PhotoControllerTest {
 
     @Mock private PhotoService photoService;
     @Mock private PhotoLikeService photoLikeService;
+    @Mock private PhotoUploadReservationService photoUploadReservationService;
+    @Mock private PhotoUploadSessionService photoUploadSessionService;
     @Mock private UserRepository userRepository;
 
     // Kein @InjectMocks hier, wir bauen ihn manuell, um ihm den ECHTEN ObjectMapper zu geben!
@@ -53,7 +61,8 @@ class PhotoControllerTest {
         objectMapper.registerModule(new JavaTimeModule());
 
         // Controller manuell zusammenbauen
-        photoController = new PhotoController(photoService, photoLikeService, userRepository, objectMapper);
+        photoController = new PhotoController(photoService, photoLikeService, photoUploadReservationService,
+                photoUploadSessionService, userRepository, objectMapper);
 
         // MockMvc für simulierte HTTP-Requests initialisieren
         mockMvc = MockMvcBuilders.standaloneSetup(photoController).build();
@@ -83,7 +92,7 @@ class PhotoControllerTest {
         // Wir sagen dem Service, er soll eine zufällige UUID als neues Foto zurückgeben
         UUID newPhotoId = UUID.randomUUID();
         when(photoService.createPhoto(any(), eq(46.9480), eq(7.4474), eq(PhotoVisibility.PUBLIC),
-                eq(123L), isNull(), any(), isNull(), isNull())).thenReturn(newPhotoId);
+                eq(123L), isNull(), any(), isNull(), isNull(), isNull())).thenReturn(newPhotoId);
 
         // --- EXECUTE & ASSERT ---
         mockMvc.perform(multipart("/api/v1/photos")
@@ -93,6 +102,28 @@ class PhotoControllerTest {
                 .andExpect(jsonPath("$.photoId").value(newPhotoId.toString()));
     }
 
+    @Test
+    void uploadPhoto_ShouldPassTheIdempotencyKey_AndReturn409_WhenItIsInUse() throws Exception {
+        // --- ARRANGE ---
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "test.jpg", MediaType.IMAGE_JPEG_VALUE, "dummy image bytes".getBytes()
+        );
+        String metadataJson = objectMapper.writeValueAsString(new PhotoUploadRequestDTO(
+                46.9480, 7.4474, PhotoVisibility.PUBLIC, null, null, null, null));
+        MockMultipartFile metadataPart = new MockMultipartFile(
+                "metadata", "", MediaType.APPLICATION_JSON_VALUE, metadataJson.getBytes()
+        );
+        when(photoService.createPhoto(any(), anyDouble(), anyDouble(), any(), any(), any(), any(), any(), any(),
+                eq("retry-1"))).thenThrow(new IllegalStateException("Idempotency-Key retry-1 is in use."));
+
+        // --- EXECUTE & ASSERT ---
+        mockMvc.perform(multipart("/api/v1/photos")
+                        .file(file)
+                        .file(metadataPart)
+                        .header("Idempotency-Key", "retry-1"))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     void getPhotosByIds_ShouldReturnListOfPhotos() throws Exception {
         // --- ARRANGE ---
@@ -100,7 +131,8 @@ class PhotoControllerTest {
         String requestJson = objectMapper.writeValueAsString(requestIds);
 
         PhotoResponseDTO responseDto = new PhotoResponseDTO(
-                photoId, "https://signed.url", OffsetDateTime.now(),
+                photoId, "https://signed.url", "https://signed.url", "https://signed.url",
+                null, OffsetDateTime.now(),
                 GalleryPlaceType.GOOGLE_POI, 123L, null, "Bern",
                 currentUser.getId(), "PhotoUploader", "profile.jpg", 10
         );
@@ -145,4 +177,66 @@ class PhotoControllerTest {
 
         verify(photoLikeService).toggleLike(eq(photoId), any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void reserveUpload_ShouldReturn201WithTicket() throws Exception {
+        // --- ARRANGE ---
+        UUID token = UUID.randomUUID();
+        OffsetDateTime now = OffsetDateTime.now();
+        PhotoUploadTicketDTO ticket = new PhotoUploadTicketDTO(token, "https://upload.url",
+                Map.of("Content-Type", "image/jpeg"), now.plusMinutes(15), now.plusHours(1));
+        when(photoUploadReservationService.reserve(any(), eq(new PhotoUploadReservationRequestDTO("bild.jpg", "image/jpeg"))))
+                .thenReturn(ticket);
+
+        // --- EXECUTE & ASSERT ---
+        mockMvc.perform(post("/api/v1/photos/uploads")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fileName\": \"bild.jpg\", \"contentType\": \"image/jpeg\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.uploadToken").value(token.toString()))
+                .andExpect(jsonPath("$.uploadUrl").value("https://upload.url"))
+                .andExpect(jsonPath("$.uploadHeaders['Content-Type']").value("image/jpeg"));
+    }
+
+    @Test
+    void finalizeUpload_ShouldReturn201_OrConflict_WhenAlreadyFinalized() throws Exception {
+        // --- ARRANGE ---
+        UUID token = UUID.randomUUID();
+        UUID newPhotoId = UUID.randomUUID();
+        String metadataJson = objectMapper.writeValueAsString(new PhotoUploadRequestDTO(
+                46.9480, 7.4474, PhotoVisibility.PUBLIC, 123L, null, null, null));
+        when(photoUploadReservationService.finalizeUpload(eq(token), any(), any()))
+                .thenReturn(newPhotoId)
+                .thenThrow(new IllegalStateException("already finalized"));
+
+        // --- EXECUTE & ASSERT ---
+        mockMvc.perform(post("/api/v1/photos/uploads/{uploadToken}/finalize", token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(metadataJson))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.photoId").value(newPhotoId.toString()));
+        mockMvc.perform(post("/api/v1/photos/uploads/{uploadToken}/finalize", token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(metadataJson))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void uploadChunk_ShouldReturnTheExpectedOffset_WhenTheClientResumesAtTheWrongOffset() throws Exception {
+        // --- ARRANGE ---
+        UUID sessionId = UUID.randomUUID();
+        byte[] chunk = "chunk-bytes".getBytes();
+        when(photoUploadSessionService.appendChunk(eq(sessionId), eq(0L), any(), any()))
+                .thenThrow(new IllegalStateException("expects offset 1024"));
+        when(photoUploadSessionService.getSession(eq(sessionId), any())).thenReturn(
+                new PhotoUploadSessionDTO(sessionId, 4096, 1024, 1024, OffsetDateTime.now().plusHours(1)));
+
+        // --- EXECUTE & ASSERT ---
+        mockMvc.perform(put("/api/v1/photos/upload-sessions/{sessionId}", sessionId)
+                        .param("offset", "0")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(chunk))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.receivedBytes").value(1024));
+    }
+}
@@ -69,7 +69,8 @@ class PlaceControllerTest {
         HistoricalSearchRequestDTO request = new HistoricalSearchRequestDTO(List.of(point));
 
         PhotoResponseDTO mockPhoto = new PhotoResponseDTO(
-                UUID.randomUUID(), "https://signed.url/1.jpg", OffsetDateTime.now(),
+                UUID.randomUUID(), "https://signed.url/1.jpg", "https://signed.url/1.jpg", "https://signed.url/1.jpg",
+                null, OffsetDateTime.now(),
                 GalleryPlaceType.GOOGLE_POI, googlePlaceId, null, "Test POI",
                 UUID.randomUUID(), "OtherUser", "profile.jpg", 5
         );
@@ -95,7 +96,8 @@ class PlaceControllerTest {
         HistoricalSearchRequestDTO request = new HistoricalSearchRequestDTO(List.of(point));
 
         PhotoResponseDTO mockPhoto = new PhotoResponseDTO(
-                UUID.randomUUID(), "https://signed.url/my_photo.jpg", OffsetDateTime.now(),
+                UUID.randomUUID(), "https://signed.url/my_photo.jpg", "https://signed.url/my_photo.jpg", "https://signed.url/my_photo.jpg",
+                null, OffsetDateTime.now(),
                 GalleryPlaceType.IRIS_SPOT, null, customPlaceId, "My Spot",
                 currentUser.getId(), currentUser.getUsername(), "profile.jpg", 10
         );
@@ -134,7 +136,7 @@ class PlaceControllerTest {
         // --- ARRANGE ---
         GalleryFeedItemDTO mockPlace = new GalleryFeedItemDTO(
                 GalleryPlaceType.GOOGLE_POI, "Eiffelturm", 48.8584, 2.2945,
-                null, 0L, null, 1L, null, "Paris", 50, null, false, false, null, 0L, null
+                null, null, null, 0L, null, 1L, null, "Paris", 50, null, false, false, null, 0L, null
         );
 
         when(galleryFeedService.getTaggablePlaces(48.8584, 2.2945)).thenReturn(List.of(mockPlace));
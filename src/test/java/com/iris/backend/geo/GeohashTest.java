@@ -0,0 +1,72 @@
+package com.iris.backend.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class GeohashTest {
+
+    @Test
+    void encode_ShouldMatchReferenceValues() {
+        // Referenzwerte aus der ursprünglichen Geohash-Spezifikation
+        assertThat(Geohash.encode(57.64911, 10.40744, 11)).isEqualTo("u4pruydqqvj");
+        assertThat(Geohash.encode(42.6, -5.6, 5)).isEqualTo("ezs42");
+    }
+
+    @Test
+    void cellsCovering_ShouldContainCellsOfAllPointsWithinRadius() {
+        double lat = 46.9480;
+        double lon = 7.4474;
+        double radius = 3000;
+
+        Set<String> cells = Geohash.cellsCovering(lat, lon, radius, 5);
+
+        // Punkte auf dem Kreisrand in alle Richtungen müssen in einer der Zellen liegen
+        for (int bearing = 0; bearing < 360; bearing += 15) {
+            double dLat = radius * Math.cos(Math.toRadians(bearing)) / 111_320d;
+            double dLon = radius * Math.sin(Math.toRadians(bearing)) / (111_320d * Math.cos(Math.toRadians(lat)));
+            assertThat(cells).contains(Geohash.encode(lat + dLat, lon + dLon, 5));
+        }
+    }
+
+    @Test
+    void cellsCovering_ShouldWrapAroundTheDateLine() {
+        Set<String> cells = Geohash.cellsCovering(0.0, 179.999, 1000, 5);
+
+        assertThat(cells).contains(Geohash.encode(0.0, 179.999, 5), Geohash.encode(0.0, -179.999, 5));
+    }
+
+    @Test
+    void distanceMeters_ShouldMatchEllipsoidalReference() {
+        // Flinders Peak -> Buninyong (klassisches Vincenty-Beispiel): 54972.271 m
+        double distance = Geodesy.distanceMeters(-37.95103342, 144.42486789, -37.65282114, 143.92649554);
+
+        assertThat(distance).isCloseTo(54_972.271, within(0.01));
+    }
+
+    @Test
+    void boundsAndNeighbors_ShouldRoundTripThroughEncode() {
+        String cell = Geohash.encode(46.9480, 7.4474, 7);
+        Geohash.Bounds bounds = Geohash.bounds(cell);
+
+        assertThat(Geohash.encode(bounds.centerLatitude(), bounds.centerLongitude(), 7)).isEqualTo(cell);
+        assertThat(46.9480).isBetween(bounds.minLatitude(), bounds.maxLatitude());
+        assertThat(7.4474).isBetween(bounds.minLongitude(), bounds.maxLongitude());
+
+        double latSize = bounds.maxLatitude() - bounds.minLatitude();
+        double lonSize = bounds.maxLongitude() - bounds.minLongitude();
+        Set<String> expected = new java.util.HashSet<>();
+        for (int dLat = -1; dLat <= 1; dLat++) {
+            for (int dLon = -1; dLon <= 1; dLon++) {
+                if (dLat != 0 || dLon != 0) {
+                    expected.add(Geohash.encode(bounds.centerLatitude() + dLat * latSize,
+                            bounds.centerLongitude() + dLon * lonSize, 7));
+                }
+            }
+        }
+        assertThat(Geohash.neighbors(cell)).isEqualTo(expected);
+    }
+}
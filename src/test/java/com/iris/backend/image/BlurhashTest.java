@@ -0,0 +1,75 @@
+package com.iris.backend.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BlurhashTest {
+
+    private static final String BASE83 =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    @Test
+    void encode_ShouldStartWithSizeFlagAndAverageColour() {
+        BufferedImage image = filled(new Color(200, 100, 50), 16, 12);
+
+        String hash = Blurhash.encode(image, 4, 3);
+
+        // Größe 4x3 -> (4-1) + (3-1)*9 = 21 = 'L'; danach Maximum (1 Zeichen) und Durchschnittsfarbe (4 Zeichen)
+        assertThat(hash).hasSize(4 + 2 * 4 * 3);
+        assertThat(hash).startsWith("L");
+        assertThat(decode83(hash.substring(2, 6))).isEqualTo((200 << 16) | (100 << 8) | 50);
+    }
+
+    @Test
+    void encode_ShouldDistinguishMirroredImagesWithTheSameAverage() {
+        BufferedImage leftWhite = filled(Color.BLACK, 32, 32);
+        BufferedImage rightWhite = filled(Color.BLACK, 32, 32);
+        fill(leftWhite, 0, 16);
+        fill(rightWhite, 16, 32);
+
+        String left = Blurhash.encode(leftWhite, 4, 3);
+        String right = Blurhash.encode(rightWhite, 4, 3);
+
+        // Gleiche Durchschnittsfarbe, aber der erste horizontale Anteil hat das umgekehrte Vorzeichen
+        assertThat(left.substring(0, 6)).isEqualTo(right.substring(0, 6));
+        assertThat(left.substring(6, 8)).isNotEqualTo(right.substring(6, 8));
+    }
+
+    @Test
+    void encode_ShouldRejectInvalidComponentCounts() {
+        BufferedImage image = filled(Color.GRAY, 4, 4);
+
+        assertThatThrownBy(() -> Blurhash.encode(image, 0, 3)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Blurhash.encode(image, 4, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static BufferedImage filled(Color color, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static void fill(BufferedImage image, int fromX, int toX) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(fromX, 0, toX - fromX, image.getHeight());
+        graphics.dispose();
+    }
+
+    private static int decode83(String value) {
+        int result = 0;
+        for (char c : value.toCharArray()) {
+            result = result * 83 + BASE83.indexOf(c);
+        }
+        return result;
+    }
+}
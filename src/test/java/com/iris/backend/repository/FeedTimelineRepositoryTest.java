@@ -0,0 +1,168 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.FeedTimelineEntry;
+import com.iris.backend.model.Friendship;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.FriendshipStatus;
+import com.iris.backend.model.enums.PhotoVisibility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedTimelineRepositoryTest extends AbstractRepositoryTest {
+
+    @Autowired private FeedTimelineRepository feedTimelineRepository;
+    @Autowired private FriendshipRepository friendshipRepository;
+    @Autowired private PhotoRepository photoRepository;
+    @Autowired private UserRepository userRepository;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private User uploader;
+    private User friend;
+    private User stranger;
+    private OffsetDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        feedTimelineRepository.deleteAll();
+        photoRepository.deleteAll();
+        friendshipRepository.deleteAll();
+        userRepository.deleteAll();
+
+        now = OffsetDateTime.now(ZoneOffset.UTC);
+
+        uploader = createUser("uid-uploader", "Uploader", "uploader@test.com");
+        friend = createUser("uid-friend", "Friend", "friend@test.com");
+        stranger = createUser("uid-stranger", "Stranger", "stranger@test.com");
+
+        Friendship friendship = new Friendship();
+        friendship.setUserOne(uploader);
+        friendship.setUserTwo(friend);
+        friendship.setActionUser(uploader);
+        friendship.setStatus(FriendshipStatus.ACCEPTED);
+        friendshipRepository.saveAndFlush(friendship);
+    }
+
+    @Test
+    void fanOutToFriends_ShouldOnlyWriteIntoTimelinesOfAcceptedFriends() {
+        // --- EXECUTE ---
+        int rows = feedTimelineRepository.fanOutToFriends(UUID.randomUUID(), uploader.getId(), now, now.plusDays(7));
+
+        // --- ASSERT ---
+        assertThat(rows).isEqualTo(1);
+        List<FeedTimelineEntry> entries = feedTimelineRepository.findAll();
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).getId().getRecipientId()).isEqualTo(friend.getId());
+        assertThat(entries.get(0).getUploaderId()).isEqualTo(uploader.getId());
+    }
+
+    @Test
+    void findPage_ShouldPageWithoutGapsOrDuplicates_EvenWithEqualTimestamps() {
+        // --- ARRANGE ---
+        // Drei Fotos mit identischem Zeitstempel + eines älter + eines abgelaufen
+        OffsetDateTime sameTime = now.minusMinutes(5);
+        for (int i = 0; i < 3; i++) {
+            feedTimelineRepository.fanOutToFriends(UUID.randomUUID(), uploader.getId(), sameTime, now.plusDays(7));
+        }
+        feedTimelineRepository.fanOutToFriends(UUID.randomUUID(), uploader.getId(), now.minusHours(1), now.plusDays(7));
+        feedTimelineRepository.fanOutToFriends(UUID.randomUUID(), uploader.getId(), now.minusDays(8), now.minusDays(1));
+
+        // --- EXECUTE ---
+        OffsetDateTime cursorTime = OffsetDateTime.of(9999, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC);
+        UUID cursorId = new UUID(-1L, -1L);
+        List<UUID> seen = new java.util.ArrayList<>();
+        List<FeedTimelineEntry> page;
+        do {
+            page = feedTimelineRepository.findPage(friend.getId(), now, cursorTime, cursorId, Limit.of(2));
+            page.forEach(entry -> seen.add(entry.getId().getPhotoId()));
+            if (!page.isEmpty()) {
+                FeedTimelineEntry last = page.get(page.size() - 1);
+                cursorTime = last.getUploadedAt();
+                cursorId = last.getId().getPhotoId();
+            }
+        } while (page.size() == 2);
+
+        // --- ASSERT ---
+        // 4 gültige Einträge, jeder genau einmal, der abgelaufene fehlt
+        assertThat(seen).hasSize(4).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void backfillFromUploader_ShouldCopyOnlyValidFeedPhotos() {
+        // --- ARRANGE ---
+        createPhoto(uploader, PhotoVisibility.FRIENDS, now.plusDays(7));
+        createPhoto(uploader, PhotoVisibility.VISIBLE_TO_ALL, now.plusDays(7));
+        createPhoto(uploader, PhotoVisibility.PUBLIC, now.plusDays(2));   // nur Spot -> nicht im Feed
+        createPhoto(uploader, PhotoVisibility.FRIENDS, now.minusHours(1)); // abgelaufen
+
+        // --- EXECUTE ---
+        int rows = feedTimelineRepository.backfillFromUploader(stranger.getId(), uploader.getId(), now);
+
+        // --- ASSERT ---
+        assertThat(rows).isEqualTo(2);
+    }
+
+    @Test
+    void backfillAll_ShouldCopyValidFeedPhotosToFriends_AndSkipHighDegreeUploaders() {
+        // --- ARRANGE ---
+        createPhoto(uploader, PhotoVisibility.FRIENDS, now.plusDays(7));
+        createPhoto(uploader, PhotoVisibility.PUBLIC, now.plusDays(2));   // nur Spot -> nicht im Feed
+        createPhoto(uploader, PhotoVisibility.FRIENDS, now.minusHours(1)); // abgelaufen
+        createPhoto(friend, PhotoVisibility.VISIBLE_TO_ALL, now.plusDays(7));
+
+        // --- EXECUTE ---
+        int rows = feedTimelineRepository.backfillAll(now, 1);
+        int again = feedTimelineRepository.backfillAll(now, 1);
+        feedTimelineRepository.deleteAll();
+        int limited = feedTimelineRepository.backfillAll(now, 0);
+
+        // --- ASSERT ---
+        assertThat(rows).isEqualTo(2);
+        assertThat(again).isZero();
+        // Mit Grenze 0 sind beide Uploader "High-Degree" und werden beim Lesen gemischt
+        assertThat(limited).isZero();
+    }
+
+    @Test
+    void deleteExpiredBatch_ShouldRemoveOnlyExpiredEntries() {
+        feedTimelineRepository.fanOutToFriends(UUID.randomUUID(), uploader.getId(), now.minusDays(8), now.minusDays(1));
+        feedTimelineRepository.fanOutToFriends(UUID.randomUUID(), uploader.getId(), now, now.plusDays(7));
+
+        int deleted = feedTimelineRepository.deleteExpiredBatch(now, 100);
+
+        assertThat(deleted).isEqualTo(1);
+        assertThat(feedTimelineRepository.count()).isEqualTo(1);
+    }
+
+    // --- HILFSMETHODEN ---
+    private User createUser(String uid, String username, String email) {
+        User user = new User();
+        user.setFirebaseUid(uid);
+        user.setUsername(username);
+        user.setEmail(email);
+        return userRepository.saveAndFlush(user);
+    }
+
+    private void createPhoto(User owner, PhotoVisibility visibility, OffsetDateTime expiresAt) {
+        Photo photo = new Photo();
+        photo.setUploader(owner);
+        photo.setVisibility(visibility);
+        photo.setExpiresAt(expiresAt);
+        photo.setStorageUrl("test-" + visibility.name() + ".jpg");
+        photo.setLocation(geometryFactory.createPoint(new Coordinate(7.4474, 46.9480)));
+        photoRepository.saveAndFlush(photo);
+    }
+}
@@ -0,0 +1,111 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.CustomPlace;
+import com.iris.backend.model.Friendship;
+import com.iris.backend.model.GooglePlace;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.FriendshipStatus;
+import com.iris.backend.model.enums.PlaceAccessType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class FriendsAtSpotsRepositoryTest extends AbstractRepositoryTest {
+
+    @Autowired private FriendshipRepository friendshipRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private GooglePlaceRepository googlePlaceRepository;
+    @Autowired private CustomPlaceRepository customPlaceRepository;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+    private User currentUser;
+    private User friendAtCafe;
+    private GooglePlace cafe;
+    private CustomPlace spot;
+
+    @BeforeEach
+    void setUp() {
+        friendshipRepository.deleteAll();
+        customPlaceRepository.deleteAll();
+        googlePlaceRepository.deleteAll();
+        userRepository.deleteAll();
+
+        OffsetDateTime now = OffsetDateTime.now();
+        currentUser = createUser("spots-me", null, null);
+        friendAtCafe = createUser("spots-cafe", createPoint(7.4474, 46.9480), now.minusMinutes(1));
+        User staleFriend = createUser("spots-stale", createPoint(7.4474, 46.9480), now.minusMinutes(30));
+        User stranger = createUser("spots-stranger", createPoint(7.4474, 46.9480), now.minusMinutes(1));
+
+        cafe = new GooglePlace();
+        cafe.setGooglePlaceId("g-spots-1");
+        cafe.setName("Café");
+        cafe.setLocation(createPoint(7.4475, 46.9480));
+        cafe.setRadiusMeters(50);
+        googlePlaceRepository.saveAndFlush(cafe);
+
+        spot = new CustomPlace();
+        spot.setCreator(currentUser);
+        spot.setOwner(currentUser);
+        spot.setName("Bärenpark Spot");
+        spot.setLocation(createPoint(7.4480, 46.9482));
+        spot.setRadiusMeters(200);
+        spot.setAccessType(PlaceAccessType.PUBLIC);
+        spot.setLive(true);
+        spot.setExpiresAt(now.plusHours(2));
+        customPlaceRepository.saveAndFlush(spot);
+
+        createFriendship(currentUser, friendAtCafe, FriendshipStatus.ACCEPTED);
+        createFriendship(staleFriend, currentUser, FriendshipStatus.ACCEPTED);
+        createFriendship(currentUser, stranger, FriendshipStatus.PENDING);
+    }
+
+    @Test
+    void findActiveFriendsAtSpots_ShouldJoinRecentFriendsAgainstBothPlaceTables() {
+        List<FriendshipRepository.FriendAtSpotProjection> pairs = friendshipRepository.findActiveFriendsAtSpots(
+                currentUser.getId(), OffsetDateTime.now().minusMinutes(5));
+
+        assertThat(pairs)
+                .extracting(FriendshipRepository.FriendAtSpotProjection::getFriendId,
+                        FriendshipRepository.FriendAtSpotProjection::getGooglePlaceId,
+                        FriendshipRepository.FriendAtSpotProjection::getCustomPlaceId)
+                .containsExactlyInAnyOrder(
+                        tuple(friendAtCafe.getId(), cafe.getId(), null),
+                        tuple(friendAtCafe.getId(), null, spot.getId())
+                );
+    }
+
+    private User createUser(String name, Point lastLocation, OffsetDateTime lastLocationUpdatedAt) {
+        User user = new User();
+        user.setFirebaseUid(name + "-uid");
+        user.setUsername(name);
+        user.setEmail(name + "@test.com");
+        user.setLastLocation(lastLocation);
+        user.setLastLocationUpdatedAt(lastLocationUpdatedAt);
+        return userRepository.saveAndFlush(user);
+    }
+
+    private void createFriendship(User userOne, User userTwo, FriendshipStatus status) {
+        Friendship friendship = new Friendship();
+        friendship.setUserOne(userOne);
+        friendship.setUserTwo(userTwo);
+        friendship.setActionUser(userOne);
+        friendship.setStatus(status);
+        friendshipRepository.saveAndFlush(friendship);
+    }
+
+    private Point createPoint(double lon, double lat) {
+        Point p = geometryFactory.createPoint(new Coordinate(lon, lat));
+        p.setSRID(4326);
+        return p;
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
@@ -21,6 +22,7 @@ import java.time.OffsetDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE) // Verhindert, dass Spring nach H2 sucht
@@ -52,6 +54,9 @@ class FriendshipRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     private User currentUser;
     private User bestFriend;
     private User oldFriend;
@@ -105,6 +110,69 @@ class FriendshipRepositoryTest {
         assertThat(getFriend(sortedFriends.get(2)).getUsername()).isEqualTo("Newbie");
     }
 
+    @Test
+    void testFindRelations_ShouldReturnIdsAndStatusFromBothSides() {
+        // --- ARRANGE ---
+        // Offene Anfrage, bei der der aktuelle User "userTwo" ist
+        User requester = createUser("uid-5", "Requester", "requester@test.com");
+        Friendship pending = new Friendship();
+        pending.setUserOne(requester);
+        pending.setUserTwo(currentUser);
+        pending.setActionUser(requester);
+        pending.setStatus(FriendshipStatus.PENDING);
+        friendshipRepository.save(pending);
+
+        // --- EXECUTE ---
+        List<FriendshipRepository.RelationProjection> relations = friendshipRepository.findRelations(currentUser.getId());
+
+        // --- ASSERT ---
+        assertThat(relations)
+                .extracting(FriendshipRepository.RelationProjection::getUserId, FriendshipRepository.RelationProjection::getStatus)
+                .containsExactlyInAnyOrder(
+                        tuple(bestFriend.getId(), FriendshipStatus.ACCEPTED),
+                        tuple(oldFriend.getId(), FriendshipStatus.ACCEPTED),
+                        tuple(newFriend.getId(), FriendshipStatus.ACCEPTED),
+                        tuple(requester.getId(), FriendshipStatus.PENDING));
+    }
+
+    @Test
+    void testFindAllEdges_ShouldReturnEveryFriendshipOnceAsIdPair() {
+        // --- EXECUTE ---
+        List<FriendshipRepository.EdgeProjection> edges = friendshipRepository.findAllEdges();
+
+        // --- ASSERT ---
+        assertThat(edges)
+                .extracting(FriendshipRepository.EdgeProjection::getUserOneId, FriendshipRepository.EdgeProjection::getUserTwoId,
+                        FriendshipRepository.EdgeProjection::getStatus)
+                .containsExactlyInAnyOrder(
+                        tuple(currentUser.getId(), oldFriend.getId(), FriendshipStatus.ACCEPTED),
+                        tuple(currentUser.getId(), bestFriend.getId(), FriendshipStatus.ACCEPTED),
+                        tuple(currentUser.getId(), newFriend.getId(), FriendshipStatus.ACCEPTED));
+    }
+
+    @Test
+    void testAddInteractions_ShouldIncrementBothDirectionsInOneStatement() {
+        // --- ARRANGE ---
+        // Newbie -> Current ist umgekehrt gespeichert; der Zeitpunkt für Bestie liegt vor dem gespeicherten
+        String json = """
+            [{"userOneId": "%s", "userTwoId": "%s", "increment": 9, "lastInteractedAt": "2030-01-01T00:00:00Z"},
+             {"userOneId": "%s", "userTwoId": "%s", "increment": 1, "lastInteractedAt": "2000-01-01T00:00:00Z"}]
+            """.formatted(newFriend.getId(), currentUser.getId(), currentUser.getId(), bestFriend.getId());
+
+        // --- EXECUTE ---
+        int updated = friendshipRepository.addInteractions(json);
+        entityManager.clear();
+
+        // --- ASSERT ---
+        assertThat(updated).isEqualTo(2);
+        List<Friendship> sortedFriends = friendshipRepository.findFriendsSortedByInteraction(currentUser);
+        assertThat(getFriend(sortedFriends.get(0)).getUsername()).isEqualTo("Newbie");
+        assertThat(sortedFriends.get(0).getInteractionScore()).isEqualTo(11);
+        assertThat(sortedFriends.get(0).getLastInteractedAt().getYear()).isEqualTo(2030);
+        assertThat(sortedFriends.get(1).getInteractionScore()).isEqualTo(11);
+        assertThat(sortedFriends.get(1).getLastInteractedAt().getYear()).isGreaterThan(2000);
+    }
+
     // Hilfsmethode zum schnellen Erstellen
     private void createFriendship(User u1, User u2, int score, OffsetDateTime lastInteracted) {
         Friendship f = new Friendship();
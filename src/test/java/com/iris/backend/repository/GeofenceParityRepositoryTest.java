@@ -0,0 +1,133 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.CustomPlace;
+import com.iris.backend.model.GooglePlace;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.PlaceAccessType;
+import com.iris.backend.service.GeofenceIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the geofence index finds exactly the places of {@code findActivePlacesForUserLocation}.
+ */
+class GeofenceParityRepositoryTest extends AbstractRepositoryTest {
+
+    // Zytglogge Bern
+    private static final double LAT = 46.9480;
+    private static final double LON = 7.4474;
+
+    @Autowired private GooglePlaceRepository googlePlaceRepository;
+    @Autowired private CustomPlaceRepository customPlaceRepository;
+    @Autowired private UserRepository userRepository;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+    private final Random random = new Random(42);
+    private GeofenceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        customPlaceRepository.deleteAll();
+        googlePlaceRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User owner = new User();
+        owner.setFirebaseUid("geofence-uid");
+        owner.setUsername("geofence");
+        owner.setEmail("geofence@test.com");
+        userRepository.saveAndFlush(owner);
+
+        OffsetDateTime now = OffsetDateTime.now();
+        // Zufällige, sich überlappende Orte in einem ca. 1 x 1 km grossen Gebiet
+        for (int i = 0; i < 60; i++) {
+            GooglePlace place = new GooglePlace();
+            place.setGooglePlaceId("g-geofence-" + i);
+            place.setName("Google " + i);
+            place.setLocation(randomPoint());
+            place.setRadiusMeters(20 + random.nextInt(200));
+            place.setImportance(i); // eindeutig, damit die Reihenfolge definiert ist
+            googlePlaceRepository.saveAndFlush(place);
+        }
+        for (int i = 0; i < 40; i++) {
+            CustomPlace place = new CustomPlace();
+            place.setCreator(owner);
+            place.setOwner(owner);
+            place.setName("Spot " + i);
+            place.setLocation(randomPoint());
+            place.setRadiusMeters(20 + random.nextInt(300));
+            place.setAccessType(PlaceAccessType.PUBLIC);
+            place.setLive(i % 5 != 0);
+            place.setExpiresAt(i % 7 == 0 ? now.minusMinutes(1) : now.plusHours(2));
+            customPlaceRepository.saveAndFlush(place);
+        }
+
+        index = new GeofenceIndex(googlePlaceRepository, customPlaceRepository, new SimpleMeterRegistry());
+        index.load();
+    }
+
+    @Test
+    void indexAndDatabase_ShouldFindSamePlaces_ForRandomPoints() {
+        int nonEmpty = 0;
+        for (int i = 0; i < 200; i++) {
+            Point point = randomPoint();
+            double latitude = point.getY();
+            double longitude = point.getX();
+
+            GeofenceIndex.Containing containing = index.findContaining(latitude, longitude).orElseThrow();
+            List<Long> googleFromDatabase = googlePlaceRepository.findActivePlacesForUserLocation(latitude, longitude)
+                    .stream().map(GooglePlace::getId).toList();
+            List<UUID> customFromDatabase = customPlaceRepository.findActivePlacesForUserLocation(latitude, longitude)
+                    .stream().map(CustomPlace::getId).toList();
+
+            assertThat(containing.googlePlaceIds()).containsExactlyElementsOf(googleFromDatabase);
+            assertThat(containing.customPlaceIds()).containsExactlyElementsOf(customFromDatabase);
+            if (!googleFromDatabase.isEmpty() || !customFromDatabase.isEmpty()) {
+                nonEmpty++;
+            }
+        }
+        // Sonst wäre der Vergleich nichtssagend
+        assertThat(nonEmpty).isGreaterThan(50);
+    }
+
+    @Test
+    void indexAndDatabase_ShouldAgree_AfterPlaceWasUpdated() {
+        CustomPlace spot = customPlaceRepository.findLiveGeofences().stream()
+                .findFirst()
+                .flatMap(row -> customPlaceRepository.findById(row.getId()))
+                .orElseThrow();
+        spot.setLocation(createPoint(LON, LAT));
+        spot.setRadiusMeters(500);
+        customPlaceRepository.saveAndFlush(spot);
+        index.updateCustomPlace(spot);
+
+        GeofenceIndex.Containing containing = index.findContaining(LAT, LON).orElseThrow();
+
+        assertThat(containing.customPlaceIds()).contains(spot.getId());
+        assertThat(containing.customPlaceIds()).containsExactlyElementsOf(
+                customPlaceRepository.findActivePlacesForUserLocation(LAT, LON).stream().map(CustomPlace::getId).toList());
+    }
+
+    private Point randomPoint() {
+        // +-0.0045° Breite bzw. +-0.0066° Länge entspricht ca. +-500 m
+        return createPoint(LON + (random.nextDouble() - 0.5) * 0.0132, LAT + (random.nextDouble() - 0.5) * 0.009);
+    }
+
+    private Point createPoint(double lon, double lat) {
+        Point p = geometryFactory.createPoint(new Coordinate(lon, lat));
+        p.setSRID(4326);
+        return p;
+    }
+}
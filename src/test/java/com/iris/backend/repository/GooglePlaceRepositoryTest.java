@@ -4,6 +4,7 @@ import com.iris.backend.model.GooglePlace;
 import com.iris.backend.model.Photo;
 import com.iris.backend.model.User;
 import com.iris.backend.model.enums.PhotoVisibility;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.locationtech.jts.geom.Coordinate;
@@ -26,6 +27,7 @@ class GooglePlaceRepositoryTest extends AbstractRepositoryTest {
     @Autowired private PhotoRepository photoRepository;
     @Autowired private UserRepository userRepository;
     @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private EntityManager entityManager;
 
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
     private User testUser;
@@ -98,6 +100,32 @@ class GooglePlaceRepositoryTest extends AbstractRepositoryTest {
         assertThat(places.get(0).getName()).isEqualTo("Aktiver Ort Bern");
     }
 
+    @Test
+    void testUpsertAll_InsertsNewAndUpdatesExistingPlacesInOneStatement() {
+        String placesJson = """
+                [{"googlePlaceId":"g-1","name":"Umbenannt Bern","address":"Bärengraben","latitude":46.9481,"longitude":7.4475,"radiusMeters":40,"importance":8},
+                 {"googlePlaceId":"g-new","name":"Neues Café","address":"Altstadt","latitude":46.9470,"longitude":7.4460,"radiusMeters":40,"importance":8}]
+                """;
+
+        List<GooglePlaceRepository.UpsertedPlace> upserted = googlePlaceRepository.upsertAll(placesJson);
+
+        assertThat(upserted).hasSize(2);
+        GooglePlaceRepository.UpsertedPlace existing = upserted.stream()
+                .filter(p -> p.getGooglePlaceId().equals("g-1")).findFirst().orElseThrow();
+        GooglePlaceRepository.UpsertedPlace created = upserted.stream()
+                .filter(p -> p.getGooglePlaceId().equals("g-new")).findFirst().orElseThrow();
+        assertThat(existing.getId()).isEqualTo(activePlace.getId());
+        assertThat(existing.getInserted()).isFalse();
+        assertThat(created.getInserted()).isTrue();
+
+        // Native Query umgeht den Persistence Context -> frisch aus der DB lesen
+        entityManager.clear();
+        GooglePlace reloaded = googlePlaceRepository.findByGooglePlaceId("g-1").orElseThrow();
+        assertThat(reloaded.getName()).isEqualTo("Umbenannt Bern");
+        assertThat(reloaded.getRadiusMeters()).isEqualTo(40);
+        assertThat(googlePlaceRepository.findById(created.getId())).isPresent();
+    }
+
     private Point createPoint(double lon, double lat) {
         Point p = geometryFactory.createPoint(new Coordinate(lon, lat));
         p.setSRID(4326);
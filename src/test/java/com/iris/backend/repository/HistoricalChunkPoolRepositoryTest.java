@@ -0,0 +1,88 @@
+package com.iris.backend.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.config.JacksonConfig;
+import com.iris.backend.dto.HistoricalPointDTO;
+import com.iris.backend.service.HistoricalChunkExecutor;
+import com.iris.backend.service.HistoricalPhotoIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs concurrent long histories against a pool of two connections: callers that wait for their chunks
+ * while holding a connection must not starve the chunks.
+ */
+@TestPropertySource(properties = {
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=10000"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HistoricalChunkPoolRepositoryTest extends AbstractRepositoryTest {
+
+    private static final int CALLERS_IN_TRANSACTION = 4;
+    private static final int CALLERS_WITHOUT_TRANSACTION = 2;
+
+    @Autowired private HistoricalFeedRepository historicalFeedRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void findMatches_ShouldFinish_WhenCallersHoldMoreConnectionsThanThePoolHas() throws Exception {
+        // --- ARRANGE ---
+        ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+        // 10 Punkte in Chunks zu 2 -> 5 Chunks pro Aufruf, bis zu 4 davon parallel
+        HistoricalChunkExecutor chunkExecutor = new HistoricalChunkExecutor(historicalFeedRepository, objectMapper, 2, 4);
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        List<HistoricalPointDTO> history = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            history.add(new HistoricalPointDTO(46.9480 + i * 0.01, 7.4474, now.minusMinutes(10L * i)));
+        }
+        List<HistoricalPointDTO> simplified = HistoricalChunkExecutor.simplify(history);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        List<Callable<Optional<List<HistoricalPhotoIndex.Match>>>> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS_IN_TRANSACTION; i++) {
+            // Wie ein @Transactional(readOnly = true) Request: hält die Verbindung bis zum Ende
+            callers.add(() -> readOnly.execute(status -> chunkExecutor.findMatches(simplified)));
+        }
+        for (int i = 0; i < CALLERS_WITHOUT_TRANSACTION; i++) {
+            callers.add(() -> chunkExecutor.findMatches(simplified));
+        }
+
+        // --- EXECUTE ---
+        ExecutorService requests = Executors.newFixedThreadPool(callers.size());
+        List<Optional<List<HistoricalPhotoIndex.Match>>> results = new ArrayList<>();
+        try {
+            List<Future<Optional<List<HistoricalPhotoIndex.Match>>>> futures = new ArrayList<>();
+            callers.forEach(caller -> futures.add(requests.submit(caller)));
+            for (Future<Optional<List<HistoricalPhotoIndex.Match>>> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            requests.shutdownNow();
+        }
+
+        // --- ASSERT ---
+        // Kein Aufruf ist an einem Verbindungs-Timeout gescheitert
+        assertThat(results).hasSize(CALLERS_IN_TRANSACTION + CALLERS_WITHOUT_TRANSACTION)
+                .allSatisfy(result -> assertThat(result).contains(List.of()));
+    }
+}
@@ -0,0 +1,205 @@
+package com.iris.backend.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.config.JacksonConfig;
+import com.iris.backend.dto.HistoricalPointDTO;
+import com.iris.backend.dto.feed.GalleryFeedItemDTO;
+import com.iris.backend.model.*;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.model.enums.PlaceAccessType;
+import com.iris.backend.service.GcsStorageService;
+import com.iris.backend.service.HistoricalChunkExecutor;
+import com.iris.backend.service.HistoricalFeedService;
+import com.iris.backend.service.HistoricalPhotoIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that the in-memory index and the SQL query produce the same historical feed.
+ */
+class HistoricalFeedParityRepositoryTest extends AbstractRepositoryTest {
+
+    @Autowired private HistoricalFeedRepository historicalFeedRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private GooglePlaceRepository googlePlaceRepository;
+    @Autowired private CustomPlaceRepository customPlaceRepository;
+    @Autowired private PhotoRepository photoRepository;
+    @Autowired private PlaceStatsRepository placeStatsRepository;
+    @Autowired private EntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+    private HistoricalFeedService historicalFeedService;
+    private OffsetDateTime baseTime;
+    private User uploaderA;
+    private User uploaderB;
+
+    @BeforeEach
+    void setUp() {
+        placeStatsRepository.deleteAll();
+        photoRepository.deleteAll();
+        googlePlaceRepository.deleteAll();
+        customPlaceRepository.deleteAll();
+        userRepository.deleteAll();
+
+        baseTime = OffsetDateTime.now(ZoneOffset.UTC);
+        uploaderA = createUser("parity-a");
+        uploaderB = createUser("parity-b");
+
+        GooglePlace bear = createGooglePlace("g-bern-1", "Bern Bärenpark", 7.4474, 46.9480, 500);
+        GooglePlace zytglogge = createGooglePlace("g-bern-2", "Zytglogge", 7.4479, 46.9479, 150);
+        GooglePlace zurich = createGooglePlace("g-zrh-1", "Zürich HB", 8.5417, 47.3769, 500);
+        CustomPlace spot = createCustomPlace("Bern Geheimtipp", 7.4480, 46.9490, 500);
+
+        // Zeitstempel bewusst ohne Gleichstände (Sortierung bei Gleichstand ist nicht definiert)
+        createPhoto(bear, null, uploaderA, baseTime.minusMinutes(30), PhotoVisibility.PUBLIC);
+        createPhoto(bear, null, uploaderB, baseTime.minusMinutes(50), PhotoVisibility.VISIBLE_TO_ALL);
+        createPhoto(bear, null, uploaderA, baseTime.minusMinutes(70), PhotoVisibility.PUBLIC);
+        createPhoto(zytglogge, null, uploaderB, baseTime.minusMinutes(90), PhotoVisibility.PUBLIC);
+        createPhoto(null, spot, uploaderA, baseTime.minusMinutes(110), PhotoVisibility.VISIBLE_TO_ALL);
+        createPhoto(null, spot, uploaderB, baseTime.minusMinutes(20), PhotoVisibility.FRIENDS); // nicht öffentlich
+        createPhoto(bear, null, uploaderB, baseTime.minusHours(7), PhotoVisibility.PUBLIC); // zu alt
+        createPhoto(zurich, null, uploaderA, baseTime.minusMinutes(40), PhotoVisibility.PUBLIC); // zu weit weg
+        placeStatsRepository.recomputeGooglePlacesWithExpiries(baseTime.minusYears(1), baseTime.plusYears(1), baseTime);
+        placeStatsRepository.recomputeCustomPlacesWithExpiries(baseTime.minusYears(1), baseTime.plusYears(1), baseTime);
+        entityManager.clear();
+
+        GcsStorageService gcsStorageService = mock(GcsStorageService.class);
+        when(gcsStorageService.generateSignedUrl(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> "signed:" + invocation.getArgument(1));
+
+        HistoricalPhotoIndex index = new HistoricalPhotoIndex(historicalFeedRepository, new SimpleMeterRegistry(), 168);
+        index.load();
+        ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+        // Chunks laufen auf eigenen Verbindungen und sähen die Testdaten (nicht committet) nicht -> ein Chunk
+        HistoricalChunkExecutor chunkExecutor = new HistoricalChunkExecutor(historicalFeedRepository, objectMapper, 1000, 1);
+
+        historicalFeedService = new HistoricalFeedService(
+                historicalFeedRepository,
+                objectMapper,
+                gcsStorageService,
+                "photos",
+                index,
+                googlePlaceRepository,
+                customPlaceRepository,
+                userRepository,
+                placeStatsRepository,
+                chunkExecutor
+        );
+    }
+
+    @Test
+    void indexAndDatabase_ShouldReturnSameFeed_ForSinglePoint() {
+        List<HistoricalPointDTO> history = List.of(new HistoricalPointDTO(46.9480, 7.4474, baseTime));
+
+        assertSameFeed(history, 3);
+    }
+
+    @Test
+    void indexAndDatabase_ShouldReturnSameFeed_ForPathOverSeveralPoints() {
+        List<HistoricalPointDTO> history = List.of(
+                new HistoricalPointDTO(46.9480, 7.4474, baseTime.minusMinutes(60)),
+                new HistoricalPointDTO(46.9500, 7.4490, baseTime.minusMinutes(10)),
+                new HistoricalPointDTO(47.3769, 8.5417, baseTime.minusHours(6))
+        );
+
+        assertSameFeed(history, 3);
+    }
+
+    @Test
+    void indexAndDatabase_ShouldReturnSameFeed_WhenNothingMatches() {
+        List<HistoricalPointDTO> history = List.of(new HistoricalPointDTO(46.2044, 6.1432, baseTime));
+
+        assertSameFeed(history, 0);
+    }
+
+    private void assertSameFeed(List<HistoricalPointDTO> history, int expectedSize) {
+        List<GalleryFeedItemDTO> fromDatabase = historicalFeedService.generateFromDatabase(history);
+        Optional<List<GalleryFeedItemDTO>> fromIndex = historicalFeedService.generateFromIndex(history);
+
+        assertThat(fromIndex).isPresent();
+        assertThat(fromDatabase).hasSize(expectedSize);
+        assertThat(fromIndex.get())
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(fromDatabase);
+    }
+
+    private User createUser(String name) {
+        User user = new User();
+        user.setFirebaseUid(name + "-uid");
+        user.setUsername(name);
+        user.setEmail(name + "@feed.com");
+        return userRepository.saveAndFlush(user);
+    }
+
+    private GooglePlace createGooglePlace(String googleId, String name, double lon, double lat, int radius) {
+        GooglePlace place = new GooglePlace();
+        place.setGooglePlaceId(googleId);
+        place.setName(name);
+        place.setLocation(createPoint(lon, lat));
+        place.setRadiusMeters(radius);
+        place.setImportance(5);
+        return googlePlaceRepository.saveAndFlush(place);
+    }
+
+    private CustomPlace createCustomPlace(String name, double lon, double lat, int radius) {
+        CustomPlace place = new CustomPlace();
+        place.setCreator(uploaderA);
+        place.setOwner(uploaderA);
+        place.setName(name);
+        place.setLocation(createPoint(lon, lat));
+        place.setRadiusMeters(radius);
+        place.setAccessType(PlaceAccessType.PUBLIC);
+        place.setLive(true);
+        place.setTrending(false);
+        place.setExpiresAt(baseTime.plusDays(1));
+        return customPlaceRepository.saveAndFlush(place);
+    }
+
+    private Point createPoint(double lon, double lat) {
+        Point p = geometryFactory.createPoint(new Coordinate(lon, lat));
+        p.setSRID(4326);
+        return p;
+    }
+
+    private void createPhoto(GooglePlace gp, CustomPlace cp, User uploader, OffsetDateTime uploadedAt,
+                             PhotoVisibility visibility) {
+        Photo p = new Photo();
+        p.setUploader(uploader);
+        p.setUploadedAt(uploadedAt);
+        p.setExpiresAt(uploadedAt.plusDays(1));
+        p.setVisibility(visibility);
+        p.setStorageUrl("photo-" + uploadedAt.toEpochSecond() + ".jpg");
+        if (gp != null) {
+            p.setGooglePlace(gp);
+            p.setLocation(gp.getLocation());
+        } else {
+            p.setCustomPlace(cp);
+            p.setLocation(cp.getLocation());
+        }
+        Photo saved = photoRepository.saveAndFlush(p);
+        jdbcTemplate.update("UPDATE photos SET uploaded_at = ? WHERE id = ?",
+                java.sql.Timestamp.from(uploadedAt.toInstant()), saved.getId());
+    }
+}
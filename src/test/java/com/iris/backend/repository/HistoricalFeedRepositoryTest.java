@@ -101,7 +101,7 @@ class HistoricalFeedRepositoryTest extends AbstractRepositoryTest {
         );
 
         // --- EXECUTE ---
-        var feedItems = historicalFeedRepository.findHistoricalFeed(historyJson);
+        var feedItems = historicalFeedRepository.findHistoricalFeed(historyJson, baseTime.minusHours(5), baseTime);
 
         // --- ASSERT ---
         assertThat(feedItems).hasSize(2);
@@ -0,0 +1,113 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.dto.HistoricalPointDTO;
+import com.iris.backend.service.HistoricalUploadWindow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the historical queries only scan the {@code photos} partitions of their upload window.
+ * EXPLAINs the native SQL of the repository methods with bound parameters, as the application runs it.
+ */
+class PhotoPartitionPruningRepositoryTest extends AbstractRepositoryTest {
+
+    private static final int PARTITIONED_DAYS = 10;
+    private static final Pattern PARTITION_IN_PLAN = Pattern.compile("photos_(p\\d{8}|legacy)");
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private HistoricalUploadWindow window;
+    private MapSqlParameterSource parameters;
+
+    @BeforeEach
+    void setUp() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        PhotoPartitionRepository partitions = new PhotoPartitionRepository(jdbcTemplate);
+        partitions.convertToPartitioned(today.minusDays(PARTITIONED_DAYS));
+        for (LocalDate day = today.minusDays(PARTITIONED_DAYS); !day.isAfter(today.plusDays(1)); day = day.plusDays(1)) {
+            partitions.createPartition(day);
+        }
+
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        String historyJson = String.format("[{\"latitude\": 46.9480, \"longitude\": 7.4474, \"timestamp\": \"%s\"}]",
+                now.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        window = HistoricalUploadWindow.of(List.of(new HistoricalPointDTO(46.9480, 7.4474, now))).orElseThrow();
+        // Alle Parameter der geprüften Queries; jede bindet nur die, die sie benutzt
+        parameters = new MapSqlParameterSource()
+                .addValue("historyJson", historyJson)
+                .addValue("uploadedFrom", window.from())
+                .addValue("uploadedTo", window.to())
+                .addValue("googlePlaceId", 1L)
+                .addValue("customPlaceId", UUID.randomUUID())
+                .addValue("excludeUserId", UUID.randomUUID())
+                .addValue("targetUserId", UUID.randomUUID());
+    }
+
+    @Test
+    void historicalFeedQueries_ShouldOnlyScanThePartitionsOfTheWindow() {
+        assertOnlyWindowPartitions(HistoricalFeedRepository.class, "findHistoricalFeed");
+        assertOnlyWindowPartitions(HistoricalFeedRepository.class, "findHistoricalMatches");
+    }
+
+    @Test
+    void placeHistoryQueries_ShouldOnlyScanThePartitionsOfTheWindow() {
+        assertOnlyWindowPartitions(PhotoRepository.class, "findPhotosForGooglePlaceMatchingHistoricalBatchFromOthers");
+        assertOnlyWindowPartitions(PhotoRepository.class, "findPhotosForGooglePlaceMatchingHistoricalBatchFromUser");
+        assertOnlyWindowPartitions(PhotoRepository.class, "findPhotosForCustomPlaceMatchingHistoricalBatchFromOthers");
+        assertOnlyWindowPartitions(PhotoRepository.class, "findPhotosForCustomPlaceMatchingHistoricalBatchFromUser");
+    }
+
+    private void assertOnlyWindowPartitions(Class<?> repository, String methodName) {
+        assertThat(scannedPartitions(nativeSql(repository, methodName)))
+                .as(methodName)
+                // Leer hieße: der Plan nennt gar keine Partition, dann prüft die Assertion nichts
+                .isNotEmpty()
+                .isSubsetOf(
+                        "p" + window.from().toLocalDate().format(DateTimeFormatter.BASIC_ISO_DATE),
+                        "p" + window.to().toLocalDate().format(DateTimeFormatter.BASIC_ISO_DATE));
+    }
+
+    // Das SQL genau so, wie es im @Query der Repository-Methode steht
+    private static String nativeSql(Class<?> repository, String methodName) {
+        Method method = Arrays.stream(repository.getMethods())
+                .filter(m -> m.getName().equals(methodName))
+                .findFirst()
+                .orElseThrow();
+        Query query = method.getAnnotation(Query.class);
+        assertThat(query.nativeQuery()).as(methodName).isTrue();
+        return query.value();
+    }
+
+    private Set<String> scannedPartitions(String sql) {
+        List<String> plan = new NamedParameterJdbcTemplate(jdbcTemplate)
+                .queryForList("EXPLAIN " + sql, parameters, String.class);
+        Set<String> scanned = new TreeSet<>();
+        for (String line : plan) {
+            Matcher matcher = PARTITION_IN_PLAN.matcher(line);
+            while (matcher.find()) {
+                scanned.add(matcher.group(1));
+            }
+        }
+        return scanned;
+    }
+}
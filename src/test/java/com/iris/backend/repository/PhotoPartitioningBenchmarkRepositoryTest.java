@@ -0,0 +1,129 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.dto.HistoricalPointDTO;
+import com.iris.backend.model.GooglePlace;
+import com.iris.backend.model.User;
+import com.iris.backend.service.HistoricalUploadWindow;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark for the partitioned {@code photos} table: the historical query for a recent point takes about
+ * the same time with 10 or 120 days of photos, because PostgreSQL only scans the partitions of the
+ * point's upload window (checked by {@link PhotoPartitionPruningRepositoryTest}).
+ *
+ * Inserts 120k photos and compares timings, so it is excluded from the default build; run it with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class PhotoPartitioningBenchmarkRepositoryTest extends AbstractRepositoryTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoPartitioningBenchmarkRepositoryTest.class);
+
+    private static final int PHOTOS_PER_DAY = 1000;
+    private static final int[] HISTORY_DAYS = {10, 40, 120};
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 15;
+
+    @Autowired private HistoricalFeedRepository historicalFeedRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private GooglePlaceRepository googlePlaceRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Test
+    void findHistoricalMatches_ShouldStayFlat_AsHistoryGrows() {
+        // --- ARRANGE ---
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate firstDay = today.minusDays(HISTORY_DAYS[HISTORY_DAYS.length - 1]);
+        PhotoPartitionRepository partitions = new PhotoPartitionRepository(jdbcTemplate);
+        partitions.convertToPartitioned(firstDay);
+        for (LocalDate day = firstDay; !day.isAfter(today.plusDays(1)); day = day.plusDays(1)) {
+            partitions.createPartition(day);
+        }
+
+        User uploader = new User();
+        uploader.setFirebaseUid("bench-uid");
+        uploader.setUsername("Bench");
+        uploader.setEmail("bench@test.com");
+        userRepository.saveAndFlush(uploader);
+
+        GooglePlace place = new GooglePlace();
+        place.setGooglePlaceId("g-bench-1");
+        place.setName("Bern Bärenpark");
+        place.setLocation(geometryFactory.createPoint(new Coordinate(7.4474, 46.9480)));
+        place.setRadiusMeters(500);
+        place.setImportance(5);
+        googlePlaceRepository.saveAndFlush(place);
+
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        String historyJson = String.format("[{\"latitude\": 46.9480, \"longitude\": 7.4474, \"timestamp\": \"%s\"}]",
+                now.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        HistoricalUploadWindow window = HistoricalUploadWindow.of(List.of(new HistoricalPointDTO(46.9480, 7.4474, now)))
+                .orElseThrow();
+
+        // --- EXECUTE ---
+        List<Long> medianMicros = new ArrayList<>();
+        List<Integer> matchCounts = new ArrayList<>();
+        int filledDays = 0;
+        for (int days : HISTORY_DAYS) {
+            insertPhotos(uploader, place, now.minusDays(days), now.minusDays(filledDays));
+            filledDays = days;
+            jdbcTemplate.execute("ANALYZE photos");
+
+            matchCounts.add(historicalFeedRepository.findHistoricalMatches(historyJson, window.from(), window.to()).size());
+            medianMicros.add(medianMicros(() ->
+                    historicalFeedRepository.findHistoricalMatches(historyJson, window.from(), window.to())));
+            logger.info("{} days / {} photos: median {} µs", days, days * PHOTOS_PER_DAY, medianMicros.get(medianMicros.size() - 1));
+        }
+
+        // --- ASSERT ---
+        // Alte Fotos passen nie zum Punkt, das Ergebnis bleibt gleich
+        assertThat(matchCounts.get(0)).isPositive();
+        assertThat(matchCounts).containsOnly(matchCounts.get(0));
+        // 12x so viele Fotos; großzügige Grenze, damit langsame CI-Maschinen nicht scheitern
+        assertThat(medianMicros.get(medianMicros.size() - 1)).isLessThan(medianMicros.get(0) * 3 + 5_000);
+    }
+
+    // Fotos im gleichen Abstand über [from, to]
+    private void insertPhotos(User uploader, GooglePlace place, OffsetDateTime from, OffsetDateTime to) {
+        jdbcTemplate.update("""
+                INSERT INTO photos (id, uploader_id, google_place_id, location, visibility, storage_url, uploaded_at, expires_at)
+                SELECT gen_random_uuid(), ?, ?, ST_SetSRID(ST_MakePoint(7.4474, 46.9480), 4326)::geography, 'PUBLIC',
+                       'bench-' || md5(ts::text) || '.jpg', ts, ts + interval '48 hours'
+                FROM generate_series(?::timestamptz, ?::timestamptz, make_interval(secs => ?)) AS ts
+                """, uploader.getId(), place.getId(), from, to, 86_400.0 / PHOTOS_PER_DAY);
+    }
+
+    private static long medianMicros(Runnable query) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            query.run();
+        }
+        long[] micros = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            query.run();
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(micros);
+        return micros[MEASURED_RUNS / 2];
+    }
+}
@@ -9,6 +9,7 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.time.OffsetDateTime;
@@ -88,7 +89,7 @@ class PhotoRepositoryTest extends AbstractRepositoryTest {
 
         // --- EXECUTE ---
         List<Photo> foundPhotos = photoRepository.findPhotosForGooglePlaceMatchingHistoricalBatchFromOthers(
-                testPlace.getId(), historyJson, currentUser.getId()
+                testPlace.getId(), historyJson, currentUser.getId(), baseTime.minusHours(5), baseTime
         );
 
         // --- ASSERT ---
@@ -134,7 +135,43 @@ class PhotoRepositoryTest extends AbstractRepositoryTest {
                 .containsExactlyInAnyOrder(PhotoVisibility.FRIENDS, PhotoVisibility.VISIBLE_TO_ALL);
     }
 
+    @Test
+    void updateDerivativesOfDuplicates_ShouldFillOnlyDuplicatesWithoutDerivatives() {
+        // --- ARRANGE ---
+        Photo original = createDuplicate(currentUser, "shared.jpg", "abc");
+        Photo duplicate = createDuplicate(currentUser, "shared.jpg", "abc");
+        Photo foreign = createDuplicate(otherUser, "shared.jpg", "abc"); // Dateien werden nie zwischen Uploadern geteilt
+        // Das Duplikat wird gefunden (und gesperrt), solange es noch lebt
+        assertThat(photoRepository.findByUploaderAndContentHash(currentUser.getId(), "abc", baseTime, Limit.of(1)))
+                .hasSize(1);
+
+        // --- EXECUTE ---
+        photoRepository.updateDerivatives(original.getId(), "thumb.jpg", "display.jpg", "LEHV6nWB2yk8");
+        int updated = photoRepository.updateDerivativesOfDuplicates(original.getId(), "thumb.jpg", "display.jpg", "LEHV6nWB2yk8");
+
+        // --- ASSERT ---
+        assertThat(updated).isEqualTo(1);
+        assertThat(thumbnailOf(duplicate)).isEqualTo("thumb.jpg");
+        assertThat(thumbnailOf(foreign)).isNull();
+    }
+
     // --- HILFSMETHODEN ---
+
+    private Photo createDuplicate(User uploader, String storageUrl, String contentHash) {
+        Photo p = new Photo();
+        p.setUploader(uploader);
+        p.setUploadedAt(baseTime);
+        p.setExpiresAt(baseTime.plusDays(1));
+        p.setVisibility(PhotoVisibility.PUBLIC);
+        p.setStorageUrl(storageUrl);
+        p.setContentHash(contentHash);
+        p.setLocation(testPlace.getLocation());
+        return photoRepository.saveAndFlush(p);
+    }
+
+    private String thumbnailOf(Photo photo) {
+        return jdbcTemplate.queryForObject("SELECT thumbnail_storage_url FROM photos WHERE id = ?", String.class, photo.getId());
+    }
     private Point createPoint(double lon, double lat) {
         Point p = geometryFactory.createPoint(new Coordinate(lon, lat));
         p.setSRID(4326);
@@ -0,0 +1,80 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.PhotoUploadReservation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PhotoUploadReservationRepositoryTest extends AbstractRepositoryTest {
+
+    @Autowired private PhotoUploadReservationRepository reservationRepository;
+
+    private OffsetDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository.deleteAll();
+        // Postgres speichert Mikrosekunden
+        now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS);
+    }
+
+    @Test
+    void claim_ShouldDeleteValidReservationOnce_AndIgnoreExpiredOnes() {
+        // --- ARRANGE ---
+        PhotoUploadReservation valid = createReservation(now.plusMinutes(30));
+        PhotoUploadReservation expired = createReservation(now.minusMinutes(1));
+
+        // --- EXECUTE ---
+        int first = reservationRepository.claim(valid.getId(), now);
+        int second = reservationRepository.claim(valid.getId(), now);
+        int expiredClaim = reservationRepository.claim(expired.getId(), now);
+
+        // --- ASSERT ---
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(expiredClaim).isZero();
+        assertThat(reservationRepository.findById(expired.getId())).isPresent();
+    }
+
+    @Test
+    void deleteIfExpired_ShouldOnlyDeleteExpiredReservations() {
+        // --- ARRANGE ---
+        PhotoUploadReservation valid = createReservation(now.plusMinutes(30));
+        PhotoUploadReservation older = createReservation(now.minusMinutes(10));
+        PhotoUploadReservation expired = createReservation(now.minusMinutes(1));
+
+        // --- EXECUTE ---
+        assertThat(reservationRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(now, Limit.of(10)))
+                .extracting(PhotoUploadReservation::getId)
+                .containsExactly(older.getId(), expired.getId());
+        int deletedValid = reservationRepository.deleteIfExpired(valid.getId(), now);
+        int deletedExpired = reservationRepository.deleteIfExpired(expired.getId(), now);
+
+        // --- ASSERT ---
+        assertThat(deletedValid).isZero();
+        assertThat(deletedExpired).isEqualTo(1);
+        assertThat(reservationRepository.findAll())
+                .extracting(PhotoUploadReservation::getId)
+                .containsExactlyInAnyOrder(valid.getId(), older.getId());
+    }
+
+    // --- HILFSMETHODEN ---
+    private PhotoUploadReservation createReservation(OffsetDateTime expiresAt) {
+        PhotoUploadReservation reservation = new PhotoUploadReservation();
+        reservation.setId(UUID.randomUUID());
+        reservation.setUploaderId(UUID.randomUUID());
+        reservation.setObjectName(UUID.randomUUID() + "-bild.jpg");
+        reservation.setContentType("image/jpeg");
+        reservation.setCreatedAt(expiresAt.minusHours(1));
+        reservation.setExpiresAt(expiresAt);
+        return reservationRepository.saveAndFlush(reservation);
+    }
+}
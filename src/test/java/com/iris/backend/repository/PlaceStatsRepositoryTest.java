@@ -0,0 +1,247 @@
+package com.iris.backend.repository;
+
+import com.iris.backend.model.GooglePlace;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.PlaceStats;
+import com.iris.backend.model.PlaceStatsSweep;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.PhotoVisibility;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class PlaceStatsRepositoryTest extends AbstractRepositoryTest {
+
+    @Autowired private PlaceStatsRepository placeStatsRepository;
+    @Autowired private PlaceStatsSweepRepository placeStatsSweepRepository;
+    @Autowired private PhotoRepository photoRepository;
+    @Autowired private GooglePlaceRepository googlePlaceRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private EntityManager entityManager;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private User uploaderA;
+    private User uploaderB;
+    private GooglePlace place;
+    private OffsetDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        placeStatsRepository.deleteAll();
+        photoRepository.deleteAll();
+        googlePlaceRepository.deleteAll();
+        userRepository.deleteAll();
+
+        // Postgres speichert Mikrosekunden
+        now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS);
+        uploaderA = createUser("stats-a");
+        uploaderB = createUser("stats-b");
+        place = createGooglePlace("g-stats-1");
+    }
+
+    @Test
+    void existsAny_And_lockIfAvailable_ShouldReflectTheBackfillState() {
+        // --- ARRANGE ---
+        assertThat(placeStatsRepository.existsAny()).isFalse();
+        assertThat(placeStatsSweepRepository.lockIfAvailable(PlaceStatsSweep.ID)).isEmpty();
+
+        // --- EXECUTE ---
+        add(createPhoto(uploaderA, PhotoVisibility.PUBLIC, now.minusMinutes(10), now.plusDays(1)));
+        placeStatsSweepRepository.saveAndFlush(new PlaceStatsSweep(PlaceStatsSweep.ID, now));
+        entityManager.clear();
+
+        // --- ASSERT ---
+        assertThat(placeStatsRepository.existsAny()).isTrue();
+        assertThat(placeStatsSweepRepository.lockIfAvailable(PlaceStatsSweep.ID))
+                .map(PlaceStatsSweep::getSweptUntil)
+                .hasValueSatisfying(sweptUntil -> assertThat(sweptUntil.toInstant()).isEqualTo(now.toInstant()));
+    }
+
+    @Test
+    void addGooglePlacePhoto_ShouldCountVisibilitiesAndNewestCover() {
+        // --- ARRANGE ---
+        Photo older = createPhoto(uploaderA, PhotoVisibility.PUBLIC, now.minusMinutes(30), now.plusDays(1));
+        Photo friendsOnly = createPhoto(uploaderA, PhotoVisibility.FRIENDS, now.minusMinutes(20), now.plusDays(1));
+        Photo newer = createPhoto(uploaderB, PhotoVisibility.PUBLIC, now.minusMinutes(10), now.plusDays(1));
+
+        // --- EXECUTE ---
+        add(newer);
+        add(older); // Ältere Fotos ersetzen das Cover nicht
+        add(friendsOnly);
+
+        // --- ASSERT ---
+        PlaceStats stats = load();
+        assertThat(stats.getPublicPhotoCount()).isEqualTo(2);
+        assertThat(stats.getFriendsPhotoCount()).isEqualTo(1);
+        assertThat(stats.getVisibleToAllPhotoCount()).isZero();
+        assertThat(stats.getCoverStorageUrl()).isEqualTo(newer.getStorageUrl());
+        assertThat(stats.getCoverUploadedAt().toInstant()).isEqualTo(newer.getUploadedAt().toInstant());
+    }
+
+    @Test
+    void recomputeGooglePlace_ShouldMatchRemainingPhotos_AfterDeletion() {
+        // --- ARRANGE ---
+        Photo kept = createPhoto(uploaderA, PhotoVisibility.VISIBLE_TO_ALL, now.minusMinutes(30), now.plusDays(1));
+        Photo deleted = createPhoto(uploaderB, PhotoVisibility.PUBLIC, now.minusMinutes(10), now.plusDays(1));
+        add(kept);
+        add(deleted);
+        photoRepository.delete(deleted);
+
+        // --- EXECUTE ---
+        placeStatsRepository.recomputeGooglePlace(place.getId(), now);
+
+        // --- ASSERT ---
+        PlaceStats stats = load();
+        assertThat(stats.getTotalPhotoCount()).isEqualTo(1);
+        assertThat(stats.getVisibleToAllPhotoCount()).isEqualTo(1);
+        assertThat(stats.getCoverStorageUrl()).isNull();
+        assertThat(placeStatsRepository.findUploaderIdsByGooglePlace(place.getId())).containsExactly(uploaderA.getId());
+    }
+
+    @Test
+    void recomputeGooglePlace_ShouldWriteZeros_ForPlaceWithoutPhotos() {
+        // --- EXECUTE ---
+        placeStatsRepository.recomputeGooglePlace(place.getId(), now);
+
+        // --- ASSERT ---
+        PlaceStats stats = load();
+        assertThat(stats.getTotalPhotoCount()).isZero();
+        assertThat(stats.getUploaderCount()).isZero();
+    }
+
+    @Test
+    void recomputeGooglePlacesWithExpiries_ShouldDropExpiredPhotos_OnlyForPlacesInTheInterval() {
+        // --- ARRANGE ---
+        GooglePlace untouched = createGooglePlace("g-stats-2");
+        Photo expiring = createPhoto(uploaderA, PhotoVisibility.PUBLIC, now.minusHours(2), now.minusMinutes(1));
+        Photo live = createPhoto(uploaderB, PhotoVisibility.PUBLIC, now.minusHours(3), now.plusDays(1));
+        add(expiring);
+        add(live);
+        Photo expiredLongAgo = createPhoto(uploaderA, PhotoVisibility.PUBLIC, untouched, now.minusDays(3), now.minusDays(2));
+        placeStatsRepository.addGooglePlacePhoto(untouched.getId(), "PUBLIC", expiredLongAgo.getStorageUrl(),
+                expiredLongAgo.getUploadedAt());
+
+        // --- EXECUTE ---
+        int recomputed = placeStatsRepository.recomputeGooglePlacesWithExpiries(now.minusMinutes(5), now, now);
+
+        // --- ASSERT ---
+        assertThat(recomputed).isEqualTo(1);
+        PlaceStats stats = load();
+        assertThat(stats.getPublicPhotoCount()).isEqualTo(1);
+        assertThat(stats.getCoverStorageUrl()).isEqualTo(live.getStorageUrl());
+        // Außerhalb des Intervalls: bleibt bis zu einem Rebuild unverändert
+        entityManager.clear();
+        assertThat(placeStatsRepository.findByGooglePlaceId(untouched.getId()).orElseThrow().getPublicPhotoCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void recomputeGooglePlace_ShouldCountUploadersOnInsert_AndKeepTheSketchCountAfterwards() {
+        // --- ARRANGE ---
+        createPhoto(uploaderA, PhotoVisibility.PUBLIC, now.minusMinutes(30), now.plusDays(1));
+        createPhoto(uploaderB, PhotoVisibility.PUBLIC, now.minusMinutes(20), now.plusDays(1));
+        placeStatsRepository.recomputeGooglePlace(place.getId(), now);
+        assertThat(load().getUploaderCount()).isEqualTo(2);
+        placeStatsRepository.updateGooglePlaceSketch(place.getId(), new byte[]{1}, 7);
+
+        // --- EXECUTE ---
+        placeStatsRepository.recomputeGooglePlace(place.getId(), now);
+
+        // --- ASSERT ---
+        assertThat(load().getUploaderCount()).isEqualTo(7);
+        assertThat(placeStatsRepository.findGooglePlaceSketch(place.getId())).containsExactly(1);
+    }
+
+    @Test
+    void fillMissingGooglePlaceSketches_ShouldOnlyFillRowsWithoutSketch() {
+        // --- ARRANGE ---
+        GooglePlace sketched = createGooglePlace("g-stats-2");
+        Photo first = createPhoto(uploaderA, PhotoVisibility.PUBLIC, now.minusMinutes(30), now.plusDays(1));
+        createPhoto(uploaderA, PhotoVisibility.FRIENDS, now.minusMinutes(20), now.plusDays(1));
+        createPhoto(uploaderB, PhotoVisibility.PUBLIC, sketched, now.minusMinutes(10), now.plusDays(1));
+        add(first);
+        placeStatsRepository.addGooglePlacePhoto(sketched.getId(), "PUBLIC", "other.jpg", now.minusMinutes(10));
+        placeStatsRepository.updateGooglePlaceSketch(sketched.getId(), new byte[]{1}, 1);
+
+        // --- EXECUTE ---
+        assertThat(placeStatsRepository.findGooglePlaceUploadersWithoutSketch())
+                .extracting(PlaceStatsRepository.GooglePlaceUploaderProjection::getPlaceId,
+                        PlaceStatsRepository.GooglePlaceUploaderProjection::getUploaderId)
+                .containsExactly(tuple(place.getId(), uploaderA.getId()));
+        String rows = "[{\"placeId\": " + place.getId() + ", \"sketch\": \"AgM=\", \"uploaderCount\": 1},"
+                + " {\"placeId\": " + sketched.getId() + ", \"sketch\": \"AgM=\", \"uploaderCount\": 5}]";
+        int filled = placeStatsRepository.fillMissingGooglePlaceSketches(rows);
+
+        // --- ASSERT ---
+        assertThat(filled).isEqualTo(1);
+        assertThat(placeStatsRepository.findGooglePlaceSketch(place.getId())).containsExactly(2, 3);
+        assertThat(placeStatsRepository.findGooglePlaceSketch(sketched.getId())).containsExactly(1);
+        assertThat(load().getUploaderCount()).isEqualTo(1);
+    }
+
+    // --- HILFSMETHODEN ---
+    private void add(Photo photo) {
+        placeStatsRepository.addGooglePlacePhoto(place.getId(), photo.getVisibility().name(), photo.getStorageUrl(),
+                photo.getUploadedAt());
+    }
+
+    private PlaceStats load() {
+        entityManager.clear();
+        return placeStatsRepository.findByGooglePlaceId(place.getId()).orElseThrow();
+    }
+
+    private User createUser(String name) {
+        User user = new User();
+        user.setFirebaseUid(name + "-uid");
+        user.setUsername(name);
+        user.setEmail(name + "@stats.com");
+        return userRepository.saveAndFlush(user);
+    }
+
+    private GooglePlace createGooglePlace(String googleId) {
+        GooglePlace googlePlace = new GooglePlace();
+        googlePlace.setGooglePlaceId(googleId);
+        googlePlace.setName(googleId);
+        googlePlace.setLocation(createPoint());
+        googlePlace.setRadiusMeters(100);
+        googlePlace.setImportance(5);
+        return googlePlaceRepository.saveAndFlush(googlePlace);
+    }
+
+    private Photo createPhoto(User uploader, PhotoVisibility visibility, OffsetDateTime uploadedAt,
+                              OffsetDateTime expiresAt) {
+        return createPhoto(uploader, visibility, place, uploadedAt, expiresAt);
+    }
+
+    private Photo createPhoto(User uploader, PhotoVisibility visibility, GooglePlace googlePlace,
+                              OffsetDateTime uploadedAt, OffsetDateTime expiresAt) {
+        Photo photo = new Photo();
+        photo.setUploader(uploader);
+        photo.setVisibility(visibility);
+        photo.setUploadedAt(uploadedAt);
+        photo.setExpiresAt(expiresAt);
+        photo.setStorageUrl("stats-" + uploadedAt.toEpochSecond() + ".jpg");
+        photo.setGooglePlace(googlePlace);
+        photo.setLocation(createPoint());
+        return photoRepository.saveAndFlush(photo);
+    }
+
+    private Point createPoint() {
+        Point point = geometryFactory.createPoint(new Coordinate(7.4474, 46.9480));
+        point.setSRID(4326);
+        return point;
+    }
+}
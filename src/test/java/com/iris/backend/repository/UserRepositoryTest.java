@@ -1,6 +1,7 @@
 package com.iris.backend.repository;
 
 import com.iris.backend.model.User;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.locationtech.jts.geom.Coordinate;
@@ -11,6 +12,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -22,6 +24,9 @@ class UserRepositoryTest extends AbstractRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
     private User currentUser;
     private User nearbyFriend;
@@ -79,6 +84,26 @@ class UserRepositoryTest extends AbstractRepositoryTest {
                 .containsExactlyInAnyOrder("Anna_Friend", "Stranger_Anna");
     }
 
+    @Test
+    void testUpdateLocations_ShouldWriteAllRowsInOneStatement() {
+        String json = """
+                [{"id":"%s","latitude":46.95,"longitude":7.45,"updatedAt":"2026-01-10T12:00:00Z"},
+                 {"id":"%s","latitude":47.0,"longitude":8.0,"updatedAt":"2026-01-10T12:00:05Z"}]
+                """.formatted(currentUser.getId(), distantFriend.getId());
+
+        int updated = userRepository.updateLocations(json);
+        entityManager.clear();
+
+        assertThat(updated).isEqualTo(2);
+        User reloaded = userRepository.findById(distantFriend.getId()).orElseThrow();
+        assertThat(reloaded.getLastLocation().getY()).isEqualTo(47.0);
+        assertThat(reloaded.getLastLocation().getX()).isEqualTo(8.0);
+        assertThat(reloaded.getLastLocationUpdatedAt().toInstant()).isEqualTo(Instant.parse("2026-01-10T12:00:05Z"));
+        assertThat(userRepository.findLocationsUpdatedSince(OffsetDateTime.now().minusMinutes(5)))
+                .extracting(UserRepository.LocationProjection::getId)
+                .containsExactlyInAnyOrder(nearbyFriend.getId(), nearbyStranger.getId());
+    }
+
     private Point createPoint(double lon, double lat) {
         Point p = geometryFactory.createPoint(new Coordinate(lon, lat));
         p.setSRID(4326);
@@ -3,6 +3,7 @@ package com.iris.backend.service;
 import com.iris.backend.dto.CreateCustomPlaceRequestDTO;
 import com.iris.backend.dto.ParticipantDTO;
 import com.iris.backend.dto.UpdateCustomPlaceRequestDTO;
+import com.iris.backend.event.CustomPlaceChangedEvent;
 import com.iris.backend.model.CustomPlace;
 import com.iris.backend.model.Friendship;
 import com.iris.backend.model.User;
@@ -21,6 +22,7 @@ import org.locationtech.jts.geom.PrecisionModel;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -42,6 +44,8 @@ class CustomPlaceServiceTest {
     @Mock private PhotoRepository photoRepository;
     @Mock private FriendshipRepository friendshipRepository;
     @Mock private GcsStorageService gcsStorageService;
+    @Mock private HistoricalPhotoIndex historicalPhotoIndex;
+    @Mock private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private CustomPlaceService customPlaceService;
@@ -102,6 +106,7 @@ class CustomPlaceServiceTest {
         assertThat(savedPlace.getCoverImageUrl()).isEqualTo("cover.jpg");
         assertThat(savedPlace.isLive()).isTrue();
         verify(customPlaceRepository).save(any(CustomPlace.class));
+        verify(eventPublisher).publishEvent(new CustomPlaceChangedEvent(savedPlace));
     }
 
     @Test
@@ -204,6 +209,7 @@ class CustomPlaceServiceTest {
         assertThat(updatedPlace.getAccessKey()).isEqualTo("secret123");
         assertThat(updatedPlace.isTrending()).isTrue();
         assertThat(updatedPlace.isLive()).isFalse();
+        verify(eventPublisher).publishEvent(new CustomPlaceChangedEvent(updatedPlace));
     }
 
     private Point createPoint(double lon, double lat) {
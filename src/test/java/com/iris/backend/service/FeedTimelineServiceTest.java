@@ -0,0 +1,200 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.FeedTimelineEntry;
+import com.iris.backend.model.FeedTimelineEntryId;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.repository.FeedTimelineRepository;
+import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.PhotoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeedTimelineServiceTest {
+
+    @Mock private FeedTimelineRepository feedTimelineRepository;
+    @Mock private FriendshipRepository friendshipRepository;
+    @Mock private PhotoRepository photoRepository;
+
+    private FeedTimelineService feedTimelineService;
+
+    private User viewer;
+    private User friend;
+    private User popularFriend;
+    private final OffsetDateTime baseTime = OffsetDateTime.parse("2026-01-01T12:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        feedTimelineService = new FeedTimelineService(feedTimelineRepository, friendshipRepository, photoRepository, 2);
+
+        viewer = user("Viewer");
+        friend = user("Friend");
+        popularFriend = user("Popular");
+    }
+
+    @Test
+    void fanOut_ShouldWriteFeedPhotosAndSkipSpotOnlyAndHighDegreeUploaders() {
+        // --- ARRANGE ---
+        when(friendshipRepository.findUserIdsWithMoreAcceptedFriendsThan(2)).thenReturn(List.of(popularFriend.getId()));
+        feedTimelineService.refreshHighDegreeUsers();
+
+        Photo friendsPhoto = photo(friend, PhotoVisibility.FRIENDS, baseTime);
+        Photo spotOnlyPhoto = photo(friend, PhotoVisibility.PUBLIC, baseTime);
+        Photo popularPhoto = photo(popularFriend, PhotoVisibility.VISIBLE_TO_ALL, baseTime);
+
+        // --- EXECUTE ---
+        feedTimelineService.fanOut(friendsPhoto);
+        feedTimelineService.fanOut(spotOnlyPhoto);
+        feedTimelineService.fanOut(popularPhoto);
+
+        // --- ASSERT ---
+        verify(feedTimelineRepository).fanOutToFriends(
+                friendsPhoto.getId(), friend.getId(), friendsPhoto.getUploadedAt(), friendsPhoto.getExpiresAt());
+        verifyNoMoreInteractions(feedTimelineRepository);
+    }
+
+    @Test
+    void getFriendsFeedPage_ShouldMergeTimelineWithHighDegreeFriendsAndReturnCursor() {
+        // --- ARRANGE ---
+        when(friendshipRepository.findUserIdsWithMoreAcceptedFriendsThan(2)).thenReturn(List.of(popularFriend.getId()));
+        feedTimelineService.refreshHighDegreeUsers();
+        when(friendshipRepository.findAcceptedFriendIds(viewer.getId()))
+                .thenReturn(List.of(friend.getId(), popularFriend.getId()));
+
+        Photo newest = photo(friend, PhotoVisibility.FRIENDS, baseTime.plusMinutes(30));
+        Photo middle = photo(popularFriend, PhotoVisibility.VISIBLE_TO_ALL, baseTime.plusMinutes(20));
+        Photo older = photo(friend, PhotoVisibility.FRIENDS, baseTime.plusMinutes(10));
+        Photo oldestPulled = photo(popularFriend, PhotoVisibility.FRIENDS, baseTime);
+
+        when(feedTimelineRepository.findPage(eq(viewer.getId()), any(), any(), any(), eq(Limit.of(3))))
+                .thenReturn(List.of(entry(newest), entry(older)));
+        when(photoRepository.findFriendsFeedPageByUploaders(eq(java.util.Set.of(popularFriend.getId())), any(), any(), any(), any(), eq(Limit.of(3))))
+                .thenReturn(List.of(middle, oldestPulled));
+        when(photoRepository.findAllById(anyList())).thenReturn(List.of(older, newest));
+
+        // --- EXECUTE ---
+        FeedTimelineService.Page page = feedTimelineService.getFriendsFeedPage(viewer.getId(), null, 3);
+
+        // --- ASSERT ---
+        assertThat(page.photos()).containsExactly(newest, middle, older);
+        FeedTimelineService.Cursor next = FeedTimelineService.Cursor.decode(page.nextCursor());
+        assertThat(next.photoId()).isEqualTo(older.getId());
+        assertThat(next.uploadedAt().toInstant()).isEqualTo(older.getUploadedAt().toInstant());
+    }
+
+    @Test
+    void getFriendsFeedPage_ShouldReturnNoCursor_OnLastPage() {
+        Photo only = photo(friend, PhotoVisibility.FRIENDS, baseTime);
+        FeedTimelineService.Cursor cursor = new FeedTimelineService.Cursor(baseTime.plusHours(1), UUID.randomUUID());
+
+        when(feedTimelineRepository.findPage(eq(viewer.getId()), any(OffsetDateTime.class), any(), any(), any()))
+                .thenReturn(List.of(entry(only)));
+        when(photoRepository.findAllById(List.of(only.getId()))).thenReturn(List.of(only));
+
+        FeedTimelineService.Page page = feedTimelineService.getFriendsFeedPage(viewer.getId(), cursor.encode(), 20);
+
+        assertThat(page.photos()).containsExactly(only);
+        assertThat(page.nextCursor()).isNull();
+        // Keine Freunde mit Fan-out-on-read -> keine zusätzlichen Queries
+        verifyNoInteractions(friendshipRepository);
+        verify(feedTimelineRepository).findPage(eq(viewer.getId()), any(OffsetDateTime.class),
+                eq(cursor.uploadedAt()), eq(cursor.photoId()), eq(Limit.of(20)));
+    }
+
+    @Test
+    void getFriendsFeedPage_ShouldRejectMalformedCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> feedTimelineService.getFriendsFeedPage(viewer.getId(), "not-a-cursor", 20));
+    }
+
+    @Test
+    void cursorOrder_ShouldMatchPostgresUuidOrder() {
+        // Postgres vergleicht uuid vorzeichenlos: 8000... ist grösser als 7fff...
+        UUID high = UUID.fromString("80000000-0000-0000-0000-000000000000");
+        UUID low = UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff");
+
+        List<FeedTimelineService.Cursor> sorted = java.util.stream.Stream.of(
+                        new FeedTimelineService.Cursor(baseTime, low),
+                        new FeedTimelineService.Cursor(baseTime, high))
+                .sorted(FeedTimelineService.Cursor.NEWEST_FIRST)
+                .toList();
+
+        assertThat(sorted).extracting(FeedTimelineService.Cursor::photoId).containsExactly(high, low);
+    }
+
+    @Test
+    void refreshHighDegreeUsers_ShouldBackfillUsersThatDroppedBelowTheLimit() {
+        when(friendshipRepository.findUserIdsWithMoreAcceptedFriendsThan(2))
+                .thenReturn(List.of(popularFriend.getId()))
+                .thenReturn(List.of());
+
+        feedTimelineService.refreshHighDegreeUsers();
+        feedTimelineService.refreshHighDegreeUsers();
+
+        verify(feedTimelineRepository, times(1)).backfillToAllFriends(eq(popularFriend.getId()), any());
+    }
+
+    @Test
+    void backfillOnRollout_ShouldBackfillOnce_AndSkipWhenTheTimelineIsAlreadyFilled() {
+        // --- ARRANGE ---
+        when(feedTimelineRepository.tryAdvisoryXactLock(anyLong())).thenReturn(true);
+        when(feedTimelineRepository.existsUploadedBefore(any())).thenReturn(false, true);
+
+        // --- EXECUTE ---
+        feedTimelineService.backfillOnRollout();
+        feedTimelineService.backfillOnRollout();
+
+        // --- ASSERT ---
+        verify(feedTimelineRepository, times(1)).backfillAll(any(), eq(2));
+    }
+
+    @Test
+    void backfillOnRollout_ShouldSkip_WhenAnotherInstanceHoldsTheLock() {
+        when(feedTimelineRepository.tryAdvisoryXactLock(anyLong())).thenReturn(false);
+
+        feedTimelineService.backfillOnRollout();
+
+        verify(feedTimelineRepository, never()).backfillAll(any(), anyInt());
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setUsername(name);
+        return user;
+    }
+
+    private Photo photo(User uploader, PhotoVisibility visibility, OffsetDateTime uploadedAt) {
+        Photo photo = new Photo();
+        photo.setId(UUID.randomUUID());
+        photo.setUploader(uploader);
+        photo.setVisibility(visibility);
+        photo.setUploadedAt(uploadedAt);
+        photo.setExpiresAt(uploadedAt.plusDays(7));
+        return photo;
+    }
+
+    private FeedTimelineEntry entry(Photo photo) {
+        FeedTimelineEntry entry = new FeedTimelineEntry();
+        entry.setId(new FeedTimelineEntryId(viewer.getId(), photo.getId()));
+        entry.setUploaderId(photo.getUploader().getId());
+        entry.setUploadedAt(photo.getUploadedAt());
+        entry.setExpiresAt(photo.getExpiresAt());
+        return entry;
+    }
+}
@@ -0,0 +1,134 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.enums.FriendshipStatus;
+import com.iris.backend.repository.FriendshipRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FriendGraphCacheTest {
+
+    @Mock private FriendshipRepository friendshipRepository;
+
+    private MutableClock clock;
+    private FriendGraphCache cache;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID friendId = UUID.randomUUID();
+    private final UUID pendingId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-10T12:00:00Z"));
+        cache = new FriendGraphCache(friendshipRepository, new SimpleMeterRegistry(), 2, Duration.ofMinutes(10), clock);
+    }
+
+    @Test
+    void relations_ShouldBeSplitByStatus_FromOneQuery() {
+        // --- ARRANGE ---
+        List<FriendshipRepository.RelationProjection> relations =
+                List.of(relation(friendId, FriendshipStatus.ACCEPTED), relation(pendingId, FriendshipStatus.PENDING));
+        when(friendshipRepository.findRelations(userId)).thenReturn(relations);
+
+        // --- EXECUTE & ASSERT ---
+        assertThat(cache.friendIds(userId).toList()).containsExactly(friendId);
+        assertThat(cache.relatedUserIds(userId).toList()).containsExactlyInAnyOrder(friendId, pendingId);
+        verify(friendshipRepository, times(1)).findRelations(userId);
+    }
+
+    @Test
+    void relations_ShouldHitCache_UntilTtlOrInvalidation() {
+        // --- ARRANGE ---
+        when(friendshipRepository.findRelations(userId)).thenReturn(List.of());
+
+        // --- EXECUTE & ASSERT ---
+        cache.relatedUserIds(userId);
+        cache.friendIds(userId);
+        verify(friendshipRepository, times(1)).findRelations(userId);
+
+        cache.invalidate(friendId, userId);
+        cache.relatedUserIds(userId);
+        verify(friendshipRepository, times(2)).findRelations(userId);
+
+        clock.advance(Duration.ofMinutes(10));
+        cache.relatedUserIds(userId);
+        verify(friendshipRepository, times(3)).findRelations(userId);
+    }
+
+    @Test
+    void relations_ShouldNotStoreLoad_ThatOverlapsAnInvalidation() {
+        // --- ARRANGE ---
+        when(friendshipRepository.findRelations(userId)).thenAnswer(invocation -> {
+            cache.invalidate(userId, friendId); // Freundschaft ändert sich, während geladen wird
+            return List.of();
+        });
+
+        // --- EXECUTE ---
+        cache.relatedUserIds(userId);
+
+        // --- ASSERT ---
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void cache_ShouldBeBounded() {
+        // --- EXECUTE ---
+        for (int i = 0; i < 5; i++) {
+            cache.relatedUserIds(UUID.randomUUID());
+        }
+
+        // --- ASSERT ---
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void idSet_ShouldMatchHashSetSemantics() {
+        // --- ARRANGE ---
+        Random random = new Random(42);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // Auch negative Bits, damit die vorzeichenbehaftete Sortierung geprüft wird
+            ids.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        ids.add(ids.get(0)); // Duplikat
+
+        // --- EXECUTE ---
+        FriendGraphCache.IdSet set = FriendGraphCache.IdSet.of(ids);
+
+        // --- ASSERT ---
+        assertThat(set.size()).isEqualTo(200);
+        assertThat(set.toList()).isSorted();
+        ids.forEach(id -> assertThat(set.contains(id)).isTrue());
+        for (int i = 0; i < 200; i++) {
+            assertThat(set.contains(new UUID(random.nextLong(), random.nextLong()))).isFalse();
+        }
+    }
+
+    private static FriendshipRepository.RelationProjection relation(UUID userId, FriendshipStatus status) {
+        return new FriendshipRepository.RelationProjection() {
+            @Override
+            public UUID getUserId() {
+                return userId;
+            }
+
+            @Override
+            public FriendshipStatus getStatus() {
+                return status;
+            }
+        };
+    }
+}
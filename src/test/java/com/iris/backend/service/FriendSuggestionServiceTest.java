@@ -0,0 +1,223 @@
+package com.iris.backend.service;
+
+import com.iris.backend.dto.FriendSuggestionDTO;
+import com.iris.backend.event.FriendshipChangedEvent;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.FriendshipStatus;
+import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.PhotoRepository;
+import com.iris.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FriendSuggestionServiceTest {
+
+    @Mock private FriendshipRepository friendshipRepository;
+    @Mock private PhotoRepository photoRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private FriendGraphCache friendGraphCache;
+    @Mock private GcsStorageService gcsStorageService;
+
+    private FriendSuggestionService service;
+
+    private final Map<String, User> users = new HashMap<>();
+    private final List<FriendshipRepository.EdgeProjection> edges = new ArrayList<>();
+    private final List<PhotoRepository.UploadPlaceProjection> uploads = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        service = new FriendSuggestionService(friendshipRepository, photoRepository, userRepository, friendGraphCache,
+                gcsStorageService, new SimpleMeterRegistry(), "profiles", 50, 1.5, 4, Duration.ofDays(90),
+                new MutableClock(Instant.parse("2026-01-10T12:00:00Z")));
+        for (String name : List.of("A", "B", "C", "D", "E", "F", "G")) {
+            User user = new User();
+            user.setId(UUID.randomUUID());
+            user.setUsername(name);
+            users.put(name, user);
+        }
+        lenient().when(friendshipRepository.findAllEdges()).thenReturn(edges);
+        lenient().when(photoRepository.findUploadPlacesSince(any(OffsetDateTime.class))).thenReturn(uploads);
+        lenient().when(userRepository.findAllById(anyCollection())).thenAnswer(invocation -> {
+            Collection<UUID> ids = invocation.getArgument(0);
+            return users.values().stream().filter(user -> ids.contains(user.getId())).toList();
+        });
+        lenient().when(friendGraphCache.relatedUserIds(any())).thenReturn(FriendGraphCache.IdSet.of(List.of()));
+    }
+
+    @Test
+    void recomputeAll_ShouldRankByMutualFriendsAndSharedPlaces_AndExcludeRelations() {
+        // --- ARRANGE ---
+        // A kennt B und E; C ist mit beiden befreundet (2 gemeinsame), D nur mit B (1 gemeinsamer)
+        accepted("A", "B");
+        accepted("A", "E");
+        accepted("B", "C");
+        accepted("E", "C");
+        accepted("B", "D");
+        // F ist ein Freund von B, hat aber schon eine offene Anfrage mit A
+        accepted("B", "F");
+        edge("F", "A", FriendshipStatus.PENDING);
+        // A und D haben am selben Ort Fotos hochgeladen: 1 + 1.5 > 2
+        uploadAt("A", 7L);
+        uploadAt("D", 7L);
+        uploadAt("C", 8L);
+
+        // --- EXECUTE ---
+        service.recomputeAll();
+        List<FriendSuggestionDTO> result = service.getSuggestions(users.get("A"), 10);
+
+        // --- ASSERT ---
+        assertThat(result).extracting(FriendSuggestionDTO::username).containsExactly("D", "C");
+        assertThat(result.get(0).mutualFriends()).isEqualTo(1);
+        assertThat(result.get(0).sharedPlaces()).isEqualTo(1);
+        assertThat(result.get(1).mutualFriends()).isEqualTo(2);
+        assertThat(result.get(1).sharedPlaces()).isZero();
+    }
+
+    @Test
+    void getSuggestions_ShouldFilterUsersRelatedSinceTheBatch_AndApplyLimit() {
+        // --- ARRANGE ---
+        accepted("A", "B");
+        accepted("B", "C");
+        accepted("B", "D");
+        accepted("B", "E");
+        service.recomputeAll();
+        when(friendGraphCache.relatedUserIds(users.get("A").getId()))
+                .thenReturn(FriendGraphCache.IdSet.of(List.of(users.get("B").getId(), users.get("C").getId())));
+
+        // --- EXECUTE ---
+        List<FriendSuggestionDTO> result = service.getSuggestions(users.get("A"), 1);
+
+        // --- ASSERT ---
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).username()).isIn("D", "E");
+    }
+
+    @Test
+    void getSuggestions_ShouldClampTheLimit() {
+        // --- ARRANGE ---
+        accepted("A", "B");
+        accepted("B", "C");
+        accepted("B", "D");
+        service.recomputeAll();
+
+        // --- EXECUTE & ASSERT ---
+        // Negative oder 0 führen nicht zu einem Fehler, sondern liefern den besten Vorschlag
+        assertThat(service.getSuggestions(users.get("A"), -5)).hasSize(1);
+        assertThat(service.getSuggestions(users.get("A"), 0)).hasSize(1);
+        assertThat(service.getSuggestions(users.get("A"), Integer.MAX_VALUE)).hasSize(2);
+    }
+
+    @Test
+    void recomputeAll_ShouldSkipHubsAsIntermediaries() {
+        // --- ARRANGE ---
+        // B hat 5 Freunde (> max-friend-degree 4): über B gibt es keine Vorschläge
+        accepted("A", "B");
+        accepted("B", "C");
+        accepted("B", "D");
+        accepted("B", "E");
+        accepted("B", "F");
+
+        // --- EXECUTE ---
+        service.recomputeAll();
+
+        // --- ASSERT ---
+        assertThat(service.getSuggestions(users.get("C"), 10)).isEmpty();
+    }
+
+    @Test
+    void refreshDirty_ShouldRecomputeChangedUsersFromTheFriendGraphCache() {
+        // --- ARRANGE ---
+        service.recomputeAll(); // leerer Graph
+        UUID a = users.get("A").getId();
+        UUID g = users.get("G").getId();
+        UUID c = users.get("C").getId();
+        when(friendGraphCache.friendIds(a)).thenReturn(FriendGraphCache.IdSet.of(List.of(g)));
+        when(friendGraphCache.friendIds(g)).thenReturn(FriendGraphCache.IdSet.of(List.of(a, c)));
+        when(friendGraphCache.friendIds(c)).thenReturn(FriendGraphCache.IdSet.of(List.of(g)));
+        when(friendGraphCache.relatedUserIds(a)).thenReturn(FriendGraphCache.IdSet.of(List.of(g)));
+
+        // --- EXECUTE ---
+        service.onFriendshipChanged(new FriendshipChangedEvent(a, g));
+        service.refreshDirty();
+
+        // --- ASSERT ---
+        assertThat(service.getSuggestions(users.get("A"), 10))
+                .extracting(FriendSuggestionDTO::username, FriendSuggestionDTO::mutualFriends)
+                .containsExactly(tuple("C", 1));
+        clearInvocations(friendGraphCache);
+        service.refreshDirty(); // Nichts mehr zu tun
+        verifyNoInteractions(friendGraphCache);
+    }
+
+    @Test
+    void intersectionSize_ShouldCountCommonElementsOfSortedArrays() {
+        assertThat(SuggestionGraph.intersectionSize(new int[]{1, 3, 5, 9}, new int[]{2, 3, 9, 10})).isEqualTo(2);
+        assertThat(SuggestionGraph.intersectionSize(new int[]{}, new int[]{1})).isZero();
+    }
+
+    private void accepted(String one, String two) {
+        edge(one, two, FriendshipStatus.ACCEPTED);
+    }
+
+    private void edge(String one, String two, FriendshipStatus status) {
+        UUID userOneId = users.get(one).getId();
+        UUID userTwoId = users.get(two).getId();
+        edges.add(new FriendshipRepository.EdgeProjection() {
+            @Override
+            public UUID getUserOneId() {
+                return userOneId;
+            }
+
+            @Override
+            public UUID getUserTwoId() {
+                return userTwoId;
+            }
+
+            @Override
+            public FriendshipStatus getStatus() {
+                return status;
+            }
+        });
+    }
+
+    private void uploadAt(String uploader, Long googlePlaceId) {
+        UUID uploaderId = users.get(uploader).getId();
+        uploads.add(new PhotoRepository.UploadPlaceProjection() {
+            @Override
+            public UUID getUploaderId() {
+                return uploaderId;
+            }
+
+            @Override
+            public Long getGooglePlaceId() {
+                return googlePlaceId;
+            }
+
+            @Override
+            public UUID getCustomPlaceId() {
+                return null;
+            }
+        });
+    }
+}
@@ -1,8 +1,13 @@
 package com.iris.backend.service;
 
+import com.iris.backend.dto.FriendAtSpotDTO;
 import com.iris.backend.dto.FriendshipActionDTO;
 import com.iris.backend.dto.UserDTO;
+import com.iris.backend.dto.feed.GalleryFeedItemDTO;
+import com.iris.backend.dto.feed.GalleryPlaceType;
+import com.iris.backend.model.CustomPlace;
 import com.iris.backend.model.Friendship;
+import com.iris.backend.model.GooglePlace;
 import com.iris.backend.model.User;
 import com.iris.backend.model.enums.FriendshipStatus;
 import com.iris.backend.repository.CustomPlaceRepository;
@@ -12,19 +17,30 @@ import com.iris.backend.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +53,12 @@ class FriendshipServiceTest {
     @Mock private GooglePlaceRepository googlePlaceRepository;
     @Mock private CustomPlaceRepository customPlaceRepository;
     @Mock private GalleryFeedService galleryFeedService;
+    @Mock private FeedTimelineService feedTimelineService;
+    @Mock private PresenceService presenceService;
+    @Mock private GeofenceIndex geofenceIndex;
+    @Mock private FriendGraphCache friendGraphCache;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private InteractionSink interactionSink;
 
     @InjectMocks
     private FriendshipService friendshipService;
@@ -48,6 +70,8 @@ class FriendshipServiceTest {
     @BeforeEach
     void setUp() {
         ReflectionTestUtils.setField(friendshipService, "profileImagesBucketName", PROFILES_BUCKET);
+        // Standard: keine Freunde im Friend-Graph-Cache
+        lenient().when(friendGraphCache.friendIds(any())).thenReturn(FriendGraphCache.IdSet.of(List.of()));
 
         currentUser = new User();
         currentUser.setId(UUID.randomUUID());
@@ -142,4 +166,172 @@ class FriendshipServiceTest {
 
         assertThat(exception.getMessage()).isEqualTo("You cannot accept your own friend request.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void getFriendsAtSpots_ShouldUseOneSpatialJoinAndBatchLoadSpots() {
+        // --- ARRANGE ---
+        User secondFriend = new User();
+        secondFriend.setId(UUID.randomUUID());
+        secondFriend.setUsername("Second");
+
+        GooglePlace cafe = new GooglePlace();
+        cafe.setId(7L);
+        CustomPlace spot = new CustomPlace();
+        spot.setId(UUID.randomUUID());
+
+        when(friendshipRepository.findActiveFriendsAtSpots(eq(currentUser.getId()), any())).thenReturn(List.of(
+                friendAtSpot(friendUser.getId(), 7L, null),
+                friendAtSpot(secondFriend.getId(), 7L, null),
+                friendAtSpot(friendUser.getId(), null, spot.getId())
+        ));
+        when(userRepository.findAllById(Set.of(friendUser.getId(), secondFriend.getId())))
+                .thenReturn(List.of(friendUser, secondFriend));
+        when(googlePlaceRepository.findAllById(Set.of(7L))).thenReturn(List.of(cafe));
+        when(customPlaceRepository.findAllWithOwnerByIdIn(Set.of(spot.getId()))).thenReturn(List.of(spot));
+        when(galleryFeedService.getFeedItemsForGooglePlaces(List.of(cafe))).thenReturn(Map.of(7L, spotItem("Café")));
+        when(galleryFeedService.getFeedItemsForCustomPlaces(List.of(spot))).thenReturn(Map.of(spot.getId(), spotItem("Aare")));
+
+        // --- EXECUTE ---
+        List<FriendAtSpotDTO> result = friendshipService.getFriendsAtSpots(currentUser);
+
+        // --- ASSERT ---
+        assertThat(result).extracting(dto -> dto.spotInfo().name()).containsExactly("Aare", "Café");
+        assertThat(result.get(0).friendsAtSpot()).extracting(UserDTO::username).containsExactly("Friend");
+        assertThat(result.get(1).friendsAtSpot()).extracting(UserDTO::username).containsExactly("Friend", "Second");
+        verify(googlePlaceRepository, never()).findActivePlacesForUserLocation(anyDouble(), anyDouble());
+        verify(customPlaceRepository, never()).findActivePlacesForUserLocation(anyDouble(), anyDouble());
+    }
+
+    @Test
+    void getFriendsAtSpots_ShouldUsePresenceAndGeofenceIndex_WhenLoaded() {
+        // --- ARRANGE ---
+        User idleFriend = new User();
+        idleFriend.setId(UUID.randomUUID());
+        GooglePlace cafe = new GooglePlace();
+        cafe.setId(7L);
+
+        List<UUID> friendIds = List.of(friendUser.getId(), idleFriend.getId());
+        when(friendshipRepository.findAcceptedFriendIds(currentUser.getId())).thenReturn(friendIds);
+        when(presenceService.findActive(friendIds)).thenReturn(Optional.of(Map.of(
+                friendUser.getId(), new PresenceService.Location(46.9480, 7.4474, Instant.now()),
+                idleFriend.getId(), new PresenceService.Location(47.3769, 8.5417, Instant.now()))));
+        when(geofenceIndex.findContaining(46.9480, 7.4474))
+                .thenReturn(Optional.of(new GeofenceIndex.Containing(List.of(7L), List.of())));
+        when(geofenceIndex.findContaining(47.3769, 8.5417))
+                .thenReturn(Optional.of(new GeofenceIndex.Containing(List.of(), List.of())));
+        when(userRepository.findAllById(Set.of(friendUser.getId()))).thenReturn(List.of(friendUser));
+        when(googlePlaceRepository.findAllById(Set.of(7L))).thenReturn(List.of(cafe));
+        when(galleryFeedService.getFeedItemsForGooglePlaces(List.of(cafe))).thenReturn(Map.of(7L, spotItem("Café")));
+
+        // --- EXECUTE ---
+        List<FriendAtSpotDTO> result = friendshipService.getFriendsAtSpots(currentUser);
+
+        // --- ASSERT ---
+        assertThat(result).extracting(dto -> dto.spotInfo().name()).containsExactly("Café");
+        assertThat(result.get(0).friendsAtSpot()).extracting(UserDTO::username).containsExactly("Friend");
+        verify(friendshipRepository, never()).findActiveFriendsAtSpots(any(), any());
+    }
+
+    @Test
+    void pingFriend_ShouldRejectNonFriends_CheckedAgainstTheDatabase() {
+        // --- ARRANGE ---
+        when(friendshipRepository.existsAcceptedFriendship(currentUser.getId(), friendUser.getId())).thenReturn(false);
+
+        // --- EXECUTE & ASSERT ---
+        assertThrows(SecurityException.class, () -> friendshipService.pingFriend(currentUser, friendUser.getId()));
+        verifyNoInteractions(userRepository, fcmService);
+    }
+
+    @Test
+    void findNearbyFriendsAtPlace_ShouldTakeTheFriendListFromTheDatabase() {
+        // --- ARRANGE ---
+        // Der Cache dieser Instanz kennt das Unfriend einer anderen Instanz noch nicht
+        lenient().when(friendGraphCache.friendIds(currentUser.getId()))
+                .thenReturn(FriendGraphCache.IdSet.of(List.of(friendUser.getId())));
+        when(friendshipRepository.findAcceptedFriendIds(currentUser.getId())).thenReturn(List.of());
+        Point placeLocation = new GeometryFactory(new PrecisionModel(), 4326).createPoint(new Coordinate(7.4474, 46.9480));
+
+        // --- EXECUTE ---
+        List<UserDTO> result = friendshipService.findNearbyFriendsAtPlace(currentUser, placeLocation);
+
+        // --- ASSERT ---
+        assertThat(result).isEmpty();
+        verifyNoInteractions(presenceService);
+        verify(userRepository, never()).findFriendsByIdsAndLocation(any(), any(), anyDouble());
+    }
+
+    @Test
+    void getFriendsAsEntities_ShouldThrow_WhenUserDoesNotExist() {
+        // --- ARRANGE ---
+        UUID unknownUserId = UUID.randomUUID();
+        when(userRepository.existsById(unknownUserId)).thenReturn(false);
+
+        // --- EXECUTE & ASSERT ---
+        assertThrows(RuntimeException.class, () -> friendshipService.getFriendsAsEntities(unknownUserId));
+    }
+
+    @Test
+    void getFriendsAsEntities_ShouldReturnEmpty_WhenUserHasNoFriends() {
+        // --- ARRANGE ---
+        when(userRepository.existsById(currentUser.getId())).thenReturn(true);
+
+        // --- EXECUTE & ASSERT ---
+        assertThat(friendshipService.getFriendsAsEntities(currentUser.getId())).isEmpty();
+    }
+
+    @Test
+    void getFriendsForShareScreen_ShouldRankRecentInteractionsAboveOldHigherScores() {
+        // --- ARRANGE ---
+        ReflectionTestUtils.setField(friendshipService, "interactionHalfLifeDays", 14.0);
+        User oldBestFriend = new User();
+        oldBestFriend.setId(UUID.randomUUID());
+        oldBestFriend.setUsername("OldBestFriend");
+        OffsetDateTime now = OffsetDateTime.now();
+        // 10 Interaktionen vor 8 Wochen (zerfallen auf ~0.6) gegen 3 Interaktionen von gestern
+        Friendship old = acceptedFriendship(oldBestFriend, 10, now.minusWeeks(8));
+        Friendship recent = acceptedFriendship(friendUser, 3, now.minusDays(1));
+        when(userRepository.findById(currentUser.getId())).thenReturn(Optional.of(currentUser));
+        when(friendshipRepository.findFriendsSortedByInteraction(currentUser)).thenReturn(List.of(old, recent));
+
+        // --- EXECUTE ---
+        List<UserDTO> result = friendshipService.getFriendsForShareScreen(currentUser.getId());
+
+        // --- ASSERT ---
+        assertThat(result).extracting(UserDTO::username).containsExactly("Friend", "OldBestFriend");
+    }
+
+    private Friendship acceptedFriendship(User friend, int interactionScore, OffsetDateTime lastInteractedAt) {
+        Friendship friendship = new Friendship();
+        friendship.setUserOne(currentUser);
+        friendship.setUserTwo(friend);
+        friendship.setStatus(FriendshipStatus.ACCEPTED);
+        friendship.setInteractionScore(interactionScore);
+        friendship.setLastInteractedAt(lastInteractedAt);
+        friendship.setCreatedAt(lastInteractedAt.minusYears(1));
+        return friendship;
+    }
+
+    private static FriendshipRepository.FriendAtSpotProjection friendAtSpot(UUID friendId, Long googlePlaceId, UUID customPlaceId) {
+        return new FriendshipRepository.FriendAtSpotProjection() {
+            @Override
+            public UUID getFriendId() {
+                return friendId;
+            }
+
+            @Override
+            public Long getGooglePlaceId() {
+                return googlePlaceId;
+            }
+
+            @Override
+            public UUID getCustomPlaceId() {
+                return customPlaceId;
+            }
+        };
+    }
+
+    private static GalleryFeedItemDTO spotItem(String name) {
+        return new GalleryFeedItemDTO(GalleryPlaceType.GOOGLE_POI, name, 46.9, 7.4, null, null, null, 0, null,
+                null, null, null, 50, null, false, true, null, 0L, null);
+    }
+}
@@ -0,0 +1,156 @@
+package com.iris.backend.service;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class GcsStorageServiceTest {
+
+    // Der Fake-Storage nimmt nur Uploads in einem Chunk an; gestreamt wird über viele kleine Puffer
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final long MAX_BYTES = 200 * 1024;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Storage storage;
+    private UploadBufferPool uploadBufferPool;
+    private SignedUrlCache signedUrlCache;
+    private GcsStorageService gcsStorageService;
+
+    @BeforeEach
+    void setUp() {
+        storage = LocalStorageHelper.getOptions().getService();
+        uploadBufferPool = new UploadBufferPool(meterRegistry, BUFFER_SIZE, 1);
+        signedUrlCache = mock(SignedUrlCache.class);
+        gcsStorageService = new GcsStorageService(storage, signedUrlCache, uploadBufferPool,
+                "photos", "profiles", MAX_BYTES, CHUNK_SIZE);
+    }
+
+    @Test
+    void uploadPhoto_ShouldStreamTheFileThroughThePooledBuffer() throws Exception {
+        // --- ARRANGE ---
+        byte[] content = randomBytes(20 * BUFFER_SIZE + 123); // Viele Puffer, letzter unvollständig
+        MockMultipartFile file = new MockMultipartFile("file", "bild.jpg", "image/jpeg", content);
+
+        // --- EXECUTE ---
+        String objectName = gcsStorageService.uploadPhoto(file);
+        gcsStorageService.uploadPhoto(file);
+
+        // --- ASSERT ---
+        Blob blob = storage.get(BlobId.of("photos", objectName));
+        assertThat(objectName).endsWith("-bild.jpg");
+        assertThat(blob.getContentType()).isEqualTo("image/jpeg");
+        assertThat(blob.getContent()).isEqualTo(content);
+        // Beide Uploads haben denselben Puffer aus dem Pool benutzt
+        assertThat(meterRegistry.counter("iris.upload.buffers.allocated").count()).isEqualTo(1);
+    }
+
+    @Test
+    void storePhoto_ShouldReturnSizeAndSha256OfTheStreamedBytes() throws Exception {
+        // --- ARRANGE ---
+        byte[] content = randomBytes(3 * BUFFER_SIZE + 7);
+        MockMultipartFile file = new MockMultipartFile("file", "bild.jpg", "image/jpeg", content);
+
+        // --- EXECUTE ---
+        GcsStorageService.StoredPhoto stored = gcsStorageService.storePhoto(file);
+
+        // --- ASSERT ---
+        assertThat(stored.size()).isEqualTo(content.length);
+        assertThat(stored.contentHash())
+                .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)));
+        assertThat(storage.get(BlobId.of("photos", stored.objectName())).getContent()).isEqualTo(content);
+    }
+
+    @Test
+    void uploadProfileImage_ShouldStreamIntoTheProfileBucket() throws Exception {
+        // --- ARRANGE ---
+        byte[] content = randomBytes(1000);
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.png", "image/png", content);
+
+        // --- EXECUTE ---
+        String objectName = gcsStorageService.uploadProfileImage("uid-1", file);
+
+        // --- ASSERT ---
+        assertThat(objectName).startsWith("uid-1-").endsWith(".png");
+        assertThat(storage.get(BlobId.of("profiles", objectName)).getContent()).isEqualTo(content);
+    }
+
+    @Test
+    void uploadPhoto_ShouldRejectDeclaredSizeAboveTheLimit() {
+        // --- ARRANGE ---
+        MockMultipartFile file = new MockMultipartFile("file", "gross.jpg", "image/jpeg", randomBytes((int) MAX_BYTES + 1));
+
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> gcsStorageService.uploadPhoto(file))
+                .isInstanceOf(MaxUploadSizeExceededException.class);
+        assertThat(storage.list("photos").iterateAll()).isEmpty();
+    }
+
+    @Test
+    void uploadPhoto_ShouldAbortWithoutObject_WhenTheStreamExceedsTheLimit() {
+        // --- ARRANGE ---
+        // Meldet eine kleine Größe, liefert aber mehr Daten
+        byte[] content = randomBytes((int) MAX_BYTES + BUFFER_SIZE);
+        MockMultipartFile file = new MockMultipartFile("file", "luege.jpg", "image/jpeg", new byte[10]) {
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(content);
+            }
+        };
+
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> gcsStorageService.uploadPhoto(file))
+                .isInstanceOf(MaxUploadSizeExceededException.class);
+        // Der Puffer ist wieder im Pool
+        ByteBuffer buffer = uploadBufferPool.acquire();
+        assertThat(meterRegistry.counter("iris.upload.buffers.allocated").count()).isEqualTo(1);
+        uploadBufferPool.release(buffer);
+    }
+
+    @Test
+    void photoUploadHeaders_ShouldOnlyAllowCreatingTheObject() {
+        // --- EXECUTE ---
+        Map<String, String> headers = gcsStorageService.photoUploadHeaders("image/jpeg");
+
+        // --- ASSERT ---
+        // Ohne die Bedingung könnte die URL bis zum Ablauf ein fertiges Foto überschreiben
+        assertThat(headers)
+                .containsEntry("Content-Type", "image/jpeg")
+                .containsEntry("x-goog-content-length-range", "1," + MAX_BYTES)
+                .containsEntry("x-goog-if-generation-match", "0");
+    }
+
+    @Test
+    void deleteFile_ShouldInvalidateTheNormalizedName_WhenTheNameIsAFullUrl() {
+        // --- EXECUTE ---
+        gcsStorageService.deleteFile("photos", "https://storage.googleapis.com/photos/alt.jpg");
+
+        // --- ASSERT ---
+        verify(signedUrlCache).invalidate("photos", "alt.jpg");
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,268 @@
+package com.iris.backend.service;
+
+import com.iris.backend.event.CustomPlaceChangedEvent;
+import com.iris.backend.model.CustomPlace;
+import com.iris.backend.repository.CustomPlaceRepository;
+import com.iris.backend.repository.GooglePlaceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GeofenceIndexTest {
+
+    // Zytglogge Bern
+    private static final double LAT = 46.9480;
+    private static final double LON = 7.4474;
+
+    @Mock private GooglePlaceRepository googlePlaceRepository;
+    @Mock private CustomPlaceRepository customPlaceRepository;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+    private MutableClock clock;
+    private GeofenceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-10T12:00:00Z"));
+        index = new GeofenceIndex(googlePlaceRepository, customPlaceRepository, new SimpleMeterRegistry(), clock);
+    }
+
+    @Test
+    void findContaining_ShouldFallBack_UntilLoaded() {
+        assertThat(index.findContaining(LAT, LON)).isEmpty();
+    }
+
+    @Test
+    void findContaining_ShouldApplyPerPlaceRadius_AndOrderLikeSql() {
+        // --- ARRANGE ---
+        UUID olderSpot = UUID.randomUUID();
+        UUID newerSpot = UUID.randomUUID();
+        List<GooglePlaceRepository.GeofenceProjection> googleRows = List.of(
+                googleRow(1L, LAT, LON, 100, 3),
+                googleRow(2L, LAT + 0.0005, LON, 100, 8),   // ca. 55 m nördlich
+                googleRow(3L, LAT + 0.0020, LON, 100, 9)    // ca. 220 m nördlich -> ausserhalb
+        );
+        List<CustomPlaceRepository.GeofenceProjection> customRows = List.of(
+                customRow(olderSpot, LAT, LON + 0.001, 100, now().minusHours(2), now().plusHours(1)), // ca. 76 m östlich
+                customRow(newerSpot, LAT, LON + 0.001, 50, now().minusHours(1), now().plusHours(1))    // Radius zu klein
+        );
+        when(googlePlaceRepository.findAllGeofences()).thenReturn(googleRows);
+        when(customPlaceRepository.findLiveGeofences()).thenReturn(customRows);
+        index.load();
+
+        // --- EXECUTE ---
+        Optional<GeofenceIndex.Containing> result = index.findContaining(LAT, LON);
+
+        // --- ASSERT ---
+        assertThat(result).isPresent();
+        assertThat(result.get().googlePlaceIds()).containsExactly(2L, 1L);
+        assertThat(result.get().customPlaceIds()).containsExactly(olderSpot);
+    }
+
+    @Test
+    void findContaining_ShouldSeeChangesBeforeAndAfterRebuild() {
+        // --- ARRANGE ---
+        loadEmpty();
+        CustomPlace spot = customPlace(UUID.randomUUID(), 100, true, now().plusHours(1));
+
+        // --- EXECUTE & ASSERT ---
+        index.updateCustomPlace(spot);
+        assertThat(index.findContaining(LAT, LON).get().customPlaceIds()).containsExactly(spot.getId());
+
+        index.rebuild();
+        assertThat(index.findContaining(LAT, LON).get().customPlaceIds()).containsExactly(spot.getId());
+
+        // Spot wird verschoben: der veraltete Eintrag im Baum darf nicht mehr treffen
+        spot.setLocation(point(LAT + 0.01, LON));
+        index.updateCustomPlace(spot);
+        assertThat(index.findContaining(LAT, LON).get().customPlaceIds()).isEmpty();
+        assertThat(index.findContaining(LAT + 0.01, LON).get().customPlaceIds()).containsExactly(spot.getId());
+
+        spot.setLive(false);
+        index.updateCustomPlace(spot);
+        index.rebuild();
+        assertThat(index.findContaining(LAT + 0.01, LON).get().customPlaceIds()).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void findContaining_ShouldIgnoreExpiredSpots_AndRebuildShouldDropThem() {
+        // --- ARRANGE ---
+        loadEmpty();
+        CustomPlace spot = customPlace(UUID.randomUUID(), 100, true, now().plusMinutes(10));
+        index.updateCustomPlace(spot);
+        index.rebuild();
+
+        // --- EXECUTE ---
+        clock.advance(Duration.ofMinutes(10));
+
+        // --- ASSERT ---
+        assertThat(index.findContaining(LAT, LON).get().customPlaceIds()).isEmpty();
+        index.rebuild();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void updateGooglePlace_ShouldReplaceGeometry() {
+        // --- ARRANGE ---
+        loadEmpty();
+        index.updateGooglePlace(7L, point(LAT, LON), 40, 5);
+        index.rebuild();
+
+        // --- EXECUTE ---
+        index.updateGooglePlace(7L, point(LAT, LON), 200, 5);
+
+        // --- ASSERT ---
+        // ca. 110 m entfernt: erst mit dem neuen Radius innerhalb
+        assertThat(index.findContaining(LAT + 0.001, LON).get().googlePlaceIds()).containsExactly(7L);
+    }
+
+    @Test
+    void updates_ShouldBeReplayed_WhenTheyArriveDuringLoad() {
+        // --- ARRANGE ---
+        CustomPlace spot = customPlace(UUID.randomUUID(), 100, true, now().plusHours(1));
+        when(googlePlaceRepository.findAllGeofences()).thenAnswer(invocation -> {
+            index.updateCustomPlace(spot); // Spot wird angelegt, während der Index lädt
+            return List.of();
+        });
+        when(customPlaceRepository.findLiveGeofences()).thenReturn(List.of());
+
+        // --- EXECUTE ---
+        index.load();
+
+        // --- ASSERT ---
+        assertThat(index.findContaining(LAT, LON).get().customPlaceIds()).containsExactly(spot.getId());
+    }
+
+    @Test
+    void reload_ShouldPickUpPlacesChangedOnOtherInstances() {
+        // --- ARRANGE ---
+        UUID remoteSpot = UUID.randomUUID();
+        loadEmpty();
+        index.updateGooglePlace(7L, point(LAT, LON), 100, 5);
+        index.rebuild();
+        // Andere Instanz: Google Place gelöscht, Spot per scheduled_live_at live geschaltet
+        when(googlePlaceRepository.findAllGeofences()).thenReturn(List.of());
+        when(customPlaceRepository.findLiveGeofences()).thenReturn(List.of(
+                customRow(remoteSpot, LAT, LON, 100, now().minusMinutes(1), now().plusHours(1))));
+
+        // --- EXECUTE ---
+        index.reload();
+
+        // --- ASSERT ---
+        GeofenceIndex.Containing containing = index.findContaining(LAT, LON).get();
+        assertThat(containing.googlePlaceIds()).isEmpty();
+        assertThat(containing.customPlaceIds()).containsExactly(remoteSpot);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void reload_ShouldKeepLocalChanges_MadeWhileReading() {
+        // --- ARRANGE ---
+        loadEmpty();
+        CustomPlace spot = customPlace(UUID.randomUUID(), 100, true, now().plusHours(1));
+        when(googlePlaceRepository.findAllGeofences()).thenAnswer(invocation -> {
+            index.updateCustomPlace(spot); // Spot wird committet, nachdem die Zeilen gelesen wurden
+            return List.of();
+        });
+        when(customPlaceRepository.findLiveGeofences()).thenReturn(List.of());
+
+        // --- EXECUTE ---
+        index.reload();
+
+        // --- ASSERT ---
+        assertThat(index.findContaining(LAT, LON).get().customPlaceIds()).containsExactly(spot.getId());
+    }
+
+    @Test
+    void reload_ShouldDoNothing_UntilLoaded() {
+        // --- EXECUTE ---
+        index.reload();
+
+        // --- ASSERT ---
+        assertThat(index.findContaining(LAT, LON)).isEmpty();
+        verifyNoInteractions(googlePlaceRepository, customPlaceRepository);
+    }
+
+    @Test
+    void onCustomPlaceChanged_ShouldApplyTheCommittedPlace() {
+        // --- ARRANGE ---
+        loadEmpty();
+        CustomPlace spot = customPlace(UUID.randomUUID(), 100, true, now().plusHours(1));
+
+        // --- EXECUTE ---
+        index.onCustomPlaceChanged(new CustomPlaceChangedEvent(spot));
+
+        // --- ASSERT ---
+        assertThat(index.findContaining(LAT, LON).get().customPlaceIds()).containsExactly(spot.getId());
+    }
+
+    private void loadEmpty() {
+        when(googlePlaceRepository.findAllGeofences()).thenReturn(List.of());
+        when(customPlaceRepository.findLiveGeofences()).thenReturn(List.of());
+        index.load();
+    }
+
+    private CustomPlace customPlace(UUID id, int radius, boolean live, OffsetDateTime expiresAt) {
+        CustomPlace place = new CustomPlace();
+        place.setId(id);
+        place.setLocation(point(LAT, LON));
+        place.setRadiusMeters(radius);
+        place.setLive(live);
+        place.setExpiresAt(expiresAt);
+        place.setCreatedAt(now().minusMinutes(5));
+        return place;
+    }
+
+    private Point point(double lat, double lon) {
+        return geometryFactory.createPoint(new Coordinate(lon, lat));
+    }
+
+    private OffsetDateTime now() {
+        return OffsetDateTime.ofInstant(clock.instant(), ZoneOffset.UTC);
+    }
+
+    private GooglePlaceRepository.GeofenceProjection googleRow(long id, double lat, double lon, int radius, int importance) {
+        GooglePlaceRepository.GeofenceProjection row = mock(GooglePlaceRepository.GeofenceProjection.class);
+        lenient().when(row.getId()).thenReturn(id);
+        lenient().when(row.getLatitude()).thenReturn(lat);
+        lenient().when(row.getLongitude()).thenReturn(lon);
+        lenient().when(row.getRadiusMeters()).thenReturn(radius);
+        lenient().when(row.getImportance()).thenReturn(importance);
+        return row;
+    }
+
+    private CustomPlaceRepository.GeofenceProjection customRow(UUID id, double lat, double lon, int radius,
+                                                               OffsetDateTime createdAt, OffsetDateTime expiresAt) {
+        CustomPlaceRepository.GeofenceProjection row = mock(CustomPlaceRepository.GeofenceProjection.class);
+        lenient().when(row.getId()).thenReturn(id);
+        lenient().when(row.getLatitude()).thenReturn(lat);
+        lenient().when(row.getLongitude()).thenReturn(lon);
+        lenient().when(row.getRadiusMeters()).thenReturn(radius);
+        lenient().when(row.getCreatedAt()).thenReturn(createdAt.toInstant());
+        lenient().when(row.getExpiresAt()).thenReturn(expiresAt.toInstant());
+        return row;
+    }
+}
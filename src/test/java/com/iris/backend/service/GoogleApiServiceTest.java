@@ -0,0 +1,292 @@
+package com.iris.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.maps.GeoApiContext;
+import com.iris.backend.config.JacksonConfig;
+import com.iris.backend.dto.feed.GalleryFeedItemDTO;
+import com.iris.backend.geo.Geohash;
+import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.GooglePlaceRepository;
+import com.iris.backend.repository.PhotoRepository;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs the nearby search against a local HTTP stub of the Places API (via {@code baseUrlOverride}).
+ */
+@ExtendWith(MockitoExtension.class)
+class GoogleApiServiceTest {
+
+    private static final double LAT = 46.9480;
+    private static final double LON = 7.4474;
+
+    @Mock private GooglePlaceRepository googlePlaceRepository;
+    @Mock private PhotoRepository photoRepository;
+    @Mock private FriendshipRepository friendshipRepository;
+    @Mock private GcsStorageService gcsStorageService;
+    @Mock private HistoricalPhotoIndex historicalPhotoIndex;
+    @Mock private GeofenceIndex geofenceIndex;
+
+    private HttpServer server;
+    private GeoApiContext geoApiContext;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicReference<String> responseBody = new AtomicReference<>();
+    private volatile CountDownLatch releaseResponses = new CountDownLatch(0);
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-06-01T12:00:00Z"));
+    private PlacesNearbyCache cache;
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, Long> knownPlaceIds = new ConcurrentHashMap<>();
+    private final AtomicInteger upsertCalls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/maps/api/place/nearbysearch/json", exchange -> {
+            requests.incrementAndGet();
+            try {
+                releaseResponses.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = responseBody.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        geoApiContext = new GeoApiContext.Builder()
+                .apiKey("AIzaLocalStubKey")
+                .baseUrlOverride("http://127.0.0.1:" + server.getAddress().getPort())
+                .disableRetries()
+                .build();
+
+        // Stub der Upsert-Query: vergibt IDs pro google_place_id, beim zweiten Mal ist es ein Update
+        lenient().when(googlePlaceRepository.upsertAll(anyString())).thenAnswer(invocation -> {
+            upsertCalls.incrementAndGet();
+            List<GooglePlaceRepository.UpsertedPlace> upserted = new ArrayList<>();
+            for (JsonNode row : objectMapper.readTree(invocation.<String>getArgument(0))) {
+                String googlePlaceId = row.get("googlePlaceId").asText();
+                boolean inserted = !knownPlaceIds.containsKey(googlePlaceId);
+                long id = knownPlaceIds.computeIfAbsent(googlePlaceId, key -> (long) knownPlaceIds.size() + 1);
+                upserted.add(upsertedPlace(id, googlePlaceId, inserted));
+            }
+            return upserted;
+        });
+
+        responseBody.set(placesResponse("cafe-1", "Café Bärengraben", LAT + 0.0001, LON));
+    }
+
+    @AfterEach
+    void tearDown() {
+        geoApiContext.shutdown();
+        server.stop(0);
+        if (cache != null) {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    void findNearbyPlaces_ShouldCallPlacesApiOncePerCell() {
+        GoogleApiService service = serviceWith(false);
+
+        List<GalleryFeedItemDTO> first = service.findNearbyPlaces(LAT, LON);
+        List<GalleryFeedItemDTO> second = service.findNearbyPlaces(LAT + 0.00001, LON + 0.00001);
+
+        assertThat(first).extracting(GalleryFeedItemDTO::name).containsExactly("Café Bärengraben");
+        assertThat(second).isEqualTo(first);
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void findNearbyPlaces_ShouldFilterCellResultsToSearchRadius() {
+        responseBody.set(placesResponse("far-1", "Weit weg", LAT + 0.0009, LON));
+        GoogleApiService service = serviceWith(false);
+
+        assertThat(service.findNearbyPlaces(LAT, LON)).isEmpty();
+    }
+
+    @Test
+    void findNearbyPlaces_ShouldSearchAroundTheCaller_WhenTheCellHitTheResultCap() {
+        // --- ARRANGE ---
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < GoogleApiService.MAX_RESULTS_PER_PAGE; i++) {
+            results.add(placeJson("dense-" + i, "Ort " + i, LAT + 0.0001, LON));
+        }
+        responseBody.set("{\"status\":\"OK\",\"results\":[" + String.join(",", results) + "]}");
+        GoogleApiService service = serviceWith(false);
+
+        // --- EXECUTE ---
+        List<GalleryFeedItemDTO> first = service.findNearbyPlaces(LAT, LON);
+        service.findNearbyPlaces(LAT, LON);
+
+        // --- ASSERT ---
+        assertThat(first).hasSize(GoogleApiService.MAX_RESULTS_PER_PAGE);
+        // Eine Zellen-Suche, danach pro Aufruf eine direkte Suche
+        assertThat(requests.get()).isEqualTo(3);
+    }
+
+    @Test
+    void findNearbyPlaces_ShouldCacheEmptyCells_UntilNegativeTtlExpires() {
+        responseBody.set("{\"status\":\"ZERO_RESULTS\",\"results\":[]}");
+        GoogleApiService service = serviceWith(false);
+
+        assertThat(service.findNearbyPlaces(LAT, LON)).isEmpty();
+        assertThat(service.findNearbyPlaces(LAT, LON)).isEmpty();
+        assertThat(requests.get()).isEqualTo(1);
+
+        clock.advance(Duration.ofMinutes(11));
+        service.findNearbyPlaces(LAT, LON);
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void findNearbyPlaces_ShouldNotCacheFailures() {
+        responseBody.set("{\"status\":\"REQUEST_DENIED\",\"error_message\":\"denied\",\"results\":[]}");
+        GoogleApiService service = serviceWith(false);
+
+        assertThat(service.findNearbyPlaces(LAT, LON)).isEmpty();
+        assertThat(service.findNearbyPlaces(LAT, LON)).isEmpty();
+
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void findNearbyPlaces_ShouldCollapseConcurrentLookupsOfSameCell() throws Exception {
+        GoogleApiService service = serviceWith(false);
+        releaseResponses = new CountDownLatch(1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<List<GalleryFeedItemDTO>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> service.findNearbyPlaces(LAT, LON)));
+        }
+        // Warten, bis der erste Request beim Stub hängt, dann alle freigeben
+        long deadline = System.currentTimeMillis() + 5000;
+        while (requests.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        releaseResponses.countDown();
+
+        for (Future<List<GalleryFeedItemDTO>> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).hasSize(1);
+        }
+        callers.shutdown();
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void findNearbyPlaces_ShouldPrefetchNeighbouringCells() throws Exception {
+        GoogleApiService service = serviceWith(true);
+
+        service.findNearbyPlaces(LAT, LON);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.size() < 9 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(cache.size()).isEqualTo(9);
+        assertThat(requests.get()).isEqualTo(9);
+
+        // Der Nachbar ist jetzt lokal verfügbar
+        String neighbor = Geohash.neighbors(Geohash.encode(LAT, LON, PlacesNearbyCache.CELL_PRECISION)).iterator().next();
+        Geohash.Bounds bounds = Geohash.bounds(neighbor);
+        service.findNearbyPlaces(bounds.centerLatitude(), bounds.centerLongitude());
+        assertThat(requests.get()).isEqualTo(9);
+    }
+
+    @Test
+    void findNearbyPlaces_ShouldUpsertAllResultsInOneStatement_AndCountInsertsAndUpdates() {
+        knownPlaceIds.put("bar-1", 41L);
+        responseBody.set("""
+                {"status":"OK","results":[%s,%s,%s]}
+                """.formatted(
+                placeJson("cafe-1", "Café Bärengraben", LAT + 0.0001, LON),
+                placeJson("bar-1", "Bar am Graben", LAT, LON + 0.0001),
+                placeJson("cafe-1", "Café Bärengraben", LAT + 0.0001, LON)));
+        GoogleApiService service = serviceWith(false);
+
+        List<GalleryFeedItemDTO> places = service.findNearbyPlaces(LAT, LON);
+
+        assertThat(upsertCalls.get()).isEqualTo(1);
+        assertThat(places).extracting(GalleryFeedItemDTO::name).containsExactly("Bar am Graben", "Café Bärengraben");
+        assertThat(places).extracting(GalleryFeedItemDTO::googlePlaceId).containsExactly(41L, 2L);
+        assertThat(places).extracting(GalleryFeedItemDTO::radiusMeters).containsOnly(40);
+        verify(googlePlaceRepository, never()).save(any());
+        verify(googlePlaceRepository, never()).findByGooglePlaceId(anyString());
+        assertThat(meterRegistry.counter("iris.google_places.upserts", "result", "inserted").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("iris.google_places.upserts", "result", "updated").count()).isEqualTo(1);
+    }
+
+    private GoogleApiService serviceWith(boolean prefetchNeighbors) {
+        cache = new PlacesNearbyCache(new SimpleMeterRegistry(), Duration.ofHours(6), Duration.ofMinutes(10),
+                1000, prefetchNeighbors, 2, clock);
+        return new GoogleApiService(geoApiContext, googlePlaceRepository, photoRepository, friendshipRepository,
+                gcsStorageService, historicalPhotoIndex, geofenceIndex, cache, objectMapper, meterRegistry);
+    }
+
+    private static String placesResponse(String placeId, String name, double lat, double lon) {
+        return """
+                {"status":"OK","results":[%s]}
+                """.formatted(placeJson(placeId, name, lat, lon));
+    }
+
+    private static String placeJson(String placeId, String name, double lat, double lon) {
+        return """
+                {"place_id":"%s","name":"%s","vicinity":"Bern","types":["cafe","food"],
+                 "geometry":{"location":{"lat":%s,"lng":%s}}}
+                """.formatted(placeId, name, lat, lon);
+    }
+
+    private static GooglePlaceRepository.UpsertedPlace upsertedPlace(long id, String googlePlaceId, boolean inserted) {
+        return new GooglePlaceRepository.UpsertedPlace() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getGooglePlaceId() {
+                return googlePlaceId;
+            }
+
+            @Override
+            public boolean getInserted() {
+                return inserted;
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package com.iris.backend.service;
+
+import com.iris.backend.config.JacksonConfig;
+import com.iris.backend.dto.HistoricalPointDTO;
+import com.iris.backend.repository.HistoricalFeedRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HistoricalChunkExecutorTest {
+
+    @Mock private HistoricalFeedRepository historicalFeedRepository;
+
+    private HistoricalChunkExecutor chunkExecutor;
+    private final OffsetDateTime base = OffsetDateTime.of(2025, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @BeforeEach
+    void setUp() {
+        chunkExecutor = new HistoricalChunkExecutor(historicalFeedRepository, new JacksonConfig().objectMapper(), 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        chunkExecutor.shutdown();
+    }
+
+    @Test
+    void simplify_ShouldKeepLatestPointPerCellAndBucket_AndSortByTime() {
+        HistoricalPointDTO early = new HistoricalPointDTO(46.94800, 7.44740, base.plusMinutes(1));
+        HistoricalPointDTO sameCellLater = new HistoricalPointDTO(46.94801, 7.44741, base.plusMinutes(3));
+        HistoricalPointDTO otherBucket = new HistoricalPointDTO(46.94800, 7.44740, base.plusMinutes(6));
+        HistoricalPointDTO otherCell = new HistoricalPointDTO(47.37690, 8.54170, base.plusMinutes(2));
+        HistoricalPointDTO withoutTimestamp = new HistoricalPointDTO(46.94800, 7.44740, null);
+
+        List<HistoricalPointDTO> result = HistoricalChunkExecutor.simplify(
+                List.of(otherBucket, early, withoutTimestamp, otherCell, sameCellLater));
+
+        assertThat(result).containsExactly(otherCell, sameCellLater, otherBucket);
+    }
+
+    @Test
+    void findMatches_ShouldReturnEmpty_WhenHistoryFitsIntoOneChunk() {
+        List<HistoricalPointDTO> history = points(2);
+
+        assertThat(chunkExecutor.findMatches(history)).isEmpty();
+        verifyNoInteractions(historicalFeedRepository);
+    }
+
+    @Test
+    void findMatches_ShouldQueryEveryChunk_AndDeduplicatePhotos() {
+        UUID sharedPhoto = UUID.randomUUID();
+        UUID otherPhoto = UUID.randomUUID();
+        UUID spotId = UUID.randomUUID();
+        HistoricalFeedRepository.HistoricalMatchProjection shared = match(sharedPhoto, 7L, null);
+        HistoricalFeedRepository.HistoricalMatchProjection other = match(otherPhoto, null, spotId);
+        AtomicInteger calls = new AtomicInteger();
+        when(historicalFeedRepository.findHistoricalMatches(anyString(), any(), any())).thenAnswer(invocation -> {
+            // Jeder Chunk findet das gemeinsame Foto, nur einer zusätzlich das zweite
+            return calls.incrementAndGet() == 1 ? List.of(shared) : List.of(shared, other);
+        });
+
+        Optional<List<HistoricalPhotoIndex.Match>> result = chunkExecutor.findMatches(points(5));
+
+        verify(historicalFeedRepository, times(3)).findHistoricalMatches(anyString(), any(), any());
+        // Jeder Chunk bekommt die Upload-Grenzen seiner eigenen Punkte (Partition Pruning)
+        verify(historicalFeedRepository).findHistoricalMatches(anyString(),
+                eq(base.plusMinutes(20).minusHours(5)), eq(base.plusMinutes(30)));
+        assertThat(result).isPresent();
+        assertThat(result.get()).extracting(HistoricalPhotoIndex.Match::photoId)
+                .containsExactlyInAnyOrder(sharedPhoto, otherPhoto);
+        assertThat(result.get()).filteredOn(m -> m.photoId().equals(otherPhoto))
+                .extracting(HistoricalPhotoIndex.Match::place)
+                .containsExactly(HistoricalPhotoIndex.PlaceKey.custom(spotId));
+    }
+
+    @Test
+    void findMatches_ShouldPropagateChunkFailure() {
+        when(historicalFeedRepository.findHistoricalMatches(anyString(), any(), any())).thenThrow(new IllegalStateException("db down"));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> chunkExecutor.findMatches(points(3)));
+        assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+
+    private List<HistoricalPointDTO> points(int count) {
+        List<HistoricalPointDTO> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            points.add(new HistoricalPointDTO(46.9 + i * 0.01, 7.4, base.plusMinutes(10L * i)));
+        }
+        return points;
+    }
+
+    private HistoricalFeedRepository.HistoricalMatchProjection match(UUID photoId, Long googlePlaceId, UUID customPlaceId) {
+        HistoricalFeedRepository.HistoricalMatchProjection projection = mock(HistoricalFeedRepository.HistoricalMatchProjection.class);
+        lenient().when(projection.getPhotoId()).thenReturn(photoId);
+        lenient().when(projection.getStorageUrl()).thenReturn(photoId + ".jpg");
+        lenient().when(projection.getUploadedAt()).thenReturn(Instant.parse("2025-06-01T11:00:00Z"));
+        lenient().when(projection.getGooglePlaceId()).thenReturn(googlePlaceId);
+        lenient().when(projection.getCustomPlaceId()).thenReturn(customPlaceId);
+        return projection;
+    }
+}
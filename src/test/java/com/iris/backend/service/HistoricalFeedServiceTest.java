@@ -29,6 +29,8 @@ class HistoricalFeedServiceTest {
     @Mock private HistoricalFeedRepository historicalFeedRepository;
     @Mock private ObjectMapper objectMapper;
     @Mock private GcsStorageService gcsStorageService;
+    @Mock private HistoricalPhotoIndex historicalPhotoIndex;
+    @Mock private HistoricalChunkExecutor historicalChunkExecutor;
 
     @InjectMocks
     private HistoricalFeedService historicalFeedService;
@@ -64,14 +66,19 @@ class HistoricalFeedServiceTest {
         when(mockProjection.getName()).thenReturn("Zytglogge Bern");
         when(mockProjection.getPlaceType()).thenReturn(GalleryPlaceType.GOOGLE_POI);
         when(mockProjection.getCoverImageUrl()).thenReturn("raw-image.jpg");
+        when(mockProjection.getCoverThumbnailUrl()).thenReturn("raw-image-thumbnail.jpg");
+        when(mockProjection.getCoverBlurhash()).thenReturn("LEHV6nWB2yk8");
         when(mockProjection.getPhotoCount()).thenReturn(10L);
         when(mockProjection.getParticipantCount()).thenReturn(3L);
         when(mockProjection.getNewestPhotoTimestamp()).thenReturn(Instant.now());
 
-        when(historicalFeedRepository.findHistoricalFeed(mockJson)).thenReturn(List.of(mockProjection));
+        when(historicalFeedRepository.findHistoricalFeed(mockJson, point.timestamp().minusHours(5), point.timestamp()))
+                .thenReturn(List.of(mockProjection));
 
         when(gcsStorageService.generateSignedUrl(eq(PHOTOS_BUCKET), eq("raw-image.jpg"), anyLong(), any()))
                 .thenReturn("https://signed-url.com/image.jpg");
+        when(gcsStorageService.generateSignedUrl(eq(PHOTOS_BUCKET), eq("raw-image-thumbnail.jpg"), anyLong(), any()))
+                .thenReturn("https://signed-url.com/thumbnail.jpg");
 
         // --- EXECUTE ---
         // KORREKTUR: Aufruf der richtigen Methode
@@ -83,6 +90,9 @@ class HistoricalFeedServiceTest {
 
         assertThat(item.name()).isEqualTo("Zytglogge Bern");
         assertThat(item.coverImageUrl()).isEqualTo("https://signed-url.com/image.jpg");
+        // Die Liste lädt das Thumbnail, nicht das Original
+        assertThat(item.coverThumbnailUrl()).isEqualTo("https://signed-url.com/thumbnail.jpg");
+        assertThat(item.coverBlurhash()).isEqualTo("LEHV6nWB2yk8");
     }
 
     @Test
@@ -0,0 +1,285 @@
+package com.iris.backend.service;
+
+import com.iris.backend.dto.HistoricalPointDTO;
+import com.iris.backend.event.PhotoCreatedEvent;
+import com.iris.backend.event.PhotoDeletedEvent;
+import com.iris.backend.model.CustomPlace;
+import com.iris.backend.model.GooglePlace;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.repository.HistoricalFeedRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HistoricalPhotoIndexTest {
+
+    // Zytglogge Bern
+    private static final double LAT = 46.9480;
+    private static final double LON = 7.4474;
+
+    @Mock private HistoricalFeedRepository historicalFeedRepository;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+    private MutableClock clock;
+    private HistoricalPhotoIndex index;
+    private GooglePlace googlePlace;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-10T12:00:00Z"));
+        index = new HistoricalPhotoIndex(historicalFeedRepository, new SimpleMeterRegistry(), Duration.ofDays(7), clock);
+
+        googlePlace = new GooglePlace();
+        googlePlace.setId(1L);
+        googlePlace.setLocation(geometryFactory.createPoint(new Coordinate(LON, LAT)));
+        googlePlace.setRadiusMeters(100);
+    }
+
+    @Test
+    void findMatches_ShouldFallBack_UntilLoaded() {
+        assertThat(index.findMatches(List.of(point(LAT, LON, now())))).isEmpty();
+    }
+
+    @Test
+    void findMatches_ShouldApplyRadiusAndFiveHourWindow() {
+        // --- ARRANGE ---
+        loadEmpty();
+        Photo inWindow = createPhoto(googlePlace, PhotoVisibility.PUBLIC, now().minusHours(2));
+        Photo tooOld = createPhoto(googlePlace, PhotoVisibility.PUBLIC, now().minusHours(6));
+        Photo friendsOnly = createPhoto(googlePlace, PhotoVisibility.FRIENDS, now().minusHours(1));
+        Photo afterPoint = createPhoto(googlePlace, PhotoVisibility.VISIBLE_TO_ALL, now().plusMinutes(1));
+        List.of(inWindow, tooOld, friendsOnly, afterPoint)
+                .forEach(photo -> index.onPhotoCreated(new PhotoCreatedEvent(photo)));
+
+        // --- EXECUTE ---
+        // ca. 80 m vom Ort entfernt -> innerhalb von 100 m
+        Optional<List<HistoricalPhotoIndex.Match>> near = index.findMatches(List.of(point(LAT + 0.0007, LON, now())));
+        // ca. 150 m entfernt -> ausserhalb
+        Optional<List<HistoricalPhotoIndex.Match>> far = index.findMatches(List.of(point(LAT + 0.00135, LON, now())));
+
+        // --- ASSERT ---
+        assertThat(near).isPresent();
+        assertThat(near.get()).extracting(HistoricalPhotoIndex.Match::photoId).containsExactly(inWindow.getId());
+        assertThat(far).contains(List.of());
+    }
+
+    @Test
+    void findMatches_ShouldReturnEachPhotoOnce_WhenSeveralPointsMatch() {
+        loadEmpty();
+        Photo photo = createPhoto(googlePlace, PhotoVisibility.PUBLIC, now().minusHours(1));
+        index.onPhotoCreated(new PhotoCreatedEvent(photo));
+
+        Optional<List<HistoricalPhotoIndex.Match>> matches = index.findMatches(List.of(
+                point(LAT, LON, now()), point(LAT, LON, now().minusMinutes(30))));
+
+        assertThat(matches.get()).hasSize(1);
+    }
+
+    @Test
+    void findMatches_ShouldFallBack_WhenHistoryIsOlderThanTheIndexedWindow() {
+        loadEmpty();
+
+        assertThat(index.findMatches(List.of(point(LAT, LON, now().minusDays(7))))).isEmpty();
+        assertThat(index.findMatches(List.of(point(LAT, LON, now().minusDays(6))))).isPresent();
+    }
+
+    @Test
+    void onPhotoDeleted_ShouldRemovePhoto() {
+        loadEmpty();
+        Photo photo = createPhoto(googlePlace, PhotoVisibility.PUBLIC, now().minusHours(1));
+        index.onPhotoCreated(new PhotoCreatedEvent(photo));
+
+        index.onPhotoDeleted(new PhotoDeletedEvent(photo.getId()));
+
+        assertThat(index.findMatches(List.of(point(LAT, LON, now())))).contains(List.of());
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void updatePlaceGeometry_ShouldUseNewRadius() {
+        loadEmpty();
+        CustomPlace spot = new CustomPlace();
+        spot.setId(UUID.randomUUID());
+        spot.setLocation(geometryFactory.createPoint(new Coordinate(LON, LAT)));
+        spot.setRadiusMeters(50);
+        Photo photo = createPhoto(null, PhotoVisibility.PUBLIC, now().minusHours(1));
+        photo.setCustomPlace(spot);
+        index.onPhotoCreated(new PhotoCreatedEvent(photo));
+        HistoricalPointDTO point = point(LAT + 0.0007, LON, now()); // ca. 80 m
+
+        assertThat(index.findMatches(List.of(point)).get()).isEmpty();
+
+        index.updatePlaceGeometry(HistoricalPhotoIndex.PlaceKey.custom(spot.getId()), spot.getLocation(), 200);
+
+        assertThat(index.findMatches(List.of(point)).get()).hasSize(1);
+    }
+
+    @Test
+    void evictExpired_ShouldDropPhotosOlderThanRetention() {
+        loadEmpty();
+        Photo photo = createPhoto(googlePlace, PhotoVisibility.PUBLIC, now().minusHours(1));
+        index.onPhotoCreated(new PhotoCreatedEvent(photo));
+
+        clock.advance(Duration.ofDays(7).plusHours(2));
+        index.evictExpired();
+
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void load_ShouldIndexRowsFromDatabase() {
+        HistoricalFeedRepository.IndexedPhotoProjection row = row(UUID.randomUUID(), "loaded.jpg", now().minusHours(1));
+        when(historicalFeedRepository.findPhotosForHistoricalIndex(any())).thenReturn(List.of(row));
+
+        index.load();
+
+        assertThat(index.findMatches(List.of(point(LAT, LON, now()))).get())
+                .extracting(HistoricalPhotoIndex.Match::storageUrl).containsExactly("loaded.jpg");
+    }
+
+    @Test
+    void sync_ShouldPickUpPhotosUploadedAndDeletedThroughOtherInstances() {
+        // --- ARRANGE ---
+        HistoricalFeedRepository.IndexedPhotoProjection deletedElsewhere = row(UUID.randomUUID(), "deleted.jpg", now().minusHours(3));
+        when(historicalFeedRepository.findPhotosForHistoricalIndex(any())).thenReturn(List.of(deletedElsewhere));
+        index.load();
+
+        clock.advance(Duration.ofMinutes(1));
+        HistoricalFeedRepository.IndexedPhotoProjection uploadedElsewhere = row(UUID.randomUUID(), "remote.jpg", now().minusSeconds(30));
+        when(historicalFeedRepository.findPhotosForHistoricalIndex(any())).thenReturn(List.of(uploadedElsewhere));
+        when(historicalFeedRepository.findPhotoIdsForHistoricalIndex(any())).thenReturn(List.of(uploadedElsewhere.getPhotoId()));
+
+        // --- EXECUTE ---
+        index.sync();
+
+        // --- ASSERT ---
+        assertThat(index.findMatches(List.of(point(LAT, LON, now()))).get())
+                .extracting(HistoricalPhotoIndex.Match::storageUrl).containsExactly("remote.jpg");
+    }
+
+    @Test
+    void updateDerivatives_ShouldCarryThumbnailAndBlurhashIntoMatches() {
+        // --- ARRANGE ---
+        loadEmpty();
+        Photo photo = createPhoto(googlePlace, PhotoVisibility.PUBLIC, now().minusHours(1));
+        index.onPhotoCreated(new PhotoCreatedEvent(photo));
+
+        // --- EXECUTE ---
+        index.updateDerivatives(photo.getId(), "thumbnail.jpg", "LEHV6nWB2yk8");
+
+        // --- ASSERT ---
+        assertThat(index.findMatches(List.of(point(LAT, LON, now()))).get())
+                .extracting(HistoricalPhotoIndex.Match::storageUrl, HistoricalPhotoIndex.Match::thumbnailStorageUrl,
+                        HistoricalPhotoIndex.Match::blurhash)
+                .containsExactly(tuple("public.jpg", "thumbnail.jpg", "LEHV6nWB2yk8"));
+    }
+
+    @Test
+    void sync_ShouldTakeOverDerivativesCreatedThroughOtherInstances() {
+        // --- ARRANGE ---
+        UUID photoId = UUID.randomUUID();
+        when(historicalFeedRepository.findPhotosForHistoricalIndex(any()))
+                .thenReturn(List.of(row(photoId, "remote.jpg", now().minusMinutes(2))));
+        index.load();
+
+        clock.advance(Duration.ofMinutes(1));
+        when(historicalFeedRepository.findPhotosForHistoricalIndex(any()))
+                .thenReturn(List.of(row(photoId, "remote.jpg", "thumbnail.jpg", "LEHV6nWB2yk8", now().minusMinutes(3))));
+        when(historicalFeedRepository.findPhotoIdsForHistoricalIndex(any())).thenReturn(List.of(photoId));
+
+        // --- EXECUTE ---
+        index.sync();
+
+        // --- ASSERT ---
+        assertThat(index.findMatches(List.of(point(LAT, LON, now()))).get())
+                .extracting(HistoricalPhotoIndex.Match::thumbnailStorageUrl, HistoricalPhotoIndex.Match::blurhash)
+                .containsExactly(tuple("thumbnail.jpg", "LEHV6nWB2yk8"));
+    }
+
+    @Test
+    void sync_ShouldNotReinsertPhotosDeletedLocally_AndKeepRecentLocalUploads() {
+        // --- ARRANGE ---
+        loadEmpty();
+        Photo deleted = createPhoto(googlePlace, PhotoVisibility.PUBLIC, now().minusHours(1));
+        index.onPhotoCreated(new PhotoCreatedEvent(deleted));
+        // Die Abfrage von sync() lief noch vor dem lokalen Löschen
+        when(historicalFeedRepository.findPhotosForHistoricalIndex(any()))
+                .thenReturn(List.of(row(deleted.getId(), "public.jpg", now().minusHours(1))));
+        index.onPhotoDeleted(new PhotoDeletedEvent(deleted.getId()));
+        // Gerade lokal hochgeladen, aber nach der ID-Abfrage committet
+        Photo fresh = createPhoto(googlePlace, PhotoVisibility.PUBLIC, now());
+        index.onPhotoCreated(new PhotoCreatedEvent(fresh));
+        when(historicalFeedRepository.findPhotoIdsForHistoricalIndex(any())).thenReturn(List.of());
+
+        // --- EXECUTE ---
+        index.sync();
+
+        // --- ASSERT ---
+        assertThat(index.findMatches(List.of(point(LAT, LON, now()))).get())
+                .extracting(HistoricalPhotoIndex.Match::photoId).containsExactly(fresh.getId());
+    }
+
+    private HistoricalFeedRepository.IndexedPhotoProjection row(UUID photoId, String storageUrl, OffsetDateTime uploadedAt) {
+        return row(photoId, storageUrl, null, null, uploadedAt);
+    }
+
+    private HistoricalFeedRepository.IndexedPhotoProjection row(UUID photoId, String storageUrl, String thumbnailStorageUrl,
+                                                                String blurhash, OffsetDateTime uploadedAt) {
+        return new HistoricalFeedRepository.IndexedPhotoProjection() {
+            public UUID getPhotoId() { return photoId; }
+            public String getStorageUrl() { return storageUrl; }
+            public String getThumbnailStorageUrl() { return thumbnailStorageUrl; }
+            public String getBlurhash() { return blurhash; }
+            public Instant getUploadedAt() { return uploadedAt.toInstant(); }
+            public Long getGooglePlaceId() { return 1L; }
+            public UUID getCustomPlaceId() { return null; }
+            public Double getLatitude() { return LAT; }
+            public Double getLongitude() { return LON; }
+            public Integer getRadiusMeters() { return 100; }
+        };
+    }
+
+    private void loadEmpty() {
+        when(historicalFeedRepository.findPhotosForHistoricalIndex(any())).thenReturn(List.of());
+        index.load();
+    }
+
+    private OffsetDateTime now() {
+        return OffsetDateTime.ofInstant(clock.instant(), ZoneOffset.UTC);
+    }
+
+    private HistoricalPointDTO point(double lat, double lon, OffsetDateTime timestamp) {
+        return new HistoricalPointDTO(lat, lon, timestamp);
+    }
+
+    private Photo createPhoto(GooglePlace place, PhotoVisibility visibility, OffsetDateTime uploadedAt) {
+        Photo photo = new Photo();
+        photo.setId(UUID.randomUUID());
+        photo.setGooglePlace(place);
+        photo.setVisibility(visibility);
+        photo.setUploadedAt(uploadedAt);
+        photo.setStorageUrl(visibility.name().toLowerCase() + ".jpg");
+        return photo;
+    }
+}
@@ -0,0 +1,188 @@
+package com.iris.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.config.JacksonConfig;
+import com.iris.backend.repository.FriendshipRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InteractionSinkTest {
+
+    @Mock private FriendshipRepository friendshipRepository;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final List<JsonNode> writtenBatches = new ArrayList<>();
+    private MutableClock clock;
+    private InteractionSink interactionSink;
+
+    private final UUID userA = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+    private final UUID userB = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-10T12:00:00Z"));
+        interactionSink = new InteractionSink(friendshipRepository, objectMapper, new SimpleMeterRegistry(), clock);
+        lenient().when(friendshipRepository.addInteractions(anyString())).thenAnswer(invocation -> {
+            JsonNode batch = objectMapper.readTree(invocation.<String>getArgument(0));
+            writtenBatches.add(batch);
+            return batch.size();
+        });
+    }
+
+    @Test
+    void flush_ShouldCoalesceInteractionsOfAPair_InOneBatchedUpdate() {
+        // --- ARRANGE ---
+        UUID userC = UUID.fromString("00000000-0000-0000-0000-00000000000c");
+        interactionSink.record(userA, userB);
+        clock.advance(Duration.ofSeconds(30));
+        interactionSink.record(userB, userA); // Gleiches Paar, andere Richtung
+        interactionSink.record(userA, userC);
+        interactionSink.record(userA, userA); // Selbst-Interaktion zählt nicht
+
+        // --- EXECUTE ---
+        interactionSink.flush();
+
+        // --- ASSERT ---
+        verify(friendshipRepository, times(1)).addInteractions(anyString());
+        JsonNode batch = writtenBatches.get(0);
+        assertThat(batch).hasSize(2);
+        JsonNode pair = rowFor(batch, userA, userB);
+        assertThat(pair.get("increment").asLong()).isEqualTo(2);
+        assertThat(Instant.parse(pair.get("lastInteractedAt").asText())).isEqualTo(Instant.parse("2026-01-10T12:00:30Z"));
+        assertThat(rowFor(batch, userA, userC).get("increment").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void record_ShouldOnlyCountCommittedTransactions() {
+        // --- ARRANGE ---
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            interactionSink.record(userA, userB);
+
+            // --- EXECUTE & ASSERT ---
+            interactionSink.flush();
+            assertThat(writtenBatches).isEmpty(); // Noch nicht committet
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        interactionSink.flush();
+        assertThat(writtenBatches).hasSize(1);
+        assertThat(rowFor(writtenBatches.get(0), userA, userB).get("increment").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void record_ShouldDropInteractions_OfRolledBackTransactions() {
+        // --- ARRANGE ---
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            interactionSink.record(userA, userB);
+
+            // --- EXECUTE ---
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        interactionSink.flush();
+
+        // --- ASSERT ---
+        verify(friendshipRepository, never()).addInteractions(anyString());
+    }
+
+    @Test
+    void flush_ShouldNotWriteAgain_WithoutNewInteractions() {
+        // --- ARRANGE ---
+        interactionSink.record(userA, userB);
+        interactionSink.flush();
+
+        // --- EXECUTE ---
+        interactionSink.flush();
+        interactionSink.flush(); // Zieht den leeren Eintrag zurück
+        interactionSink.record(userA, userB);
+        interactionSink.flush();
+
+        // --- ASSERT ---
+        verify(friendshipRepository, times(2)).addInteractions(anyString());
+        assertThat(writtenBatches.get(1).get(0).get("increment").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void flush_ShouldKeepInteractions_WhenTheUpdateFails() {
+        // --- ARRANGE ---
+        interactionSink.record(userA, userB);
+        doThrow(new RuntimeException("database down"))
+                .doAnswer(invocation -> {
+                    writtenBatches.add(objectMapper.readTree(invocation.<String>getArgument(0)));
+                    return 1;
+                })
+                .when(friendshipRepository).addInteractions(anyString());
+        interactionSink.flush();
+        interactionSink.record(userA, userB);
+
+        // --- EXECUTE ---
+        interactionSink.flush();
+
+        // --- ASSERT ---
+        assertThat(writtenBatches).hasSize(1);
+        assertThat(writtenBatches.get(0).get(0).get("increment").asLong()).isEqualTo(2);
+    }
+
+    @Test
+    void record_ShouldNotLoseInteractions_WhileFlushing() throws Exception {
+        // --- ARRANGE ---
+        int threads = 4;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // --- EXECUTE ---
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    interactionSink.record(userA, userB);
+                }
+            });
+        }
+        while (!executor.isTerminated()) {
+            interactionSink.flush();
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MILLISECONDS);
+        }
+        interactionSink.flush();
+
+        // --- ASSERT ---
+        long total = writtenBatches.stream().mapToLong(batch -> batch.get(0).get("increment").asLong()).sum();
+        assertThat(total).isEqualTo((long) threads * perThread);
+    }
+
+    private static JsonNode rowFor(JsonNode batch, UUID one, UUID two) {
+        for (JsonNode row : batch) {
+            if (row.get("userOneId").asText().equals(one.toString()) && row.get("userTwoId").asText().equals(two.toString())) {
+                return row;
+            }
+        }
+        throw new AssertionError("No row for " + one + "/" + two + " in " + batch);
+    }
+}
@@ -0,0 +1,173 @@
+package com.iris.backend.service;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import com.iris.backend.event.PhotoCreatedEvent;
+import com.iris.backend.model.Photo;
+import com.iris.backend.repository.PhotoRepository;
+import com.iris.backend.repository.PlaceStatsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PhotoDerivativeServiceTest {
+
+    private static final String PHOTOS_BUCKET = "photos";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Storage storage;
+    private PhotoRepository photoRepository;
+    private PlaceStatsRepository placeStatsRepository;
+    private HistoricalPhotoIndex historicalPhotoIndex;
+    private PhotoDerivativeService derivativeService;
+
+    @BeforeEach
+    void setUp() {
+        storage = LocalStorageHelper.getOptions().getService();
+        GcsStorageService gcsStorageService = new GcsStorageService(storage, mock(SignedUrlCache.class),
+                new UploadBufferPool(meterRegistry, 8 * 1024, 1), PHOTOS_BUCKET, "profiles", 10_000_000, 256 * 1024);
+        photoRepository = mock(PhotoRepository.class);
+        placeStatsRepository = mock(PlaceStatsRepository.class);
+        historicalPhotoIndex = mock(HistoricalPhotoIndex.class);
+        derivativeService = new PhotoDerivativeService(gcsStorageService, photoRepository, placeStatsRepository,
+                historicalPhotoIndex, meterRegistry, PHOTOS_BUCKET, 64, 256, 10_000_000, 1, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        derivativeService.shutdown();
+    }
+
+    @Test
+    void createDerivatives_ShouldStoreScaledVersionsAndBlurhash() throws Exception {
+        // --- ARRANGE ---
+        UUID photoId = UUID.randomUUID();
+        storeImage("original.png", 1200, 800, "png");
+        when(photoRepository.updateDerivatives(eq(photoId), anyString(), anyString(), anyString())).thenReturn(1);
+
+        // --- EXECUTE ---
+        derivativeService.createDerivatives(photoId, "original.png");
+
+        // --- ASSERT ---
+        ArgumentCaptor<String> thumbnail = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> display = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> blurhash = ArgumentCaptor.forClass(String.class);
+        verify(photoRepository).updateDerivatives(eq(photoId), thumbnail.capture(), display.capture(), blurhash.capture());
+
+        BufferedImage storedThumbnail = readImage(thumbnail.getValue());
+        BufferedImage storedDisplay = readImage(display.getValue());
+        // Seitenverhältnis bleibt, längere Kante = konfigurierte Kante
+        assertThat(storedThumbnail.getWidth()).isEqualTo(64);
+        assertThat(storedThumbnail.getHeight()).isEqualTo(43);
+        assertThat(storedDisplay.getWidth()).isEqualTo(256);
+        assertThat(storedDisplay.getHeight()).isEqualTo(171);
+        assertThat(blurhash.getValue()).hasSize(28);
+
+        verify(placeStatsRepository).updateCoverDerivatives("original.png", thumbnail.getValue(), blurhash.getValue());
+        verify(historicalPhotoIndex).updateDerivatives(photoId, thumbnail.getValue(), blurhash.getValue());
+        // Duplikate, die schon vor den Derivaten angelegt wurden, bekommen sie mit
+        verify(photoRepository).updateDerivativesOfDuplicates(photoId, thumbnail.getValue(), display.getValue(), blurhash.getValue());
+        assertThat(meterRegistry.counter("iris.photos.derivatives.created").count()).isEqualTo(1);
+    }
+
+    @Test
+    void createDerivatives_ShouldNotEnlargeSmallImages() throws Exception {
+        // --- ARRANGE ---
+        UUID photoId = UUID.randomUUID();
+        storeImage("small.jpg", 40, 30, "jpeg");
+        when(photoRepository.updateDerivatives(eq(photoId), anyString(), anyString(), anyString())).thenReturn(1);
+
+        // --- EXECUTE ---
+        derivativeService.createDerivatives(photoId, "small.jpg");
+
+        // --- ASSERT ---
+        ArgumentCaptor<String> thumbnail = ArgumentCaptor.forClass(String.class);
+        verify(photoRepository).updateDerivatives(eq(photoId), thumbnail.capture(), anyString(), anyString());
+        BufferedImage storedThumbnail = readImage(thumbnail.getValue());
+        assertThat(storedThumbnail.getWidth()).isEqualTo(40);
+        assertThat(storedThumbnail.getHeight()).isEqualTo(30);
+    }
+
+    @Test
+    void createDerivatives_ShouldDeleteTheDerivatives_WhenThePhotoWasDeletedMeanwhile() throws Exception {
+        // --- ARRANGE ---
+        UUID photoId = UUID.randomUUID();
+        storeImage("deleted.png", 300, 300, "png");
+        when(photoRepository.updateDerivatives(eq(photoId), anyString(), anyString(), anyString())).thenReturn(0);
+
+        // --- EXECUTE ---
+        derivativeService.createDerivatives(photoId, "deleted.png");
+
+        // --- ASSERT ---
+        ArgumentCaptor<String> thumbnail = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> display = ArgumentCaptor.forClass(String.class);
+        verify(photoRepository).updateDerivatives(eq(photoId), thumbnail.capture(), display.capture(), anyString());
+        assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, thumbnail.getValue()))).isNull();
+        assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, display.getValue()))).isNull();
+        verifyNoInteractions(placeStatsRepository);
+    }
+
+    @Test
+    void onPhotoCreated_ShouldNotCreateDerivatives_ForADuplicate() {
+        // --- ARRANGE ---
+        Photo duplicate = new Photo();
+        duplicate.setId(UUID.randomUUID());
+        duplicate.setStorageUrl("shared.png"); // Derivate des Originals sind noch nicht fertig
+
+        // --- EXECUTE ---
+        derivativeService.onPhotoCreated(new PhotoCreatedEvent(duplicate, true));
+
+        // --- ASSERT ---
+        assertThat(meterRegistry.get("iris.photos.derivatives.queued").gauge().value()).isZero();
+        verifyNoInteractions(photoRepository, placeStatsRepository);
+    }
+
+    @Test
+    void createDerivatives_ShouldCountAFailure_WhenTheObjectIsNoImage() {
+        // --- ARRANGE ---
+        storage.create(BlobInfo.newBuilder(BlobId.of(PHOTOS_BUCKET, "notes.txt")).build(), "kein Bild".getBytes());
+
+        // --- EXECUTE ---
+        derivativeService.createDerivatives(UUID.randomUUID(), "notes.txt");
+
+        // --- ASSERT ---
+        verify(photoRepository, never()).updateDerivatives(any(), any(), any(), any());
+        assertThat(meterRegistry.counter("iris.photos.derivatives.failed").count()).isEqualTo(1);
+    }
+
+    private void storeImage(String objectName, int width, int height, String format) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        storage.create(BlobInfo.newBuilder(BlobId.of(PHOTOS_BUCKET, objectName)).build(), out.toByteArray());
+    }
+
+    private BufferedImage readImage(String objectName) throws Exception {
+        Blob blob = storage.get(BlobId.of(PHOTOS_BUCKET, objectName));
+        assertThat(blob.getContentType()).isEqualTo("image/jpeg");
+        return ImageIO.read(new ByteArrayInputStream(blob.getContent()));
+    }
+}
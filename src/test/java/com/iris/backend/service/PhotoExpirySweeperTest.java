@@ -0,0 +1,129 @@
+package com.iris.backend.service;
+
+import com.iris.backend.event.PhotoDeletedEvent;
+import com.iris.backend.repository.ChallengeCompletionRepository;
+import com.iris.backend.repository.PhotoLikeRepository;
+import com.iris.backend.repository.PhotoRepository;
+import com.iris.backend.repository.PhotoRepository.ExpiredPhotoProjection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoExpirySweeperTest {
+
+    private static final Instant NOW = Instant.parse("2026-05-01T12:00:00Z");
+
+    @Mock private PhotoRepository photoRepository;
+    @Mock private PhotoLikeRepository photoLikeRepository;
+    @Mock private ChallengeCompletionRepository challengeCompletionRepository;
+    @Mock private GcsStorageService gcsStorageService;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID uploaderId = UUID.randomUUID();
+    private PhotoExpirySweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new PhotoExpirySweeper(photoRepository, photoLikeRepository, challengeCompletionRepository,
+                gcsStorageService, eventPublisher, transactionManager, meterRegistry, 2, 10,
+                Duration.ofMinutes(60), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void sweep_ShouldDeleteExpiredPhotosWithTheirRows_AndOnlyUnsharedFiles() {
+        // --- ARRANGE ---
+        OffsetDateTime expiredBefore = OffsetDateTime.ofInstant(NOW, ZoneOffset.UTC).minusMinutes(60);
+        ExpiredPhoto first = new ExpiredPhoto(UUID.randomUUID(), uploaderId, "a.jpg", "a-thumb.jpg", "a-display.jpg");
+        // Ohne Derivate, die Datei teilt sich das Foto mit einem noch lebenden Duplikat
+        ExpiredPhoto second = new ExpiredPhoto(UUID.randomUUID(), uploaderId, "shared.jpg", null, null);
+        when(photoRepository.lockExpiredBatch(expiredBefore, 2)).thenReturn(List.of(first, second), List.of());
+        when(photoRepository.deleteAllByIds(List.of(first.id(), second.id()))).thenReturn(2);
+        when(photoRepository.findReferencedObjectNames(eq(Set.of(uploaderId)), any())).thenReturn(List.of("shared.jpg"));
+        when(gcsStorageService.deletePhotoObjects(any())).thenReturn(3000L);
+
+        // --- EXECUTE ---
+        sweeper.sweep();
+
+        // --- ASSERT ---
+        verify(photoLikeRepository).deleteByPhotoIds(List.of(first.id(), second.id()));
+        verify(challengeCompletionRepository).deleteByPhotoIds(List.of(first.id(), second.id()));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> deleted = ArgumentCaptor.forClass(Collection.class);
+        verify(gcsStorageService).deletePhotoObjects(deleted.capture());
+        assertThat(deleted.getValue()).containsExactlyInAnyOrder("a.jpg", "a-thumb.jpg", "a-display.jpg");
+
+        verify(eventPublisher).publishEvent(new PhotoDeletedEvent(first.id()));
+        verify(eventPublisher).publishEvent(new PhotoDeletedEvent(second.id()));
+        assertThat(meterRegistry.counter("iris.photos.expiry.rows").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("iris.photos.expiry.bytes").count()).isEqualTo(3000);
+        // Zwei Batches: der erste war voll, der zweite leer
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void sweep_ShouldStopAfterMaxBatchesPerRun() {
+        // --- ARRANGE ---
+        when(photoRepository.lockExpiredBatch(any(), anyInt())).thenAnswer(invocation -> List.of(
+                new ExpiredPhoto(UUID.randomUUID(), uploaderId, UUID.randomUUID() + ".jpg", null, null),
+                new ExpiredPhoto(UUID.randomUUID(), uploaderId, UUID.randomUUID() + ".jpg", null, null)));
+        when(photoRepository.deleteAllByIds(any())).thenReturn(2);
+
+        // --- EXECUTE ---
+        sweeper.sweep();
+
+        // --- ASSERT ---
+        verify(photoRepository, times(10)).lockExpiredBatch(any(), anyInt());
+        assertThat(meterRegistry.counter("iris.photos.expiry.rows").count()).isEqualTo(20);
+    }
+
+    @Test
+    void sweep_ShouldKeepSweeping_WhenDeletingFilesFails() {
+        // --- ARRANGE ---
+        ExpiredPhoto photo = new ExpiredPhoto(UUID.randomUUID(), uploaderId, "a.jpg", null, null);
+        when(photoRepository.lockExpiredBatch(any(), anyInt())).thenReturn(List.of(photo), List.of());
+        when(photoRepository.deleteAllByIds(any())).thenReturn(1);
+        when(gcsStorageService.deletePhotoObjects(any())).thenThrow(new RuntimeException("GCS nicht erreichbar"));
+
+        // --- EXECUTE ---
+        sweeper.sweep();
+
+        // --- ASSERT ---
+        assertThat(meterRegistry.counter("iris.photos.expiry.rows").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("iris.photos.expiry.bytes").count()).isZero();
+    }
+
+    private record ExpiredPhoto(UUID id, UUID uploaderId, String storageUrl, String thumbnailStorageUrl,
+                                String displayStorageUrl) implements ExpiredPhotoProjection {
+        @Override public UUID getId() { return id; }
+        @Override public UUID getUploaderId() { return uploaderId; }
+        @Override public String getStorageUrl() { return storageUrl; }
+        @Override public String getThumbnailStorageUrl() { return thumbnailStorageUrl; }
+        @Override public String getDisplayStorageUrl() { return displayStorageUrl; }
+    }
+}
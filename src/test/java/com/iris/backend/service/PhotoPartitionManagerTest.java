@@ -0,0 +1,125 @@
+package com.iris.backend.service;
+
+import com.iris.backend.repository.PhotoPartitionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoPartitionManagerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 5, 20);
+
+    @Mock private PhotoPartitionRepository partitionRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void maintain_ShouldCreateMissingUpcomingPartitions_AndDropOnlyEmptyExpiredOnes() {
+        // --- ARRANGE ---
+        List<String> partitions = new ArrayList<>();
+        for (LocalDate day = TODAY.minusDays(10); !day.isAfter(TODAY.plusDays(1)); day = day.plusDays(1)) {
+            partitions.add(PhotoPartitionRepository.partitionName(day));
+        }
+        when(partitionRepository.tryLockMaintenance()).thenReturn(true);
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findPartitionNames()).thenReturn(partitions);
+        // Der Sweep ist mit dem ältesten Tag fertig, mit dem zweitältesten noch nicht
+        when(partitionRepository.isEmpty("photos_p20260510")).thenReturn(true);
+        when(partitionRepository.isEmpty("photos_p20260511")).thenReturn(false);
+
+        // --- EXECUTE ---
+        manager(false).maintain();
+
+        // --- ASSERT ---
+        verify(partitionRepository).createPartition(TODAY.plusDays(2));
+        verify(partitionRepository).createPartition(TODAY.plusDays(3));
+        verify(partitionRepository, times(2)).createPartition(any());
+        // 10.-11. Mai enden spätestens am 12. = heute minus 8 Tage; alles danach kann noch lebende Fotos haben
+        verify(partitionRepository).dropPartition("photos_p20260510");
+        verify(partitionRepository, never()).dropPartition("photos_p20260511");
+        verify(partitionRepository, never()).isEmpty("photos_p20260512");
+        assertThat(meterRegistry.counter("iris.photos.partitions.created").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("iris.photos.partitions.dropped").count()).isEqualTo(1);
+    }
+
+    @Test
+    void maintain_ShouldDoNothing_WhenAnotherInstanceHoldsTheLock() {
+        // --- ARRANGE ---
+        when(partitionRepository.tryLockMaintenance()).thenReturn(false);
+
+        // --- EXECUTE ---
+        manager(false).maintain();
+
+        // --- ASSERT ---
+        verify(partitionRepository, never()).findPartitionNames();
+        verify(partitionRepository, never()).createPartition(any());
+    }
+
+    @Test
+    void maintain_ShouldDoNothing_WhenPhotosIsNotPartitioned() {
+        // --- ARRANGE ---
+        when(partitionRepository.tryLockMaintenance()).thenReturn(true);
+        when(partitionRepository.isPartitioned()).thenReturn(false);
+
+        // --- EXECUTE ---
+        manager(false).maintain();
+
+        // --- ASSERT ---
+        verify(partitionRepository, never()).createPartition(any());
+    }
+
+    @Test
+    void load_ShouldConvertTheTable_AndStartTheDailyPartitionsTomorrow() {
+        // --- ARRANGE ---
+        when(partitionRepository.tryLockMaintenance()).thenReturn(true);
+        when(partitionRepository.isPartitioned()).thenReturn(false, true);
+        when(partitionRepository.findPartitionNames()).thenReturn(List.of(
+                PhotoPartitionRepository.LEGACY_PARTITION, "photos_p20260521", "photos_p20260522", "photos_p20260523"));
+
+        // --- EXECUTE ---
+        manager(true).load();
+
+        // --- ASSERT ---
+        verify(partitionRepository).convertToPartitioned(TODAY.plusDays(1));
+        // Heute liegt noch in der alten Tabelle
+        verify(partitionRepository, never()).createPartition(TODAY);
+        verify(partitionRepository).createPartition(TODAY.plusDays(1));
+        verify(partitionRepository).createPartition(TODAY.plusDays(3));
+        verify(partitionRepository, never()).createPartition(TODAY.plusDays(4));
+        verify(partitionRepository, never()).dropPartition(any());
+    }
+
+    @Test
+    void constructor_ShouldRejectARetentionThatDoesNotCoverThePhotoLifetime() {
+        assertThatThrownBy(() -> new PhotoPartitionManager(partitionRepository, transactionManager, meterRegistry,
+                false, 3, Duration.ofDays(7), clock()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private PhotoPartitionManager manager(boolean convertOnStartup) {
+        return new PhotoPartitionManager(partitionRepository, transactionManager, meterRegistry, convertOnStartup,
+                3, Duration.ofDays(8), clock());
+    }
+
+    private static Clock clock() {
+        return Clock.fixed(Instant.parse("2026-05-20T10:00:00Z"), ZoneOffset.UTC);
+    }
+}
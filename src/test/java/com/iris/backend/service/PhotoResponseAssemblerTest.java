@@ -0,0 +1,121 @@
+package com.iris.backend.service;
+
+import com.iris.backend.dto.PhotoResponseDTO;
+import com.iris.backend.dto.feed.GalleryPlaceType;
+import com.iris.backend.model.GooglePlace;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.User;
+import com.iris.backend.repository.CustomPlaceRepository;
+import com.iris.backend.repository.GooglePlaceRepository;
+import com.iris.backend.repository.PhotoLikeRepository;
+import com.iris.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoResponseAssemblerTest {
+
+    @Mock private UserRepository userRepository;
+    @Mock private GooglePlaceRepository googlePlaceRepository;
+    @Mock private CustomPlaceRepository customPlaceRepository;
+    @Mock private PhotoLikeRepository photoLikeRepository;
+    @Mock private GcsStorageService gcsStorageService;
+
+    private PhotoResponseAssembler assembler;
+
+    private final String PHOTOS_BUCKET = "test-photos-bucket";
+    private final String PROFILES_BUCKET = "test-profiles-bucket";
+
+    @BeforeEach
+    void setUp() {
+        assembler = new PhotoResponseAssembler(userRepository, googlePlaceRepository, customPlaceRepository,
+                photoLikeRepository, gcsStorageService, PHOTOS_BUCKET, PROFILES_BUCKET);
+    }
+
+    @Test
+    void toPhotoResponseDTOs_ShouldResolveEverythingWithGroupedQueriesAndKeepOrder() {
+        // --- ARRANGE ---
+        User uploader = new User();
+        uploader.setId(UUID.randomUUID());
+        uploader.setUsername("Uploader");
+        uploader.setProfileImageUrl("uploader.jpg");
+
+        GooglePlace place = new GooglePlace();
+        place.setId(7L);
+        place.setName("Zytglogge");
+
+        Photo first = photo(uploader, place, "first.jpg");
+        Photo second = photo(uploader, null, "second.jpg");
+        first.setThumbnailStorageUrl("first-thumbnail.jpg");
+        first.setDisplayStorageUrl("first-display.jpg");
+        first.setBlurhash("LEHV6nWB2yk8pyo0adR*.7kCMdnj");
+
+        when(userRepository.findAllById(anySet())).thenReturn(List.of(uploader));
+        when(googlePlaceRepository.findAllById(anySet())).thenReturn(List.of(place));
+
+        PhotoLikeRepository.PhotoLikeCount likes = mock(PhotoLikeRepository.PhotoLikeCount.class);
+        when(likes.getPhotoId()).thenReturn(second.getId());
+        when(likes.getLikeCount()).thenReturn(4L);
+        when(photoLikeRepository.countLikesByPhotoIds(anySet())).thenReturn(List.of(likes));
+
+        when(gcsStorageService.generateSignedUrls(eq(PHOTOS_BUCKET), anyCollection(), eq(15L), eq(TimeUnit.MINUTES)))
+                .thenReturn(Map.of("first.jpg", "https://signed/first", "second.jpg", "https://signed/second",
+                        "first-thumbnail.jpg", "https://signed/first-thumbnail", "first-display.jpg", "https://signed/first-display"));
+        when(gcsStorageService.generateSignedUrls(eq(PROFILES_BUCKET), anyCollection(), eq(15L), eq(TimeUnit.MINUTES)))
+                .thenReturn(Map.of("uploader.jpg", "https://signed/uploader"));
+
+        // --- EXECUTE ---
+        List<PhotoResponseDTO> dtos = assembler.toPhotoResponseDTOs(List.of(first, second));
+
+        // --- ASSERT ---
+        assertThat(dtos).extracting(PhotoResponseDTO::photoId).containsExactly(first.getId(), second.getId());
+        assertThat(dtos.get(0).placeType()).isEqualTo(GalleryPlaceType.GOOGLE_POI);
+        assertThat(dtos.get(0).placeName()).isEqualTo("Zytglogge");
+        assertThat(dtos.get(0).likeCount()).isZero();
+        assertThat(dtos.get(1).placeName()).isEqualTo("Friends Feed");
+        assertThat(dtos.get(1).likeCount()).isEqualTo(4);
+        assertThat(dtos.get(1).profileImageUrl()).isEqualTo("https://signed/uploader");
+        assertThat(dtos.get(0).thumbnailUrl()).isEqualTo("https://signed/first-thumbnail");
+        assertThat(dtos.get(0).displayUrl()).isEqualTo("https://signed/first-display");
+        assertThat(dtos.get(0).blurhash()).isEqualTo("LEHV6nWB2yk8pyo0adR*.7kCMdnj");
+        // Ohne Derivate zeigen alle Größen auf das Original
+        assertThat(dtos.get(1).thumbnailUrl()).isEqualTo("https://signed/second");
+        assertThat(dtos.get(1).displayUrl()).isEqualTo("https://signed/second");
+        assertThat(dtos.get(1).blurhash()).isNull();
+
+        // Genau eine Query pro Tabelle, egal wie viele Fotos
+        verify(userRepository, times(1)).findAllById(anySet());
+        verify(photoLikeRepository, times(1)).countLikesByPhotoIds(anySet());
+        verify(photoLikeRepository, never()).countByIdPhotoId(any());
+        verifyNoInteractions(customPlaceRepository);
+    }
+
+    @Test
+    void toPhotoResponseDTOs_ShouldReturnEmptyList_WhenNoPhotos() {
+        assertThat(assembler.toPhotoResponseDTOs(List.of())).isEmpty();
+        verifyNoInteractions(userRepository, photoLikeRepository, gcsStorageService);
+    }
+
+    private Photo photo(User uploader, GooglePlace place, String objectName) {
+        Photo photo = new Photo();
+        photo.setId(UUID.randomUUID());
+        photo.setUploader(uploader);
+        photo.setGooglePlace(place);
+        photo.setStorageUrl(objectName);
+        photo.setUploadedAt(OffsetDateTime.now());
+        return photo;
+    }
+}
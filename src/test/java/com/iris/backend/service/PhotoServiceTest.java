@@ -1,7 +1,8 @@
 package com.iris.backend.service;
 
 import com.iris.backend.dto.PhotoUploadRequestDTO;
-import com.iris.backend.dto.PhotoUploadResponse;
+import com.iris.backend.dto.PhotoBatchUploadResultDTO;
+import com.iris.backend.event.PhotoCreatedEvent;
 import com.iris.backend.model.CustomPlace;
 import com.iris.backend.model.GooglePlace;
 import com.iris.backend.model.Photo;
@@ -11,12 +12,17 @@ import com.iris.backend.repository.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,6 +30,7 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,6 +45,14 @@ class PhotoServiceTest {
     @Mock private FcmService fcmService;
     @Mock private ChallengeService challengeService;
     @Mock private PhotoLikeRepository photoLikeRepository;
+    @Mock private ChallengeCompletionRepository challengeCompletionRepository;
+    @Mock private FeedTimelineService feedTimelineService;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private InteractionSink interactionSink;
+    @Mock private PlaceStatsService placeStatsService;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private PhotoUploadDeduplicator photoUploadDeduplicator;
+    @Spy private ParallelUploadExecutor parallelUploadExecutor = new ParallelUploadExecutor(2);
 
     @InjectMocks
     private PhotoService photoService;
@@ -63,14 +78,101 @@ class PhotoServiceTest {
 
     @Test
     void deletePhoto_ShouldDeleteFromCloudStorageAndDatabase() {
-        when(photoRepository.findById(testPhotoId)).thenReturn(Optional.of(testPhoto));
+        when(photoRepository.lockById(testPhotoId)).thenReturn(Optional.of(testPhoto));
 
         photoService.deletePhoto(testPhotoId, testUser);
 
         verify(gcsStorageService).deleteFile(PHOTOS_BUCKET, "my-cool-photo.jpg");
+        verify(photoLikeRepository).deleteByPhotoIds(List.of(testPhotoId));
+        verify(challengeCompletionRepository).deleteByPhotoIds(List.of(testPhotoId));
         verify(photoRepository).delete(testPhoto);
     }
 
+    @Test
+    void deletePhoto_ShouldKeepTheFile_WhenADuplicateStillUsesIt() {
+        // --- ARRANGE ---
+        testPhoto.setThumbnailStorageUrl("thumb.jpg");
+        when(photoRepository.lockById(testPhotoId)).thenReturn(Optional.of(testPhoto));
+        when(photoRepository.countOtherReferences(testUser.getId(), testPhotoId, "my-cool-photo.jpg")).thenReturn(1L);
+
+        // --- EXECUTE ---
+        photoService.deletePhoto(testPhotoId, testUser);
+
+        // --- ASSERT ---
+        verify(gcsStorageService, never()).deleteFile(PHOTOS_BUCKET, "my-cool-photo.jpg");
+        verify(gcsStorageService).deleteFile(PHOTOS_BUCKET, "thumb.jpg");
+        verify(photoRepository).delete(testPhoto);
+    }
+
+    @Test
+    void createPhoto_ShouldReturnTheEarlierPhoto_WhenTheIdempotencyKeyWasAlreadyUsed() throws Exception {
+        // --- ARRANGE ---
+        UUID earlierPhotoId = UUID.randomUUID();
+        when(photoUploadDeduplicator.findReplay(testUser.getId(), "retry-1")).thenReturn(Optional.of(earlierPhotoId));
+
+        // --- EXECUTE ---
+        UUID photoId = photoService.createPhoto(mock(MultipartFile.class), 46.9, 7.4, PhotoVisibility.PUBLIC,
+                null, null, testUser, null, null, "retry-1");
+
+        // --- ASSERT ---
+        assertThat(photoId).isEqualTo(earlierPhotoId);
+        verify(gcsStorageService, never()).storePhoto(any());
+        verify(photoRepository, never()).save(any(Photo.class));
+    }
+
+    @Test
+    void createPhoto_ShouldDropTheUpload_WhenAConcurrentRequestWithTheSameKeyWon() throws Exception {
+        // --- ARRANGE ---
+        UUID winnerPhotoId = UUID.randomUUID();
+        MultipartFile file = mock(MultipartFile.class);
+        when(gcsStorageService.storePhoto(file)).thenReturn(new GcsStorageService.StoredPhoto("neu.jpg", 10, "abc"));
+        when(photoUploadDeduplicator.findReplay(testUser.getId(), "retry-1"))
+                .thenReturn(Optional.empty(), Optional.of(winnerPhotoId));
+        when(photoUploadDeduplicator.claim(testUser.getId(), "retry-1")).thenReturn(false);
+
+        // --- EXECUTE ---
+        UUID photoId = photoService.createPhoto(file, 46.9, 7.4, PhotoVisibility.PUBLIC,
+                null, null, testUser, null, null, "retry-1");
+
+        // --- ASSERT ---
+        assertThat(photoId).isEqualTo(winnerPhotoId);
+        verify(gcsStorageService).deleteFile(PHOTOS_BUCKET, "neu.jpg");
+        verify(photoRepository, never()).save(any(Photo.class));
+    }
+
+    @Test
+    void createPhoto_ShouldShareTheObjectOfAnIdenticalPhoto() throws Exception {
+        // --- ARRANGE ---
+        MultipartFile file = mock(MultipartFile.class);
+        GcsStorageService.StoredPhoto stored = new GcsStorageService.StoredPhoto("neu.jpg", 10, "abc");
+        when(gcsStorageService.storePhoto(file)).thenReturn(stored);
+        Photo existing = new Photo();
+        existing.setStorageUrl("alt.jpg");
+        existing.setThumbnailStorageUrl("alt-thumb.jpg");
+        existing.setDisplayStorageUrl("alt-display.jpg");
+        existing.setBlurhash("LKO2?U%2Tw=w]~RBVZRi};RPxuwH");
+        when(photoUploadDeduplicator.reuseExisting(testUser.getId(), stored)).thenReturn(Optional.of(existing));
+        when(photoRepository.save(any(Photo.class))).thenAnswer(invocation -> {
+            Photo photo = invocation.getArgument(0);
+            photo.setId(UUID.randomUUID());
+            return photo;
+        });
+
+        // --- EXECUTE ---
+        photoService.createPhoto(file, 46.9, 7.4, PhotoVisibility.PUBLIC, null, null, testUser, null, null, null);
+
+        // --- ASSERT ---
+        ArgumentCaptor<Photo> saved = ArgumentCaptor.forClass(Photo.class);
+        verify(photoRepository).save(saved.capture());
+        assertThat(saved.getValue().getStorageUrl()).isEqualTo("alt.jpg");
+        assertThat(saved.getValue().getThumbnailStorageUrl()).isEqualTo("alt-thumb.jpg");
+        assertThat(saved.getValue().getDisplayStorageUrl()).isEqualTo("alt-display.jpg");
+        assertThat(saved.getValue().getContentHash()).isEqualTo("abc");
+        // Als Duplikat markiert: erzeugt keine eigenen Derivate
+        verify(eventPublisher).publishEvent(new PhotoCreatedEvent(saved.getValue(), true));
+        verify(photoUploadDeduplicator, never()).claim(any(), any());
+    }
+
     @Test
     void uploadPhotos_ShouldUploadToCloudAndSaveToDatabase() throws Exception {
         // --- ARRANGE ---
@@ -101,27 +203,89 @@ class PhotoServiceTest {
         when(gcsStorageService.uploadPhoto(any(MultipartFile.class)))
                 .thenReturn("https://storage.fake.com/photo.jpg");
 
-        Photo savedPhoto1 = new Photo(); savedPhoto1.setId(UUID.randomUUID());
-        savedPhoto1.setVisibility(PhotoVisibility.PUBLIC); // Wichtig für den FcmService-Check
-
-        Photo savedPhoto2 = new Photo(); savedPhoto2.setId(UUID.randomUUID());
-        savedPhoto2.setVisibility(PhotoVisibility.FRIENDS); // Wichtig für den FcmService-Check
-
-        when(photoRepository.save(any(Photo.class))).thenReturn(savedPhoto1, savedPhoto2);
+        mockSaveAllAssigningIds();
 
         // Da Foto 2 'FRIENDS' ist, ruft der Service die Freundesliste ab und sendet Notifications.
         // Wir faken diese Methoden, damit sie nicht ins Leere laufen.
         when(friendshipService.getFriendsAsEntities(testUser.getId())).thenReturn(List.of());
 
         // --- EXECUTE ---
-        List<PhotoUploadResponse> responses = photoService.uploadPhotos(files, requests, testUser);
+        List<PhotoBatchUploadResultDTO> responses = photoService.uploadPhotos(files, requests, testUser);
 
         // --- ASSERT ---
         assertThat(responses).hasSize(2);
+        assertThat(responses).allSatisfy(result -> assertThat(result.photoId()).isNotNull());
 
         // Die Signatur im GcsStorageService lautet anscheinend nur uploadPhoto(file) ohne Bucket-Namen als 1. Parameter.
         verify(gcsStorageService, times(2)).uploadPhoto(any(MultipartFile.class));
-        verify(photoRepository, times(2)).save(any(Photo.class));
+        // Beide Fotos in einem saveAll (ein JDBC-Batch), Freunde nur einmal geladen
+        verify(photoRepository).saveAll(anyList());
+        verify(photoRepository, never()).save(any(Photo.class));
+        verify(placeStatsService, times(2)).onPhotoCreated(any(Photo.class));
+        verify(friendshipService, times(1)).getFriendsAsEntities(testUser.getId());
+    }
+
+    @Test
+    void uploadPhotos_ShouldReportFailuresPerFile_AndSaveTheOthers() throws Exception {
+        // --- ARRANGE ---
+        MultipartFile ok = mock(MultipartFile.class);
+        MultipartFile broken = mock(MultipartFile.class);
+        MultipartFile unknownPlace = mock(MultipartFile.class);
+        PhotoUploadRequestDTO request = new PhotoUploadRequestDTO(46.9, 7.4, PhotoVisibility.PUBLIC, null, null, null, null);
+        PhotoUploadRequestDTO withUnknownPlace = new PhotoUploadRequestDTO(46.9, 7.4, PhotoVisibility.PUBLIC, 99L, null, null, null);
+        when(googlePlaceRepository.findById(99L)).thenReturn(Optional.empty());
+        when(gcsStorageService.uploadPhoto(ok)).thenReturn("ok.jpg");
+        when(gcsStorageService.uploadPhoto(broken)).thenThrow(new IOException("timeout"));
+        mockSaveAllAssigningIds();
+
+        // --- EXECUTE ---
+        List<PhotoBatchUploadResultDTO> results = photoService.uploadPhotos(
+                new MultipartFile[]{ok, broken, unknownPlace}, List.of(request, request, withUnknownPlace), testUser);
+
+        // --- ASSERT ---
+        assertThat(results).extracting(PhotoBatchUploadResultDTO::index).containsExactly(0, 1, 2);
+        assertThat(results.get(0).photoId()).isNotNull();
+        assertThat(results.get(0).error()).isNull();
+        assertThat(results.get(1).photoId()).isNull();
+        assertThat(results.get(1).error()).contains("timeout");
+        assertThat(results.get(2).photoId()).isNull();
+        assertThat(results.get(2).error()).contains("not found");
+        // Datei mit unbekanntem Ort wird gar nicht erst hochgeladen
+        verify(gcsStorageService, never()).uploadPhoto(unknownPlace);
+        verify(gcsStorageService, never()).deleteFile(anyString(), anyString());
+    }
+
+    @Test
+    void uploadPhotos_ShouldDeleteUploadedFiles_WhenSavingFails() throws Exception {
+        // --- ARRANGE ---
+        MultipartFile file1 = mock(MultipartFile.class);
+        MultipartFile file2 = mock(MultipartFile.class);
+        PhotoUploadRequestDTO request = new PhotoUploadRequestDTO(46.9, 7.4, PhotoVisibility.PUBLIC, null, null, null, null);
+        when(gcsStorageService.uploadPhoto(file1)).thenReturn("eins.jpg");
+        when(gcsStorageService.uploadPhoto(file2)).thenReturn("zwei.jpg");
+        when(photoRepository.saveAll(anyList())).thenThrow(new RuntimeException("db down"));
+
+        // --- EXECUTE ---
+        List<PhotoBatchUploadResultDTO> results = photoService.uploadPhotos(
+                new MultipartFile[]{file1, file2}, List.of(request, request), testUser);
+
+        // --- ASSERT ---
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.photoId()).isNull();
+            assertThat(result.error()).contains("db down");
+        });
+        verify(transactionManager).rollback(any());
+        verify(gcsStorageService).deleteFile(PHOTOS_BUCKET, "eins.jpg");
+        verify(gcsStorageService).deleteFile(PHOTOS_BUCKET, "zwei.jpg");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockSaveAllAssigningIds() {
+        when(photoRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Photo> photos = invocation.getArgument(0);
+            photos.forEach(photo -> photo.setId(UUID.randomUUID()));
+            return photos;
+        });
     }
 
     @Test
@@ -131,7 +295,7 @@ class PhotoServiceTest {
         maliciousUser.setId(UUID.randomUUID()); // Eine ANDERE ID als der testUser!
         maliciousUser.setUsername("Hacker");
 
-        when(photoRepository.findById(testPhotoId)).thenReturn(Optional.of(testPhoto));
+        when(photoRepository.lockById(testPhotoId)).thenReturn(Optional.of(testPhoto));
 
         // --- EXECUTE & ASSERT ---
         // Wenn ein Hacker versucht, das Foto von jemand anderem zu löschen, muss es knallen!
@@ -143,4 +307,19 @@ class PhotoServiceTest {
         verify(gcsStorageService, never()).deleteFile(anyString(), anyString());
         verify(photoRepository, never()).delete(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getPhotoDTOById_ShouldCheckFriendsOnlyPhotosAgainstTheDatabase() {
+        // --- ARRANGE ---
+        User viewer = new User();
+        viewer.setId(UUID.randomUUID());
+        testPhoto.setUploader(testUser);
+        testPhoto.setVisibility(PhotoVisibility.FRIENDS);
+        when(photoRepository.findById(testPhotoId)).thenReturn(Optional.of(testPhoto));
+        when(friendshipService.areFriends(viewer.getId(), testUser.getId())).thenReturn(false);
+
+        // --- EXECUTE & ASSERT ---
+        assertThrows(SecurityException.class, () -> photoService.getPhotoDTOById(testPhotoId, viewer));
+        verify(friendshipService).areFriends(viewer.getId(), testUser.getId());
+    }
+}
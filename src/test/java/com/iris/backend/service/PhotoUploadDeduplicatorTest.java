@@ -0,0 +1,115 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.Photo;
+import com.iris.backend.repository.PhotoRepository;
+import com.iris.backend.repository.PhotoUploadKeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoUploadDeduplicatorTest {
+
+    private static final String PHOTOS_BUCKET = "photos";
+    private static final Instant NOW = Instant.parse("2026-05-01T12:00:00Z");
+
+    @Mock private PhotoUploadKeyRepository keyRepository;
+    @Mock private PhotoRepository photoRepository;
+    @Mock private GcsStorageService gcsStorageService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID uploaderId = UUID.randomUUID();
+    private PhotoUploadDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        deduplicator = new PhotoUploadDeduplicator(keyRepository, photoRepository, gcsStorageService, meterRegistry,
+                PHOTOS_BUCKET, Duration.ofHours(24), Duration.ofMinutes(60), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void reuseExisting_ShouldDeleteTheNewObjectAndCountItsBytes_WhenTheContentIsKnown() {
+        // --- ARRANGE ---
+        Photo existing = new Photo();
+        existing.setStorageUrl("alt.jpg");
+        OffsetDateTime aliveUntil = OffsetDateTime.ofInstant(NOW, ZoneOffset.UTC).plusMinutes(60);
+        when(photoRepository.findByUploaderAndContentHash(eq(uploaderId), eq("abc"), eq(aliveUntil), any(Limit.class)))
+                .thenReturn(List.of(existing));
+
+        // --- EXECUTE ---
+        Optional<Photo> reused = deduplicator.reuseExisting(uploaderId,
+                new GcsStorageService.StoredPhoto("neu.jpg", 4096, "abc"));
+
+        // --- ASSERT ---
+        assertThat(reused).contains(existing);
+        verify(gcsStorageService).deleteFile(PHOTOS_BUCKET, "neu.jpg");
+        assertThat(meterRegistry.counter("iris.photos.dedup.bytes").count()).isEqualTo(4096);
+    }
+
+    @Test
+    void reuseExisting_ShouldKeepTheNewObject_WhenTheContentIsNew() {
+        // --- ARRANGE ---
+        when(photoRepository.findByUploaderAndContentHash(eq(uploaderId), eq("abc"), any(), any())).thenReturn(List.of());
+
+        // --- EXECUTE ---
+        Optional<Photo> reused = deduplicator.reuseExisting(uploaderId,
+                new GcsStorageService.StoredPhoto("neu.jpg", 4096, "abc"));
+
+        // --- ASSERT ---
+        assertThat(reused).isEmpty();
+        verifyNoInteractions(gcsStorageService);
+        assertThat(meterRegistry.counter("iris.photos.dedup.bytes").count()).isZero();
+    }
+
+    @Test
+    void claim_ShouldRememberTheKeyForTheConfiguredTtl() {
+        // --- ARRANGE ---
+        OffsetDateTime now = OffsetDateTime.ofInstant(NOW, ZoneOffset.UTC);
+        when(keyRepository.claim(any(), eq(uploaderId), eq("retry-1"), eq(now), eq(now.plusHours(24)))).thenReturn(1);
+
+        // --- EXECUTE & ASSERT ---
+        assertThat(deduplicator.claim(uploaderId, "retry-1")).isTrue();
+    }
+
+    @Test
+    void findReplay_ShouldCountReplays() {
+        // --- ARRANGE ---
+        UUID photoId = UUID.randomUUID();
+        when(keyRepository.findPhotoId(eq(uploaderId), eq("retry-1"), any())).thenReturn(Optional.of(photoId));
+
+        // --- EXECUTE ---
+        Optional<UUID> replayed = deduplicator.findReplay(uploaderId, "retry-1");
+
+        // --- ASSERT ---
+        assertThat(replayed).contains(photoId);
+        assertThat(meterRegistry.counter("iris.photos.idempotent.replays").count()).isEqualTo(1);
+    }
+
+    @Test
+    void validateKey_ShouldRejectEmptyOrNonAsciiKeys() {
+        PhotoUploadDeduplicator.validateKey("3f2b8c1e-7d4a-4e0b-9a51-1c2d3e4f5a6b");
+
+        assertThatThrownBy(() -> PhotoUploadDeduplicator.validateKey("")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PhotoUploadDeduplicator.validateKey("schlüssel")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PhotoUploadDeduplicator.validateKey("a".repeat(256))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
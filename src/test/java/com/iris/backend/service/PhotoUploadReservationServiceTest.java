@@ -0,0 +1,197 @@
+package com.iris.backend.service;
+
+import com.google.cloud.storage.Blob;
+import com.iris.backend.dto.PhotoUploadRequestDTO;
+import com.iris.backend.dto.PhotoUploadReservationRequestDTO;
+import com.iris.backend.dto.PhotoUploadTicketDTO;
+import com.iris.backend.model.PhotoUploadReservation;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.repository.PhotoUploadReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoUploadReservationServiceTest {
+
+    private static final long MAX_BYTES = 1000;
+
+    @Mock private PhotoUploadReservationRepository reservationRepository;
+    @Mock private GcsStorageService gcsStorageService;
+    @Mock private PhotoService photoService;
+
+    private MutableClock clock;
+    private PhotoUploadReservationService reservationService;
+
+    private final User uploader = new User();
+    private final PhotoUploadRequestDTO metadata = new PhotoUploadRequestDTO(
+            46.9480, 7.4474, PhotoVisibility.FRIENDS, 123L, null, List.of(), null);
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-10T12:00:00Z"));
+        reservationService = new PhotoUploadReservationService(reservationRepository, gcsStorageService, photoService,
+                "photos", Duration.ofMinutes(15), Duration.ofMinutes(60), clock);
+        uploader.setId(UUID.randomUUID());
+    }
+
+    @Test
+    void reserve_ShouldSaveReservation_AndReturnSignedUrlThatExpiresBeforeIt() {
+        // --- ARRANGE ---
+        when(gcsStorageService.newPhotoObjectName("bild.jpg")).thenReturn("uuid-bild.jpg");
+        when(gcsStorageService.generateSignedPhotoUploadUrl("uuid-bild.jpg", "image/jpeg", Duration.ofMinutes(15)))
+                .thenReturn("https://upload.url");
+        when(gcsStorageService.photoUploadHeaders("image/jpeg")).thenReturn(Map.of("Content-Type", "image/jpeg"));
+
+        // --- EXECUTE ---
+        PhotoUploadTicketDTO ticket = reservationService.reserve(uploader,
+                new PhotoUploadReservationRequestDTO("../ordner/bild.jpg", "image/jpeg"));
+
+        // --- ASSERT ---
+        ArgumentCaptor<PhotoUploadReservation> captor = ArgumentCaptor.forClass(PhotoUploadReservation.class);
+        verify(reservationRepository).save(captor.capture());
+        PhotoUploadReservation saved = captor.getValue();
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        assertThat(saved.getId()).isEqualTo(ticket.uploadToken());
+        assertThat(saved.getUploaderId()).isEqualTo(uploader.getId());
+        assertThat(saved.getObjectName()).isEqualTo("uuid-bild.jpg");
+        assertThat(saved.getExpiresAt()).isEqualTo(now.plusMinutes(60));
+        assertThat(ticket.uploadUrl()).isEqualTo("https://upload.url");
+        assertThat(ticket.uploadHeaders()).containsEntry("Content-Type", "image/jpeg");
+        assertThat(ticket.uploadUrlExpiresAt()).isEqualTo(now.plusMinutes(15));
+        assertThat(ticket.finalizeBefore()).isEqualTo(saved.getExpiresAt());
+    }
+
+    @Test
+    void reserve_ShouldRejectNonImageContentTypes() {
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> reservationService.reserve(uploader,
+                new PhotoUploadReservationRequestDTO("skript.html", "text/html")))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(reservationRepository, gcsStorageService);
+    }
+
+    @Test
+    void finalizeUpload_ShouldClaimReservation_AndCreatePhotoForTheObject() {
+        // --- ARRANGE ---
+        PhotoUploadReservation reservation = createReservation(uploader.getId());
+        mockUploadedObject(500L, "image/jpeg");
+        when(reservationRepository.claim(reservation.getId(), OffsetDateTime.now(clock))).thenReturn(1);
+        UUID photoId = UUID.randomUUID();
+        when(photoService.createPhotoForObject("uuid-bild.jpg", 46.9480, 7.4474, PhotoVisibility.FRIENDS,
+                123L, null, uploader, List.of(), null)).thenReturn(photoId);
+
+        // --- EXECUTE ---
+        UUID result = reservationService.finalizeUpload(reservation.getId(), metadata, uploader);
+
+        // --- ASSERT ---
+        assertThat(result).isEqualTo(photoId);
+    }
+
+    @Test
+    void finalizeUpload_ShouldFail_WhenTheReservationWasAlreadyClaimed() {
+        // --- ARRANGE ---
+        PhotoUploadReservation reservation = createReservation(uploader.getId());
+        mockUploadedObject(500L, "image/jpeg");
+        when(reservationRepository.claim(eq(reservation.getId()), any())).thenReturn(0);
+
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> reservationService.finalizeUpload(reservation.getId(), metadata, uploader))
+                .isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(photoService);
+    }
+
+    @Test
+    void finalizeUpload_ShouldRejectMissingOrMismatchingObjects_WithoutClaiming() {
+        // --- ARRANGE ---
+        PhotoUploadReservation reservation = createReservation(uploader.getId());
+        when(gcsStorageService.getMaxUploadBytes()).thenReturn(MAX_BYTES);
+        Blob tooLarge = mock(Blob.class);
+        when(tooLarge.getSize()).thenReturn(MAX_BYTES + 1);
+        Blob wrongType = mock(Blob.class);
+        when(wrongType.getSize()).thenReturn(10L);
+        when(wrongType.getContentType()).thenReturn("image/png");
+        when(gcsStorageService.getPhotoObject("uuid-bild.jpg")).thenReturn(null, tooLarge, wrongType);
+
+        // --- EXECUTE & ASSERT ---
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> reservationService.finalizeUpload(reservation.getId(), metadata, uploader))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        verify(reservationRepository, never()).claim(any(), any());
+        verifyNoInteractions(photoService);
+    }
+
+    @Test
+    void finalizeUpload_ShouldNotFindReservationsOfOtherUsers() {
+        // --- ARRANGE ---
+        PhotoUploadReservation reservation = createReservation(UUID.randomUUID());
+
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> reservationService.finalizeUpload(reservation.getId(), metadata, uploader))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("not found");
+        verifyNoInteractions(gcsStorageService, photoService);
+    }
+
+    @Test
+    void sweepExpired_ShouldDeleteObjects_OnlyForReservationsThatWereStillUnclaimed() {
+        // --- ARRANGE ---
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        PhotoUploadReservation abandoned = createReservation(uploader.getId());
+        PhotoUploadReservation finalizedMeanwhile = createReservation(uploader.getId());
+        finalizedMeanwhile.setObjectName("uuid-fertig.jpg");
+        when(reservationRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(eq(now), any(Limit.class)))
+                .thenReturn(List.of(abandoned, finalizedMeanwhile));
+        when(reservationRepository.deleteIfExpired(abandoned.getId(), now)).thenReturn(1);
+        when(reservationRepository.deleteIfExpired(finalizedMeanwhile.getId(), now)).thenReturn(0);
+
+        // --- EXECUTE ---
+        reservationService.sweepExpired();
+
+        // --- ASSERT ---
+        verify(gcsStorageService).deleteFile("photos", "uuid-bild.jpg");
+        verify(gcsStorageService, never()).deleteFile(anyString(), eq("uuid-fertig.jpg"));
+    }
+
+    // --- HILFSMETHODEN ---
+    private PhotoUploadReservation createReservation(UUID uploaderId) {
+        PhotoUploadReservation reservation = new PhotoUploadReservation();
+        reservation.setId(UUID.randomUUID());
+        reservation.setUploaderId(uploaderId);
+        reservation.setObjectName("uuid-bild.jpg");
+        reservation.setContentType("image/jpeg");
+        reservation.setCreatedAt(OffsetDateTime.now(clock).minusMinutes(5));
+        reservation.setExpiresAt(OffsetDateTime.now(clock).plusMinutes(55));
+        lenient().when(reservationRepository.findById(reservation.getId())).thenReturn(Optional.of(reservation));
+        return reservation;
+    }
+
+    private void mockUploadedObject(long size, String contentType) {
+        Blob blob = mock(Blob.class);
+        when(blob.getSize()).thenReturn(size);
+        when(blob.getContentType()).thenReturn(contentType);
+        when(gcsStorageService.getPhotoObject("uuid-bild.jpg")).thenReturn(blob);
+        when(gcsStorageService.getMaxUploadBytes()).thenReturn(MAX_BYTES);
+    }
+}
@@ -0,0 +1,280 @@
+package com.iris.backend.service;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import com.iris.backend.dto.PhotoUploadRequestDTO;
+import com.iris.backend.dto.PhotoUploadSessionDTO;
+import com.iris.backend.dto.PhotoUploadSessionRequestDTO;
+import com.iris.backend.model.PhotoUploadSession;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.repository.PhotoUploadSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PhotoUploadSessionServiceTest {
+
+    private static final String PHOTOS_BUCKET = "photos";
+    private static final int CHUNK_SIZE = 1000;
+
+    private Storage storage;
+    private PhotoUploadSessionRepository sessionRepository;
+    private PhotoService photoService;
+    private PlatformTransactionManager transactionManager;
+    private MutableClock clock;
+    private PhotoUploadSessionService sessionService;
+
+    private final User uploader = new User();
+    private final PhotoUploadRequestDTO metadata = new PhotoUploadRequestDTO(
+            46.9480, 7.4474, PhotoVisibility.FRIENDS, 123L, null, List.of(), null);
+
+    @BeforeEach
+    void setUp() {
+        storage = LocalStorageHelper.getOptions().getService();
+        GcsStorageService gcsStorageService = new GcsStorageService(storage, mock(SignedUrlCache.class),
+                new UploadBufferPool(new SimpleMeterRegistry(), 256, 1), PHOTOS_BUCKET, "profiles", 10_000, 256 * 1024);
+        sessionRepository = mock(PhotoUploadSessionRepository.class);
+        photoService = mock(PhotoService.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        clock = new MutableClock(Instant.parse("2026-01-10T12:00:00Z"));
+        sessionService = new PhotoUploadSessionService(sessionRepository, gcsStorageService, photoService,
+                transactionManager, PHOTOS_BUCKET, CHUNK_SIZE, Duration.ofHours(24), clock);
+        uploader.setId(UUID.randomUUID());
+    }
+
+    @Test
+    void appendChunk_ShouldAcceptChunksAtTheCurrentOffset_AndFinalizeShouldAssembleThem() throws Exception {
+        // --- ARRANGE ---
+        byte[] content = randomBytes(2500); // Zwei volle Chunks und ein kurzer
+        PhotoUploadSession session = createSession(content.length);
+        when(sessionRepository.advance(eq(session.getId()), anyLong(), anyLong(), any(), any())).thenReturn(1);
+        when(sessionRepository.claim(session.getId(), OffsetDateTime.now(clock))).thenReturn(1);
+        UUID photoId = UUID.randomUUID();
+        when(photoService.createPhotoForStoredPhoto(any(), eq(46.9480), eq(7.4474), eq(PhotoVisibility.FRIENDS),
+                eq(123L), isNull(), eq(uploader), eq(List.of()), isNull())).thenReturn(photoId);
+
+        // --- EXECUTE ---
+        sessionService.appendChunk(session.getId(), 0, chunk(content, 0), uploader);
+        // Antwort verloren, Client schickt den ersten Chunk nochmal
+        assertThatThrownBy(() -> sessionService.appendChunk(session.getId(), 0, chunk(content, 0), uploader))
+                .isInstanceOf(IllegalStateException.class);
+        // Client fragt nach dem Offset und macht dort weiter
+        long resumeAt = sessionService.getSession(session.getId(), uploader).receivedBytes();
+        sessionService.appendChunk(session.getId(), resumeAt, chunk(content, 1000), uploader);
+        PhotoUploadSessionDTO complete = sessionService.appendChunk(session.getId(), 2000, chunk(content, 2000), uploader);
+        UUID result = sessionService.finalizeUpload(session.getId(), metadata, uploader);
+
+        // --- ASSERT ---
+        assertThat(resumeAt).isEqualTo(1000);
+        assertThat(complete.receivedBytes()).isEqualTo(2500);
+        assertThat(result).isEqualTo(photoId);
+
+        ArgumentCaptor<GcsStorageService.StoredPhoto> stored = ArgumentCaptor.forClass(GcsStorageService.StoredPhoto.class);
+        verify(photoService).createPhotoForStoredPhoto(stored.capture(), anyDouble(), anyDouble(), any(), any(), any(),
+                any(), any(), any());
+        String objectName = stored.getValue().objectName();
+        assertThat(objectName).endsWith("-" + session.getObjectName());
+        assertThat(stored.getValue().size()).isEqualTo(2500);
+        assertThat(stored.getValue().contentHash())
+                .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)));
+        assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, objectName)).getContent()).isEqualTo(content);
+        assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, objectName)).getContentType()).isEqualTo("image/jpeg");
+        // Die Chunks werden nach dem Zusammensetzen gelöscht
+        for (int part = 0; part < 3; part++) {
+            assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, session.getObjectName() + ".part-" + part))).isNull();
+        }
+    }
+
+    @Test
+    void appendChunk_ShouldRejectAnIncompleteChunk_WithoutMovingTheOffset() throws Exception {
+        // --- ARRANGE ---
+        PhotoUploadSession session = createSession(2500);
+
+        // --- EXECUTE & ASSERT ---
+        // Verbindung bricht nach 400 von 1000 Bytes ab
+        assertThatThrownBy(() -> sessionService.appendChunk(session.getId(), 0,
+                new ByteArrayInputStream(randomBytes(400)), uploader))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(sessionRepository, never()).advance(any(), anyLong(), anyLong(), any(), any());
+        assertThat(session.getReceivedBytes()).isZero();
+        assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, session.getObjectName() + ".part-0"))).isNull();
+    }
+
+    @Test
+    void finalizeUpload_ShouldRejectIncompleteSessions_WithoutClaiming() throws Exception {
+        // --- ARRANGE ---
+        PhotoUploadSession session = createSession(2500);
+
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> sessionService.finalizeUpload(session.getId(), metadata, uploader))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(sessionRepository, never()).claim(any(), any());
+        verifyNoInteractions(photoService);
+    }
+
+    @Test
+    void createSession_ShouldRejectFilesAboveTheUploadLimit() {
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> sessionService.createSession(uploader,
+                new PhotoUploadSessionRequestDTO("bild.jpg", "image/jpeg", 10_001)))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(sessionRepository);
+    }
+
+    @Test
+    void finalizeUpload_ShouldAssembleBeforeTheTransaction_AndDeleteTheChunksAfterItsCommit() throws Exception {
+        // --- ARRANGE ---
+        byte[] content = randomBytes(1500);
+        PhotoUploadSession session = uploadCompletely(content);
+        when(sessionRepository.claim(session.getId(), OffsetDateTime.now(clock))).thenReturn(1);
+        when(photoService.createPhotoForStoredPhoto(any(), anyDouble(), anyDouble(), any(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    // Die Kopie ist fertig, bevor die Transaktion (und damit die Zeilensperre) beginnt
+                    GcsStorageService.StoredPhoto stored = invocation.getArgument(0);
+                    assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, stored.objectName()))).isNotNull();
+                    // Bis zum Commit braucht eine zurückgerollte Session ihre Chunks noch
+                    assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, session.getObjectName() + ".part-0"))).isNotNull();
+                    return UUID.randomUUID();
+                });
+
+        // --- EXECUTE ---
+        sessionService.finalizeUpload(session.getId(), metadata, uploader);
+
+        // --- ASSERT ---
+        InOrder inOrder = inOrder(transactionManager, sessionRepository, photoService);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(sessionRepository).claim(session.getId(), OffsetDateTime.now(clock));
+        inOrder.verify(photoService).createPhotoForStoredPhoto(any(), anyDouble(), anyDouble(), any(), any(), any(),
+                any(), any(), any());
+        inOrder.verify(transactionManager).commit(any());
+        assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, session.getObjectName() + ".part-0"))).isNull();
+        assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, session.getObjectName() + ".part-1"))).isNull();
+    }
+
+    @Test
+    void finalizeUpload_ShouldDeleteTheAssembledObject_WhenTheClaimFails() throws Exception {
+        // --- ARRANGE ---
+        PhotoUploadSession session = uploadCompletely(randomBytes(1500));
+        // Ein paralleles Finalize hat die Session schon eingelöst
+        when(sessionRepository.claim(session.getId(), OffsetDateTime.now(clock))).thenReturn(0);
+
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> sessionService.finalizeUpload(session.getId(), metadata, uploader))
+                .isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(photoService);
+        verify(transactionManager).rollback(any());
+        // Nur die Chunks liegen noch da, kein verwaistes Foto-Objekt
+        assertThat(storage.list(PHOTOS_BUCKET).iterateAll()).extracting(Blob::getName)
+                .containsExactlyInAnyOrder(session.getObjectName() + ".part-0", session.getObjectName() + ".part-1");
+    }
+
+    @Test
+    void finalizeUpload_ShouldDeleteTheAssembledObject_AndKeepTheChunks_WhenTheTransactionRollsBack() throws Exception {
+        // --- ARRANGE ---
+        PhotoUploadSession session = uploadCompletely(randomBytes(1500));
+        when(sessionRepository.claim(session.getId(), OffsetDateTime.now(clock))).thenReturn(1);
+        when(photoService.createPhotoForStoredPhoto(any(), anyDouble(), anyDouble(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new IllegalArgumentException("Place not found"));
+
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> sessionService.finalizeUpload(session.getId(), metadata, uploader))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        // Die Session ist zurückgerollt; ein neuer Versuch braucht die Chunks
+        assertThat(storage.list(PHOTOS_BUCKET).iterateAll()).extracting(Blob::getName)
+                .containsExactlyInAnyOrder(session.getObjectName() + ".part-0", session.getObjectName() + ".part-1");
+    }
+
+    @Test
+    void finalizeUpload_ShouldRejectExpiredSessions_WithoutAssembling() throws Exception {
+        // --- ARRANGE ---
+        PhotoUploadSession session = uploadCompletely(randomBytes(1500));
+        clock.advance(Duration.ofHours(25));
+
+        // --- EXECUTE & ASSERT ---
+        assertThatThrownBy(() -> sessionService.finalizeUpload(session.getId(), metadata, uploader))
+                .isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(transactionManager, photoService);
+        assertThat(storage.list(PHOTOS_BUCKET).iterateAll()).hasSize(2);
+    }
+
+    @Test
+    void sweepExpired_ShouldDeleteExpiredSessionsWithTheirChunks() {
+        // --- ARRANGE ---
+        PhotoUploadSession session = new PhotoUploadSession();
+        session.setId(UUID.randomUUID());
+        session.setObjectName("uuid-bild.jpg");
+        session.setChunkSize(CHUNK_SIZE);
+        session.setTotalBytes(2500);
+        session.setReceivedBytes(2000);
+        storage.create(BlobInfo.newBuilder(BlobId.of(PHOTOS_BUCKET, "uuid-bild.jpg.part-0")).build(), randomBytes(CHUNK_SIZE));
+        storage.create(BlobInfo.newBuilder(BlobId.of(PHOTOS_BUCKET, "uuid-bild.jpg.part-1")).build(), randomBytes(CHUNK_SIZE));
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        when(sessionRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(eq(now), any(Limit.class)))
+                .thenReturn(List.of(session));
+        when(sessionRepository.deleteIfExpired(session.getId(), now)).thenReturn(1);
+
+        // --- EXECUTE ---
+        sessionService.sweepExpired();
+
+        // --- ASSERT ---
+        assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, "uuid-bild.jpg.part-0"))).isNull();
+        assertThat(storage.get(BlobId.of(PHOTOS_BUCKET, "uuid-bild.jpg.part-1"))).isNull();
+    }
+
+    private PhotoUploadSession createSession(long totalBytes) {
+        sessionService.createSession(uploader, new PhotoUploadSessionRequestDTO("bild.jpg", "image/jpeg", totalBytes));
+        ArgumentCaptor<PhotoUploadSession> captor = ArgumentCaptor.forClass(PhotoUploadSession.class);
+        verify(sessionRepository).save(captor.capture());
+        PhotoUploadSession session = captor.getValue();
+        when(sessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+        return session;
+    }
+
+    private PhotoUploadSession uploadCompletely(byte[] content) throws Exception {
+        PhotoUploadSession session = createSession(content.length);
+        when(sessionRepository.advance(eq(session.getId()), anyLong(), anyLong(), any(), any())).thenReturn(1);
+        for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+            sessionService.appendChunk(session.getId(), offset, chunk(content, offset), uploader);
+        }
+        return session;
+    }
+
+    private static ByteArrayInputStream chunk(byte[] content, int offset) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(content, offset, Math.min(content.length, offset + CHUNK_SIZE)));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
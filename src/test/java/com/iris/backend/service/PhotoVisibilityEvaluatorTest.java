@@ -0,0 +1,98 @@
+package com.iris.backend.service;
+
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.PhotoAccessDenialReason;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.PhotoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoVisibilityEvaluatorTest {
+
+    @Mock private PhotoRepository photoRepository;
+    @Mock private FriendshipRepository friendshipRepository;
+
+    @InjectMocks
+    private PhotoVisibilityEvaluator evaluator;
+
+    private User viewer;
+    private User friend;
+    private User stranger;
+
+    @BeforeEach
+    void setUp() {
+        viewer = user("Viewer");
+        friend = user("Friend");
+        stranger = user("Stranger");
+    }
+
+    @Test
+    void evaluate_ShouldDecideInMemoryAndKeepRequestOrder() {
+        // --- ARRANGE ---
+        Photo own = photo(viewer, PhotoVisibility.FRIENDS);
+        Photo publicPhoto = photo(stranger, PhotoVisibility.PUBLIC);
+        Photo friendsPhoto = photo(friend, PhotoVisibility.FRIENDS);
+        Photo strangersFriendsPhoto = photo(stranger, PhotoVisibility.FRIENDS);
+        UUID missingId = UUID.randomUUID();
+
+        // Das Repository liefert in beliebiger Reihenfolge
+        when(photoRepository.findAllById(anySet()))
+                .thenReturn(List.of(strangersFriendsPhoto, friendsPhoto, publicPhoto, own));
+        when(friendshipRepository.findAcceptedFriendIds(viewer.getId())).thenReturn(List.of(friend.getId()));
+
+        List<UUID> requested = List.of(friendsPhoto.getId(), missingId, own.getId(),
+                strangersFriendsPhoto.getId(), publicPhoto.getId());
+
+        // --- EXECUTE ---
+        PhotoVisibilityEvaluator.Result result = evaluator.evaluate(requested, viewer);
+
+        // --- ASSERT ---
+        assertThat(result.visible()).containsExactly(friendsPhoto, own, publicPhoto);
+        assertThat(result.denied()).containsExactly(
+                org.assertj.core.api.Assertions.entry(missingId, PhotoAccessDenialReason.NOT_FOUND),
+                org.assertj.core.api.Assertions.entry(strangersFriendsPhoto.getId(), PhotoAccessDenialReason.NOT_FRIENDS)
+        );
+        verify(photoRepository, times(1)).findAllById(anySet());
+        verify(friendshipRepository, times(1)).findAcceptedFriendIds(viewer.getId());
+    }
+
+    @Test
+    void evaluate_ShouldNotLoadFriendIds_WhenNotNeeded() {
+        Photo publicPhoto = photo(stranger, PhotoVisibility.VISIBLE_TO_ALL);
+        when(photoRepository.findAllById(anySet())).thenReturn(List.of(publicPhoto));
+
+        PhotoVisibilityEvaluator.Result result = evaluator.evaluate(List.of(publicPhoto.getId()), viewer);
+
+        assertThat(result.visible()).containsExactly(publicPhoto);
+        verifyNoInteractions(friendshipRepository);
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setUsername(name);
+        return user;
+    }
+
+    private Photo photo(User uploader, PhotoVisibility visibility) {
+        Photo photo = new Photo();
+        photo.setId(UUID.randomUUID());
+        photo.setUploader(uploader);
+        photo.setVisibility(visibility);
+        return photo;
+    }
+}
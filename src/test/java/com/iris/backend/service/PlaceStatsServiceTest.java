@@ -0,0 +1,312 @@
+package com.iris.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.config.JacksonConfig;
+import com.iris.backend.model.CustomPlace;
+import com.iris.backend.model.GooglePlace;
+import com.iris.backend.model.Photo;
+import com.iris.backend.model.PlaceStats;
+import com.iris.backend.model.PlaceStatsSweep;
+import com.iris.backend.model.User;
+import com.iris.backend.model.enums.PhotoVisibility;
+import com.iris.backend.repository.PlaceStatsRepository;
+import com.iris.backend.repository.PlaceStatsSweepRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlaceStatsServiceTest {
+
+    @Mock private PlaceStatsRepository placeStatsRepository;
+    @Mock private PlaceStatsSweepRepository placeStatsSweepRepository;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private MutableClock clock;
+    private PlaceStatsService placeStatsService;
+
+    private final User uploader = new User();
+    private final GooglePlace googlePlace = new GooglePlace();
+    private final CustomPlace customPlace = new CustomPlace();
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-10T12:00:00Z"));
+        placeStatsService = new PlaceStatsService(placeStatsRepository, placeStatsSweepRepository, objectMapper, clock);
+        uploader.setId(UUID.randomUUID());
+        googlePlace.setId(42L);
+        customPlace.setId(UUID.randomUUID());
+    }
+
+    @Test
+    void onPhotoCreated_ShouldCountPhotoIntoItsPlace_AndWriteTheSketchOnlyForNewUploaders() {
+        // --- ARRANGE ---
+        Photo photo = createPhoto(googlePlace, null);
+        AtomicReference<byte[]> stored = storeGooglePlaceSketch();
+        when(placeStatsRepository.findUploaderIdsByGooglePlace(42L)).thenReturn(List.of());
+
+        // --- EXECUTE ---
+        placeStatsService.onPhotoCreated(photo);
+        placeStatsService.onPhotoCreated(createPhoto(googlePlace, null)); // Gleicher Uploader
+
+        // --- ASSERT ---
+        verify(placeStatsRepository, times(2)).addGooglePlacePhoto(42L, "PUBLIC", photo.getStorageUrl(),
+                photo.getUploadedAt());
+        verify(placeStatsRepository, times(1)).updateGooglePlaceSketch(eq(42L), any(), eq(1L));
+        verify(placeStatsRepository, times(1)).findUploaderIdsByGooglePlace(42L); // Danach aus der Zeile
+        assertThat(UploaderSketch.fromBytes(stored.get()).estimate()).isEqualTo(1);
+    }
+
+    @Test
+    void onPhotoCreated_ShouldContinueTheSketchAnotherInstanceWrote() {
+        // --- ARRANGE ---
+        AtomicReference<byte[]> stored = storeGooglePlaceSketch();
+        when(placeStatsRepository.findUploaderIdsByGooglePlace(42L)).thenReturn(List.of());
+        placeStatsService.onPhotoCreated(createPhoto(googlePlace, null));
+        // Andere Instanz zählt inzwischen einen weiteren Uploader ein
+        UploaderSketch remote = UploaderSketch.fromBytes(stored.get());
+        remote.add(UUID.randomUUID());
+        stored.set(remote.toBytes());
+
+        // --- EXECUTE ---
+        User nextUploader = new User();
+        nextUploader.setId(UUID.randomUUID());
+        Photo next = createPhoto(googlePlace, null);
+        next.setUploader(nextUploader);
+        placeStatsService.onPhotoCreated(next);
+
+        // --- ASSERT ---
+        // Der Uploader der anderen Instanz geht nicht verloren
+        verify(placeStatsRepository).updateGooglePlaceSketch(eq(42L), any(), eq(3L));
+        assertThat(UploaderSketch.fromBytes(stored.get()).estimate()).isEqualTo(3);
+    }
+
+    @Test
+    void onPhotoCreated_ShouldContinueTheStoredSketch() {
+        // --- ARRANGE ---
+        UploaderSketch stored = UploaderSketch.of(List.of(UUID.randomUUID(), UUID.randomUUID()));
+        when(placeStatsRepository.findCustomPlaceSketch(customPlace.getId())).thenReturn(stored.toBytes());
+
+        // --- EXECUTE ---
+        placeStatsService.onPhotoCreated(createPhoto(null, customPlace));
+
+        // --- ASSERT ---
+        ArgumentCaptor<byte[]> written = ArgumentCaptor.forClass(byte[].class);
+        verify(placeStatsRepository).updateCustomPlaceSketch(eq(customPlace.getId()), written.capture(), eq(3L));
+        assertThat(UploaderSketch.fromBytes(written.getValue()).estimate()).isEqualTo(3);
+        verify(placeStatsRepository, never()).findUploaderIdsByCustomPlace(any());
+    }
+
+    @Test
+    void onPhotoCreated_ShouldIgnorePhotoWithoutPlace() {
+        // --- EXECUTE ---
+        placeStatsService.onPhotoCreated(createPhoto(null, null));
+
+        // --- ASSERT ---
+        verifyNoInteractions(placeStatsRepository);
+    }
+
+    @Test
+    void onPhotosDeleted_ShouldRecomputeEachPlaceOnce_AndKeepItsSketch() {
+        // --- ARRANGE ---
+        List<Photo> photos = List.of(createPhoto(googlePlace, null), createPhoto(googlePlace, null),
+                createPhoto(null, customPlace), createPhoto(null, null));
+        OffsetDateTime now = OffsetDateTime.now(clock);
+
+        // --- EXECUTE ---
+        placeStatsService.onPhotosDeleted(photos);
+
+        // --- ASSERT ---
+        verify(placeStatsRepository, times(1)).recomputeGooglePlace(42L, now);
+        verify(placeStatsRepository, times(1)).recomputeCustomPlace(customPlace.getId(), now);
+        // Teilnehmerzahl ist all-time wie nach dem Ablauf-Sweep: Löschen nimmt keinen Uploader heraus
+        verify(placeStatsRepository, never()).updateGooglePlaceSketch(any(), any(), anyLong());
+        verify(placeStatsRepository, never()).updateCustomPlaceSketch(any(), any(), anyLong());
+    }
+
+    @Test
+    void countDistinctUploaders_ShouldMergeGoogleAndCustomPlaces() {
+        // --- ARRANGE ---
+        UUID shared = UUID.randomUUID();
+        PlaceStats google = new PlaceStats();
+        google.setGooglePlaceId(42L);
+        google.setUploaderSketch(UploaderSketch.of(List.of(shared, UUID.randomUUID())).toBytes());
+        PlaceStats custom = new PlaceStats();
+        custom.setCustomPlaceId(customPlace.getId());
+        custom.setUploaderSketch(UploaderSketch.of(List.of(shared)).toBytes());
+        when(placeStatsRepository.findAllByGooglePlaceIdIn(List.of(42L))).thenReturn(List.of(google));
+        when(placeStatsRepository.findAllByCustomPlaceIdIn(List.of(customPlace.getId()))).thenReturn(List.of(custom));
+
+        // --- EXECUTE ---
+        long uploaders = placeStatsService.countDistinctUploaders(List.of(42L), List.of(customPlace.getId()));
+
+        // --- ASSERT ---
+        assertThat(uploaders).isEqualTo(2);
+    }
+
+    @Test
+    void backfill_ShouldRebuildAnEmptyTable_AndCreateTheWatermark() {
+        // --- ARRANGE ---
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        when(placeStatsRepository.tryAdvisoryXactLock(anyLong())).thenReturn(true);
+        when(placeStatsRepository.existsAny()).thenReturn(false);
+
+        // --- EXECUTE ---
+        placeStatsService.backfill();
+
+        // --- ASSERT ---
+        verify(placeStatsRepository).recomputeGooglePlacesWithExpiries(any(), any(), eq(now));
+        verify(placeStatsRepository).recomputeCustomPlacesWithExpiries(any(), any(), eq(now));
+        ArgumentCaptor<PlaceStatsSweep> sweep = ArgumentCaptor.forClass(PlaceStatsSweep.class);
+        verify(placeStatsSweepRepository).save(sweep.capture());
+        assertThat(sweep.getValue().getSweptUntil()).isEqualTo(now);
+    }
+
+    @Test
+    void backfill_ShouldNotRecompute_WhenTheTableIsFilled() {
+        // --- ARRANGE ---
+        when(placeStatsRepository.tryAdvisoryXactLock(anyLong())).thenReturn(true);
+        when(placeStatsRepository.existsAny()).thenReturn(true);
+
+        // --- EXECUTE ---
+        placeStatsService.backfill();
+
+        // --- ASSERT ---
+        verify(placeStatsRepository, never()).recomputeGooglePlacesWithExpiries(any(), any(), any());
+        verify(placeStatsRepository, never()).recomputeCustomPlacesWithExpiries(any(), any(), any());
+        verify(placeStatsSweepRepository).save(any(PlaceStatsSweep.class));
+    }
+
+    @Test
+    void backfill_ShouldRunOnce_AndOnOneInstanceOnly() {
+        // --- ARRANGE ---
+        // Erster Aufruf: andere Instanz hält den Lock; zweiter: Wasserzeichen existiert schon
+        when(placeStatsRepository.tryAdvisoryXactLock(anyLong())).thenReturn(false, true);
+        when(placeStatsSweepRepository.existsById(PlaceStatsSweep.ID)).thenReturn(true);
+
+        // --- EXECUTE ---
+        placeStatsService.backfill();
+        placeStatsService.backfill();
+
+        // --- ASSERT ---
+        verify(placeStatsRepository, never()).existsAny();
+        verify(placeStatsRepository, never()).findGooglePlaceUploadersWithoutSketch();
+        verify(placeStatsSweepRepository, never()).save(any());
+    }
+
+    @Test
+    void backfill_ShouldFillMissingSketchesFromThePhotos() throws Exception {
+        // --- ARRANGE ---
+        UUID other = UUID.randomUUID();
+        when(placeStatsRepository.tryAdvisoryXactLock(anyLong())).thenReturn(true);
+        when(placeStatsRepository.existsAny()).thenReturn(true);
+        when(placeStatsRepository.findGooglePlaceUploadersWithoutSketch()).thenReturn(List.of(
+                googleUploader(42L, uploader.getId()), googleUploader(42L, other)));
+        when(placeStatsRepository.findCustomPlaceUploadersWithoutSketch()).thenReturn(List.of());
+        ArgumentCaptor<String> rows = ArgumentCaptor.forClass(String.class);
+        when(placeStatsRepository.fillMissingGooglePlaceSketches(rows.capture())).thenReturn(1);
+
+        // --- EXECUTE ---
+        placeStatsService.backfill();
+
+        // --- ASSERT ---
+        JsonNode row = objectMapper.readTree(rows.getValue()).get(0);
+        assertThat(row.get("placeId").asLong()).isEqualTo(42L);
+        assertThat(row.get("uploaderCount").asLong()).isEqualTo(2);
+        assertThat(UploaderSketch.fromBytes(row.get("sketch").binaryValue()).estimate()).isEqualTo(2);
+        verify(placeStatsRepository, never()).fillMissingCustomPlaceSketches(anyString());
+    }
+
+    @Test
+    void sweepExpired_ShouldOnlyRecomputePlacesWithPhotosExpiredSinceThePreviousSweep() {
+        // --- ARRANGE ---
+        OffsetDateTime rebuiltAt = OffsetDateTime.now(clock);
+        PlaceStatsSweep watermark = new PlaceStatsSweep(PlaceStatsSweep.ID, rebuiltAt);
+        when(placeStatsSweepRepository.lockIfAvailable(PlaceStatsSweep.ID)).thenReturn(Optional.of(watermark));
+        clock.advance(Duration.ofMinutes(1));
+        OffsetDateTime firstSweep = OffsetDateTime.now(clock);
+
+        // --- EXECUTE ---
+        placeStatsService.sweepExpired();
+        clock.advance(Duration.ofMinutes(1));
+        placeStatsService.sweepExpired();
+
+        // --- ASSERT ---
+        OffsetDateTime secondSweep = OffsetDateTime.now(clock);
+        verify(placeStatsRepository).recomputeGooglePlacesWithExpiries(rebuiltAt, firstSweep, firstSweep);
+        verify(placeStatsRepository).recomputeCustomPlacesWithExpiries(rebuiltAt, firstSweep, firstSweep);
+        verify(placeStatsRepository).recomputeGooglePlacesWithExpiries(firstSweep, secondSweep, secondSweep);
+        verify(placeStatsRepository).recomputeCustomPlacesWithExpiries(firstSweep, secondSweep, secondSweep);
+        assertThat(watermark.getSweptUntil()).isEqualTo(secondSweep);
+    }
+
+    @Test
+    void sweepExpired_ShouldSkip_WithoutWatermark_OrWhileAnotherInstanceSweeps() {
+        // --- ARRANGE ---
+        when(placeStatsSweepRepository.lockIfAvailable(PlaceStatsSweep.ID)).thenReturn(Optional.empty());
+
+        // --- EXECUTE ---
+        placeStatsService.sweepExpired();
+
+        // --- ASSERT ---
+        verify(placeStatsRepository, never()).recomputeGooglePlacesWithExpiries(any(), any(), any());
+        verify(placeStatsRepository, never()).recomputeCustomPlacesWithExpiries(any(), any(), any());
+    }
+
+    // Die Skizze des Google Place wie in der Datenbank: gelesen wird, was zuletzt geschrieben wurde
+    private AtomicReference<byte[]> storeGooglePlaceSketch() {
+        AtomicReference<byte[]> stored = new AtomicReference<>();
+        when(placeStatsRepository.findGooglePlaceSketch(42L)).thenAnswer(invocation -> stored.get());
+        when(placeStatsRepository.updateGooglePlaceSketch(eq(42L), any(), anyLong())).thenAnswer(invocation -> {
+            stored.set(invocation.getArgument(1));
+            return 1;
+        });
+        return stored;
+    }
+
+    private static PlaceStatsRepository.GooglePlaceUploaderProjection googleUploader(Long placeId, UUID uploaderId) {
+        return new PlaceStatsRepository.GooglePlaceUploaderProjection() {
+            @Override
+            public Long getPlaceId() {
+                return placeId;
+            }
+
+            @Override
+            public UUID getUploaderId() {
+                return uploaderId;
+            }
+        };
+    }
+
+    private Photo createPhoto(GooglePlace gp, CustomPlace cp) {
+        Photo photo = new Photo();
+        photo.setId(UUID.randomUUID());
+        photo.setUploader(uploader);
+        photo.setVisibility(PhotoVisibility.PUBLIC);
+        photo.setStorageUrl("photo.jpg");
+        photo.setUploadedAt(OffsetDateTime.of(2026, 1, 10, 11, 0, 0, 0, ZoneOffset.UTC));
+        photo.setGooglePlace(gp);
+        photo.setCustomPlace(cp);
+        return photo;
+    }
+}
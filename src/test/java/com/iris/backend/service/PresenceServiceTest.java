@@ -0,0 +1,291 @@
+package com.iris.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.backend.config.JacksonConfig;
+import com.iris.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PresenceServiceTest {
+
+    // Zytglogge Bern
+    private static final double LAT = 46.9480;
+    private static final double LON = 7.4474;
+
+    @Mock private UserRepository userRepository;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final List<JsonNode> writtenBatches = new ArrayList<>();
+    private MutableClock clock;
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-10T12:00:00Z"));
+        presenceService = new PresenceService(userRepository, objectMapper, new SimpleMeterRegistry(),
+                Duration.ofMinutes(5), Duration.ofMinutes(2), 100, 0.01, clock);
+        lenient().when(userRepository.updateLocations(anyString())).thenAnswer(invocation -> {
+            JsonNode batch = objectMapper.readTree(invocation.<String>getArgument(0));
+            writtenBatches.add(batch);
+            return batch.size();
+        });
+    }
+
+    @Test
+    void reads_ShouldFallBack_UntilLoaded() {
+        presenceService.update(UUID.randomUUID(), LAT, LON);
+
+        assertThat(presenceService.findActive(List.of(UUID.randomUUID()))).isEmpty();
+        assertThat(presenceService.findNearest(LAT, LON, 100, 10, id -> true)).isEmpty();
+    }
+
+    @Test
+    void update_ShouldNotWriteToDatabase_AndBeVisibleImmediately() {
+        // --- ARRANGE ---
+        loadEmpty();
+        UUID near = UUID.randomUUID();
+        UUID far = UUID.randomUUID();
+
+        // --- EXECUTE ---
+        presenceService.update(near, LAT + 0.0005, LON);   // ca. 55 m
+        presenceService.update(far, LAT + 0.0020, LON);    // ca. 220 m
+
+        // --- ASSERT ---
+        verify(userRepository, never()).updateLocations(anyString());
+        verify(userRepository, never()).save(any());
+        assertThat(presenceService.findNearest(LAT, LON, 100, 10, id -> true).get()).containsExactly(near);
+        assertThat(presenceService.findActive(List.of(near, far)).get()).containsOnlyKeys(near, far);
+    }
+
+    @Test
+    void findNearest_ShouldOrderByDistance_FilterBeforeLimit_AndSkipStaleUsers() {
+        // --- ARRANGE ---
+        loadEmpty();
+        UUID excluded = UUID.randomUUID();
+        UUID nearest = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        UUID stale = UUID.randomUUID();
+        presenceService.update(stale, LAT, LON);
+        clock.advance(Duration.ofMinutes(5));
+        presenceService.update(excluded, LAT, LON);
+        presenceService.update(third, LAT + 0.0040, LON);          // ca. 445 m, andere Zelle
+        presenceService.update(second, LAT, LON - 0.0050);         // ca. 380 m, andere Zelle
+        presenceService.update(nearest, LAT + 0.0010, LON);        // ca. 110 m
+        presenceService.update(UUID.randomUUID(), LAT + 0.02, LON); // ca. 2.2 km -> ausserhalb
+
+        // --- EXECUTE ---
+        List<UUID> result = presenceService.findNearest(LAT, LON, 1000, 2, id -> !id.equals(excluded)).get();
+
+        // --- ASSERT ---
+        assertThat(result).containsExactly(nearest, second);
+        assertThat(presenceService.findNearest(LAT, LON, 1000, 10, id -> true).get())
+                .containsExactly(excluded, nearest, second, third);
+    }
+
+    @Test
+    void findNearest_ShouldFollowUsersAcrossCells_AndDropEvictedUsers() {
+        // --- ARRANGE ---
+        loadEmpty();
+        UUID userId = UUID.randomUUID();
+        presenceService.update(userId, LAT, LON);
+
+        // --- EXECUTE ---
+        presenceService.update(userId, LAT + 0.05, LON); // ca. 5.5 km, mehrere Zellen weiter
+
+        // --- ASSERT ---
+        assertThat(presenceService.findNearest(LAT, LON, 1000, 10, id -> true).get()).isEmpty();
+        assertThat(presenceService.findNearest(LAT + 0.05, LON, 1000, 10, id -> true).get()).containsExactly(userId);
+
+        presenceService.flush();
+        clock.advance(Duration.ofMinutes(5));
+        presenceService.flush();
+        assertThat(presenceService.findNearest(LAT + 0.05, LON, 1000, 10, id -> true).get()).isEmpty();
+    }
+
+    @Test
+    void flush_ShouldWriteBehind_OnlyAfterSignificantMoveOrPersistInterval() {
+        // --- ARRANGE ---
+        loadEmpty();
+        UUID userId = UUID.randomUUID();
+        presenceService.update(userId, LAT, LON);
+        presenceService.flush();
+        assertThat(writtenBatches).hasSize(1); // Erster Ping wird geschrieben
+
+        // --- EXECUTE & ASSERT ---
+        // Pings alle 10 Sekunden am selben Ort: kein Schreiben bis zum Persist-Intervall
+        for (int i = 0; i < 11; i++) {
+            clock.advance(Duration.ofSeconds(10));
+            presenceService.update(userId, LAT + 0.00001, LON);
+            presenceService.flush();
+        }
+        assertThat(writtenBatches).hasSize(1);
+
+        clock.advance(Duration.ofSeconds(10));
+        presenceService.update(userId, LAT + 0.00001, LON);
+        presenceService.flush();
+        assertThat(writtenBatches).hasSize(2);
+
+        // Grosse Bewegung wird sofort beim nächsten Flush geschrieben
+        clock.advance(Duration.ofSeconds(10));
+        presenceService.update(userId, LAT + 0.002, LON);
+        presenceService.flush();
+        assertThat(writtenBatches).hasSize(3);
+        JsonNode row = writtenBatches.get(2).get(0);
+        assertThat(row.get("id").asText()).isEqualTo(userId.toString());
+        assertThat(row.get("latitude").asDouble()).isEqualTo(LAT + 0.002);
+        assertThat(Instant.parse(row.get("updatedAt").asText())).isEqualTo(clock.instant());
+    }
+
+    @Test
+    void flush_ShouldBatchAllDueUsersIntoOneUpdate_AndRetryAfterFailure() {
+        // --- ARRANGE ---
+        loadEmpty();
+        presenceService.update(UUID.randomUUID(), LAT, LON);
+        presenceService.update(UUID.randomUUID(), LAT, LON);
+        when(userRepository.updateLocations(anyString()))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(2);
+
+        // --- EXECUTE ---
+        presenceService.flush();
+        presenceService.flush();
+
+        // --- ASSERT ---
+        verify(userRepository, times(2)).updateLocations(anyString());
+        presenceService.flush();
+        verify(userRepository, times(2)).updateLocations(anyString());
+    }
+
+    @Test
+    void flush_ShouldEvictUsersAfterTtl() {
+        // --- ARRANGE ---
+        loadEmpty();
+        UUID userId = UUID.randomUUID();
+        presenceService.update(userId, LAT, LON);
+        presenceService.flush();
+
+        // --- EXECUTE ---
+        clock.advance(Duration.ofMinutes(5));
+        presenceService.flush();
+
+        // --- ASSERT ---
+        assertThat(presenceService.findActive(List.of(userId)).get()).isEmpty();
+        assertThat(presenceService.size()).isZero();
+    }
+
+    @Test
+    void load_ShouldKeepNewerPings() {
+        // --- ARRANGE ---
+        UUID userId = UUID.randomUUID();
+        UserRepository.LocationProjection row = mock(UserRepository.LocationProjection.class);
+        when(row.getId()).thenReturn(userId);
+        when(row.getLatitude()).thenReturn(LAT);
+        when(row.getLongitude()).thenReturn(LON);
+        when(row.getUpdatedAt()).thenReturn(clock.instant().minusSeconds(60));
+        when(userRepository.findLocationsUpdatedSince(any(OffsetDateTime.class))).thenReturn(List.of(row));
+        presenceService.update(userId, LAT + 0.01, LON);
+
+        // --- EXECUTE ---
+        presenceService.load();
+
+        // --- ASSERT ---
+        Optional<Map<UUID, PresenceService.Location>> active = presenceService.findActive(List.of(userId));
+        assertThat(active.get().get(userId).latitude()).isEqualTo(LAT + 0.01);
+    }
+
+    @Test
+    void sync_ShouldMergeLocationsWrittenByOtherInstances() {
+        // --- ARRANGE ---
+        loadEmpty();
+        UUID remoteUser = UUID.randomUUID();
+        UUID localUser = UUID.randomUUID();
+        presenceService.update(localUser, LAT, LON);
+        clock.advance(Duration.ofSeconds(5));
+        UserRepository.LocationProjection remoteRow = locationRow(remoteUser, LAT + 0.0005, LON, clock.instant().minusSeconds(3));
+        // Ältere Zeile der anderen Instanz darf den lokalen Ping nicht überschreiben
+        UserRepository.LocationProjection staleRow = locationRow(localUser, LAT + 0.01, LON, clock.instant().minusSeconds(60));
+        when(userRepository.findLocationsUpdatedSince(any(OffsetDateTime.class))).thenReturn(List.of(remoteRow, staleRow));
+
+        // --- EXECUTE ---
+        presenceService.sync();
+
+        // --- ASSERT ---
+        assertThat(presenceService.findNearest(LAT, LON, 100, 10, id -> true).get())
+                .containsExactly(localUser, remoteUser);
+        assertThat(presenceService.findActive(List.of(localUser)).get().get(localUser).latitude()).isEqualTo(LAT);
+    }
+
+    @Test
+    void sync_ShouldReadSinceTheLastSync_WithOverlap() {
+        // --- ARRANGE ---
+        loadEmpty();
+        Instant loadedAt = clock.instant();
+        clock.advance(Duration.ofSeconds(5));
+
+        // --- EXECUTE ---
+        presenceService.sync();
+        Instant firstSyncAt = clock.instant();
+        clock.advance(Duration.ofSeconds(5));
+        presenceService.sync();
+
+        // --- ASSERT ---
+        // load() liest das ganze TTL-Fenster, danach nur noch ab dem letzten Sync minus Überlappung
+        verify(userRepository).findLocationsUpdatedSince(loadedAt.minus(Duration.ofMinutes(5)).atOffset(ZoneOffset.UTC));
+        verify(userRepository).findLocationsUpdatedSince(loadedAt.minus(Duration.ofMinutes(1)).atOffset(ZoneOffset.UTC));
+        verify(userRepository).findLocationsUpdatedSince(firstSyncAt.minus(Duration.ofMinutes(1)).atOffset(ZoneOffset.UTC));
+    }
+
+    @Test
+    void sync_ShouldNotWriteMergedLocationsBack() {
+        // --- ARRANGE ---
+        loadEmpty();
+        UUID userId = UUID.randomUUID();
+        presenceService.update(userId, LAT, LON);
+        UserRepository.LocationProjection newerRow = locationRow(userId, LAT + 0.001, LON, clock.instant().plusSeconds(1));
+        when(userRepository.findLocationsUpdatedSince(any(OffsetDateTime.class))).thenReturn(List.of(newerRow));
+
+        // --- EXECUTE ---
+        presenceService.sync();
+        presenceService.flush();
+
+        // --- ASSERT ---
+        // Die andere Instanz hat die neuere Position bereits geschrieben
+        assertThat(writtenBatches).isEmpty();
+    }
+
+    private UserRepository.LocationProjection locationRow(UUID userId, double lat, double lon, Instant updatedAt) {
+        UserRepository.LocationProjection row = mock(UserRepository.LocationProjection.class);
+        lenient().when(row.getId()).thenReturn(userId);
+        lenient().when(row.getLatitude()).thenReturn(lat);
+        lenient().when(row.getLongitude()).thenReturn(lon);
+        lenient().when(row.getUpdatedAt()).thenReturn(updatedAt);
+        return row;
+    }
+
+    private void loadEmpty() {
+        when(userRepository.findLocationsUpdatedSince(any(OffsetDateTime.class))).thenReturn(List.of());
+        presenceService.load();
+    }
+}
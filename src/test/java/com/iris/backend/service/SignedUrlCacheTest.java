@@ -0,0 +1,112 @@
+package com.iris.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SignedUrlCacheTest {
+
+    private static final Duration FIFTEEN_MINUTES = Duration.ofMinutes(15);
+
+    private SimpleMeterRegistry meterRegistry;
+    private MutableClock clock;
+    private SignedUrlCache cache;
+    private AtomicInteger signCount;
+    private Function<SignedUrlCache.SigningRequest, String> signer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new MutableClock(Instant.parse("2026-01-01T12:01:00Z"));
+        cache = new SignedUrlCache(meterRegistry, 2, clock);
+        signCount = new AtomicInteger();
+        signer = request -> "https://signed/" + signCount.incrementAndGet() + "?expires=" + request.durationSeconds();
+    }
+
+    @Test
+    void getOrSign_ShouldReuseUrlWithinSameBucket() {
+        String first = cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, signer);
+        clock.advance(Duration.ofMinutes(3));
+        String second = cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, signer);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(signCount.get()).isEqualTo(1);
+        assertThat(meterRegistry.counter("iris.signed_url_cache.requests", "result", "hit").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("iris.signed_url_cache.requests", "result", "miss").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void getOrSign_ShouldResignOnceRemainingValidityIsBelowRequestedDuration() {
+        cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, signer);
+        // 12:01 + 15 min + 5 min Bucket -> aufgerundet auf 12:25; ab 12:10 reicht die Restlaufzeit nicht mehr
+        clock.advance(Duration.ofMinutes(10));
+        cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, signer);
+
+        assertThat(signCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    void alignedSigningRequest_ShouldAlwaysCoverRequestedDuration() {
+        Instant now = Instant.parse("2026-01-01T12:01:00Z");
+        SignedUrlCache.SigningRequest request = SignedUrlCache.alignedSigningRequest(now, FIFTEEN_MINUTES);
+
+        assertThat(request.expiresAt()).isEqualTo(Instant.parse("2026-01-01T12:25:00Z"));
+        assertThat(Duration.ofSeconds(request.durationSeconds())).isGreaterThanOrEqualTo(FIFTEEN_MINUTES);
+    }
+
+    @Test
+    void getOrSign_ShouldKeepTtlClassesApart() {
+        cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, signer);
+        cache.getOrSign("photos", "a.jpg", Duration.ofHours(12), signer);
+
+        assertThat(signCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidate_ShouldDropAllTtlClassesOfObject() {
+        cache.getOrSign("profiles", "me.jpg", FIFTEEN_MINUTES, signer);
+        cache.getOrSign("profiles", "me.jpg", Duration.ofHours(1), signer);
+
+        cache.invalidate("profiles", "me.jpg");
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void getOrSign_ShouldNotCacheUrl_WhenObjectWasInvalidatedWhileSigning() {
+        // Das Objekt wird gelöscht, während ein Miss noch signiert
+        String url = cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, request -> {
+            cache.invalidate("photos", "a.jpg");
+            return signer.apply(request);
+        });
+
+        assertThat(url).isNotNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void getOrSign_ShouldEvictLeastRecentlyUsedEntryWhenFull() {
+        cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, signer);
+        cache.getOrSign("photos", "b.jpg", FIFTEEN_MINUTES, signer);
+        cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, signer); // a wird "frisch"
+        cache.getOrSign("photos", "c.jpg", FIFTEEN_MINUTES, signer); // b fliegt raus
+
+        cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, signer);
+        assertThat(signCount.get()).isEqualTo(3);
+        assertThat(meterRegistry.counter("iris.signed_url_cache.evictions").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void getOrSign_ShouldNotCacheFailedSignatures() {
+        cache.getOrSign("photos", "a.jpg", FIFTEEN_MINUTES, request -> null);
+
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,92 @@
+package com.iris.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class UploaderSketchTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void estimate_ShouldBeExact_UpToTheLimit() {
+        // --- ARRANGE ---
+        UploaderSketch sketch = new UploaderSketch();
+        List<UUID> uploaders = uploaders(UploaderSketch.EXACT_LIMIT);
+
+        // --- EXECUTE ---
+        uploaders.forEach(sketch::add);
+        boolean changed = sketch.add(uploaders.get(0));
+
+        // --- ASSERT ---
+        assertThat(changed).isFalse();
+        assertThat(sketch.estimate()).isEqualTo(UploaderSketch.EXACT_LIMIT);
+        assertThat(sketch.toBytes()).hasSize(1 + UploaderSketch.EXACT_LIMIT * Long.BYTES);
+    }
+
+    @Test
+    void estimate_ShouldStayWithinTheErrorBound_AboveTheLimit() {
+        for (int count : new int[]{UploaderSketch.EXACT_LIMIT + 1, 5_000, 100_000}) {
+            UploaderSketch sketch = UploaderSketch.of(uploaders(count));
+
+            // 4 Standardfehler der HyperLogLog-Schätzung (1.04 / sqrt(4096))
+            assertThat((double) sketch.estimate()).isCloseTo(count, within(count * 0.065));
+            assertThat(sketch.toBytes()).hasSize(2 + 4096);
+        }
+    }
+
+    @Test
+    void merge_ShouldCountSharedUploadersOnce_InExactAndSketchedMode() {
+        // --- ARRANGE ---
+        List<UUID> shared = uploaders(100);
+        List<UUID> many = new ArrayList<>(shared);
+        many.addAll(uploaders(20_000));
+        UploaderSketch small = UploaderSketch.of(shared);
+        UploaderSketch large = UploaderSketch.of(many);
+
+        // --- EXECUTE ---
+        UploaderSketch smallUnion = small.copy();
+        smallUnion.merge(UploaderSketch.of(shared.subList(0, 50)));
+        UploaderSketch largeUnion = small.copy();
+        largeUnion.merge(large);
+
+        // --- ASSERT ---
+        assertThat(smallUnion.estimate()).isEqualTo(100);
+        assertThat(largeUnion.toBytes()).isEqualTo(large.toBytes());
+        assertThat(small.estimate()).isEqualTo(100); // Kopie, Original unverändert
+    }
+
+    @Test
+    void fromBytes_ShouldRestoreTheSketch() {
+        // --- ARRANGE ---
+        UploaderSketch exact = UploaderSketch.of(uploaders(10));
+        UploaderSketch sketched = UploaderSketch.of(uploaders(1_000));
+
+        // --- EXECUTE ---
+        UploaderSketch restoredExact = UploaderSketch.fromBytes(exact.toBytes());
+        UploaderSketch restoredSketched = UploaderSketch.fromBytes(sketched.toBytes());
+
+        // --- ASSERT ---
+        assertThat(restoredExact.estimate()).isEqualTo(10);
+        assertThat(restoredExact.toBytes()).isEqualTo(exact.toBytes());
+        assertThat(restoredSketched.estimate()).isEqualTo(sketched.estimate());
+        assertThat(UploaderSketch.fromBytes(null).estimate()).isZero();
+        assertThatThrownBy(() -> UploaderSketch.fromBytes(new byte[]{9, 1}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<UUID> uploaders(int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        return ids;
+    }
+}
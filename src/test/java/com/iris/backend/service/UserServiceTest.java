@@ -1,28 +1,38 @@
 package com.iris.backend.service;
 
 import com.google.firebase.auth.FirebaseToken;
+import com.iris.backend.dto.LocationUpdateRequestDTO;
 import com.iris.backend.dto.SignUpRequestDTO;
 import com.iris.backend.dto.UserDTO;
+import com.iris.backend.event.PhotoDeletedEvent;
 import com.iris.backend.model.Photo;
 import com.iris.backend.model.User;
 import com.iris.backend.repository.BlockedNumberRepository;
+import com.iris.backend.repository.ChallengeCompletionRepository;
 import com.iris.backend.repository.FriendshipRepository;
+import com.iris.backend.repository.PhotoLikeRepository;
 import com.iris.backend.repository.PhotoRepository;
 import com.iris.backend.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 // WICHTIG: Kein @SpringBootTest, kein @Testcontainers!
@@ -35,6 +45,13 @@ class UserServiceTest {
     @Mock private FriendshipRepository friendshipRepository;
     @Mock private BlockedNumberRepository blockedNumberRepository;
     @Mock private GcsStorageService gcsStorageService;
+    @Mock private PresenceService presenceService;
+    @Mock private FriendGraphCache friendGraphCache;
+    @Mock private PlaceStatsService placeStatsService;
+    @Mock private PhotoLikeRepository photoLikeRepository;
+    @Mock private ChallengeCompletionRepository challengeCompletionRepository;
+    @Mock private FeedTimelineService feedTimelineService;
+    @Mock private ApplicationEventPublisher eventPublisher;
 
     // Der Service, den wir WIRKLICH testen
     private UserService userService;
@@ -55,7 +72,15 @@ class UserServiceTest {
                 blockedNumberRepository,
                 gcsStorageService,
                 PHOTOS_BUCKET,
-                PROFILES_BUCKET
+                PROFILES_BUCKET,
+                presenceService,
+                friendGraphCache,
+                placeStatsService,
+                photoLikeRepository,
+                challengeCompletionRepository,
+                feedTimelineService,
+                eventPublisher,
+                50
         );
 
         // Ein Standard-Testuser, den wir in mehreren Tests brauchen können
@@ -66,6 +91,47 @@ class UserServiceTest {
         testUser.setProfileImageUrl("my-profile-pic.jpg");
     }
 
+    @Test
+    void updateUserLocation_ShouldOnlyUpdatePresence() {
+        // --- EXECUTE ---
+        userService.updateUserLocation(testUserId, new LocationUpdateRequestDTO(46.948, 7.4474));
+
+        // --- ASSERT ---
+        verify(presenceService).update(testUserId, 46.948, 7.4474);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getNearbyUsers_ShouldExcludeRelatedUsers_AndKeepDistanceOrder() {
+        // --- ARRANGE ---
+        UUID friendId = UUID.randomUUID();
+        User near = new User();
+        near.setId(UUID.randomUUID());
+        near.setUsername("Near");
+        User far = new User();
+        far.setId(UUID.randomUUID());
+        far.setUsername("Far");
+        when(friendGraphCache.relatedUserIds(testUserId)).thenReturn(FriendGraphCache.IdSet.of(Set.of(friendId)));
+        when(presenceService.findNearest(eq(46.948), eq(7.4474), eq(500.0), eq(50), any()))
+                .thenAnswer(invocation -> {
+                    Predicate<UUID> include = invocation.getArgument(4);
+                    assertThat(include.test(testUserId)).isFalse();
+                    assertThat(include.test(friendId)).isFalse();
+                    assertThat(include.test(near.getId())).isTrue();
+                    return Optional.of(List.of(near.getId(), far.getId()));
+                });
+        // Die Datenbank liefert in beliebiger Reihenfolge
+        when(userRepository.findAllById(List.of(near.getId(), far.getId()))).thenReturn(List.of(far, near));
+
+        // --- EXECUTE ---
+        List<UserDTO> result = userService.getNearbyUsers(46.948, 7.4474, 500, testUser);
+
+        // --- ASSERT ---
+        assertThat(result).extracting(UserDTO::username).containsExactly("Near", "Far");
+        verify(userRepository, never()).findNearbyUsersByLocation(anyDouble(), anyDouble(), anyDouble(), any());
+        verifyNoInteractions(friendshipRepository);
+    }
+
     @Test
     void checkAllowed_ShouldReturnTrue_WhenNumberIsNotBlocked() {
         // --- ARRANGE ---
@@ -99,6 +165,7 @@ class UserServiceTest {
     void deleteUserAccount_ShouldDeletePhotosAndProfileImageFromStorage() {
         // --- ARRANGE ---
         Photo testPhoto = new Photo();
+        testPhoto.setId(UUID.randomUUID());
         testPhoto.setStorageUrl("photo1.jpg");
 
         // Wenn der UserService nach dem User sucht, geben wir den TestUser zurück
@@ -117,6 +184,28 @@ class UserServiceTest {
         verify(userRepository).delete(testUser);
     }
 
+    @Test
+    void deleteUserAccount_ShouldCleanUpPhotoRows_BeforeTheUserCascade() {
+        // --- ARRANGE ---
+        Photo testPhoto = new Photo();
+        testPhoto.setId(UUID.randomUUID());
+        when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
+        when(photoRepository.findAllByUploader(testUser)).thenReturn(List.of(testPhoto));
+
+        // --- EXECUTE ---
+        userService.deleteUserAccount(testUserId);
+
+        // --- ASSERT ---
+        // Likes und Challenge-Abschlüsse haben keinen Fremdschlüssel auf photos mehr, die Cascade erreicht sie nicht
+        InOrder inOrder = inOrder(feedTimelineService, photoLikeRepository, challengeCompletionRepository,
+                eventPublisher, userRepository);
+        inOrder.verify(feedTimelineService).onPhotoDeleted(testPhoto.getId());
+        inOrder.verify(photoLikeRepository).deleteByPhotoIds(List.of(testPhoto.getId()));
+        inOrder.verify(challengeCompletionRepository).deleteByPhotoIds(List.of(testPhoto.getId()));
+        inOrder.verify(eventPublisher).publishEvent(new PhotoDeletedEvent(testPhoto.getId()));
+        inOrder.verify(userRepository).delete(testUser);
+    }
+
     @Test
     void registerNewUser_ShouldThrowException_WhenUserAlreadyExists() {
         // --- ARRANGE ---